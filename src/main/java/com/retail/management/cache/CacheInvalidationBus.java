@@ -0,0 +1,235 @@
+package com.retail.management.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Propagates cache evictions between nodes over Postgres LISTEN/NOTIFY.
+ * Evictions are published with pg_notify on the caller's connection, so a
+ * notification issued inside a transaction is only delivered if it commits.
+ * Each node keeps one connection listening on the channel and evicts the
+ * affected keys from its local caches. Caches are cleared whenever the
+ * listener (re)connects and on a fixed schedule, covering notifications lost
+ * while a node was disconnected. Other in-memory state can be kept in sync
+ * the same way by registering a {@link Listener}.
+ */
+@Component
+@Slf4j
+public class CacheInvalidationBus implements SmartLifecycle {
+
+    private static final String CLEAR_ALL = "*";
+    private static final String SEPARATOR = "|";
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final String channel;
+    private final long pollTimeoutMillis;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Map<String, Cache<Object, Object>> localCaches = new ConcurrentHashMap<>();
+    private final Map<String, Listener> listeners = new ConcurrentHashMap<>();
+
+    private volatile boolean running;
+    private Thread listenerThread;
+
+    public CacheInvalidationBus(DataSource dataSource,
+                                @Value("${app.cache.invalidation.channel:cache_invalidation}") String channel,
+                                @Value("${app.cache.invalidation.poll-timeout-ms:500}") long pollTimeoutMillis) {
+        if (!channel.matches("[a-z_][a-z0-9_]*")) {
+            throw new IllegalArgumentException("Invalid notification channel: " + channel);
+        }
+        this.dataSource = dataSource;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.channel = channel;
+        this.pollTimeoutMillis = pollTimeoutMillis;
+    }
+
+    /**
+     * Register a local cache whose entries are evicted when other nodes publish.
+     */
+    public void register(String cacheName, Cache<Object, Object> cache) {
+        localCaches.put(cacheName, cache);
+    }
+
+    /**
+     * Register a listener for messages published under the given name by other nodes.
+     */
+    public void register(String name, Listener listener) {
+        listeners.put(name, listener);
+    }
+
+    /**
+     * Publish a message to the listeners registered under the given name on the
+     * other nodes. Like evictions, it is only delivered if the surrounding
+     * transaction commits.
+     */
+    public void publishMessage(String name, String message) {
+        publish(name + SEPARATOR + message);
+    }
+
+    public void publishEvict(String cacheName, Object key) {
+        publish(cacheName + SEPARATOR + encodeKey(key));
+    }
+
+    public void publishClear(String cacheName) {
+        publish(cacheName + SEPARATOR + CLEAR_ALL);
+    }
+
+    private void publish(String message) {
+        try {
+            jdbcTemplate.query("SELECT pg_notify(?, ?)", (ResultSetExtractor<Void>) rs -> null,
+                    channel, nodeId + SEPARATOR + message);
+        } catch (RuntimeException e) {
+            // Other nodes fall back to the scheduled refresh
+            log.warn("Failed to publish cache invalidation {}: {}", message, e.getMessage());
+        }
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        listenerThread = Thread.ofPlatform()
+                .name("cache-invalidation-listener")
+                .daemon(true)
+                .start(this::listen);
+    }
+
+    @Override
+    public synchronized void stop() {
+        running = false;
+        if (listenerThread != null) {
+            listenerThread.interrupt();
+            listenerThread = null;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Scheduled(fixedDelayString = "${app.cache.invalidation.full-refresh-interval-ms:600000}",
+            initialDelayString = "${app.cache.invalidation.full-refresh-interval-ms:600000}")
+    public void refreshAll() {
+        log.debug("Scheduled full refresh of local caches");
+        clearAll();
+    }
+
+    private void listen() {
+        while (running) {
+            try (Connection connection = dataSource.getConnection()) {
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                log.info("Listening for cache invalidations on channel {}", channel);
+
+                // Anything published while this node was not listening has been missed
+                clearAll();
+
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications((int) pollTimeoutMillis);
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            apply(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (running) {
+                    log.warn("Cache invalidation listener disconnected: {}", e.getMessage());
+                    pause();
+                }
+            } catch (RuntimeException e) {
+                log.error("Cache invalidation listener failed", e);
+                pause();
+            }
+        }
+    }
+
+    void apply(String payload) {
+        String[] parts = payload.split("\\" + SEPARATOR, 3);
+        if (parts.length < 3 || nodeId.equals(parts[0])) {
+            return;
+        }
+
+        Listener listener = listeners.get(parts[1]);
+        if (listener != null) {
+            listener.onMessage(parts[2]);
+            return;
+        }
+
+        Cache<Object, Object> cache = localCaches.get(parts[1]);
+        if (cache == null) {
+            return;
+        }
+
+        if (CLEAR_ALL.equals(parts[2])) {
+            cache.invalidateAll();
+        } else {
+            cache.invalidate(decodeKey(parts[2]));
+        }
+    }
+
+    private void clearAll() {
+        localCaches.values().forEach(Cache::invalidateAll);
+        listeners.values().forEach(listener -> {
+            try {
+                listener.onResync();
+            } catch (RuntimeException e) {
+                log.warn("Failed to resync {}: {}", listener, e.getMessage());
+            }
+        });
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String encodeKey(Object key) {
+        if (key instanceof Long) {
+            return "L:" + key;
+        }
+        return "S:" + key;
+    }
+
+    private static Object decodeKey(String encoded) {
+        String value = encoded.substring(2);
+        return encoded.startsWith("L:") ? Long.valueOf(value) : value;
+    }
+
+    /**
+     * Receiver of messages published through {@link #publishMessage}.
+     */
+    public interface Listener {
+
+        void onMessage(String message);
+
+        /**
+         * Called whenever messages may have been missed; reload the state from its source.
+         */
+        void onResync();
+    }
+}
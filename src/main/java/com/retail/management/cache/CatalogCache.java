@@ -0,0 +1,72 @@
+package com.retail.management.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.retail.management.config.CacheConfig;
+import com.retail.management.entity.Branch;
+import com.retail.management.entity.Product;
+import com.retail.management.exception.ResourceNotFoundException;
+import com.retail.management.repository.BranchRepository;
+import com.retail.management.repository.ProductRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Read-through access to products and branches held in the "products" and
+ * "branches" caches. Entries are detached entities: they may be read and used
+ * as association targets, but must never be modified. Changes are picked up
+ * through the evictions issued by the owning services.
+ */
+@Component
+@RequiredArgsConstructor
+public class CatalogCache {
+
+    private final CacheManager cacheManager;
+    private final ProductRepository productRepository;
+    private final BranchRepository branchRepository;
+
+    public Product getProduct(Long id) {
+        Product product = (Product) cache(CacheConfig.PRODUCTS).get(id, key -> productRepository.findById(id).orElse(null));
+        if (product == null) {
+            throw new ResourceNotFoundException("Product", "id", id);
+        }
+        return product;
+    }
+
+    /**
+     * Resolve every id, loading all misses with a single query. Ids that do not
+     * exist are absent from the result.
+     */
+    public Map<Long, Product> getProducts(Collection<Long> ids) {
+        Map<Object, Object> found = cache(CacheConfig.PRODUCTS).getAll(ids, missing -> productRepository
+                .findAllById(missing.stream().map(Long.class::cast).toList())
+                .stream()
+                .collect(Collectors.toMap(Product::getId, Function.identity())));
+
+        return found.entrySet().stream()
+                .collect(Collectors.toMap(entry -> (Long) entry.getKey(), entry -> (Product) entry.getValue()));
+    }
+
+    public Branch getBranch(Long id) {
+        Branch branch = (Branch) cache(CacheConfig.BRANCHES).get(id, key -> branchRepository.findById(id).orElse(null));
+        if (branch == null) {
+            throw new ResourceNotFoundException("Branch", "id", id);
+        }
+        return branch;
+    }
+
+    /**
+     * The underlying Caffeine cache, so loads are recorded in the cache statistics
+     * and misses are never stored as null entries.
+     */
+    @SuppressWarnings("unchecked")
+    private Cache<Object, Object> cache(String name) {
+        return (Cache<Object, Object>) Objects.requireNonNull(cacheManager.getCache(name), name).getNativeCache();
+    }
+}
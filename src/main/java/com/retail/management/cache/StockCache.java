@@ -0,0 +1,489 @@
+package com.retail.management.cache;
+
+import com.retail.management.event.StockChangedEvent;
+import com.retail.management.event.StockChangedEvent.Level;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+/**
+ * Stock levels held in memory for the availability checks made while a basket
+ * is scanned, one shard per branch. A shard is an open-addressing table over
+ * primitive arrays keyed by product ID, loaded from branch_stocks on first use
+ * outside a transaction. Lookups that find no loaded shard read the row itself.
+ * <p>
+ * Every stock statement returns the new state of the rows it changed (see
+ * {@link StockChangedEvent}), which is written into the shard once the
+ * transaction commits and sent to the other nodes over the
+ * {@link CacheInvalidationBus}. Each row state carries the row's version, so
+ * states arriving late or twice never overwrite newer ones. Changes without
+ * row states drop the branch's shard, to be loaded again.
+ * <p>
+ * Reads take no lock unless they race a writer of the same shard. A scheduled
+ * check compares the shards with the database and repairs any drift.
+ */
+@Component
+@Slf4j
+public class StockCache implements CacheInvalidationBus.Listener {
+
+    /** Returned by {@link #available} when the branch has no stock row for the product */
+    public static final int NO_STOCK = Integer.MIN_VALUE;
+
+    static final String MESSAGE_NAME = "stock-levels";
+    // pg_notify payloads are limited to 8000 bytes, including the bus header
+    private static final int MAX_MESSAGE_LENGTH = 7000;
+    private static final String ALL_BRANCHES = "*";
+    private static final long NOT_RESTOCKED = Long.MIN_VALUE;
+
+    /** One row per stock row, or a single row without product when the branch has none */
+    private static final String LOAD_SQL =
+            "SELECT bs.product_id, bs.quantity, bs.reserved_quantity, COALESCE(bs.version, 0), bs.last_restocked_at " +
+            "FROM branches b LEFT JOIN branch_stocks bs ON bs.branch_id = b.id WHERE b.id = ?";
+
+    private static final String ROW_SQL =
+            "SELECT product_id, quantity, reserved_quantity, COALESCE(version, 0), last_restocked_at " +
+            "FROM branch_stocks WHERE branch_id = ? AND product_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CacheInvalidationBus invalidationBus;
+    private final Map<Long, Shard> shards = new ConcurrentHashMap<>();
+    private final Counter mismatches;
+
+    public StockCache(JdbcTemplate jdbcTemplate, CacheInvalidationBus invalidationBus, MeterRegistry meterRegistry) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.invalidationBus = invalidationBus;
+        this.mismatches = Counter.builder("stock.cache.mismatches")
+                .description("Cached stock rows found to differ from the database")
+                .register(meterRegistry);
+        invalidationBus.register(MESSAGE_NAME, this);
+    }
+
+    /**
+     * Unreserved quantity of a product in a branch, or {@link #NO_STOCK}
+     */
+    public int available(long branchId, long productId) {
+        Shard shard = shard(branchId);
+        if (shard != null) {
+            return shard.available(productId);
+        }
+        Level row = readRow(branchId, productId);
+        return row != null ? row.quantity() - row.reservedQuantity() : NO_STOCK;
+    }
+
+    /**
+     * Stock row of a product in a branch, or null when there is none
+     */
+    public Level level(long branchId, long productId) {
+        Shard shard = shard(branchId);
+        return shard != null ? shard.level(productId) : readRow(branchId, productId);
+    }
+
+    /**
+     * Send the changed rows to the other nodes. Runs before commit, so the
+     * notification goes out on the transaction's connection and is only
+     * delivered if the change commits.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void announce(StockChangedEvent event) {
+        if (event.getBranchId() == null) {
+            invalidationBus.publishMessage(MESSAGE_NAME, ALL_BRANCHES);
+            return;
+        }
+
+        String prefix = event.getBranchId().toString();
+        if (event.getLevels().isEmpty()) {
+            invalidationBus.publishMessage(MESSAGE_NAME, prefix);
+            return;
+        }
+
+        StringBuilder message = new StringBuilder(prefix);
+        for (Level level : event.getLevels()) {
+            String encoded = encode(level);
+            if (message.length() + encoded.length() + 1 > MAX_MESSAGE_LENGTH) {
+                invalidationBus.publishMessage(MESSAGE_NAME, message.toString());
+                message.setLength(0);
+                message.append(prefix);
+            }
+            message.append(';').append(encoded);
+        }
+        invalidationBus.publishMessage(MESSAGE_NAME, message.toString());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onStockChanged(StockChangedEvent event) {
+        if (event.getBranchId() == null) {
+            shards.clear();
+            return;
+        }
+        if (event.getLevels().isEmpty()) {
+            shards.remove(event.getBranchId());
+            return;
+        }
+
+        // Shards not cached yet will read the committed rows when loaded
+        Shard shard = shards.get(event.getBranchId());
+        if (shard != null) {
+            event.getLevels().forEach(shard::apply);
+        }
+    }
+
+    @Override
+    public void onMessage(String message) {
+        if (ALL_BRANCHES.equals(message)) {
+            shards.clear();
+            return;
+        }
+
+        String[] parts = message.split(";");
+        Long branchId = Long.valueOf(parts[0]);
+        if (parts.length == 1) {
+            shards.remove(branchId);
+            return;
+        }
+
+        Shard shard = shards.get(branchId);
+        if (shard != null) {
+            for (int i = 1; i < parts.length; i++) {
+                shard.apply(decode(parts[i]));
+            }
+        }
+    }
+
+    @Override
+    public void onResync() {
+        shards.clear();
+    }
+
+    /**
+     * Compare every loaded shard with branch_stocks. Rows behind the database
+     * are brought up to date; rows that disagree at the same version, or that
+     * the database no longer has, drop the shard so it is loaded again.
+     *
+     * @return number of rows that differed
+     */
+    @Scheduled(fixedDelayString = "${app.stock.cache.check-interval-ms:300000}",
+            initialDelayString = "${app.stock.cache.check-interval-ms:300000}")
+    public int checkConsistency() {
+        int found = 0;
+        for (Map.Entry<Long, Shard> entry : shards.entrySet()) {
+            Long branchId = entry.getKey();
+            Shard shard = entry.getValue();
+            if (!shard.loaded) {
+                continue;
+            }
+
+            Map<Long, Level> rows = new HashMap<>();
+            if (!load(branchId, row -> rows.put(row.productId(), row))) {
+                shards.remove(branchId, shard);
+                continue;
+            }
+
+            int stale = 0;
+            boolean corrupt = false;
+            for (Level row : rows.values()) {
+                Level cached = shard.level(row.productId());
+                if (cached == null || cached.version() < row.version()) {
+                    shard.apply(row);
+                    stale++;
+                } else if (cached.version() == row.version() && !cached.equals(row)) {
+                    corrupt = true;
+                    stale++;
+                }
+            }
+            for (long productId : shard.productIds()) {
+                // Rows inserted since the read above are not in it; look again before calling it a mismatch
+                if (!rows.containsKey(productId) && readRow(branchId, productId) == null) {
+                    corrupt = true;
+                    stale++;
+                }
+            }
+
+            if (corrupt) {
+                shards.remove(branchId, shard);
+            }
+            if (stale > 0) {
+                log.warn("Stock cache of branch {} differed from the database in {} rows{}", branchId, stale,
+                        corrupt ? "; reloading it" : "");
+            }
+            found += stale;
+        }
+
+        if (found > 0) {
+            mismatches.increment(found);
+        }
+        return found;
+    }
+
+    /**
+     * The branch's shard, loaded if need be. Null when the branch does not
+     * exist, or when the shard is not loaded yet and a transaction is active:
+     * loading on the transaction's connection would cache its uncommitted
+     * rows, which stay behind if it rolls back.
+     */
+    private Shard shard(long branchId) {
+        Shard shard = shards.get(branchId);
+        if (shard != null && shard.loaded) {
+            return shard;
+        }
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            return null;
+        }
+
+        // Registered before loading, so changes committed meanwhile are applied to it
+        shard = shards.computeIfAbsent(branchId, id -> new Shard());
+        synchronized (shard) {
+            if (!shard.loaded) {
+                if (!load(branchId, shard::apply)) {
+                    shards.remove(branchId, shard);
+                    return null;
+                }
+                shard.loaded = true;
+            }
+        }
+        return shard;
+    }
+
+    /**
+     * Read a branch's stock rows
+     *
+     * @return false when the branch does not exist
+     */
+    private boolean load(long branchId, Consumer<Level> rows) {
+        boolean[] exists = {false};
+        jdbcTemplate.query(LOAD_SQL, rs -> {
+            exists[0] = true;
+            if (rs.getObject(1) != null) {
+                rows.accept(readLevel(rs));
+            }
+        }, branchId);
+        return exists[0];
+    }
+
+    private Level readRow(long branchId, long productId) {
+        List<Level> row = new ArrayList<>(1);
+        jdbcTemplate.query(ROW_SQL, rs -> {
+            row.add(readLevel(rs));
+        }, branchId, productId);
+        return row.isEmpty() ? null : row.get(0);
+    }
+
+    private static Level readLevel(ResultSet rs) throws SQLException {
+        Timestamp lastRestockedAt = rs.getTimestamp(5);
+        return new Level(rs.getLong(1), rs.getInt(2), rs.getInt(3), rs.getLong(4),
+                lastRestockedAt != null ? lastRestockedAt.toLocalDateTime() : null);
+    }
+
+    private static String encode(Level level) {
+        return level.productId() + "," + level.quantity() + "," + level.reservedQuantity() + "," +
+                level.version() + "," + toMicros(level.lastRestockedAt());
+    }
+
+    private static Level decode(String encoded) {
+        String[] fields = encoded.split(",");
+        return new Level(Long.parseLong(fields[0]), Integer.parseInt(fields[1]), Integer.parseInt(fields[2]),
+                Long.parseLong(fields[3]), fromMicros(Long.parseLong(fields[4])));
+    }
+
+    private static long toMicros(LocalDateTime time) {
+        if (time == null) {
+            return NOT_RESTOCKED;
+        }
+        return time.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + time.getNano() / 1_000;
+    }
+
+    private static LocalDateTime fromMicros(long micros) {
+        if (micros == NOT_RESTOCKED) {
+            return null;
+        }
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000),
+                (int) Math.floorMod(micros, 1_000_000) * 1_000, ZoneOffset.UTC);
+    }
+
+    /**
+     * One branch's stock rows. Writers take the write lock; readers read
+     * optimistically and only fall back to the read lock when a write got in
+     * between.
+     */
+    static final class Shard {
+
+        private final StampedLock lock = new StampedLock();
+        private volatile Table table = new Table(64);
+        volatile boolean loaded;
+
+        int available(long productId) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                int available = table.available(productId);
+                if (lock.validate(stamp)) {
+                    return available;
+                }
+            }
+            stamp = lock.readLock();
+            try {
+                return table.available(productId);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        Level level(long productId) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                Level level = table.level(productId);
+                if (lock.validate(stamp)) {
+                    return level;
+                }
+            }
+            stamp = lock.readLock();
+            try {
+                return table.level(productId);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        long[] productIds() {
+            long stamp = lock.readLock();
+            try {
+                return table.productIds();
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        /**
+         * Store a row unless a newer version of it is already here
+         */
+        void apply(Level level) {
+            long stamp = lock.writeLock();
+            try {
+                Table current = table;
+                if (current.isFull()) {
+                    current = current.resized();
+                    table = current;
+                }
+                current.put(level.productId(), level.quantity(), level.reservedQuantity(), level.version(),
+                        toMicros(level.lastRestockedAt()));
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    /**
+     * Linear probing over parallel arrays, at most half full. Product ID 0 marks
+     * a free slot. Probes are bounded, as optimistic readers may see a table in
+     * the middle of a write.
+     */
+    static final class Table {
+
+        private final long[] keys;
+        private final int[] quantities;
+        private final int[] reserved;
+        private final long[] versions;
+        private final long[] restockedAt;
+        private final int mask;
+        private int size;
+
+        Table(int capacity) {
+            keys = new long[capacity];
+            quantities = new int[capacity];
+            reserved = new int[capacity];
+            versions = new long[capacity];
+            restockedAt = new long[capacity];
+            mask = capacity - 1;
+        }
+
+        int available(long productId) {
+            int slot = slot(productId);
+            if (slot < 0 || keys[slot] != productId) {
+                return NO_STOCK;
+            }
+            return quantities[slot] - reserved[slot];
+        }
+
+        Level level(long productId) {
+            int slot = slot(productId);
+            if (slot < 0 || keys[slot] != productId) {
+                return null;
+            }
+            return new Level(productId, quantities[slot], reserved[slot], versions[slot], fromMicros(restockedAt[slot]));
+        }
+
+        void put(long productId, int quantity, int reservedQuantity, long version, long restocked) {
+            int slot = slot(productId);
+            if (keys[slot] == productId) {
+                if (versions[slot] >= version) {
+                    return;
+                }
+            } else {
+                keys[slot] = productId;
+                size++;
+            }
+            quantities[slot] = quantity;
+            reserved[slot] = reservedQuantity;
+            versions[slot] = version;
+            restockedAt[slot] = restocked;
+        }
+
+        boolean isFull() {
+            return (size + 1) * 2 > keys.length;
+        }
+
+        Table resized() {
+            Table resized = new Table(keys.length * 2);
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != 0) {
+                    resized.put(keys[i], quantities[i], reserved[i], versions[i], restockedAt[i]);
+                }
+            }
+            return resized;
+        }
+
+        long[] productIds() {
+            long[] ids = new long[size];
+            int n = 0;
+            for (long key : keys) {
+                if (key != 0 && n < ids.length) {
+                    ids[n++] = key;
+                }
+            }
+            return ids;
+        }
+
+        /**
+         * Slot holding the product, or the free slot where it would go
+         */
+        private int slot(long productId) {
+            long hash = productId * 0x9E3779B97F4A7C15L;
+            int slot = (int) (hash ^ (hash >>> 32)) & mask;
+            for (int probes = 0; probes <= mask; probes++) {
+                long key = keys[slot];
+                if (key == productId || key == 0) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.retail.management.config;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.Getter;
+import lombok.Setter;
+import com.retail.management.cache.BroadcastingCache;
+import com.retail.management.cache.CacheInvalidationBus;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.boot.actuate.metrics.cache.CacheMeterBinderProvider;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.cache.support.SimpleCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheDecorator;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * In-process Caffeine caches for catalog and reference data. Every cache is
+ * bounded and expires on its own schedule; specs can be overridden per cache
+ * with {@code app.cache.specs.<name>}. Puts and evictions issued inside a
+ * transaction are applied only after it commits, and evictions are broadcast
+ * to the other nodes through the {@link CacheInvalidationBus}.
+ */
+@Configuration
+@EnableCaching
+@ConfigurationProperties(prefix = "app.cache")
+@Getter
+@Setter
+public class CacheConfig {
+
+    public static final String PRODUCTS = "products";
+    public static final String PROMO_CODES = "promo-codes";
+    public static final String USERS = "users";
+    public static final String BRANCHES = "branches";
+    public static final String ROLES = "roles";
+    public static final String CATEGORIES = "categories";
+    public static final String USER_STATUS = "user-status";
+
+    private static final Map<String, String> DEFAULT_SPECS = new LinkedHashMap<>();
+
+    static {
+        DEFAULT_SPECS.put(PRODUCTS, "maximumSize=10000,expireAfterWrite=30m");
+        DEFAULT_SPECS.put(PROMO_CODES, "maximumSize=1000,expireAfterWrite=5m");
+        DEFAULT_SPECS.put(USERS, "maximumSize=2000,expireAfterWrite=10m");
+        DEFAULT_SPECS.put(BRANCHES, "maximumSize=500,expireAfterWrite=1h");
+        DEFAULT_SPECS.put(ROLES, "maximumSize=100,expireAfterWrite=1h");
+        DEFAULT_SPECS.put(CATEGORIES, "maximumSize=10,expireAfterWrite=1h");
+        DEFAULT_SPECS.put(USER_STATUS, "maximumSize=10000,expireAfterWrite=60s");
+    }
+
+    private Map<String, String> specs = new HashMap<>();
+
+    @Bean
+    public CacheManager cacheManager(CacheInvalidationBus invalidationBus) {
+        List<Cache> caches = new ArrayList<>();
+
+        // Only the caches declared here exist, so a typo in a cache name fails fast
+        DEFAULT_SPECS.forEach((name, defaultSpec) -> {
+            String spec = specs.getOrDefault(name, defaultSpec);
+            com.github.benmanes.caffeine.cache.Cache<Object, Object> nativeCache =
+                    Caffeine.from(spec).recordStats().build();
+
+            invalidationBus.register(name, nativeCache);
+            caches.add(new BroadcastingCache(
+                    new TransactionAwareCacheDecorator(new CaffeineCache(name, nativeCache)),
+                    invalidationBus));
+        });
+
+        SimpleCacheManager cacheManager = new SimpleCacheManager();
+        cacheManager.setCaches(caches);
+        cacheManager.initializeCaches();
+        return cacheManager;
+    }
+
+    /**
+     * Exposes the Caffeine statistics of the decorated caches through actuator.
+     */
+    @Bean
+    public CacheMeterBinderProvider<BroadcastingCache> broadcastingCacheMeterBinderProvider() {
+        return (cache, tags) -> new CaffeineCacheMetrics<>(
+                (com.github.benmanes.caffeine.cache.Cache<?, ?>) cache.getNativeCache(), cache.getName(), tags);
+    }
+}
@@ -0,0 +1,112 @@
+package com.retail.management.config;
+
+import com.retail.management.util.CorrelationIdUtil;
+import com.retail.management.util.RequestTimings;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Outermost filter: gives every request a correlation ID, taken from the
+ * X-Correlation-Id header when the caller sends a well-formed one, puts it in
+ * the MDC for logging and auditing and echoes it in the response. Also times
+ * the request's phases (see {@link RequestTimingConfig}), records them in the
+ * {@code http.server.phase} timer and, unless the body was already sent,
+ * reports them in a Server-Timing header.
+ * <p>
+ * Both survive async processing: they are kept in request attributes and
+ * bound again when the request is dispatched back to the container.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class CorrelationIdFilter extends OncePerRequestFilter {
+
+    public static final String SERVER_TIMING_HEADER = "Server-Timing";
+
+    private static final String CORRELATION_ID_ATTRIBUTE = CorrelationIdFilter.class.getName() + ".correlationId";
+    private static final String TIMINGS_ATTRIBUTE = CorrelationIdFilter.class.getName() + ".timings";
+    private static final Pattern VALID_CORRELATION_ID = Pattern.compile("[A-Za-z0-9._:-]{1,100}");
+
+    private final MeterRegistry meterRegistry;
+    private final boolean serverTimingHeader;
+
+    public CorrelationIdFilter(MeterRegistry meterRegistry,
+                               @Value("${app.request-timing.server-timing-header:true}") boolean serverTimingHeader) {
+        this.meterRegistry = meterRegistry;
+        this.serverTimingHeader = serverTimingHeader;
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+
+        String correlationId = (String) request.getAttribute(CORRELATION_ID_ATTRIBUTE);
+        RequestTimings timings = (RequestTimings) request.getAttribute(TIMINGS_ATTRIBUTE);
+        if (correlationId == null) {
+            correlationId = resolveCorrelationId(request.getHeader(CorrelationIdUtil.HEADER));
+            request.setAttribute(CORRELATION_ID_ATTRIBUTE, correlationId);
+            response.setHeader(CorrelationIdUtil.HEADER, correlationId);
+        }
+        if (timings == null) {
+            timings = new RequestTimings();
+            request.setAttribute(TIMINGS_ATTRIBUTE, timings);
+        }
+
+        CorrelationIdUtil.set(correlationId);
+        RequestTimings.bind(timings);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            RequestTimings.unbind();
+            CorrelationIdUtil.clear();
+            if (!request.isAsyncStarted()) {
+                complete(request, response, timings);
+            }
+        }
+    }
+
+    private void complete(HttpServletRequest request, HttpServletResponse response, RequestTimings timings) {
+        timings.switchTo(null);
+        if (serverTimingHeader && !response.isCommitted()) {
+            response.setHeader(SERVER_TIMING_HEADER, timings.serverTiming());
+        }
+
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        String uri = pattern != null ? pattern.toString() : "UNKNOWN";
+        for (RequestTimings.Phase phase : RequestTimings.Phase.values()) {
+            Timer.builder("http.server.phase")
+                    .description("Time spent in each phase of handling a request")
+                    .tag("phase", phase.metricName())
+                    .tag("method", request.getMethod())
+                    .tag("uri", uri)
+                    .register(meterRegistry)
+                    .record(timings.nanos(phase), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private static String resolveCorrelationId(String header) {
+        if (header != null && VALID_CORRELATION_ID.matcher(header).matches()) {
+            return header;
+        }
+        return UUID.randomUUID().toString();
+    }
+}
@@ -0,0 +1,201 @@
+package com.retail.management.config;
+
+import com.retail.management.util.RequestTimings;
+import com.retail.management.util.RequestTimings.Phase;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.aop.framework.AbstractAdvisingBeanPostProcessor;
+import org.springframework.aop.support.DefaultPointcutAdvisor;
+import org.springframework.aop.support.annotation.AnnotationMatchingPointcut;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+
+/**
+ * Marks the phase boundaries for {@link RequestTimings}: the handler starting
+ * (everything before it counts as auth), calls into {@code @Service} beans,
+ * JDBC work (getting a connection, executing statements, commit and rollback)
+ * and the response body being written (see {@link ServerTimingAdvice}).
+ */
+@Configuration
+@ConditionalOnProperty(name = "app.request-timing.enabled", havingValue = "true", matchIfMissing = true)
+public class RequestTimingConfig {
+
+    private static final Set<String> TIMED_CONNECTION_METHODS = Set.of("commit", "rollback", "close");
+
+    @Bean
+    public WebMvcConfigurer requestTimingInterceptor() {
+        return new WebMvcConfigurer() {
+            @Override
+            public void addInterceptors(InterceptorRegistry registry) {
+                registry.addInterceptor(new HandlerInterceptor() {
+                    @Override
+                    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+                        RequestTimings timings = RequestTimings.current();
+                        if (timings != null) {
+                            timings.switchTo(Phase.CONTROLLER);
+                        }
+                        return true;
+                    }
+
+                    @Override
+                    public void afterCompletion(HttpServletRequest request, HttpServletResponse response,
+                                                Object handler, Exception ex) {
+                        RequestTimings timings = RequestTimings.current();
+                        if (timings != null) {
+                            timings.switchTo(null);
+                        }
+                    }
+                });
+            }
+        };
+    }
+
+    @Bean
+    public static BeanPostProcessor serviceTimingPostProcessor() {
+        return new ServiceTimingPostProcessor();
+    }
+
+    @Bean
+    public static BeanPostProcessor dataSourceTimingPostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof DataSource dataSource && !(bean instanceof TimedDataSource)) {
+                    return new TimedDataSource(dataSource);
+                }
+                return bean;
+            }
+        };
+    }
+
+    /**
+     * Charges calls into {@code @Service} beans to the service phase. Placed
+     * outside the transaction advice, so commits on the way out are included
+     * (as DB time, since they go through a timed connection).
+     */
+    static class ServiceTimingPostProcessor extends AbstractAdvisingBeanPostProcessor {
+
+        ServiceTimingPostProcessor() {
+            MethodInterceptor interceptor = invocation -> {
+                Phase previous = RequestTimings.enter(Phase.SERVICE);
+                try {
+                    return invocation.proceed();
+                } finally {
+                    RequestTimings.exit(previous);
+                }
+            };
+            this.advisor = new DefaultPointcutAdvisor(new AnnotationMatchingPointcut(Service.class, true), interceptor);
+            setBeforeExistingAdvisors(true);
+            setProxyTargetClass(true);
+        }
+    }
+
+    /**
+     * Hands out connections whose statements charge their execution to the
+     * DB phase. Unwrapping reaches the pool and driver as before.
+     */
+    static class TimedDataSource extends DelegatingDataSource {
+
+        TimedDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            Phase previous = RequestTimings.enter(Phase.DB);
+            try {
+                return timed(super.getConnection());
+            } finally {
+                RequestTimings.exit(previous);
+            }
+        }
+
+        @Override
+        public Connection getConnection(String username, String password) throws SQLException {
+            Phase previous = RequestTimings.enter(Phase.DB);
+            try {
+                return timed(super.getConnection(username, password));
+            } finally {
+                RequestTimings.exit(previous);
+            }
+        }
+
+        private static Connection timed(Connection connection) {
+            return (Connection) Proxy.newProxyInstance(TimedDataSource.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, new ConnectionHandler(connection));
+        }
+    }
+
+    private record ConnectionHandler(Connection target) implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            if (TIMED_CONNECTION_METHODS.contains(method.getName())) {
+                return timedInvoke(target, method, args);
+            }
+            Object result = invoke(target, method, args);
+            Class<?> type = method.getReturnType();
+            if (result != null && (type == Statement.class || type == PreparedStatement.class
+                    || type == CallableStatement.class)) {
+                return Proxy.newProxyInstance(TimedDataSource.class.getClassLoader(),
+                        new Class<?>[]{type}, new StatementHandler(result));
+            }
+            return result;
+        }
+    }
+
+    private record StatementHandler(Object target) implements InvocationHandler {
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            return method.getName().startsWith("execute")
+                    ? timedInvoke(target, method, args)
+                    : RequestTimingConfig.invoke(target, method, args);
+        }
+    }
+
+    private static Object timedInvoke(Object target, Method method, Object[] args) throws Throwable {
+        Phase previous = RequestTimings.enter(Phase.DB);
+        try {
+            return invoke(target, method, args);
+        } finally {
+            RequestTimings.exit(previous);
+        }
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.retail.management.config;
+
+import com.retail.management.util.RequestTimings;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+/**
+ * Starts the serialization phase as a response body is about to be written,
+ * and adds the phases so far as a Server-Timing header. {@link CorrelationIdFilter}
+ * replaces it with the complete timings when the body is small enough to still
+ * be buffered, which is most of the time.
+ */
+@ControllerAdvice
+public class ServerTimingAdvice implements ResponseBodyAdvice<Object> {
+
+    private final boolean serverTimingHeader;
+
+    public ServerTimingAdvice(@Value("${app.request-timing.server-timing-header:true}") boolean serverTimingHeader) {
+        this.serverTimingHeader = serverTimingHeader;
+    }
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        RequestTimings timings = RequestTimings.current();
+        if (timings != null) {
+            timings.switchTo(RequestTimings.Phase.SERIALIZATION);
+            if (serverTimingHeader) {
+                response.getHeaders().set(CorrelationIdFilter.SERVER_TIMING_HEADER, timings.serverTiming());
+            }
+        }
+        return body;
+    }
+}
@@ -35,6 +35,15 @@ public class AuditController {
         return ResponseEntity.ok(ApiResponse.success(trail));
     }
 
+    @GetMapping("/correlation/{correlationId}")
+    @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
+    @Operation(summary = "Get correlated actions", description = "Get all actions recorded under one correlation ID")
+    public ResponseEntity<ApiResponse<List<AuditLogResponse>>> getCorrelatedActions(
+            @PathVariable String correlationId) {
+        List<AuditLogResponse> actions = auditService.getCorrelatedActions(correlationId);
+        return ResponseEntity.ok(ApiResponse.success(actions));
+    }
+
     @GetMapping("/user/{username}")
     @PreAuthorize("hasRole('ADMIN')")
     @Operation(summary = "Get user actions", description = "Get all actions performed by a user")
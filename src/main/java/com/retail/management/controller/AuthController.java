@@ -2,6 +2,7 @@ package com.retail.management.controller;
 
 import com.retail.management.dto.request.auth.ChangePasswordRequest;
 import com.retail.management.dto.request.auth.LoginRequest;
+import com.retail.management.dto.request.auth.LogoutRequest;
 import com.retail.management.dto.request.auth.RegisterRequest;
 import com.retail.management.dto.response.ApiResponse;
 import com.retail.management.dto.response.auth.LoginResponse;
@@ -14,6 +15,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import jakarta.validation.Valid;
+import java.util.concurrent.CompletableFuture;
 
 @RestController
 @RequestMapping("/api/v1/auth")
@@ -25,16 +27,16 @@ public class AuthController {
 
     @PostMapping("/login")
     @Operation(summary = "User login", description = "Authenticate user and return JWT token")
-    public ResponseEntity<ApiResponse<LoginResponse>> login(@Valid @RequestBody LoginRequest request) {
-        LoginResponse response = authService.login(request);
-        return ResponseEntity.ok(ApiResponse.success(response, "Login successful"));
+    public CompletableFuture<ResponseEntity<ApiResponse<LoginResponse>>> login(@Valid @RequestBody LoginRequest request) {
+        return authService.login(request)
+                .thenApply(response -> ResponseEntity.ok(ApiResponse.success(response, "Login successful")));
     }
 
     @PostMapping("/register")
     @Operation(summary = "User registration", description = "Register new user account")
-    public ResponseEntity<ApiResponse<LoginResponse>> register(@Valid @RequestBody RegisterRequest request) {
-        LoginResponse response = authService.register(request);
-        return ResponseEntity.ok(ApiResponse.success(response, "Registration successful"));
+    public CompletableFuture<ResponseEntity<ApiResponse<LoginResponse>>> register(@Valid @RequestBody RegisterRequest request) {
+        return authService.register(request)
+                .thenApply(response -> ResponseEntity.ok(ApiResponse.success(response, "Registration successful")));
     }
 
     @PostMapping("/refresh")
@@ -52,9 +54,16 @@ public class AuthController {
     }
 
     @PostMapping("/logout")
-    @Operation(summary = "User logout", description = "Logout current user")
-    public ResponseEntity<ApiResponse<Void>> logout() {
-        authService.logout();
+    @Operation(summary = "User logout", description = "Logout current user and revoke the access token and, if given, the refresh token")
+    public ResponseEntity<ApiResponse<Void>> logout(@RequestBody(required = false) LogoutRequest request) {
+        authService.logout(request == null ? null : request.getRefreshToken());
         return ResponseEntity.ok(ApiResponse.success(null, "Logout successful"));
     }
+
+    @PostMapping("/logout-all")
+    @Operation(summary = "Logout everywhere", description = "Revoke every token issued to the current user")
+    public ResponseEntity<ApiResponse<Void>> logoutAll() {
+        authService.logoutAll();
+        return ResponseEntity.ok(ApiResponse.success(null, "Logged out of all sessions"));
+    }
 }
\ No newline at end of file
@@ -4,12 +4,15 @@ import com.retail.management.dto.response.ApiResponse;
 import com.retail.management.dto.response.stats.BranchStatsResponse;
 import com.retail.management.dto.response.stats.DashboardStatsResponse;
 import com.retail.management.service.DashboardService;
+import com.retail.management.service.DashboardStreamService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 @RestController
 @RequestMapping("/api/v1/dashboard")
@@ -17,9 +20,11 @@ import org.springframework.web.bind.annotation.*;
 public class DashboardController {
 
     private final DashboardService dashboardService;
+    private final DashboardStreamService dashboardStreamService;
 
-    public DashboardController(DashboardService dashboardService) {
+    public DashboardController(DashboardService dashboardService, DashboardStreamService dashboardStreamService) {
         this.dashboardService = dashboardService;
+        this.dashboardStreamService = dashboardStreamService;
     }
 
     @GetMapping("/stats")
@@ -30,6 +35,13 @@ public class DashboardController {
         return ResponseEntity.ok(ApiResponse.success(stats));
     }
 
+    @GetMapping(value = "/stats/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
+    @Operation(summary = "Stream dashboard stats", description = "Server-sent events with a snapshot of the dashboard statistics followed by the fields that change")
+    public SseEmitter streamDashboardStats() {
+        return dashboardStreamService.subscribeDashboard();
+    }
+
     @GetMapping("/branch-stats/{branchId}")
     @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
     @Operation(summary = "Get branch stats", description = "Get statistics for a specific branch")
@@ -37,4 +49,11 @@ public class DashboardController {
         BranchStatsResponse stats = dashboardService.getBranchStats(branchId);
         return ResponseEntity.ok(ApiResponse.success(stats));
     }
+
+    @GetMapping(value = "/branch-stats/{branchId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
+    @Operation(summary = "Stream branch stats", description = "Server-sent events with a snapshot of the branch statistics followed by the fields that change")
+    public SseEmitter streamBranchStats(@PathVariable Long branchId) {
+        return dashboardStreamService.subscribeBranch(branchId);
+    }
 }
\ No newline at end of file
@@ -4,6 +4,7 @@ import com.retail.management.dto.request.search.ReportFilterRequest;
 import com.retail.management.dto.response.ApiResponse;
 import com.retail.management.dto.response.report.*;
 import com.retail.management.service.ReportService;
+import com.retail.management.service.SalesRollupService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
@@ -23,6 +24,7 @@ import java.util.List;
 public class ReportController {
 
     private final ReportService reportService;
+    private final SalesRollupService salesRollupService;
 
     @GetMapping("/daily-sales")
     @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
@@ -87,4 +89,14 @@ public class ReportController {
         LowStockAlertResponse alert = reportService.getLowStockAlert(branchId);
         return ResponseEntity.ok(ApiResponse.success(alert));
     }
+
+    @PostMapping("/sales-rollup/rebuild")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Rebuild sales rollup", description = "Recompute the daily sales rollup for a date range")
+    public ResponseEntity<ApiResponse<Integer>> rebuildSalesRollup(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startDate,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate endDate) {
+        int rows = salesRollupService.rebuild(startDate, endDate);
+        return ResponseEntity.ok(ApiResponse.success(rows, "Sales rollup rebuilt"));
+    }
 }
\ No newline at end of file
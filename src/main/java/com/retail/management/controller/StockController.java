@@ -1,19 +1,32 @@
 package com.retail.management.controller;
 
 import com.retail.management.dto.request.product.StockAdjustmentRequest;
+import com.retail.management.dto.request.stock.BulkStockAdjustmentRequest;
+import com.retail.management.dto.request.stock.BulkStockTransferRequest;
+import com.retail.management.dto.request.stock.StockReservationRequest;
 import com.retail.management.dto.request.stock.StockTransferRequest;
 import com.retail.management.dto.response.ApiResponse;
+import com.retail.management.dto.response.stock.StockBatchResponse;
 import com.retail.management.dto.response.stock.StockLevelResponse;
+import com.retail.management.dto.response.stock.StockMovementResponse;
+import com.retail.management.dto.response.stock.StockReservationResponse;
+import com.retail.management.service.StockReservationService;
 import com.retail.management.service.StockService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.web.PageableDefault;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
 import jakarta.validation.Valid;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/v1/stock")
@@ -22,6 +35,7 @@ import java.util.List;
 public class StockController {
 
     private final StockService stockService;
+    private final StockReservationService stockReservationService;
 
     @PostMapping("/adjust")
     @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
@@ -39,6 +53,41 @@ public class StockController {
         return ResponseEntity.ok(ApiResponse.success(null, "Stock transferred successfully"));
     }
 
+    @PostMapping("/adjust/batch")
+    @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
+    @Operation(summary = "Adjust stock in bulk", description = "Apply many stock adjustments in one transaction")
+    public ResponseEntity<ApiResponse<StockBatchResponse>> adjustStockBatch(
+            @Valid @RequestBody BulkStockAdjustmentRequest request) {
+        StockBatchResponse result = stockService.adjustStockBatch(request);
+        return ResponseEntity.ok(ApiResponse.success(result, "Stock adjustments processed"));
+    }
+
+    @PostMapping("/transfer/batch")
+    @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
+    @Operation(summary = "Transfer stock in bulk", description = "Transfer many products between branches in one transaction")
+    public ResponseEntity<ApiResponse<StockBatchResponse>> transferStockBatch(
+            @Valid @RequestBody BulkStockTransferRequest request) {
+        StockBatchResponse result = stockService.transferStockBatch(request);
+        return ResponseEntity.ok(ApiResponse.success(result, "Stock transfer processed"));
+    }
+
+    @PostMapping("/reservations")
+    @PreAuthorize("isAuthenticated()")
+    @Operation(summary = "Reserve stock", description = "Hold stock for an open basket until checkout or timeout")
+    public ResponseEntity<ApiResponse<StockReservationResponse>> reserveStock(
+            @Valid @RequestBody StockReservationRequest request) {
+        StockReservationResponse reservation = stockReservationService.reserveBasket(request);
+        return ResponseEntity.ok(ApiResponse.success(reservation, "Stock reserved successfully"));
+    }
+
+    @DeleteMapping("/reservations/{reservationId}")
+    @PreAuthorize("isAuthenticated()")
+    @Operation(summary = "Release reserved stock", description = "Release the stock held for an open basket")
+    public ResponseEntity<ApiResponse<Void>> releaseReservation(@PathVariable Long reservationId) {
+        stockReservationService.releaseBasket(reservationId);
+        return ResponseEntity.ok(ApiResponse.success(null, "Stock reservation released successfully"));
+    }
+
     @GetMapping("/level/{branchId}/{productId}")
     @PreAuthorize("isAuthenticated()")
     @Operation(summary = "Get stock level", description = "Get stock level for a product in a branch")
@@ -64,4 +113,44 @@ public class StockController {
         Integer totalStock = stockService.getTotalStockAcrossBranches(productId);
         return ResponseEntity.ok(ApiResponse.success(totalStock));
     }
+
+    @GetMapping("/level/{branchId}/{productId}/at")
+    @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
+    @Operation(summary = "Get past stock level", description = "Get the stock level of a product in a branch at a point in time")
+    public ResponseEntity<ApiResponse<Integer>> getStockLevelAt(
+            @PathVariable Long branchId,
+            @PathVariable Long productId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime at) {
+        Integer quantity = stockService.getStockLevelAt(branchId, productId, at);
+        return ResponseEntity.ok(ApiResponse.success(quantity));
+    }
+
+    @GetMapping("/history/{branchId}/{productId}")
+    @PreAuthorize("hasAnyRole('ADMIN', 'MANAGER')")
+    @Operation(summary = "Get stock history", description = "Get the stock movements of a product in a branch")
+    public ResponseEntity<ApiResponse<Page<StockMovementResponse>>> getStockHistory(
+            @PathVariable Long branchId,
+            @PathVariable Long productId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime startDate,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime endDate,
+            @PageableDefault(size = 50) Pageable pageable) {
+
+        if (startDate == null) {
+            startDate = LocalDateTime.now().minusDays(30);
+        }
+        if (endDate == null) {
+            endDate = LocalDateTime.now();
+        }
+
+        Page<StockMovementResponse> history = stockService.getStockHistory(branchId, productId, startDate, endDate, pageable);
+        return ResponseEntity.ok(ApiResponse.success(history));
+    }
+
+    @PostMapping("/ledger/rebuild/{branchId}")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Rebuild stock levels", description = "Reset a branch's stock levels from the stock ledger")
+    public ResponseEntity<ApiResponse<Map<Long, Integer>>> rebuildStockLevels(@PathVariable Long branchId) {
+        Map<Long, Integer> corrected = stockService.rebuildStockLevels(branchId);
+        return ResponseEntity.ok(ApiResponse.success(corrected, "Stock levels rebuilt from the ledger"));
+    }
 }
@@ -89,4 +89,12 @@ public class UserController {
         userService.deleteUser(id);
         return ResponseEntity.ok(ApiResponse.success(null, "User deleted successfully"));
     }
+
+    @PostMapping("/{id}/revoke-tokens")
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "Revoke user tokens", description = "Revoke every token issued to the user so far")
+    public ResponseEntity<ApiResponse<Void>> revokeTokens(@PathVariable Long id) {
+        userService.revokeTokens(id);
+        return ResponseEntity.ok(ApiResponse.success(null, "User tokens revoked"));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,18 @@
+package com.retail.management.dto.request.auth;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LogoutRequest {
+
+    /**
+     * Refresh token to revoke along with the access token, if the client holds one.
+     */
+    private String refreshToken;
+}
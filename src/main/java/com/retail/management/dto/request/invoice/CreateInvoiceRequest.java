@@ -32,4 +32,7 @@ public class CreateInvoiceRequest {
     private String notes;
 
     private String idempotencyKey;
+
+    /** Basket hold to take over, from POST /api/v1/stock/reservations */
+    private Long reservationId;
 }
@@ -0,0 +1,34 @@
+package com.retail.management.dto.request.stock;
+
+import com.retail.management.dto.request.product.StockAdjustmentRequest;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkStockAdjustmentRequest {
+
+    /** Delivery note or count sheet the adjustments come from */
+    @Size(max = 100)
+    private String reference;
+
+    /** Default reason for lines that do not give one */
+    private String reason;
+
+    /** Default notes for lines that do not give any */
+    private String notes;
+
+    @NotEmpty(message = "Adjustment must have at least one line")
+    @Size(max = 10000, message = "Adjustment cannot have more than 10000 lines")
+    @Valid
+    private List<StockAdjustmentRequest> lines;
+}
@@ -0,0 +1,33 @@
+package com.retail.management.dto.request.stock;
+
+import com.retail.management.dto.request.invoice.InvoiceItemRequest;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class BulkStockTransferRequest {
+
+    @NotNull(message = "From branch ID is required")
+    private Long fromBranchId;
+
+    @NotNull(message = "To branch ID is required")
+    private Long toBranchId;
+
+    @NotEmpty(message = "Transfer must have at least one item")
+    @Size(max = 10000, message = "Transfer cannot have more than 10000 items")
+    @Valid
+    private List<InvoiceItemRequest> items;
+
+    private String notes;
+}
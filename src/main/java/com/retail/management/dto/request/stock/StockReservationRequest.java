@@ -0,0 +1,26 @@
+package com.retail.management.dto.request.stock;
+
+import com.retail.management.dto.request.invoice.InvoiceItemRequest;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockReservationRequest {
+
+    @NotNull(message = "Branch ID is required")
+    private Long branchId;
+
+    @NotEmpty(message = "Reservation must have at least one item")
+    @Valid
+    private List<InvoiceItemRequest> items;
+}
@@ -6,6 +6,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.math.BigDecimal;
+import java.util.Map;
 
 @Data
 @Builder
@@ -19,4 +20,5 @@ public class BranchPerformanceResponse {
     private BigDecimal totalSales;
     private BigDecimal averageOrderValue;
     private Integer rank;
+    private Map<String, BigDecimal> customMetrics;
 }
\ No newline at end of file
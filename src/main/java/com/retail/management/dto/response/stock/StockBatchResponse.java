@@ -0,0 +1,18 @@
+package com.retail.management.dto.response.stock;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockBatchResponse {
+    private Integer applied;
+    private Integer rejected;
+    private List<StockLineResult> lines;
+}
@@ -0,0 +1,23 @@
+package com.retail.management.dto.response.stock;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockLineResult {
+    /** Position of the line in the request, from 0 */
+    private Integer line;
+    private Long branchId;
+    private Long productId;
+    private Integer quantity;
+    private Boolean applied;
+    /** Stock quantity after the line, in the source branch for transfers */
+    private Integer quantityAfter;
+    /** Why the line was not applied */
+    private String message;
+}
@@ -0,0 +1,26 @@
+package com.retail.management.dto.response.stock;
+
+import com.retail.management.enums.StockAdjustmentType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockMovementResponse {
+    private Long id;
+    private StockAdjustmentType adjustmentType;
+    private Integer quantityChange;
+    private Integer quantityBefore;
+    private Integer quantityAfter;
+    private String reference;
+    private String reason;
+    private String notes;
+    private Long adjustedBy;
+    private LocalDateTime adjustmentDate;
+}
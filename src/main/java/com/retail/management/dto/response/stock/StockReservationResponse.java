@@ -0,0 +1,22 @@
+package com.retail.management.dto.response.stock;
+
+import com.retail.management.enums.ReservationStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockReservationResponse {
+    private Long id;
+    private Long branchId;
+    private ReservationStatus status;
+    private LocalDateTime expiresAt;
+    private Map<Long, Integer> quantities;
+}
@@ -4,6 +4,10 @@ import lombok.*;
 import jakarta.persistence.*;
 import java.time.LocalDateTime;
 
+/**
+ * Rows are inserted by AuditLogWriter; the table's partitions and indexes are
+ * managed by AuditLogPartitions.
+ */
 @Entity
 @Table(name = "audit_logs")
 @Getter
@@ -0,0 +1,67 @@
+package com.retail.management.entity;
+
+import com.retail.management.enums.InvoiceStatus;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Pre-aggregated sales per branch, invoice date and invoice status. Maintained
+ * incrementally as invoices change and rebuilt from invoices on demand.
+ */
+@Entity
+@Table(name = "daily_branch_sales",
+        uniqueConstraints = @UniqueConstraint(columnNames = {"branch_id", "sales_date", "status"}),
+        indexes = @Index(name = "idx_daily_branch_sales_date", columnList = "sales_date"))
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DailyBranchSales {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "branch_id", nullable = false)
+    private Branch branch;
+
+    @Column(name = "sales_date", nullable = false)
+    private LocalDate salesDate;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private InvoiceStatus status;
+
+    @Column(name = "invoice_count", nullable = false)
+    private Long invoiceCount;
+
+    @Column(name = "customer_count", nullable = false)
+    private Long customerCount;
+
+    @Column(name = "subtotal", nullable = false, precision = 14, scale = 2)
+    private BigDecimal subtotal;
+
+    @Column(name = "tax_amount", nullable = false, precision = 14, scale = 2)
+    private BigDecimal taxAmount;
+
+    @Column(name = "discount_amount", nullable = false, precision = 14, scale = 2)
+    private BigDecimal discountAmount;
+
+    @Column(name = "total_amount", nullable = false, precision = 14, scale = 2)
+    private BigDecimal totalAmount;
+
+    @Column(name = "return_count", nullable = false)
+    private Long returnCount;
+
+    @Column(name = "return_amount", nullable = false, precision = 14, scale = 2)
+    private BigDecimal returnAmount;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
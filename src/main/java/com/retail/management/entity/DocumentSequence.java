@@ -0,0 +1,25 @@
+package com.retail.management.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Allocation counter for document numbers (invoices, returns, customers).
+ * One row per sequence key, e.g. INV:BR01:20251008; nodes reserve blocks of values from it.
+ */
+@Entity
+@Table(name = "document_sequences")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class DocumentSequence {
+
+    @Id
+    @Column(name = "sequence_key", length = 100)
+    private String sequenceKey;
+
+    @Column(name = "next_value", nullable = false)
+    private Long nextValue;
+}
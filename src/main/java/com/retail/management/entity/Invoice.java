@@ -12,7 +12,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "invoices")
+@Table(name = "invoices",
+        indexes = @Index(name = "idx_invoices_branch_date", columnList = "branch_id, invoice_date"))
 @Getter
 @Setter
 @NoArgsConstructor
@@ -14,8 +14,14 @@ import java.time.LocalDateTime;
 @Builder
 public class InvoiceItem {
 
+    /** Ids Hibernate takes from invoice_items_seq per call */
+    public static final int ID_ALLOCATION_SIZE = 50;
+
+    // Sequence-based keys let Hibernate batch item inserts; IDENTITY forces one INSERT per row
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "invoice_items_seq")
+    @SequenceGenerator(name = "invoice_items_seq", sequenceName = "invoice_items_seq",
+            allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -0,0 +1,62 @@
+package com.retail.management.entity;
+
+import com.retail.management.enums.InvoiceStatus;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * One invoice's figures added to (or removed from) a daily_branch_sales row,
+ * written in the transaction that changes the invoice and folded into the
+ * rollup shortly after commit.
+ */
+@Entity
+@Table(name = "sales_rollup_deltas")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class SalesRollupDelta {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "branch_id", nullable = false)
+    private Long branchId;
+
+    @Column(name = "sales_date", nullable = false)
+    private LocalDate salesDate;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private InvoiceStatus status;
+
+    @Column(name = "invoice_count", nullable = false)
+    private Integer invoiceCount;
+
+    @Column(name = "subtotal", nullable = false, precision = 14, scale = 2)
+    private BigDecimal subtotal;
+
+    @Column(name = "tax_amount", nullable = false, precision = 14, scale = 2)
+    private BigDecimal taxAmount;
+
+    @Column(name = "discount_amount", nullable = false, precision = 14, scale = 2)
+    private BigDecimal discountAmount;
+
+    @Column(name = "total_amount", nullable = false, precision = 14, scale = 2)
+    private BigDecimal totalAmount;
+
+    @Column(name = "return_count", nullable = false)
+    private Integer returnCount;
+
+    @Column(name = "return_amount", nullable = false, precision = 14, scale = 2)
+    private BigDecimal returnAmount;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+}
@@ -6,8 +6,18 @@ import lombok.*;
 
 import java.time.LocalDateTime;
 
+/**
+ * The stock ledger: one insert-only row per stock movement of a product in a
+ * branch. branch_stocks.quantity is the running total of these rows, and
+ * stock_snapshots checkpoints it for point-in-time queries.
+ */
 @Entity
-@Table(name = "stock_adjustments")
+@Table(name = "stock_adjustments",
+        indexes = {
+                @Index(name = "idx_stock_adjustments_branch_product_date",
+                        columnList = "branch_id, product_id, adjustment_date"),
+                @Index(name = "idx_stock_adjustments_branch_product_id", columnList = "branch_id, product_id, id")
+        })
 @Getter
 @Setter
 @NoArgsConstructor
@@ -31,6 +41,7 @@ public class StockAdjustment {
     @Column(name = "adjustment_type", nullable = false, length = 50)
     private StockAdjustmentType adjustmentType;
 
+    /** Signed: negative for movements that remove stock */
     @Column(name = "quantity_change", nullable = false)
     private Integer quantityChange;
 
@@ -40,13 +51,16 @@ public class StockAdjustment {
     @Column(name = "quantity_after", nullable = false)
     private Integer quantityAfter;
 
+    @Column(name = "reference", length = 100)
+    private String reference;
+
     @Column(name = "reason", length = 100)
     private String reason;
 
     @Column(name = "notes", columnDefinition = "TEXT")
     private String notes;
 
-    @Column(name = "adjusted_by", nullable = false)
+    @Column(name = "adjusted_by")
     private Long adjustedBy;
 
     @Column(name = "adjustment_date", nullable = false)
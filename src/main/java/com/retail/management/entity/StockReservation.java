@@ -0,0 +1,50 @@
+package com.retail.management.entity;
+
+import com.retail.management.enums.ReservationStatus;
+import jakarta.persistence.*;
+import lombok.*;
+import lombok.experimental.SuperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stock of one branch held for a basket or a pending invoice. While ACTIVE,
+ * its quantities are counted in the branch stocks' reserved_quantity.
+ */
+@Entity
+@Table(name = "stock_reservations",
+        indexes = {
+                @Index(name = "idx_stock_reservations_invoice", columnList = "invoice_number"),
+                @Index(name = "idx_stock_reservations_status_expires", columnList = "status, expires_at")
+        })
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@SuperBuilder
+public class StockReservation extends BaseEntity {
+
+    @Column(name = "branch_id", nullable = false)
+    private Long branchId;
+
+    /** Set when the hold belongs to a pending invoice rather than an open basket */
+    @Column(name = "invoice_number", length = 50)
+    private String invoiceNumber;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    @Builder.Default
+    private ReservationStatus status = ReservationStatus.ACTIVE;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    @ElementCollection(fetch = FetchType.EAGER)
+    @CollectionTable(name = "stock_reservation_lines", joinColumns = @JoinColumn(name = "reservation_id"))
+    @MapKeyColumn(name = "product_id")
+    @Column(name = "quantity", nullable = false)
+    @Builder.Default
+    private Map<Long, Integer> quantities = new HashMap<>();
+}
@@ -0,0 +1,43 @@
+package com.retail.management.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * A product's stock quantity in a branch as of a ledger position: the sum of
+ * all stock_adjustments rows up to and including lastAdjustmentId.
+ */
+@Entity
+@Table(name = "stock_snapshots",
+        indexes = {
+                @Index(name = "idx_stock_snapshots_branch_product_at", columnList = "branch_id, product_id, snapshot_at"),
+                @Index(name = "idx_stock_snapshots_at", columnList = "snapshot_at")
+        })
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StockSnapshot {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "branch_id", nullable = false)
+    private Long branchId;
+
+    @Column(name = "product_id", nullable = false)
+    private Long productId;
+
+    @Column(name = "snapshot_at", nullable = false)
+    private LocalDateTime snapshotAt;
+
+    @Column(name = "last_adjustment_id", nullable = false)
+    private Long lastAdjustmentId;
+
+    @Column(name = "quantity", nullable = false)
+    private Integer quantity;
+}
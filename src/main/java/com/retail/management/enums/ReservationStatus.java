@@ -0,0 +1,19 @@
+package com.retail.management.enums;
+
+import lombok.Getter;
+
+@Getter
+public enum ReservationStatus {
+    ACTIVE("Active", "Stock is held for a basket or pending invoice"),
+    CONFIRMED("Confirmed", "Held stock was taken on payment"),
+    RELEASED("Released", "Hold was released on cancel or checkout"),
+    EXPIRED("Expired", "Hold ran out before payment");
+
+    private final String displayName;
+    private final String description;
+
+    ReservationStatus(String displayName, String description) {
+        this.displayName = displayName;
+        this.description = description;
+    }
+}
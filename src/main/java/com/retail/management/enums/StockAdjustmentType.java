@@ -6,6 +6,7 @@ import lombok.Getter;
 public enum StockAdjustmentType {
     RESTOCK("Restock", "Adding new stock", true),
     SALE("Sale", "Stock sold through invoice", false),
+    SALE_CANCELLED("Sale Cancelled", "Stock restored from a cancelled invoice", true),
     DAMAGE("Damage", "Damaged stock removal", false),
     THEFT("Theft", "Stock lost due to theft", false),
     RETURN("Return", "Stock returned by customer", true),
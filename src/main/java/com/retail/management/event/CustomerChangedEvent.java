@@ -0,0 +1,11 @@
+package com.retail.management.event;
+
+import lombok.Value;
+
+/**
+ * Published when a customer is created, updated or deleted.
+ */
+@Value
+public class CustomerChangedEvent {
+    Long customerId;
+}
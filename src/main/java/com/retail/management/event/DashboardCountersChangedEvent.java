@@ -0,0 +1,14 @@
+package com.retail.management.event;
+
+import lombok.Value;
+
+/**
+ * Published when the dashboard counters apply a change committed on another
+ * node. Affects the overall figures and those of {@code branchId}, if set, or
+ * of every branch when {@code allBranches} is set.
+ */
+@Value
+public class DashboardCountersChangedEvent {
+    Long branchId;
+    boolean allBranches;
+}
@@ -0,0 +1,13 @@
+package com.retail.management.event;
+
+import lombok.Value;
+
+/**
+ * Published inside the writing transaction whenever an invoice is created or its
+ * status, amounts or return change. {@code before} is null for a new invoice.
+ */
+@Value
+public class InvoiceSalesChangedEvent {
+    InvoiceSalesSnapshot before;
+    InvoiceSalesSnapshot after;
+}
@@ -0,0 +1,52 @@
+package com.retail.management.event;
+
+import com.retail.management.entity.Invoice;
+import com.retail.management.entity.Return;
+import com.retail.management.enums.InvoiceStatus;
+import com.retail.management.enums.ReturnStatus;
+import lombok.Builder;
+import lombok.Value;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * The figures of an invoice that contribute to the daily sales rollup, captured
+ * at one point in time.
+ */
+@Value
+@Builder(toBuilder = true)
+public class InvoiceSalesSnapshot {
+    Long invoiceId;
+    Long branchId;
+    LocalDate salesDate;
+    InvoiceStatus status;
+    Long customerId;
+    BigDecimal subtotal;
+    BigDecimal taxAmount;
+    BigDecimal discountAmount;
+    BigDecimal totalAmount;
+    BigDecimal returnAmount;
+
+    public static InvoiceSalesSnapshot of(Invoice invoice) {
+        Return returnRecord = invoice.getReturnRecord();
+        boolean returned = returnRecord != null && returnRecord.getStatus() == ReturnStatus.COMPLETED;
+
+        return InvoiceSalesSnapshot.builder()
+                .invoiceId(invoice.getId())
+                .branchId(invoice.getBranch().getId())
+                .salesDate(invoice.getInvoiceDate())
+                .status(invoice.getStatus())
+                .customerId(invoice.getCustomer() != null ? invoice.getCustomer().getId() : null)
+                .subtotal(invoice.getSubtotal())
+                .taxAmount(invoice.getTaxAmount())
+                .discountAmount(invoice.getDiscountAmount())
+                .totalAmount(invoice.getTotalAmount())
+                .returnAmount(returned ? returnRecord.getTotalReturnAmount() : null)
+                .build();
+    }
+
+    public boolean isReturned() {
+        return returnAmount != null;
+    }
+}
@@ -0,0 +1,12 @@
+package com.retail.management.event;
+
+import lombok.Value;
+
+/**
+ * Published when a product's low stock threshold changes, which may move the
+ * low stock figures of every branch stocking it.
+ */
+@Value
+public class LowStockThresholdChangedEvent {
+    Long productId;
+}
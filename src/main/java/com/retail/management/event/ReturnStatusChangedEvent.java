@@ -0,0 +1,15 @@
+package com.retail.management.event;
+
+import com.retail.management.enums.ReturnStatus;
+import lombok.Value;
+
+/**
+ * Published when a return is created or changes status. {@code before} is null
+ * for a new return.
+ */
+@Value
+public class ReturnStatusChangedEvent {
+    Long returnId;
+    ReturnStatus before;
+    ReturnStatus after;
+}
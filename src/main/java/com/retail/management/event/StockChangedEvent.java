@@ -0,0 +1,40 @@
+package com.retail.management.event;
+
+import lombok.Value;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Published whenever stock quantities of a branch are changed. A null
+ * {@code branchId} means stock figures of every branch may have changed.
+ * {@code levels} carries the new state of the changed rows when the change
+ * came from a statement that returned them; when it is empty, any row of the
+ * branch may have changed. {@code quantitiesBefore} has the quantity of each
+ * changed row before the change, keyed by product; rows the change created
+ * have none.
+ */
+@Value
+public class StockChangedEvent {
+    Long branchId;
+    List<Level> levels;
+    Map<Long, Integer> quantitiesBefore;
+
+    public StockChangedEvent(Long branchId) {
+        this(branchId, List.of(), Map.of());
+    }
+
+    public StockChangedEvent(Long branchId, List<Level> levels, Map<Long, Integer> quantitiesBefore) {
+        this.branchId = branchId;
+        this.levels = levels;
+        this.quantitiesBefore = quantitiesBefore;
+    }
+
+    /**
+     * A branch stock row after the change; versions grow with every change of the row
+     */
+    public record Level(long productId, int quantity, int reservedQuantity, long version,
+                        LocalDateTime lastRestockedAt) {
+    }
+}
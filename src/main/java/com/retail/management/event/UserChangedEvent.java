@@ -0,0 +1,11 @@
+package com.retail.management.event;
+
+import lombok.Value;
+
+/**
+ * Published when a user is created, updated or deactivated.
+ */
+@Value
+public class UserChangedEvent {
+    Long userId;
+}
@@ -0,0 +1,18 @@
+package com.retail.management.exception;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+
+/**
+ * The server is temporarily overloaded; the client should retry after the given delay.
+ */
+@Getter
+public class ServiceUnavailableException extends BaseException {
+
+    private final long retryAfterSeconds;
+
+    public ServiceUnavailableException(String message, long retryAfterSeconds) {
+        super(message, HttpStatus.SERVICE_UNAVAILABLE, "SERVICE_BUSY");
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
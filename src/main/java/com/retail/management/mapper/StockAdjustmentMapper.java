@@ -0,0 +1,12 @@
+package com.retail.management.mapper;
+
+import com.retail.management.dto.response.stock.StockMovementResponse;
+import com.retail.management.entity.StockAdjustment;
+import org.mapstruct.Mapper;
+import org.mapstruct.ReportingPolicy;
+
+@Mapper(componentModel = "spring", unmappedTargetPolicy = ReportingPolicy.IGNORE)
+public interface StockAdjustmentMapper {
+
+    StockMovementResponse toMovementResponse(StockAdjustment stockAdjustment);
+}
@@ -29,6 +29,16 @@ public interface AuditLogRepository extends JpaRepository<AuditLog, Long> {
 
     Page<AuditLog> findByPerformedBy(String performedBy, Pageable pageable);
 
-    @Query("SELECT al FROM AuditLog al WHERE al.correlationId = :correlationId")
+    /**
+     * Bounded on created_at so only the partitions of the requested months are scanned.
+     */
+    @Query("SELECT al FROM AuditLog al WHERE al.performedBy = :performedBy " +
+           "AND al.createdAt BETWEEN :startDate AND :endDate ORDER BY al.createdAt DESC")
+    Page<AuditLog> findUserActions(@Param("performedBy") String performedBy,
+                                   @Param("startDate") LocalDateTime startDate,
+                                   @Param("endDate") LocalDateTime endDate,
+                                   Pageable pageable);
+
+    @Query("SELECT al FROM AuditLog al WHERE al.correlationId = :correlationId ORDER BY al.createdAt DESC")
     List<AuditLog> findByCorrelationId(@Param("correlationId") String correlationId);
 }
@@ -8,6 +8,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -34,4 +35,7 @@ public interface BranchRepository extends JpaRepository<Branch, Long> {
             "LOWER(b.code) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
             "LOWER(b.city) LIKE LOWER(CONCAT('%', :searchTerm, '%')))")
     Page<Branch> searchBranches(@Param("searchTerm") String searchTerm, Pageable pageable);
+
+    @Query("SELECT b.id FROM Branch b WHERE b.id IN :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
 }
@@ -1,29 +1,48 @@
 package com.retail.management.repository;
 
 import com.retail.management.entity.BranchStock;
+import com.retail.management.repository.projection.BranchStockSummary;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface BranchStockRepository extends JpaRepository<BranchStock, Long> {
+public interface BranchStockRepository extends JpaRepository<BranchStock, Long>, BranchStockRepositoryCustom {
 
     Optional<BranchStock> findByBranchIdAndProductId(Long branchId, Long productId);
 
     List<BranchStock> findByBranchId(Long branchId);
 
+    @Query("SELECT bs FROM BranchStock bs JOIN FETCH bs.product " +
+            "WHERE bs.branch.id = :branchId AND bs.product.id IN :productIds")
+    List<BranchStock> findByBranchIdAndProductIdIn(@Param("branchId") Long branchId,
+                                                   @Param("productIds") Collection<Long> productIds);
+
     List<BranchStock> findByProductId(Long productId);
 
-    @Query("SELECT bs FROM BranchStock bs WHERE bs.branch.id = :branchId AND bs.quantity < bs.product.lowStockThreshold")
+    @Query("SELECT bs FROM BranchStock bs JOIN FETCH bs.product p " +
+            "WHERE bs.branch.id = :branchId AND bs.quantity < p.lowStockThreshold")
     List<BranchStock> findLowStockByBranch(@Param("branchId") Long branchId);
 
     @Query("SELECT bs FROM BranchStock bs WHERE bs.quantity = 0")
     List<BranchStock> findOutOfStockItems();
 
+    @Query("SELECT COUNT(bs) FROM BranchStock bs WHERE bs.quantity < bs.product.lowStockThreshold")
+    long countLowStock();
+
+    @Query("SELECT COUNT(bs) FROM BranchStock bs WHERE bs.quantity = 0")
+    long countOutOfStock();
+
+    @Query("SELECT COUNT(bs) AS totalProducts, COALESCE(SUM(bs.quantity), 0) AS totalStock, " +
+            "COALESCE(SUM(CASE WHEN bs.quantity < p.lowStockThreshold THEN 1 ELSE 0 END), 0) AS lowStockItems " +
+            "FROM BranchStock bs JOIN bs.product p WHERE bs.branch.id = :branchId")
+    BranchStockSummary summarizeBranch(@Param("branchId") Long branchId);
+
     @Query("SELECT SUM(bs.quantity) FROM BranchStock bs WHERE bs.product.id = :productId")
     Integer getTotalQuantityAcrossAllBranches(@Param("productId") Long productId);
 
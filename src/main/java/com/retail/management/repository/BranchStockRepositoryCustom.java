@@ -0,0 +1,73 @@
+package com.retail.management.repository;
+
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Atomic stock mutations executed as single conditional SQL statements,
+ * so concurrent sales never lose updates or hit version conflicts. Every
+ * change of quantity appends its lines to the stock ledger (stock_adjustments)
+ * in the same statement; holds only change reserved_quantity and are not
+ * ledger movements.
+ */
+public interface BranchStockRepositoryCustom {
+
+    /**
+     * Lock the given stock rows in a single statement, in (branch_id, product_id)
+     * order whatever the order of the keys. Missing rows are skipped.
+     */
+    void lockStock(Collection<StockKey> keys);
+
+    /**
+     * Decrement stock for many products of one branch in a single statement.
+     * A line is only applied when (quantity - reserved_quantity) covers it.
+     *
+     * @param quantities quantity to remove keyed by product ID
+     * @return resulting quantity keyed by product ID, for the lines that were applied
+     */
+    Map<Long, Integer> decrementStock(Long branchId, Map<Long, Integer> quantities, StockMovement movement);
+
+    /**
+     * Increment stock for many products of one branch in a single statement,
+     * creating missing stock rows. last_restocked_at is stamped for RESTOCK movements.
+     *
+     * @param quantities quantity to add keyed by product ID
+     * @return resulting quantity keyed by product ID
+     */
+    Map<Long, Integer> incrementStock(Long branchId, Map<Long, Integer> quantities, StockMovement movement);
+
+    /**
+     * Hold stock for many products of one branch in a single statement by
+     * raising reserved_quantity. A line is only applied when
+     * (quantity - reserved_quantity) covers it.
+     *
+     * @param quantities quantity to hold keyed by product ID
+     * @return remaining available quantity keyed by product ID, for the lines that were applied
+     */
+    Map<Long, Integer> reserveStock(Long branchId, Map<Long, Integer> quantities);
+
+    /**
+     * Give held stock back to the available quantity
+     *
+     * @param quantities quantity to release keyed by product ID
+     */
+    void releaseReservedStock(Long branchId, Map<Long, Integer> quantities);
+
+    /**
+     * Take held stock: lower both quantity and reserved_quantity
+     *
+     * @param quantities held quantity to take keyed by product ID
+     * @return resulting quantity keyed by product ID, for the lines that were applied
+     */
+    Map<Long, Integer> confirmReservedStock(Long branchId, Map<Long, Integer> quantities, StockMovement movement);
+
+    /**
+     * Decrement stock for a single product
+     *
+     * @return whether the decrement was applied
+     */
+    default boolean decrementStock(Long branchId, Long productId, int quantity, StockMovement movement) {
+        return decrementStock(branchId, Map.of(productId, quantity), movement).containsKey(productId);
+    }
+}
@@ -0,0 +1,260 @@
+package com.retail.management.repository;
+
+import com.retail.management.enums.StockAdjustmentType;
+import com.retail.management.event.StockChangedEvent;
+import com.retail.management.security.SecurityUtils;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class BranchStockRepositoryImpl implements BranchStockRepositoryCustom {
+
+    private static final String LINES =
+            "WITH v(product_id, qty) AS (SELECT * FROM unnest(?::bigint[], ?::int[])), ";
+
+    /** Row state returned by every statement, for the stock cache */
+    private static final String STATE = "product_id, quantity, reserved_quantity, version, last_restocked_at";
+    private static final String BS_STATE =
+            "bs.product_id, bs.quantity, bs.reserved_quantity, bs.version, bs.last_restocked_at";
+    private static final String C_STATE =
+            "c.product_id, c.quantity, c.reserved_quantity, c.version, c.last_restocked_at";
+
+    private static final String LOCK_SQL =
+            "SELECT bs.id FROM branch_stocks bs " +
+            "JOIN unnest(?::bigint[], ?::bigint[]) AS k(branch_id, product_id) " +
+            "ON bs.branch_id = k.branch_id AND bs.product_id = k.product_id " +
+            "ORDER BY bs.branch_id, bs.product_id FOR UPDATE OF bs";
+
+    private static final String DECREMENT_SQL = LINES +
+            "changed AS (UPDATE branch_stocks bs SET quantity = bs.quantity - v.qty, " +
+            "version = COALESCE(bs.version, 0) + 1, updated_at = LOCALTIMESTAMP, updated_by = ? " +
+            "FROM v WHERE bs.branch_id = ? AND bs.product_id = v.product_id " +
+            "AND bs.quantity - bs.reserved_quantity >= v.qty " +
+            "RETURNING " + BS_STATE + ")" +
+            ledger("-v.qty", "c.quantity + v.qty");
+
+    private static final String RESERVE_SQL = LINES +
+            "changed AS (UPDATE branch_stocks bs SET reserved_quantity = bs.reserved_quantity + v.qty, " +
+            "version = COALESCE(bs.version, 0) + 1, updated_at = LOCALTIMESTAMP, updated_by = ? " +
+            "FROM v WHERE bs.branch_id = ? AND bs.product_id = v.product_id " +
+            "AND bs.quantity - bs.reserved_quantity >= v.qty " +
+            "RETURNING " + BS_STATE + ") " +
+            result("c.quantity - c.reserved_quantity", "c.quantity");
+
+    private static final String RELEASE_SQL = LINES +
+            "changed AS (UPDATE branch_stocks bs SET reserved_quantity = GREATEST(bs.reserved_quantity - v.qty, 0), " +
+            "version = COALESCE(bs.version, 0) + 1, updated_at = LOCALTIMESTAMP, updated_by = ? " +
+            "FROM v WHERE bs.branch_id = ? AND bs.product_id = v.product_id " +
+            "RETURNING " + BS_STATE + ") " +
+            result("c.quantity", "c.quantity");
+
+    private static final String CONFIRM_SQL = LINES +
+            "changed AS (UPDATE branch_stocks bs SET quantity = bs.quantity - v.qty, " +
+            "reserved_quantity = GREATEST(bs.reserved_quantity - v.qty, 0), " +
+            "version = COALESCE(bs.version, 0) + 1, updated_at = LOCALTIMESTAMP, updated_by = ? " +
+            "FROM v WHERE bs.branch_id = ? AND bs.product_id = v.product_id " +
+            "AND bs.quantity >= v.qty " +
+            "RETURNING " + BS_STATE + ")" +
+            ledger("-v.qty", "c.quantity + v.qty");
+
+    private static final String INCREMENT_SQL = LINES +
+            "changed AS (INSERT INTO branch_stocks (branch_id, product_id, quantity, reserved_quantity, " +
+            "last_restocked_at, created_at, created_by, version) " +
+            "SELECT ?, v.product_id, v.qty, 0, CASE WHEN ? THEN LOCALTIMESTAMP END, LOCALTIMESTAMP, ?, 0 FROM v " +
+            "ON CONFLICT (product_id, branch_id) DO UPDATE SET " +
+            "quantity = branch_stocks.quantity + EXCLUDED.quantity, " +
+            "last_restocked_at = COALESCE(EXCLUDED.last_restocked_at, branch_stocks.last_restocked_at), " +
+            "version = COALESCE(branch_stocks.version, 0) + 1, " +
+            "updated_at = LOCALTIMESTAMP, updated_by = EXCLUDED.created_by " +
+            "RETURNING " + STATE + ", xmax = 0 AS created)" +
+            ledger("v.qty", "CASE WHEN c.created THEN NULL ELSE c.quantity - v.qty END");
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public BranchStockRepositoryImpl(JdbcTemplate jdbcTemplate, ApplicationEventPublisher eventPublisher) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.eventPublisher = eventPublisher;
+    }
+
+    @Override
+    public void lockStock(Collection<StockKey> keys) {
+        if (keys.isEmpty()) {
+            return;
+        }
+
+        List<StockKey> sorted = keys.stream().distinct().sorted().toList();
+        Long[] branchIds = sorted.stream().map(StockKey::branchId).toArray(Long[]::new);
+        Long[] productIds = sorted.stream().map(StockKey::productId).toArray(Long[]::new);
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(LOCK_SQL);
+            ps.setArray(1, con.createArrayOf("bigint", branchIds));
+            ps.setArray(2, con.createArrayOf("bigint", productIds));
+            return ps;
+        }, rs -> { });
+    }
+
+    @Override
+    public Map<Long, Integer> decrementStock(Long branchId, Map<Long, Integer> quantities, StockMovement movement) {
+        return update(DECREMENT_SQL, branchId, quantities, movement);
+    }
+
+    @Override
+    public Map<Long, Integer> reserveStock(Long branchId, Map<Long, Integer> quantities) {
+        return update(RESERVE_SQL, branchId, quantities, null);
+    }
+
+    @Override
+    public void releaseReservedStock(Long branchId, Map<Long, Integer> quantities) {
+        update(RELEASE_SQL, branchId, quantities, null);
+    }
+
+    @Override
+    public Map<Long, Integer> confirmReservedStock(Long branchId, Map<Long, Integer> quantities,
+                                                   StockMovement movement) {
+        return update(CONFIRM_SQL, branchId, quantities, movement);
+    }
+
+    @Override
+    public Map<Long, Integer> incrementStock(Long branchId, Map<Long, Integer> quantities, StockMovement movement) {
+        if (quantities.isEmpty()) {
+            return Map.of();
+        }
+
+        return execute(INCREMENT_SQL, branchId, quantities, (con, ps) -> {
+            String user = currentUser();
+            setLines(con, ps, quantities);
+            ps.setLong(3, branchId);
+            ps.setBoolean(4, movement.type() == StockAdjustmentType.RESTOCK);
+            ps.setString(5, user);
+            setMovement(ps, 6, branchId, movement, user);
+        });
+    }
+
+    /**
+     * Run one of the UPDATE statements, which all bind lines, user and branch,
+     * then the ledger entry when they change the quantity
+     */
+    private Map<Long, Integer> update(String sql, Long branchId, Map<Long, Integer> quantities,
+                                      StockMovement movement) {
+        if (quantities.isEmpty()) {
+            return Map.of();
+        }
+
+        return execute(sql, branchId, quantities, (con, ps) -> {
+            String user = currentUser();
+            setLines(con, ps, quantities);
+            ps.setString(3, user);
+            ps.setLong(4, branchId);
+            if (movement != null) {
+                setMovement(ps, 5, branchId, movement, user);
+            }
+        });
+    }
+
+    private Map<Long, Integer> execute(String sql, Long branchId, Map<Long, Integer> quantities,
+                                       StatementBinder binder) {
+        // Push pending entity changes first so the statement sees them
+        entityManager.flush();
+
+        List<StockChangedEvent.Level> levels = new ArrayList<>(quantities.size());
+        Map<Long, Integer> quantitiesBefore = new HashMap<>(quantities.size() * 2);
+        Map<Long, Integer> applied = jdbcTemplate.query(
+                con -> {
+                    PreparedStatement ps = con.prepareStatement(sql);
+                    binder.bind(con, ps);
+                    return ps;
+                },
+                rs -> {
+                    Map<Long, Integer> result = new HashMap<>(quantities.size() * 2);
+                    while (rs.next()) {
+                        result.put(rs.getLong(1), rs.getInt(2));
+                        Timestamp lastRestockedAt = rs.getTimestamp(7);
+                        levels.add(new StockChangedEvent.Level(rs.getLong(3), rs.getInt(4), rs.getInt(5),
+                                rs.getLong(6), lastRestockedAt != null ? lastRestockedAt.toLocalDateTime() : null));
+                        int quantityBefore = rs.getInt(8);
+                        if (!rs.wasNull()) {
+                            quantitiesBefore.put(rs.getLong(3), quantityBefore);
+                        }
+                    }
+                    return result;
+                });
+
+        if (!applied.isEmpty()) {
+            eventPublisher.publishEvent(new StockChangedEvent(branchId, levels, quantitiesBefore));
+        }
+        return applied;
+    }
+
+    /**
+     * Append a stock_adjustments row per changed line, in the same statement
+     * as the change; quantity before and after come from the updated row
+     */
+    private static String ledger(String signedQuantity, String quantityBefore) {
+        return ", ledger AS (INSERT INTO stock_adjustments (branch_id, product_id, adjustment_type, " +
+                "quantity_change, quantity_before, quantity_after, reference, reason, notes, adjusted_by, " +
+                "adjustment_date, created_at) " +
+                "SELECT ?, c.product_id, ?, " + signedQuantity + ", c.quantity - (" + signedQuantity + "), c.quantity, " +
+                "?, ?, ?, (SELECT id FROM users WHERE username = ?), LOCALTIMESTAMP, LOCALTIMESTAMP " +
+                "FROM changed c JOIN v ON v.product_id = c.product_id) " +
+                result("c.quantity", quantityBefore);
+    }
+
+    /**
+     * Select the per-line result the caller gets, followed by the row state and
+     * the quantity before the change (null for rows the statement created)
+     */
+    private static String result(String value, String quantityBefore) {
+        return "SELECT c.product_id, " + value + ", " + C_STATE + ", " + quantityBefore + " " +
+                "FROM changed c JOIN v ON v.product_id = c.product_id";
+    }
+
+    private static void setMovement(PreparedStatement ps, int index, Long branchId, StockMovement movement,
+                                    String user) throws SQLException {
+        ps.setLong(index, branchId);
+        ps.setString(index + 1, movement.type().name());
+        ps.setString(index + 2, movement.reference());
+        ps.setString(index + 3, movement.reason());
+        ps.setString(index + 4, movement.notes());
+        ps.setString(index + 5, user);
+    }
+
+    private static void setLines(Connection con, PreparedStatement ps,
+                                 Map<Long, Integer> quantities) throws SQLException {
+        // Sorted by product, so inserts of new stock rows take their index locks in a fixed order
+        Long[] productIds = new Long[quantities.size()];
+        Integer[] amounts = new Integer[quantities.size()];
+        int i = 0;
+        for (Map.Entry<Long, Integer> line : new TreeMap<>(quantities).entrySet()) {
+            productIds[i] = line.getKey();
+            amounts[i] = line.getValue();
+            i++;
+        }
+        ps.setArray(1, con.createArrayOf("bigint", productIds));
+        ps.setArray(2, con.createArrayOf("integer", amounts));
+    }
+
+    private static String currentUser() {
+        return SecurityUtils.getCurrentUsername().orElse("SYSTEM");
+    }
+
+    @FunctionalInterface
+    private interface StatementBinder {
+        void bind(Connection con, PreparedStatement ps) throws SQLException;
+    }
+}
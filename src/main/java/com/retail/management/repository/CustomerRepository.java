@@ -28,6 +28,9 @@ public interface CustomerRepository extends JpaRepository<Customer, Long>, JpaSp
     @Query("SELECT c FROM Customer c WHERE c.isWalkIn = true AND c.deletedAt IS NULL")
     List<Customer> findAllRegisteredCustomers();
 
+    @Query("SELECT COUNT(c) FROM Customer c WHERE c.isWalkIn = true AND c.deletedAt IS NULL")
+    long countRegisteredCustomers();
+
     @Query("SELECT c FROM Customer c WHERE c.deletedAt IS NULL")
     Page<Customer> findAllNotDeleted(Pageable pageable);
 
@@ -0,0 +1,67 @@
+package com.retail.management.repository;
+
+import com.retail.management.entity.DailyBranchSales;
+import com.retail.management.enums.InvoiceStatus;
+import com.retail.management.repository.projection.BranchDaySales;
+import com.retail.management.repository.projection.BranchPerformanceTotals;
+import com.retail.management.repository.projection.BranchSalesTotal;
+import com.retail.management.repository.projection.SalesTotals;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface DailyBranchSalesRepository extends JpaRepository<DailyBranchSales, Long>,
+        DailyBranchSalesRepositoryCustom {
+
+    /**
+     * Sum the rollup over a date range, optionally for one branch. Paid sales only
+     * count invoices in the given paid status; the other figures cover every status.
+     */
+    @Query("SELECT COALESCE(SUM(CASE WHEN d.status = :paidStatus THEN d.totalAmount ELSE 0 END), 0) AS paidSales, " +
+            "COALESCE(SUM(d.subtotal), 0) AS subtotal, " +
+            "COALESCE(SUM(d.taxAmount), 0) AS taxAmount, " +
+            "COALESCE(SUM(d.discountAmount), 0) AS discountAmount, " +
+            "COALESCE(SUM(d.totalAmount), 0) AS totalAmount, " +
+            "COALESCE(SUM(d.invoiceCount), 0) AS invoiceCount " +
+            "FROM DailyBranchSales d " +
+            "WHERE d.salesDate BETWEEN :startDate AND :endDate " +
+            "AND (:branchId IS NULL OR d.branch.id = :branchId)")
+    SalesTotals sumByDateRange(@Param("startDate") LocalDate startDate,
+                               @Param("endDate") LocalDate endDate,
+                               @Param("branchId") Long branchId,
+                               @Param("paidStatus") InvoiceStatus paidStatus);
+
+    @Query("SELECT d.branch.id AS branchId, d.branch.name AS branchName, SUM(d.totalAmount) AS totalAmount " +
+            "FROM DailyBranchSales d " +
+            "WHERE d.salesDate BETWEEN :startDate AND :endDate " +
+            "AND (:branchId IS NULL OR d.branch.id = :branchId) " +
+            "GROUP BY d.branch.id, d.branch.name")
+    List<BranchSalesTotal> sumByBranch(@Param("startDate") LocalDate startDate,
+                                       @Param("endDate") LocalDate endDate,
+                                       @Param("branchId") Long branchId);
+
+    @Query("SELECT d.branch.id AS branchId, d.salesDate AS salesDate, " +
+            "COALESCE(SUM(CASE WHEN d.status = :paidStatus THEN d.totalAmount ELSE 0 END), 0) AS paidSales, " +
+            "SUM(d.invoiceCount) AS invoiceCount " +
+            "FROM DailyBranchSales d " +
+            "WHERE d.salesDate BETWEEN :startDate AND :endDate " +
+            "GROUP BY d.branch.id, d.salesDate")
+    List<BranchDaySales> sumByBranchAndDay(@Param("startDate") LocalDate startDate,
+                                           @Param("endDate") LocalDate endDate,
+                                           @Param("paidStatus") InvoiceStatus paidStatus);
+
+    @Query("SELECT d.branch.id AS branchId, " +
+            "COALESCE(SUM(CASE WHEN d.status = :paidStatus THEN d.totalAmount ELSE 0 END), 0) AS paidSales, " +
+            "SUM(d.invoiceCount) AS invoiceCount " +
+            "FROM DailyBranchSales d " +
+            "WHERE d.salesDate BETWEEN :startDate AND :endDate " +
+            "GROUP BY d.branch.id")
+    List<BranchPerformanceTotals> sumPerformanceByBranch(@Param("startDate") LocalDate startDate,
+                                                         @Param("endDate") LocalDate endDate,
+                                                         @Param("paidStatus") InvoiceStatus paidStatus);
+}
@@ -0,0 +1,35 @@
+package com.retail.management.repository;
+
+import com.retail.management.event.InvoiceSalesSnapshot;
+
+import java.time.LocalDate;
+
+/**
+ * Incremental maintenance of the daily_branch_sales rollup.
+ */
+public interface DailyBranchSalesRepositoryCustom {
+
+    /**
+     * Queue the addition (sign = 1) or removal (sign = -1) of one invoice's figures
+     * to the row of its branch, date and status. Only inserts a delta row, so
+     * concurrent checkouts do not wait on each other.
+     */
+    void applyDelta(InvoiceSalesSnapshot snapshot, int sign);
+
+    /**
+     * Fold up to batchSize queued deltas into their rows, creating rows when
+     * missing, and recount the distinct customers of the touched rows. Does
+     * nothing while another node drains or a rebuild runs. Needs a transaction.
+     *
+     * @return number of deltas folded
+     */
+    int drain(int batchSize);
+
+    /**
+     * Recompute every row in the date range from the invoices and returns tables,
+     * discarding the queued deltas of that range. Needs a transaction.
+     *
+     * @return number of rollup rows written
+     */
+    int rebuild(LocalDate startDate, LocalDate endDate);
+}
@@ -0,0 +1,144 @@
+package com.retail.management.repository;
+
+import com.retail.management.event.InvoiceSalesSnapshot;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+public class DailyBranchSalesRepositoryImpl implements DailyBranchSalesRepositoryCustom {
+
+    private static final String APPLY_DELTA_SQL =
+            "INSERT INTO sales_rollup_deltas (branch_id, sales_date, status, invoice_count, subtotal, tax_amount, " +
+            "discount_amount, total_amount, return_count, return_amount, created_at) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, LOCALTIMESTAMP)";
+
+    /** Serializes draining and rebuilds across nodes, until the transaction ends */
+    private static final String TRY_LOCK_SQL = "SELECT pg_try_advisory_xact_lock(hashtext('daily_branch_sales'))";
+
+    private static final String LOCK_SQL = "SELECT pg_advisory_xact_lock(hashtext('daily_branch_sales'))";
+
+    /** Fold the oldest deltas into their rows; returns each touched row with the number of deltas taken */
+    private static final String DRAIN_SQL =
+            "WITH batch AS (DELETE FROM sales_rollup_deltas WHERE id IN " +
+            "(SELECT id FROM sales_rollup_deltas ORDER BY id LIMIT ?) " +
+            "RETURNING branch_id, sales_date, status, invoice_count, subtotal, tax_amount, discount_amount, " +
+            "total_amount, return_count, return_amount), " +
+            "applied AS (INSERT INTO daily_branch_sales (branch_id, sales_date, status, invoice_count, customer_count, " +
+            "subtotal, tax_amount, discount_amount, total_amount, return_count, return_amount, updated_at) " +
+            "SELECT branch_id, sales_date, status, SUM(invoice_count), 0, SUM(subtotal), SUM(tax_amount), " +
+            "SUM(discount_amount), SUM(total_amount), SUM(return_count), SUM(return_amount), LOCALTIMESTAMP " +
+            "FROM batch GROUP BY branch_id, sales_date, status " +
+            "ON CONFLICT (branch_id, sales_date, status) DO UPDATE SET " +
+            "invoice_count = daily_branch_sales.invoice_count + EXCLUDED.invoice_count, " +
+            "subtotal = daily_branch_sales.subtotal + EXCLUDED.subtotal, " +
+            "tax_amount = daily_branch_sales.tax_amount + EXCLUDED.tax_amount, " +
+            "discount_amount = daily_branch_sales.discount_amount + EXCLUDED.discount_amount, " +
+            "total_amount = daily_branch_sales.total_amount + EXCLUDED.total_amount, " +
+            "return_count = daily_branch_sales.return_count + EXCLUDED.return_count, " +
+            "return_amount = daily_branch_sales.return_amount + EXCLUDED.return_amount, " +
+            "updated_at = EXCLUDED.updated_at " +
+            "RETURNING id) " +
+            "SELECT id, (SELECT COUNT(*) FROM batch) FROM applied";
+
+    /** Distinct customers are not additive, so touched rows count them again from committed invoices */
+    private static final String RECOUNT_CUSTOMERS_SQL =
+            "UPDATE daily_branch_sales d SET customer_count = (SELECT COUNT(DISTINCT i.customer_id) FROM invoices i " +
+            "WHERE i.branch_id = d.branch_id AND i.invoice_date = d.sales_date AND i.status = d.status) " +
+            "WHERE d.id = ANY(?)";
+
+    /**
+     * Recompute the rows of a date range from the invoices in one statement, so
+     * the deltas it discards are exactly those of the invoice changes it sees.
+     * Rows without invoices any more are zeroed.
+     */
+    private static final String REBUILD_SQL =
+            "WITH pending AS (DELETE FROM sales_rollup_deltas WHERE sales_date BETWEEN ? AND ?), " +
+            "totals AS (SELECT i.branch_id, i.invoice_date AS sales_date, i.status, COUNT(*) AS invoice_count, " +
+            "COUNT(DISTINCT i.customer_id) AS customer_count, COALESCE(SUM(i.subtotal), 0) AS subtotal, " +
+            "COALESCE(SUM(i.tax_amount), 0) AS tax_amount, COALESCE(SUM(i.discount_amount), 0) AS discount_amount, " +
+            "COALESCE(SUM(i.total_amount), 0) AS total_amount, COUNT(r.id) AS return_count, " +
+            "COALESCE(SUM(r.total_return_amount), 0) AS return_amount " +
+            "FROM invoices i LEFT JOIN returns r ON r.invoice_id = i.id AND r.status = 'COMPLETED' " +
+            "WHERE i.invoice_date BETWEEN ? AND ? " +
+            "GROUP BY i.branch_id, i.invoice_date, i.status), " +
+            "existing AS (SELECT branch_id, sales_date, status FROM daily_branch_sales WHERE sales_date BETWEEN ? AND ?) " +
+            "INSERT INTO daily_branch_sales (branch_id, sales_date, status, invoice_count, customer_count, " +
+            "subtotal, tax_amount, discount_amount, total_amount, return_count, return_amount, updated_at) " +
+            "SELECT COALESCE(t.branch_id, e.branch_id), COALESCE(t.sales_date, e.sales_date), " +
+            "COALESCE(t.status, e.status), COALESCE(t.invoice_count, 0), COALESCE(t.customer_count, 0), " +
+            "COALESCE(t.subtotal, 0), COALESCE(t.tax_amount, 0), COALESCE(t.discount_amount, 0), " +
+            "COALESCE(t.total_amount, 0), COALESCE(t.return_count, 0), COALESCE(t.return_amount, 0), LOCALTIMESTAMP " +
+            "FROM totals t FULL JOIN existing e " +
+            "ON e.branch_id = t.branch_id AND e.sales_date = t.sales_date AND e.status = t.status " +
+            "ON CONFLICT (branch_id, sales_date, status) DO UPDATE SET " +
+            "invoice_count = EXCLUDED.invoice_count, customer_count = EXCLUDED.customer_count, " +
+            "subtotal = EXCLUDED.subtotal, tax_amount = EXCLUDED.tax_amount, " +
+            "discount_amount = EXCLUDED.discount_amount, total_amount = EXCLUDED.total_amount, " +
+            "return_count = EXCLUDED.return_count, return_amount = EXCLUDED.return_amount, " +
+            "updated_at = EXCLUDED.updated_at";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public DailyBranchSalesRepositoryImpl(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    @Override
+    public void applyDelta(InvoiceSalesSnapshot snapshot, int sign) {
+        BigDecimal factor = BigDecimal.valueOf(sign);
+
+        jdbcTemplate.update(APPLY_DELTA_SQL,
+                snapshot.getBranchId(),
+                Date.valueOf(snapshot.getSalesDate()),
+                snapshot.getStatus().name(),
+                sign,
+                signed(snapshot.getSubtotal(), factor),
+                signed(snapshot.getTaxAmount(), factor),
+                signed(snapshot.getDiscountAmount(), factor),
+                signed(snapshot.getTotalAmount(), factor),
+                snapshot.isReturned() ? sign : 0,
+                signed(snapshot.getReturnAmount(), factor));
+    }
+
+    @Override
+    public int drain(int batchSize) {
+        if (!Boolean.TRUE.equals(jdbcTemplate.queryForObject(TRY_LOCK_SQL, Boolean.class))) {
+            return 0;
+        }
+
+        List<Long> rowIds = new ArrayList<>();
+        long[] drained = {0};
+        jdbcTemplate.query(DRAIN_SQL, rs -> {
+            rowIds.add(rs.getLong(1));
+            drained[0] = rs.getLong(2);
+        }, batchSize);
+
+        if (!rowIds.isEmpty()) {
+            jdbcTemplate.update(con -> {
+                PreparedStatement ps = con.prepareStatement(RECOUNT_CUSTOMERS_SQL);
+                ps.setArray(1, con.createArrayOf("bigint", rowIds.toArray()));
+                return ps;
+            });
+        }
+        return (int) drained[0];
+    }
+
+    @Override
+    public int rebuild(LocalDate startDate, LocalDate endDate) {
+        Date start = Date.valueOf(startDate);
+        Date end = Date.valueOf(endDate);
+
+        jdbcTemplate.query(LOCK_SQL, rs -> { });
+        return jdbcTemplate.update(REBUILD_SQL, start, end, start, end, start, end);
+    }
+
+    private static BigDecimal signed(BigDecimal amount, BigDecimal factor) {
+        return Objects.requireNonNullElse(amount, BigDecimal.ZERO).multiply(factor);
+    }
+}
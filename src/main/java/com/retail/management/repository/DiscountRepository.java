@@ -2,6 +2,7 @@ package com.retail.management.repository;
 
 import com.retail.management.entity.Discount;
 import com.retail.management.enums.DiscountType;
+import com.retail.management.repository.projection.DiscountTypeTotal;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -24,9 +25,10 @@ public interface DiscountRepository extends JpaRepository<Discount, Long> {
     BigDecimal getTotalDiscountsByDateRange(@Param("startDate") LocalDateTime startDate,
                                             @Param("endDate") LocalDateTime endDate);
 
-    @Query("SELECT d.discountType, SUM(d.discountAmount), COUNT(d) FROM Discount d " +
+    @Query("SELECT d.discountType AS discountType, SUM(d.discountAmount) AS totalAmount, COUNT(d) AS usageCount " +
+            "FROM Discount d " +
             "WHERE d.appliedAt BETWEEN :startDate AND :endDate " +
             "GROUP BY d.discountType")
-    List<Object[]> getDiscountSummaryByType(@Param("startDate") LocalDateTime startDate,
-                                            @Param("endDate") LocalDateTime endDate);
+    List<DiscountTypeTotal> getDiscountSummaryByType(@Param("startDate") LocalDateTime startDate,
+                                                     @Param("endDate") LocalDateTime endDate);
 }
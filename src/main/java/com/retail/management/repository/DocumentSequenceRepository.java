@@ -0,0 +1,21 @@
+package com.retail.management.repository;
+
+import com.retail.management.entity.DocumentSequence;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface DocumentSequenceRepository extends JpaRepository<DocumentSequence, String> {
+
+    /**
+     * Reserve the next block of values for a key, creating the sequence on first use.
+     * Returns the exclusive upper bound of the reserved block.
+     */
+    @Query(value = "INSERT INTO document_sequences (sequence_key, next_value) VALUES (:key, 1 + :blockSize) " +
+            "ON CONFLICT (sequence_key) DO UPDATE " +
+            "SET next_value = document_sequences.next_value + :blockSize " +
+            "RETURNING next_value", nativeQuery = true)
+    Long allocateBlock(@Param("key") String key, @Param("blockSize") int blockSize);
+}
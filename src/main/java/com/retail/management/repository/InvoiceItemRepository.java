@@ -1,6 +1,8 @@
 package com.retail.management.repository;
 
 import com.retail.management.entity.InvoiceItem;
+import com.retail.management.repository.projection.ProductSales;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -19,12 +21,21 @@ public interface InvoiceItemRepository extends JpaRepository<InvoiceItem, Long>
     @Query("SELECT ii FROM InvoiceItem ii WHERE ii.invoice.branch.id = :branchId AND ii.invoice.invoiceDate = :date")
     List<InvoiceItem> findByBranchAndDate(@Param("branchId") Long branchId, @Param("date") LocalDate date);
 
-    @Query("SELECT ii.product.id, ii.product.name, SUM(ii.quantity) as totalQuantity FROM InvoiceItem ii " +
+    /**
+     * Best sellers over a date range, optionally for one branch. The page size bounds
+     * the number of rows returned.
+     */
+    @Query("SELECT ii.product.id AS productId, ii.product.name AS productName, ii.product.sku AS sku, " +
+            "SUM(ii.quantity) AS totalQuantity, SUM(ii.lineTotal) AS totalRevenue " +
+            "FROM InvoiceItem ii " +
             "WHERE ii.invoice.invoiceDate BETWEEN :startDate AND :endDate " +
-            "GROUP BY ii.product.id, ii.product.name " +
-            "ORDER BY totalQuantity DESC")
-    List<Object[]> findTopSellingProducts(@Param("startDate") LocalDate startDate,
-                                          @Param("endDate") LocalDate endDate);
+            "AND (:branchId IS NULL OR ii.invoice.branch.id = :branchId) " +
+            "GROUP BY ii.product.id, ii.product.name, ii.product.sku " +
+            "ORDER BY SUM(ii.quantity) DESC")
+    List<ProductSales> findTopSellingProducts(@Param("startDate") LocalDate startDate,
+                                              @Param("endDate") LocalDate endDate,
+                                              @Param("branchId") Long branchId,
+                                              Pageable pageable);
 
     @Query("SELECT SUM(ii.quantity) FROM InvoiceItem ii WHERE ii.product.id = :productId")
     Integer getTotalQuantitySoldByProduct(@Param("productId") Long productId);
@@ -52,6 +52,13 @@ public interface InvoiceRepository extends JpaRepository<Invoice, Long>,
     @Query("SELECT COUNT(i) FROM Invoice i WHERE i.branch.id = :branchId AND i.invoiceDate = :date")
     Long getInvoiceCountByBranchAndDate(@Param("branchId") Long branchId, @Param("date") LocalDate date);
 
+    @Query("SELECT COUNT(DISTINCT i.customer.id) FROM Invoice i " +
+            "WHERE i.invoiceDate BETWEEN :startDate AND :endDate " +
+            "AND (:branchId IS NULL OR i.branch.id = :branchId)")
+    Long countDistinctCustomers(@Param("startDate") LocalDate startDate,
+                                @Param("endDate") LocalDate endDate,
+                                @Param("branchId") Long branchId);
+
     @Query("SELECT i FROM Invoice i WHERE i.outstandingBalance > 0")
     List<Invoice> findInvoicesWithOutstandingBalance();
 
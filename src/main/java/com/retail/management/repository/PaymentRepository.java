@@ -3,6 +3,7 @@ package com.retail.management.repository;
 import com.retail.management.entity.Payment;
 import com.retail.management.enums.PaymentMethod;
 import com.retail.management.enums.PaymentStatus;
+import com.retail.management.repository.projection.PaymentMethodTotal;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -31,11 +32,13 @@ public interface PaymentRepository extends JpaRepository<Payment, Long> {
     BigDecimal getTotalPaymentsByDateRange(@Param("startDate") LocalDateTime startDate,
                                            @Param("endDate") LocalDateTime endDate);
 
-    @Query("SELECT p.paymentMethod, SUM(p.amount) FROM Payment p " +
+    @Query("SELECT p.paymentMethod AS paymentMethod, SUM(p.amount) AS totalAmount FROM Payment p " +
             "WHERE p.status = 'COMPLETED' AND p.paymentDate BETWEEN :startDate AND :endDate " +
+            "AND (:branchId IS NULL OR p.invoice.branch.id = :branchId) " +
             "GROUP BY p.paymentMethod")
-    List<Object[]> getPaymentMethodBreakdown(@Param("startDate") LocalDateTime startDate,
-                                             @Param("endDate") LocalDateTime endDate);
+    List<PaymentMethodTotal> getPaymentMethodBreakdown(@Param("startDate") LocalDateTime startDate,
+                                                       @Param("endDate") LocalDateTime endDate,
+                                                       @Param("branchId") Long branchId);
 
     Page<Payment> findByInvoiceBranchId(Long branchId, Pageable pageable);
 }
@@ -9,6 +9,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -39,4 +40,7 @@ public interface ProductRepository extends JpaRepository<Product, Long>,
             "LOWER(p.sku) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
             "LOWER(p.category) LIKE LOWER(CONCAT('%', :searchTerm, '%')))")
     Page<Product> searchProducts(@Param("searchTerm") String searchTerm, Pageable pageable);
+
+    @Query("SELECT p.id FROM Product p WHERE p.id IN :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
 }
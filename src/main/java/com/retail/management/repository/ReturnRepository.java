@@ -25,6 +25,8 @@ public interface ReturnRepository extends JpaRepository<Return, Long> {
 
     List<Return> findByStatus(ReturnStatus status);
 
+    long countByStatus(ReturnStatus status);
+
     Page<Return> findByBranchId(Long branchId, Pageable pageable);
 
     @Query("SELECT r FROM Return r WHERE r.returnDate BETWEEN :startDate AND :endDate")
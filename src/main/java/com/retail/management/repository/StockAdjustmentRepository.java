@@ -10,6 +10,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
@@ -27,4 +28,15 @@ public interface StockAdjustmentRepository extends JpaRepository<StockAdjustment
                                                  @Param("productId") Long productId);
 
     Page<StockAdjustment> findByBranchId(Long branchId, Pageable pageable);
+
+    /**
+     * Ledger rows of one product in one branch within a date range, newest first
+     */
+    @Query("SELECT sa FROM StockAdjustment sa WHERE sa.branch.id = :branchId AND sa.product.id = :productId " +
+            "AND sa.adjustmentDate BETWEEN :startDate AND :endDate ORDER BY sa.adjustmentDate DESC, sa.id DESC")
+    Page<StockAdjustment> findHistory(@Param("branchId") Long branchId,
+                                      @Param("productId") Long productId,
+                                      @Param("startDate") LocalDateTime startDate,
+                                      @Param("endDate") LocalDateTime endDate,
+                                      Pageable pageable);
 }
@@ -0,0 +1,18 @@
+package com.retail.management.repository;
+
+import java.util.Comparator;
+
+/**
+ * A branch stock row. Keys sort by branch and then product, the order in which
+ * stock rows are locked.
+ */
+public record StockKey(Long branchId, Long productId) implements Comparable<StockKey> {
+
+    private static final Comparator<StockKey> ORDER =
+            Comparator.comparing(StockKey::branchId).thenComparing(StockKey::productId);
+
+    @Override
+    public int compareTo(StockKey other) {
+        return ORDER.compare(this, other);
+    }
+}
@@ -0,0 +1,17 @@
+package com.retail.management.repository;
+
+import com.retail.management.entity.StockAdjustment;
+import com.retail.management.enums.StockAdjustmentType;
+
+/**
+ * Why a stock quantity changes, recorded with every line in the stock ledger;
+ * stored in the matching {@link StockAdjustment} columns
+ *
+ * @param reference the document behind the movement, e.g. an invoice or return number
+ */
+public record StockMovement(StockAdjustmentType type, String reference, String reason, String notes) {
+
+    public static StockMovement of(StockAdjustmentType type, String reference) {
+        return new StockMovement(type, reference, null, null);
+    }
+}
@@ -0,0 +1,41 @@
+package com.retail.management.repository;
+
+import com.retail.management.entity.StockReservation;
+import com.retail.management.enums.ReservationStatus;
+import com.retail.management.repository.projection.ReservationExpiry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface StockReservationRepository extends JpaRepository<StockReservation, Long> {
+
+    Optional<StockReservation> findByInvoiceNumber(String invoiceNumber);
+
+    List<ReservationExpiry> findByStatus(ReservationStatus status);
+
+    /**
+     * IDs and expiry of the holds in a status that expire before the given time
+     */
+    @Query("SELECT r.id AS id, r.expiresAt AS expiresAt FROM StockReservation r " +
+            "WHERE r.status = :status AND r.expiresAt < :before")
+    List<ReservationExpiry> findExpiring(@Param("status") ReservationStatus status,
+                                         @Param("before") LocalDateTime before);
+
+    /**
+     * Move a hold between statuses, only if it is still in the expected one;
+     * concurrent transitions of the same hold serialize on its row
+     *
+     * @return whether this call made the transition
+     */
+    @Modifying
+    @Query("UPDATE StockReservation r SET r.status = :to, r.updatedAt = CURRENT_TIMESTAMP " +
+            "WHERE r.id = :id AND r.status = :from")
+    int transition(@Param("id") Long id, @Param("from") ReservationStatus from, @Param("to") ReservationStatus to);
+}
@@ -1,12 +1,15 @@
 package com.retail.management.repository;
 
 import com.retail.management.entity.User;
+import com.retail.management.repository.projection.UserAuthStatus;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Optional;
@@ -16,8 +19,19 @@ public interface UserRepository extends JpaRepository<User, Long> {
 
     Optional<User> findByUsername(String username);
 
+    @Query("SELECT u.active AS active, r.name AS roleName FROM User u LEFT JOIN u.role r WHERE u.username = :username")
+    Optional<UserAuthStatus> findAuthStatusByUsername(@Param("username") String username);
+
     Optional<User> findByEmail(String email);
 
+    /**
+     * Replace the password hash unless it was changed in the meantime.
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE User u SET u.password = :newHash WHERE u.id = :id AND u.password = :oldHash")
+    int updatePasswordHash(@Param("id") Long id, @Param("oldHash") String oldHash, @Param("newHash") String newHash);
+
     Boolean existsByUsername(String username);
 
     Boolean existsByEmail(String email);
@@ -29,6 +43,9 @@ public interface UserRepository extends JpaRepository<User, Long> {
     @Query("SELECT u FROM User u WHERE u.branch.id = :branchId AND u.active = true")
     List<User> findActiveUsersByBranch(@Param("branchId") Long branchId);
 
+    @Query("SELECT COUNT(u) FROM User u WHERE u.branch.id = :branchId AND u.active = true")
+    long countActiveUsersByBranch(@Param("branchId") Long branchId);
+
     @Query("SELECT u FROM User u WHERE u.role.name = :roleName")
     List<User> findByRoleName(@Param("roleName") String roleName);
 
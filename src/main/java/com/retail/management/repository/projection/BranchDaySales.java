@@ -0,0 +1,11 @@
+package com.retail.management.repository.projection;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+public interface BranchDaySales {
+    Long getBranchId();
+    LocalDate getSalesDate();
+    BigDecimal getPaidSales();
+    Long getInvoiceCount();
+}
@@ -0,0 +1,9 @@
+package com.retail.management.repository.projection;
+
+import java.math.BigDecimal;
+
+public interface BranchPerformanceTotals {
+    Long getBranchId();
+    BigDecimal getPaidSales();
+    Long getInvoiceCount();
+}
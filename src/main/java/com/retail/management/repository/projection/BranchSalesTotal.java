@@ -0,0 +1,9 @@
+package com.retail.management.repository.projection;
+
+import java.math.BigDecimal;
+
+public interface BranchSalesTotal {
+    Long getBranchId();
+    String getBranchName();
+    BigDecimal getTotalAmount();
+}
@@ -0,0 +1,7 @@
+package com.retail.management.repository.projection;
+
+public interface BranchStockSummary {
+    Long getTotalProducts();
+    Long getTotalStock();
+    Long getLowStockItems();
+}
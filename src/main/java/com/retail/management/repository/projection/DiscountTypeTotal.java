@@ -0,0 +1,11 @@
+package com.retail.management.repository.projection;
+
+import com.retail.management.enums.DiscountType;
+
+import java.math.BigDecimal;
+
+public interface DiscountTypeTotal {
+    DiscountType getDiscountType();
+    BigDecimal getTotalAmount();
+    Long getUsageCount();
+}
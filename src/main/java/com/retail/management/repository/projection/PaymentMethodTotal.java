@@ -0,0 +1,10 @@
+package com.retail.management.repository.projection;
+
+import com.retail.management.enums.PaymentMethod;
+
+import java.math.BigDecimal;
+
+public interface PaymentMethodTotal {
+    PaymentMethod getPaymentMethod();
+    BigDecimal getTotalAmount();
+}
@@ -0,0 +1,11 @@
+package com.retail.management.repository.projection;
+
+import java.math.BigDecimal;
+
+public interface ProductSales {
+    Long getProductId();
+    String getProductName();
+    String getSku();
+    Long getTotalQuantity();
+    BigDecimal getTotalRevenue();
+}
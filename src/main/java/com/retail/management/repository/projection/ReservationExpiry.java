@@ -0,0 +1,8 @@
+package com.retail.management.repository.projection;
+
+import java.time.LocalDateTime;
+
+public interface ReservationExpiry {
+    Long getId();
+    LocalDateTime getExpiresAt();
+}
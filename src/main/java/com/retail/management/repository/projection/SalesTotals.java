@@ -0,0 +1,15 @@
+package com.retail.management.repository.projection;
+
+import java.math.BigDecimal;
+
+/**
+ * Sales figures summed over a set of daily_branch_sales rows.
+ */
+public interface SalesTotals {
+    BigDecimal getPaidSales();
+    BigDecimal getSubtotal();
+    BigDecimal getTaxAmount();
+    BigDecimal getDiscountAmount();
+    BigDecimal getTotalAmount();
+    Long getInvoiceCount();
+}
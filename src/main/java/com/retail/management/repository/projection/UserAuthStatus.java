@@ -0,0 +1,6 @@
+package com.retail.management.repository.projection;
+
+public interface UserAuthStatus {
+    Boolean getActive();
+    String getRoleName();
+}
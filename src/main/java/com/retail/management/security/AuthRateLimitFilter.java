@@ -0,0 +1,186 @@
+package com.retail.management.security;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.jsonwebtoken.Claims;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Rate limits login, registration and token refresh per client IP and per
+ * username before any password hashing or user lookup happens. Runs ahead of
+ * {@link JwtAuthenticationFilter}; refused attempts get a 429 with Retry-After.
+ * The client IP is the connection's remote address, which reflects
+ * X-Forwarded-For only when {@code server.forward-headers-strategy} trusts the
+ * proxy that set it; the header itself is client-supplied and never read here.
+ */
+@Component
+@Slf4j
+public class AuthRateLimitFilter extends OncePerRequestFilter {
+
+    private static final Set<String> LIMITED_PATHS = Set.of(
+            "/api/v1/auth/login", "/api/v1/auth/register", "/api/v1/auth/refresh");
+    // Sign-in bodies are tiny; larger ones are only limited by IP
+    private static final int MAX_BODY_BYTES = 16 * 1024;
+
+    private final AuthRateLimiter rateLimiter;
+    private final JwtTokenProvider jwtTokenProvider;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+
+    @Autowired
+    public AuthRateLimitFilter(AuthRateLimiter rateLimiter, JwtTokenProvider jwtTokenProvider, ObjectMapper objectMapper,
+                               @Value("${app.security.rate-limit.enabled:true}") boolean enabled) {
+        this.rateLimiter = rateLimiter;
+        this.jwtTokenProvider = jwtTokenProvider;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled
+                || !"POST".equals(request.getMethod())
+                || !LIMITED_PATHS.contains(request.getRequestURI().substring(request.getContextPath().length()));
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request,
+                                    HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        String ipAddress = request.getRemoteAddr();
+        String username = null;
+
+        String refreshToken = request.getParameter("refreshToken");
+        if (StringUtils.hasText(refreshToken)) {
+            Claims claims = jwtTokenProvider.parseClaims(refreshToken);
+            username = claims != null ? claims.getSubject() : null;
+        } else {
+            long contentLength = request.getContentLengthLong();
+            if (contentLength > 0 && contentLength <= MAX_BODY_BYTES) {
+                CachedBodyRequest cached = new CachedBodyRequest(request);
+                username = readUsername(cached.body);
+                request = cached;
+            }
+        }
+
+        long retryAfterSeconds = rateLimiter.tryAcquire(ipAddress, username);
+        if (retryAfterSeconds > 0) {
+            log.warn("Rate limited {} from {} for user {}", request.getRequestURI(), ipAddress, username);
+            reject(request, response, retryAfterSeconds);
+            return;
+        }
+
+        filterChain.doFilter(request, response);
+    }
+
+    private String readUsername(byte[] body) {
+        try {
+            JsonNode username = objectMapper.readTree(body).path("username");
+            return username.isTextual() && !username.asText().isBlank() ? username.asText() : null;
+        } catch (IOException e) {
+            // Malformed bodies are rejected by the controller
+            return null;
+        }
+    }
+
+    private void reject(HttpServletRequest request, HttpServletResponse response, long retryAfterSeconds)
+            throws IOException {
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("success", false);
+        errorResponse.put("timestamp", LocalDateTime.now().toString());
+        errorResponse.put("status", HttpStatus.TOO_MANY_REQUESTS.value());
+        errorResponse.put("error", HttpStatus.TOO_MANY_REQUESTS.getReasonPhrase());
+        errorResponse.put("message", "Too many attempts, please retry in " + retryAfterSeconds + " seconds");
+        errorResponse.put("errorCode", "RATE_LIMITED");
+        errorResponse.put("path", request.getRequestURI());
+
+        response.getOutputStream().println(objectMapper.writeValueAsString(errorResponse));
+    }
+
+    /**
+     * Request whose body has been read up front so it can be read again downstream.
+     */
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+
+        private final byte[] body;
+
+        private CachedBodyRequest(HttpServletRequest request) throws IOException {
+            super(request);
+            this.body = request.getInputStream().readAllBytes();
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream input = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return input.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return input.read(b, off, len);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return input.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    // The whole body is already in memory, so it is available at once
+                    try {
+                        readListener.onDataAvailable();
+                        readListener.onAllDataRead();
+                    } catch (IOException e) {
+                        readListener.onError(e);
+                    }
+                }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            String encoding = getCharacterEncoding();
+            return new BufferedReader(new InputStreamReader(getInputStream(),
+                    encoding != null ? Charset.forName(encoding) : StandardCharsets.UTF_8));
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package com.retail.management.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.retail.management.cache.CacheInvalidationBus;
+import com.retail.management.util.TokenBucket;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Token buckets for the sign-in endpoints, one per client IP and one per
+ * username. Every attempt spends a token from its IP's bucket, while a
+ * username's bucket is only spent by failed logins, so a user signing in
+ * correctly cannot be locked out by someone guessing at the account. Buckets
+ * live in size-bounded caches and are dropped once idle long
+ * enough to have refilled, so memory stays bounded under a spray of made-up
+ * usernames or addresses.
+ * <p>
+ * With {@code app.security.rate-limit.shared=true} each node periodically
+ * announces the tokens it handed out through the {@link CacheInvalidationBus},
+ * and the other nodes take them from their own buckets; the limit then holds
+ * across the cluster to within one announcement interval.
+ */
+@Component
+public class AuthRateLimiter implements CacheInvalidationBus.Listener {
+
+    static final String MESSAGE_NAME = "auth-rate-limit";
+    // pg_notify payloads are limited to 8000 bytes, including the bus header
+    private static final int MAX_MESSAGE_LENGTH = 7000;
+
+    private final Limit ipLimit;
+    private final Limit usernameLimit;
+    private final boolean shared;
+    private final int maxKeys;
+    private final CacheInvalidationBus invalidationBus;
+    private final Map<String, LongAdder> unannounced = new ConcurrentHashMap<>();
+
+    public AuthRateLimiter(CacheInvalidationBus invalidationBus,
+                           @Value("${app.security.rate-limit.ip.capacity:30}") int ipCapacity,
+                           @Value("${app.security.rate-limit.ip.refill-per-minute:30}") int ipRefillPerMinute,
+                           @Value("${app.security.rate-limit.username.capacity:5}") int usernameCapacity,
+                           @Value("${app.security.rate-limit.username.refill-per-minute:5}") int usernameRefillPerMinute,
+                           @Value("${app.security.rate-limit.max-keys:100000}") int maxKeys,
+                           @Value("${app.security.rate-limit.shared:false}") boolean shared) {
+        this.invalidationBus = invalidationBus;
+        this.ipLimit = new Limit("ip:", ipCapacity, ipRefillPerMinute, maxKeys);
+        this.usernameLimit = new Limit("user:", usernameCapacity, usernameRefillPerMinute, maxKeys);
+        this.maxKeys = maxKeys;
+        this.shared = shared;
+        if (shared) {
+            invalidationBus.register(MESSAGE_NAME, this);
+        }
+    }
+
+    /**
+     * Take a token from the client's IP bucket, provided the username, if
+     * given, has not run out of failed logins. Returns zero when the attempt
+     * may go ahead, otherwise the number of seconds until it may be retried.
+     * A refused attempt spends nothing.
+     */
+    public long tryAcquire(String ipAddress, String username) {
+        long now = System.nanoTime();
+
+        if (username != null) {
+            TokenBucket usernameBucket = usernameLimit.bucket(username.toLowerCase(), now);
+            if (usernameBucket.nanosUntilAvailable(now) > 0) {
+                return retryAfterSeconds(usernameBucket, now);
+            }
+        }
+
+        TokenBucket ipBucket = ipLimit.bucket(ipAddress, now);
+        if (!ipBucket.tryConsume(now)) {
+            return retryAfterSeconds(ipBucket, now);
+        }
+        record(ipLimit, ipAddress);
+        return 0;
+    }
+
+    /**
+     * Spend a token from the username's bucket after its credentials were
+     * rejected. Concurrent failures may overdraw the bucket, which only
+     * delays the next attempt.
+     */
+    public void recordFailedLogin(String username) {
+        long now = System.nanoTime();
+        String key = username.toLowerCase();
+        usernameLimit.bucket(key, now).consume(1, now);
+        record(usernameLimit, key);
+    }
+
+    /**
+     * Announce the tokens taken on this node since the last announcement.
+     */
+    @Scheduled(fixedDelayString = "${app.security.rate-limit.share-interval-ms:1000}")
+    public void announce() {
+        if (!shared || unannounced.isEmpty()) {
+            return;
+        }
+
+        StringBuilder message = new StringBuilder();
+        Iterator<Map.Entry<String, LongAdder>> entries = unannounced.entrySet().iterator();
+        while (entries.hasNext()) {
+            Map.Entry<String, LongAdder> entry = entries.next();
+            entries.remove();
+            // An increment racing with the removal may go unannounced, costing one extra attempt at most
+            long count = entry.getValue().sum();
+            if (count == 0) {
+                continue;
+            }
+
+            String line = URLEncoder.encode(entry.getKey(), StandardCharsets.UTF_8) + "=" + count;
+            if (message.length() + line.length() + 1 > MAX_MESSAGE_LENGTH) {
+                invalidationBus.publishMessage(MESSAGE_NAME, message.toString());
+                message.setLength(0);
+            }
+            message.append(line).append('\n');
+        }
+        if (!message.isEmpty()) {
+            invalidationBus.publishMessage(MESSAGE_NAME, message.toString());
+        }
+    }
+
+    @Override
+    public void onMessage(String message) {
+        long now = System.nanoTime();
+        for (String line : message.split("\n")) {
+            int separator = line.lastIndexOf('=');
+            if (separator <= 0) {
+                continue;
+            }
+
+            String key = URLDecoder.decode(line.substring(0, separator), StandardCharsets.UTF_8);
+            long count = Long.parseLong(line.substring(separator + 1));
+            Limit limit = key.startsWith(ipLimit.prefix) ? ipLimit
+                    : key.startsWith(usernameLimit.prefix) ? usernameLimit : null;
+            if (limit != null) {
+                limit.bucket(key.substring(limit.prefix.length()), now).consume(count, now);
+            }
+        }
+    }
+
+    @Override
+    public void onResync() {
+        // Missed announcements only let a few extra attempts through; nothing to reload
+    }
+
+    private void record(Limit limit, String key) {
+        if (!shared) {
+            return;
+        }
+        String prefixed = limit.prefix + key;
+        LongAdder count = unannounced.get(prefixed);
+        if (count == null) {
+            if (unannounced.size() >= maxKeys) {
+                return;
+            }
+            count = unannounced.computeIfAbsent(prefixed, k -> new LongAdder());
+        }
+        count.increment();
+    }
+
+    private static long retryAfterSeconds(TokenBucket bucket, long now) {
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(bucket.nanosUntilAvailable(now) + 999_999_999));
+    }
+
+    private static final class Limit {
+
+        private final String prefix;
+        private final int capacity;
+        private final long nanosPerToken;
+        private final Cache<String, TokenBucket> buckets;
+
+        private Limit(String prefix, int capacity, int refillPerMinute, int maxKeys) {
+            this.prefix = prefix;
+            this.capacity = capacity;
+            this.nanosPerToken = TimeUnit.MINUTES.toNanos(1) / Math.max(1, refillPerMinute);
+            // An idle bucket is full again, debt from other nodes included, after two bursts' worth of refills
+            this.buckets = Caffeine.newBuilder()
+                    .maximumSize(maxKeys)
+                    .expireAfterAccess(Duration.ofNanos(2 * capacity * nanosPerToken))
+                    .build();
+        }
+
+        TokenBucket bucket(String key, long now) {
+            return buckets.get(key, k -> new TokenBucket(capacity, nanosPerToken, now));
+        }
+    }
+}
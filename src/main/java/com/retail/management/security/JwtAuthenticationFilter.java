@@ -1,10 +1,14 @@
 package com.retail.management.security;
 
+import io.jsonwebtoken.Claims;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
@@ -16,18 +20,23 @@ import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
 
 @Component
 @Slf4j
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final JwtTokenProvider jwtTokenProvider;
-    private final CustomUserDetailsService customUserDetailsService;
+    private final UserStatusCache userStatusCache;
+    private final TokenRevocationList tokenRevocationList;
 
     @Autowired
-    public JwtAuthenticationFilter(JwtTokenProvider jwtTokenProvider, CustomUserDetailsService customUserDetailsService) {
+    public JwtAuthenticationFilter(JwtTokenProvider jwtTokenProvider, UserStatusCache userStatusCache,
+                                   TokenRevocationList tokenRevocationList) {
         this.jwtTokenProvider = jwtTokenProvider;
-        this.customUserDetailsService = customUserDetailsService;
+        this.userStatusCache = userStatusCache;
+        this.tokenRevocationList = tokenRevocationList;
     }
 
     @Override
@@ -36,23 +45,10 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                                     FilterChain filterChain) throws ServletException, IOException {
         try {
             String jwt = getJwtFromRequest(request);
+            Claims claims = StringUtils.hasText(jwt) ? jwtTokenProvider.parseClaims(jwt) : null;
 
-            if (StringUtils.hasText(jwt) && jwtTokenProvider.validateToken(jwt)) {
-                String username = jwtTokenProvider.getUsernameFromToken(jwt);
-
-                UserDetails userDetails = customUserDetailsService.loadUserByUsername(username);
-
-                UsernamePasswordAuthenticationToken authentication =
-                        new UsernamePasswordAuthenticationToken(
-                                userDetails,
-                                null,
-                                userDetails.getAuthorities());
-
-                authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
-
-                SecurityContextHolder.getContext().setAuthentication(authentication);
-
-                log.debug("Set authentication for user: {}", username);
+            if (claims != null) {
+                authenticate(jwt, claims, request);
             }
         } catch (Exception ex) {
             log.error("Could not set user authentication in security context", ex);
@@ -61,6 +57,53 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         filterChain.doFilter(request, response);
     }
 
+    /**
+     * Build the authentication from the verified claims. The user's status is only
+     * consulted to reject disabled users and tokens issued for a previous role.
+     */
+    private void authenticate(String jwt, Claims claims, HttpServletRequest request) {
+        String username = claims.getSubject();
+        String roles = claims.get("roles", String.class);
+
+        // Refresh tokens carry no roles and cannot be used to call the API
+        if (!StringUtils.hasText(roles)) {
+            log.debug("Rejected token without roles for user: {}", username);
+            return;
+        }
+
+        if (tokenRevocationList.isRevoked(claims)) {
+            log.debug("Rejected revoked token for user: {}", username);
+            return;
+        }
+
+        List<GrantedAuthority> authorities = Arrays.stream(roles.split(","))
+                .map(String::trim)
+                .filter(StringUtils::hasText)
+                .<GrantedAuthority>map(SimpleGrantedAuthority::new)
+                .toList();
+
+        UserStatusCache.UserStatus status = userStatusCache.get(username);
+        if (!status.active() || status.authority() == null
+                || !authorities.contains(new SimpleGrantedAuthority(status.authority()))) {
+            log.debug("Rejected token of disabled or changed user: {}", username);
+            return;
+        }
+
+        UserDetails userDetails = User.withUsername(username)
+                .password("")
+                .authorities(authorities)
+                .build();
+
+        UsernamePasswordAuthenticationToken authentication =
+                UsernamePasswordAuthenticationToken.authenticated(userDetails, jwt, authorities);
+
+        authentication.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+
+        SecurityContextHolder.getContext().setAuthentication(authentication);
+
+        log.debug("Set authentication for user: {}", username);
+    }
+
     /**
      * Extract JWT token from Authorization header
      */
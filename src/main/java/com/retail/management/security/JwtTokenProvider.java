@@ -1,40 +1,68 @@
 package com.retail.management.security;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.retail.management.config.JwtConfig;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.ExpiredJwtException;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.MalformedJwtException;
 import io.jsonwebtoken.UnsupportedJwtException;
 import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.security.Keys;
 import io.jsonwebtoken.security.SignatureException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.stereotype.Component;
 
 import jakarta.annotation.PostConstruct;
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Base64;
 import java.util.Date;
+import java.util.UUID;
 import java.util.stream.Collectors;
 
+/**
+ * Issues and verifies JWTs. Tokens are verified with one shared parser, and
+ * the claims of recently verified tokens are kept in a small cache keyed by
+ * the token's SHA-256, so a client repeating the same token skips the
+ * signature check and JSON parsing until the entry ages out or the token
+ * expires. Hashing keeps the bearer tokens themselves out of the heap.
+ */
 @Component
 @Slf4j
 public class JwtTokenProvider {
 
+    private static final Duration VERIFIED_TOKEN_TTL = Duration.ofMinutes(5);
+
     private final JwtConfig jwtConfig;
+    private final Cache<String, Claims> verifiedTokens;
     private SecretKey key;
+    private JwtParser parser;
 
     @Autowired
-    public JwtTokenProvider(JwtConfig jwtConfig) {
+    public JwtTokenProvider(JwtConfig jwtConfig,
+                            @Value("${app.security.jwt.verified-cache-size:10000}") int verifiedCacheSize) {
         this.jwtConfig = jwtConfig;
+        this.verifiedTokens = verifiedCacheSize > 0
+                ? Caffeine.newBuilder().maximumSize(verifiedCacheSize).expireAfterWrite(VERIFIED_TOKEN_TTL).build()
+                : null;
     }
 
     @PostConstruct
     public void init() {
-        this.key = io.jsonwebtoken.security.Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtConfig.getSecret()));
+        this.key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtConfig.getSecret()));
+        this.parser = Jwts.parser().verifyWith(key).build();
     }
 
     /**
@@ -50,6 +78,7 @@ public class JwtTokenProvider {
                 .collect(Collectors.joining(","));
 
         return Jwts.builder()
+                .id(UUID.randomUUID().toString())
                 .subject(username)
                 .claim("roles", roles)
                 .issuedAt(now)
@@ -66,6 +95,7 @@ public class JwtTokenProvider {
         Date expiryDate = new Date(now.getTime() + jwtConfig.getExpiration());
 
         return Jwts.builder()
+                .id(UUID.randomUUID().toString())
                 .subject(username)
                 .claim("roles", roles)
                 .issuedAt(now)
@@ -82,6 +112,7 @@ public class JwtTokenProvider {
         Date expiryDate = new Date(now.getTime() + jwtConfig.getRefreshExpiration());
 
         return Jwts.builder()
+                .id(UUID.randomUUID().toString())
                 .subject(username)
                 .issuedAt(now)
                 .expiration(expiryDate)
@@ -93,12 +124,7 @@ public class JwtTokenProvider {
      * Get username from JWT token
      */
     public String getUsernameFromToken(String token) {
-        Claims claims = Jwts.parser()
-                .verifyWith(key)
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
-
+        Claims claims = verify(token);
         return claims.getSubject();
     }
 
@@ -106,24 +132,30 @@ public class JwtTokenProvider {
      * Get roles from JWT token
      */
     public String getRolesFromToken(String token) {
-        Claims claims = Jwts.parser()
-                .verifyWith(key)
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
-
+        Claims claims = verify(token);
         return claims.get("roles", String.class);
     }
 
+    /**
+     * Verify the token and return its claims, or null if it is not valid
+     */
+    public Claims parseClaims(String token) {
+        try {
+            return verify(token);
+        } catch (ExpiredJwtException ex) {
+            log.debug("Expired JWT token: {}", ex.getMessage());
+        } catch (JwtException | IllegalArgumentException ex) {
+            log.warn("Invalid JWT token: {}", ex.getMessage());
+        }
+        return null;
+    }
+
     /**
      * Validate JWT token
      */
     public boolean validateToken(String token) {
         try {
-            Jwts.parser()
-                    .verifyWith(key)
-                    .build()
-                    .parseSignedClaims(token);
+            verify(token);
             return true;
         } catch (MalformedJwtException ex) {
             log.error("Invalid JWT token: {}", ex.getMessage());
@@ -143,12 +175,7 @@ public class JwtTokenProvider {
      * Get expiration date from token
      */
     public Date getExpirationDateFromToken(String token) {
-        Claims claims = Jwts.parser()
-                .verifyWith(key)
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
-
+        Claims claims = verify(token);
         return claims.getExpiration();
     }
 
@@ -163,4 +190,38 @@ public class JwtTokenProvider {
             return true;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Verified claims of the token, from the cache when the same token was
+     * verified recently. Throws like the parser when the token is not valid.
+     */
+    private Claims verify(String token) {
+        if (verifiedTokens == null) {
+            return parser.parseSignedClaims(token).getPayload();
+        }
+
+        String hash = hash(token);
+        Claims claims = verifiedTokens.getIfPresent(hash);
+        if (claims != null) {
+            Date expiration = claims.getExpiration();
+            if (expiration == null || expiration.after(new Date())) {
+                return claims;
+            }
+            // Expired since it was cached; let the parser report it
+            verifiedTokens.invalidate(hash);
+        }
+
+        claims = parser.parseSignedClaims(token).getPayload();
+        verifiedTokens.put(hash, claims);
+        return claims;
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
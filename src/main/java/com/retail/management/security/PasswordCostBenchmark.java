@@ -0,0 +1,91 @@
+package com.retail.management.security;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures how long a BCrypt verification takes on this host at each work
+ * factor and recommends the highest one that stays within a target time, to
+ * be set as {@code app.security.password.bcrypt-strength}. Existing hashes are
+ * upgraded on the next login after the strength is raised.
+ * <p>
+ * Runs at startup when {@code app.security.password.benchmark-on-startup=true},
+ * or standalone with the target in milliseconds as the only argument.
+ */
+@Component
+@ConditionalOnProperty(name = "app.security.password.benchmark-on-startup", havingValue = "true")
+@Slf4j
+public class PasswordCostBenchmark implements ApplicationRunner {
+
+    private static final int MIN_STRENGTH = 8;
+    private static final int MAX_STRENGTH = 16;
+    private static final int RUNS = 5;
+
+    private final long targetMillis;
+
+    public PasswordCostBenchmark(@Value("${app.security.password.benchmark-target-ms:250}") long targetMillis) {
+        this.targetMillis = targetMillis;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        List<Measurement> measurements = measure(targetMillis);
+        measurements.forEach(m -> log.info("BCrypt strength {}: {} ms per verification", m.strength(), m.millis()));
+        log.info("Recommended app.security.password.bcrypt-strength for {} ms: {}",
+                targetMillis, recommend(measurements, targetMillis));
+    }
+
+    /**
+     * Median verification time per strength, from the lowest strength up to the
+     * first one that takes more than twice the target.
+     */
+    public static List<Measurement> measure(long targetMillis) {
+        List<Measurement> measurements = new ArrayList<>();
+        for (int strength = MIN_STRENGTH; strength <= MAX_STRENGTH; strength++) {
+            BCryptPasswordEncoder encoder = new BCryptPasswordEncoder(strength);
+            String hash = encoder.encode("benchmark-password");
+
+            long[] runs = new long[RUNS];
+            for (int i = 0; i < RUNS; i++) {
+                long start = System.nanoTime();
+                encoder.matches("benchmark-password", hash);
+                runs[i] = System.nanoTime() - start;
+            }
+            Arrays.sort(runs);
+
+            Measurement measurement = new Measurement(strength, runs[RUNS / 2] / 1_000_000);
+            measurements.add(measurement);
+            if (measurement.millis() > targetMillis * 2) {
+                break;
+            }
+        }
+        return measurements;
+    }
+
+    public static int recommend(List<Measurement> measurements, long targetMillis) {
+        return measurements.stream()
+                .filter(m -> m.millis() <= targetMillis)
+                .mapToInt(Measurement::strength)
+                .max()
+                .orElse(MIN_STRENGTH);
+    }
+
+    public static void main(String[] args) {
+        long target = args.length > 0 ? Long.parseLong(args[0]) : 250;
+        List<Measurement> measurements = measure(target);
+        measurements.forEach(m -> System.out.printf("strength %2d: %5d ms%n", m.strength(), m.millis()));
+        System.out.printf("recommended strength for %d ms: %d%n", target, recommend(measurements, target));
+    }
+
+    public record Measurement(int strength, long millis) {
+    }
+}
@@ -0,0 +1,104 @@
+package com.retail.management.security;
+
+import com.retail.management.exception.ServiceUnavailableException;
+import com.retail.management.util.CorrelationIdUtil;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Runs password hashing on a dedicated pool, so login storms occupy a bounded
+ * number of CPU-sized workers instead of request threads. Work that does not
+ * fit in the queue is rejected with a 503 rather than piling up. Queue time is
+ * published as {@code auth.password.hashing.queue.time}.
+ */
+@Component
+@Slf4j
+public class PasswordHasher {
+
+    private final PasswordEncoder passwordEncoder;
+    private final ThreadPoolExecutor executor;
+    private final Timer queueTimer;
+    private final Timer hashTimer;
+    private final String dummyHash;
+
+    public PasswordHasher(PasswordEncoder passwordEncoder,
+                          MeterRegistry meterRegistry,
+                          @Value("${app.security.password.hashing-threads:0}") int threads,
+                          @Value("${app.security.password.queue-capacity:200}") int queueCapacity) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+
+        this.passwordEncoder = passwordEncoder;
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                Thread.ofPlatform().name("password-hashing-", 0).daemon(true).factory(),
+                new ThreadPoolExecutor.AbortPolicy());
+        this.queueTimer = Timer.builder("auth.password.hashing.queue.time")
+                .description("Time password hashing work waits for a worker")
+                .register(meterRegistry);
+        this.hashTimer = Timer.builder("auth.password.hashing.time")
+                .description("Time spent hashing or verifying a password")
+                .register(meterRegistry);
+        Gauge.builder("auth.password.hashing.queue.size", executor, pool -> pool.getQueue().size())
+                .description("Password hashing work waiting for a worker")
+                .register(meterRegistry);
+        this.dummyHash = passwordEncoder.encode("dummy-password");
+    }
+
+    public CompletableFuture<Boolean> matches(CharSequence rawPassword, String encodedPassword) {
+        return submit(() -> passwordEncoder.matches(rawPassword, encodedPassword));
+    }
+
+    /**
+     * Spend the same effort as {@link #matches} for a user that does not exist, so
+     * response times do not reveal which usernames are valid.
+     */
+    public CompletableFuture<Boolean> matchesNothing(CharSequence rawPassword) {
+        return submit(() -> {
+            passwordEncoder.matches(rawPassword, dummyHash);
+            return false;
+        });
+    }
+
+    public CompletableFuture<String> encode(CharSequence rawPassword) {
+        return submit(() -> passwordEncoder.encode(rawPassword));
+    }
+
+    /**
+     * Whether the hash was made with weaker settings than the current encoder uses.
+     */
+    public boolean upgradeEncoding(String encodedPassword) {
+        return passwordEncoder.upgradeEncoding(encodedPassword);
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> work) {
+        long queuedAt = System.nanoTime();
+        try {
+            return CompletableFuture.supplyAsync(CorrelationIdUtil.wrap(() -> {
+                queueTimer.record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+                return hashTimer.record(work);
+            }), executor);
+        } catch (RejectedExecutionException e) {
+            log.warn("Password hashing queue full, rejecting request");
+            return CompletableFuture.failedFuture(
+                    new ServiceUnavailableException("Too many sign-in attempts in progress, please retry shortly", 1));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -42,6 +42,19 @@ public class SecurityUtils {
         return Optional.empty();
     }
 
+    /**
+     * Get the JWT the current request was authenticated with
+     */
+    public static Optional<String> getCurrentToken() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+
+        if (authentication != null && authentication.getCredentials() instanceof String token) {
+            return Optional.of(token);
+        }
+
+        return Optional.empty();
+    }
+
     /**
      * Check if user is authenticated
      */
@@ -0,0 +1,221 @@
+package com.retail.management.security;
+
+import com.retail.management.cache.CacheInvalidationBus;
+import com.retail.management.config.JwtConfig;
+import com.retail.management.entity.TokenRevocation;
+import com.retail.management.repository.TokenRevocationRepository;
+import com.retail.management.util.BloomFilter;
+import io.jsonwebtoken.Claims;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Revoked tokens, held in memory so a token can be checked without a query.
+ * Token IDs sit behind a Bloom filter, so the exact set is only consulted for
+ * the rare ID that might be revoked; per-user cutoffs are a single map lookup.
+ * Revocations are stored in the database and announced to the other nodes
+ * through the {@link CacheInvalidationBus}; a node reloads the list whenever it
+ * may have missed an announcement.
+ */
+@Component
+@Slf4j
+public class TokenRevocationList implements CacheInvalidationBus.Listener {
+
+    static final String MESSAGE_NAME = "token-revocations";
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+
+    private final TokenRevocationRepository tokenRevocationRepository;
+    private final CacheInvalidationBus invalidationBus;
+    private final long maxTokenLifetimeSeconds;
+    private final int expectedTokens;
+
+    private volatile RevokedTokens revokedTokens;
+    // Epoch milliseconds
+    private final Map<String, Long> userCutoffs = new ConcurrentHashMap<>();
+
+    public TokenRevocationList(TokenRevocationRepository tokenRevocationRepository,
+                               CacheInvalidationBus invalidationBus,
+                               JwtConfig jwtConfig,
+                               @Value("${app.security.revocation.expected-tokens:100000}") int expectedTokens) {
+        this.tokenRevocationRepository = tokenRevocationRepository;
+        this.invalidationBus = invalidationBus;
+        this.maxTokenLifetimeSeconds = Math.max(jwtConfig.getExpiration(), jwtConfig.getRefreshExpiration()) / 1000;
+        this.expectedTokens = expectedTokens;
+        this.revokedTokens = new RevokedTokens(expectedTokens);
+        invalidationBus.register(MESSAGE_NAME, this);
+    }
+
+    public boolean isRevoked(Claims claims) {
+        Long cutoff = userCutoffs.get(claims.getSubject());
+        if (cutoff != null) {
+            Date issuedAt = claims.getIssuedAt();
+            if (issuedAt == null || issuedAt.getTime() <= cutoff) {
+                return true;
+            }
+        }
+
+        String tokenId = claims.getId();
+        return tokenId != null && revokedTokens.contains(tokenId);
+    }
+
+    /**
+     * Revoke a single token until it expires.
+     */
+    @Transactional
+    public void revokeToken(String tokenId, Instant expiresAt) {
+        tokenRevocationRepository.save(TokenRevocation.builder()
+                .tokenId(tokenId)
+                .expiresAt(expiresAt)
+                .build());
+
+        long expiresAtSeconds = expiresAt.getEpochSecond();
+        invalidationBus.publishMessage(MESSAGE_NAME, "T:" + expiresAtSeconds + ":" + tokenId);
+        afterCommit(() -> addToken(tokenId, expiresAtSeconds));
+        log.info("Token revoked: {}", tokenId);
+    }
+
+    /**
+     * Revoke every token of the user issued at or before the given instant. The
+     * cutoff keeps its milliseconds; as tokens only record the second they were
+     * issued, one issued in the same second as the cutoff is revoked as well.
+     */
+    @Transactional
+    public void revokeUser(String username, Instant issuedBefore) {
+        tokenRevocationRepository.save(TokenRevocation.builder()
+                .username(username)
+                .revokedBefore(issuedBefore)
+                .expiresAt(issuedBefore.plusSeconds(maxTokenLifetimeSeconds))
+                .build());
+
+        long cutoff = issuedBefore.toEpochMilli();
+        invalidationBus.publishMessage(MESSAGE_NAME, "U:" + cutoff + ":" + username);
+        afterCommit(() -> addUserCutoff(username, cutoff));
+        log.info("All tokens revoked for user: {}", username);
+    }
+
+    @Override
+    public void onMessage(String message) {
+        String[] parts = message.split(":", 3);
+        if (parts.length < 3) {
+            log.warn("Ignoring malformed token revocation: {}", message);
+            return;
+        }
+
+        long instant = Long.parseLong(parts[1]);
+        if ("T".equals(parts[0])) {
+            addToken(parts[2], instant);
+        } else if ("U".equals(parts[0])) {
+            addUserCutoff(parts[2], instant);
+        }
+    }
+
+    @Override
+    public void onResync() {
+        reload();
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void reload() {
+        List<TokenRevocation> revocations = tokenRevocationRepository.findByExpiresAtAfter(Instant.now());
+
+        RevokedTokens tokens = new RevokedTokens(Math.max(expectedTokens, revocations.size() * 2));
+        Map<String, Long> cutoffs = new ConcurrentHashMap<>();
+        for (TokenRevocation revocation : revocations) {
+            if (revocation.getTokenId() != null) {
+                tokens.add(revocation.getTokenId(), revocation.getExpiresAt().getEpochSecond());
+            }
+            if (revocation.getUsername() != null) {
+                cutoffs.merge(revocation.getUsername(), revocation.getRevokedBefore().toEpochMilli(), Math::max);
+            }
+        }
+
+        revokedTokens = tokens;
+        userCutoffs.keySet().retainAll(cutoffs.keySet());
+        userCutoffs.putAll(cutoffs);
+        log.debug("Token revocation list loaded: {} tokens, {} users", tokens.size(), cutoffs.size());
+    }
+
+    /**
+     * Delete revocations that no longer cover an unexpired token and rebuild the
+     * Bloom filter without them.
+     */
+    @Scheduled(fixedDelayString = "${app.security.revocation.purge-interval-ms:3600000}",
+            initialDelayString = "${app.security.revocation.purge-interval-ms:3600000}")
+    @Transactional
+    public void purgeExpired() {
+        int purged = tokenRevocationRepository.deleteExpired(Instant.now());
+        log.debug("Purged {} expired token revocations", purged);
+        afterCommit(this::reload);
+    }
+
+    private synchronized void addToken(String tokenId, long expiresAtSeconds) {
+        RevokedTokens tokens = revokedTokens;
+        if (tokens.size() >= tokens.capacity) {
+            // Keep the false positive rate down by resizing from the exact set
+            RevokedTokens resized = new RevokedTokens(tokens.capacity * 2);
+            tokens.expiries.forEach(resized::add);
+            revokedTokens = resized;
+            tokens = resized;
+        }
+        tokens.add(tokenId, expiresAtSeconds);
+    }
+
+    private synchronized void addUserCutoff(String username, long cutoff) {
+        userCutoffs.merge(username, cutoff, Math::max);
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Revoked token IDs with their expiry, fronted by a Bloom filter.
+     */
+    private static final class RevokedTokens {
+
+        private final int capacity;
+        private final BloomFilter filter;
+        private final Map<String, Long> expiries = new ConcurrentHashMap<>();
+
+        private RevokedTokens(int capacity) {
+            this.capacity = capacity;
+            this.filter = BloomFilter.create(capacity, FALSE_POSITIVE_RATE);
+        }
+
+        void add(String tokenId, long expiresAtSeconds) {
+            // Exact entry first, so a positive filter answer is always backed by it
+            expiries.put(tokenId, expiresAtSeconds);
+            filter.add(tokenId);
+        }
+
+        boolean contains(String tokenId) {
+            return filter.mightContain(tokenId) && expiries.containsKey(tokenId);
+        }
+
+        int size() {
+            return expiries.size();
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.retail.management.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.retail.management.config.CacheConfig;
+import com.retail.management.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+
+/**
+ * Short-lived cache of whether a user may still authenticate and with which
+ * role, so authenticating a token needs no query while the entry is fresh.
+ * Entries expire after {@code app.cache.specs.user-status} (60 seconds by
+ * default) and are evicted on every node when a user is changed.
+ */
+@Component
+@RequiredArgsConstructor
+public class UserStatusCache {
+
+    private static final UserStatus UNKNOWN = new UserStatus(false, null);
+
+    private final CacheManager cacheManager;
+    private final UserRepository userRepository;
+
+    public UserStatus get(String username) {
+        return (UserStatus) cache().get(username, key -> userRepository.findAuthStatusByUsername(username)
+                .map(status -> new UserStatus(Boolean.TRUE.equals(status.getActive()),
+                        status.getRoleName() != null ? "ROLE_" + status.getRoleName() : null))
+                .orElse(UNKNOWN));
+    }
+
+    /**
+     * Evict through the Spring cache, so the eviction waits for the surrounding
+     * transaction to commit and reaches the other nodes.
+     */
+    public void evict(String username) {
+        Objects.requireNonNull(cacheManager.getCache(CacheConfig.USER_STATUS)).evict(username);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Cache<Object, Object> cache() {
+        return (Cache<Object, Object>) Objects.requireNonNull(cacheManager.getCache(CacheConfig.USER_STATUS))
+                .getNativeCache();
+    }
+
+    /**
+     * @param authority the user's current role as a granted authority, e.g. {@code ROLE_ADMIN}
+     */
+    public record UserStatus(boolean active, String authority) {
+    }
+}
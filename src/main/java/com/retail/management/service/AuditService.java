@@ -10,5 +10,6 @@ import java.util.List;
 public interface AuditService {
     void logAction(String entityType, Long entityId, String action, String oldValues, String newValues);
     List<AuditLogResponse> getAuditTrail(String entityType, Long entityId);
+    List<AuditLogResponse> getCorrelatedActions(String correlationId);
     Page<AuditLogResponse> getUserActions(String username, LocalDateTime startDate, LocalDateTime endDate, Pageable pageable);
 }
\ No newline at end of file
@@ -6,10 +6,17 @@ import com.retail.management.dto.request.auth.RegisterRequest;
 import com.retail.management.dto.response.auth.LoginResponse;
 import com.retail.management.dto.response.auth.TokenResponse;
 
+import java.util.concurrent.CompletableFuture;
+
 public interface AuthService {
-    LoginResponse login(LoginRequest request);
-    LoginResponse register(RegisterRequest request);
+    CompletableFuture<LoginResponse> login(LoginRequest request);
+    CompletableFuture<LoginResponse> register(RegisterRequest request);
     TokenResponse refreshToken(String refreshToken);
     void changePassword(ChangePasswordRequest request);
-    void logout();
+    void logout(String refreshToken);
+
+    /**
+     * Revoke every token issued to the current user so far.
+     */
+    void logoutAll();
 }
\ No newline at end of file
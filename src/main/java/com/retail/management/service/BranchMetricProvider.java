@@ -0,0 +1,19 @@
+package com.retail.management.service;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * Extension point for additional per-branch figures in the branch performance
+ * report. Providers are called concurrently for different branches, outside the
+ * report's transaction.
+ */
+public interface BranchMetricProvider {
+
+    /**
+     * Key of the metric in {@code BranchPerformanceResponse.customMetrics}
+     */
+    String getName();
+
+    BigDecimal compute(Long branchId, LocalDate startDate, LocalDate endDate);
+}
@@ -0,0 +1,16 @@
+package com.retail.management.service;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+public interface DashboardStreamService {
+
+    /**
+     * Stream of {@code DashboardStatsResponse} changes.
+     */
+    SseEmitter subscribeDashboard();
+
+    /**
+     * Stream of {@code BranchStatsResponse} changes for one branch.
+     */
+    SseEmitter subscribeBranch(Long branchId);
+}
@@ -0,0 +1,7 @@
+package com.retail.management.service;
+
+public interface DocumentNumberService {
+    String nextInvoiceNumber(String branchCode);
+    String nextReturnNumber(String branchCode);
+    String nextCustomerCode();
+}
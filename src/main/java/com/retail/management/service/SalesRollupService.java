@@ -0,0 +1,18 @@
+package com.retail.management.service;
+
+import com.retail.management.event.InvoiceSalesChangedEvent;
+
+import java.time.LocalDate;
+
+public interface SalesRollupService {
+    void onInvoiceSalesChanged(InvoiceSalesChangedEvent event);
+
+    /**
+     * Fold the queued invoice deltas into the rollup
+     *
+     * @return number of deltas folded
+     */
+    int drain();
+
+    int rebuild(LocalDate startDate, LocalDate endDate);
+}
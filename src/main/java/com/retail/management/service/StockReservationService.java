@@ -0,0 +1,32 @@
+package com.retail.management.service;
+
+import com.retail.management.dto.request.stock.StockReservationRequest;
+import com.retail.management.dto.response.stock.StockReservationResponse;
+import com.retail.management.entity.Invoice;
+
+import java.util.Map;
+
+public interface StockReservationService {
+
+    /**
+     * Hold stock for an open basket until checkout or the basket hold times out
+     */
+    StockReservationResponse reserveBasket(StockReservationRequest request);
+
+    void releaseBasket(Long reservationId);
+
+    /**
+     * Hold a pending invoice's stock, taking over the basket hold if one is given
+     */
+    void reserveForInvoice(String invoiceNumber, Long branchId, Map<Long, Integer> quantities, Long basketReservationId);
+
+    /**
+     * Take the invoice's stock once it is paid for
+     */
+    void confirmForInvoice(Invoice invoice);
+
+    /**
+     * Give the invoice's stock back when it is cancelled
+     */
+    void releaseForInvoice(Invoice invoice);
+}
@@ -1,16 +1,30 @@
 package com.retail.management.service;
 
 import com.retail.management.dto.request.product.StockAdjustmentRequest;
+import com.retail.management.dto.request.stock.BulkStockAdjustmentRequest;
+import com.retail.management.dto.request.stock.BulkStockTransferRequest;
 import com.retail.management.dto.request.stock.StockTransferRequest;
+import com.retail.management.dto.response.stock.StockBatchResponse;
 import com.retail.management.dto.response.stock.StockLevelResponse;
+import com.retail.management.dto.response.stock.StockMovementResponse;
 import com.retail.management.enums.StockAdjustmentType;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 public interface StockService {
     void adjustStock(StockAdjustmentRequest request);
     void transferStock(StockTransferRequest request);
+    StockBatchResponse adjustStockBatch(BulkStockAdjustmentRequest request);
+    StockBatchResponse transferStockBatch(BulkStockTransferRequest request);
     StockLevelResponse getStockLevel(Long branchId, Long productId);
     List<StockLevelResponse> getLowStockItems(Long branchId);
     Integer getTotalStockAcrossBranches(Long productId);
+    Integer getStockLevelAt(Long branchId, Long productId, LocalDateTime at);
+    Page<StockMovementResponse> getStockHistory(Long branchId, Long productId, LocalDateTime startDate,
+                                                LocalDateTime endDate, Pageable pageable);
+    Map<Long, Integer> rebuildStockLevels(Long branchId);
 }
\ No newline at end of file
@@ -13,5 +13,6 @@ public interface UserService {
     Page<UserResponse> getUsersByBranch(Long branchId, Pageable pageable);
     UserResponse updateUser(Long id, UpdateUserRequest request);
     void deleteUser(Long id);
+    void revokeTokens(Long id);
     Page<UserResponse> searchUsers(String searchTerm, Pageable pageable);
 }
\ No newline at end of file
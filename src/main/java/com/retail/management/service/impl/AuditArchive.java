@@ -0,0 +1,478 @@
+package com.retail.management.service.impl;
+
+import com.retail.management.cache.CacheInvalidationBus;
+import com.retail.management.entity.AuditLog;
+import com.retail.management.util.BloomFilter;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.PreparedStatement;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Audit logs of closed months, moved out of Postgres into compressed segment
+ * files under {@code app.audit.archive.dir}. A segment holds one month's rows,
+ * ordered by entity, in deflated blocks of about 64 KB, followed by an index
+ * with each block's entity range and a Bloom filter of its correlation IDs.
+ * Segments are written once, under a temporary name that is swapped in when
+ * complete, and read through memory mapping; a lookup inflates only the
+ * blocks that can contain a match. Months over 1 GB are split into several
+ * segments.
+ * <p>
+ * With several nodes the directory must be shared storage: one node writes a
+ * month's segments, then announces it over the {@link CacheInvalidationBus}
+ * so the others pick the files up.
+ */
+@Component
+@Slf4j
+public class AuditArchive implements CacheInvalidationBus.Listener {
+
+    private static final int MAGIC = 0x41554441;
+    private static final int BLOCK_SIZE = 64 * 1024;
+    private static final long MAX_SEGMENT_SIZE = 1L << 30;
+    private static final double FALSE_POSITIVE_RATE = 0.01;
+    private static final String SUFFIX = ".seg";
+    static final String MESSAGE_NAME = "audit-archive";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final CacheInvalidationBus invalidationBus;
+    private final Path directory;
+    private final List<Segment> segments = new CopyOnWriteArrayList<>();
+
+    public AuditArchive(JdbcTemplate jdbcTemplate,
+                        TransactionTemplate transactionTemplate,
+                        CacheInvalidationBus invalidationBus,
+                        @Value("${app.audit.archive.dir:audit-archive}") String directory) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.invalidationBus = invalidationBus;
+        this.directory = Path.of(directory);
+        invalidationBus.register(MESSAGE_NAME, this);
+    }
+
+    @PostConstruct
+    public void load() throws IOException {
+        rescan();
+        log.info("Loaded {} audit archive segments from {}", segments.size(), directory);
+    }
+
+    /**
+     * Another node archived the named partition; reopen its segments, which
+     * may replace files this node still has mapped.
+     */
+    @Override
+    public void onMessage(String table) {
+        segments.removeIf(segment -> segment.file.getFileName().toString().startsWith(table + "-"));
+        onResync();
+    }
+
+    @Override
+    public void onResync() {
+        try {
+            rescan();
+        } catch (IOException e) {
+            log.warn("Could not rescan audit archive {}: {}", directory, e.getMessage());
+        }
+    }
+
+    /**
+     * Open segments not loaded yet and forget those whose files are gone.
+     */
+    private synchronized void rescan() throws IOException {
+        if (!Files.isDirectory(directory)) {
+            segments.clear();
+            return;
+        }
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(f -> f.getFileName().toString().endsWith(SUFFIX)).sorted().toList();
+        }
+        segments.removeIf(segment -> !files.contains(segment.file));
+        for (Path file : files) {
+            if (segments.stream().noneMatch(segment -> segment.file.equals(file))) {
+                segments.add(Segment.open(file));
+            }
+        }
+    }
+
+    /**
+     * Write the rows of a detached audit_logs partition to segments named after
+     * it. Segments left by an earlier attempt for the same partition are
+     * replaced, so a failed archive run can simply be repeated.
+     */
+    public int archive(String table) throws IOException {
+        Files.createDirectories(directory);
+        removeSegments(table);
+
+        List<Path> written = new ArrayList<>();
+        int[] rows = new int[1];
+        try (SegmentWriter writer = new SegmentWriter(table, written)) {
+            // Streamed with a cursor, which Postgres only uses inside a transaction
+            transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+                PreparedStatement statement = connection.prepareStatement(
+                        "SELECT id, entity_type, entity_id, action, performed_by, old_values, new_values, " +
+                        "ip_address, correlation_id, created_at FROM " + table +
+                        " ORDER BY entity_type, entity_id, created_at");
+                statement.setFetchSize(1000);
+                return statement;
+            }, (RowCallbackHandler) rs -> {
+                try {
+                    writer.append(AuditLog.builder()
+                            .id(rs.getLong(1))
+                            .entityType(rs.getString(2))
+                            .entityId(rs.getLong(3))
+                            .action(rs.getString(4))
+                            .performedBy(rs.getString(5))
+                            .oldValues(rs.getString(6))
+                            .newValues(rs.getString(7))
+                            .ipAddress(rs.getString(8))
+                            .correlationId(rs.getString(9))
+                            .createdAt(rs.getTimestamp(10).toLocalDateTime())
+                            .build());
+                    rows[0]++;
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }));
+        }
+
+        for (Path tmp : written) {
+            Path file = tmp.resolveSibling(tmp.getFileName().toString().replace(".tmp", ""));
+            Files.move(tmp, file, StandardCopyOption.ATOMIC_MOVE);
+            segments.add(Segment.open(file));
+        }
+        log.info("Archived {} audit log rows from {} into {} segments", rows[0], table, written.size());
+        invalidationBus.publishMessage(MESSAGE_NAME, table);
+        return rows[0];
+    }
+
+    /**
+     * Archived entries of an entity, newest first.
+     */
+    public List<AuditLog> findAuditTrail(String entityType, Long entityId) {
+        return find(block -> block.mightContain(entityType, entityId),
+                entry -> entityType.equals(entry.getEntityType()) && entityId.equals(entry.getEntityId()));
+    }
+
+    /**
+     * Archived entries recorded under a correlation ID, newest first.
+     */
+    public List<AuditLog> findByCorrelationId(String correlationId) {
+        return find(block -> block.correlationIds.mightContain(correlationId),
+                entry -> correlationId.equals(entry.getCorrelationId()));
+    }
+
+    private List<AuditLog> find(Predicate<BlockIndex> candidate, Predicate<AuditLog> match) {
+        List<AuditLog> result = new ArrayList<>();
+        for (Segment segment : segments) {
+            for (BlockIndex block : segment.blocks) {
+                if (candidate.test(block)) {
+                    segment.read(block, match, result);
+                }
+            }
+        }
+        result.sort(Comparator.comparing(AuditLog::getCreatedAt).reversed());
+        return result;
+    }
+
+    private void removeSegments(String table) throws IOException {
+        segments.removeIf(segment -> segment.file.getFileName().toString().startsWith(table + "-"));
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : files.filter(f -> f.getFileName().toString().startsWith(table + "-")).toList()) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    private static void writeString(DataOutput out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Location, entity range and correlation IDs of one compressed block.
+     */
+    private record BlockIndex(long offset, int compressedLength, int length,
+                              String minType, long minId, String maxType, long maxId,
+                              BloomFilter correlationIds) {
+
+        boolean mightContain(String entityType, long entityId) {
+            return compare(entityType, entityId, minType, minId) >= 0
+                    && compare(entityType, entityId, maxType, maxId) <= 0;
+        }
+
+        static int compare(String type, long id, String otherType, long otherId) {
+            int byType = type.compareTo(otherType);
+            return byType != 0 ? byType : Long.compare(id, otherId);
+        }
+
+        void writeTo(DataOutput out) throws IOException {
+            out.writeLong(offset);
+            out.writeInt(compressedLength);
+            out.writeInt(length);
+            writeString(out, minType);
+            out.writeLong(minId);
+            writeString(out, maxType);
+            out.writeLong(maxId);
+            correlationIds.writeTo(out);
+        }
+
+        static BlockIndex readFrom(DataInput in) throws IOException {
+            return new BlockIndex(in.readLong(), in.readInt(), in.readInt(),
+                    readString(in), in.readLong(), readString(in), in.readLong(),
+                    BloomFilter.readFrom(in));
+        }
+    }
+
+    /**
+     * A finished segment file, mapped into memory.
+     */
+    private static final class Segment {
+
+        private final Path file;
+        private final MappedByteBuffer data;
+        private final List<BlockIndex> blocks;
+
+        private Segment(Path file, MappedByteBuffer data, List<BlockIndex> blocks) {
+            this.file = file;
+            this.data = data;
+            this.blocks = blocks;
+        }
+
+        static Segment open(Path file) throws IOException {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                int size = data.capacity();
+                if (size < 12 || data.getInt(size - 4) != MAGIC) {
+                    throw new IOException("Not an audit archive segment: " + file);
+                }
+
+                int indexOffset = (int) data.getLong(size - 12);
+                byte[] index = new byte[size - 12 - indexOffset];
+                data.get(indexOffset, index);
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(index));
+                int count = in.readInt();
+                List<BlockIndex> blocks = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    blocks.add(BlockIndex.readFrom(in));
+                }
+                return new Segment(file, data, List.copyOf(blocks));
+            }
+        }
+
+        void read(BlockIndex block, Predicate<AuditLog> match, List<AuditLog> result) {
+            byte[] bytes = new byte[block.length()];
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(data.slice((int) block.offset(), block.compressedLength()));
+                // One call may return before the whole block is inflated
+                int length = 0;
+                while (length < bytes.length && !inflater.finished()) {
+                    int inflated = inflater.inflate(bytes, length, bytes.length - length);
+                    if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    length += inflated;
+                }
+                if (length != bytes.length) {
+                    throw new DataFormatException("Block inflated to " + length + " of " + bytes.length + " bytes");
+                }
+
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes));
+                while (in.available() > 0) {
+                    AuditLog entry = AuditLog.builder()
+                            .id(in.readLong())
+                            .entityType(readString(in))
+                            .entityId(in.readLong())
+                            .action(readString(in))
+                            .performedBy(readString(in))
+                            .oldValues(readString(in))
+                            .newValues(readString(in))
+                            .ipAddress(readString(in))
+                            .correlationId(readString(in))
+                            .createdAt(LocalDateTime.ofEpochSecond(in.readLong(), in.readInt(), ZoneOffset.UTC))
+                            .build();
+                    if (match.test(entry)) {
+                        result.add(entry);
+                    }
+                }
+            } catch (DataFormatException | IOException e) {
+                throw new IllegalStateException("Corrupt audit archive segment " + file, e);
+            } finally {
+                inflater.end();
+            }
+        }
+    }
+
+    /**
+     * Writes rows into blocks and rolls over to a new segment past the size limit.
+     */
+    private final class SegmentWriter implements AutoCloseable {
+
+        private final String table;
+        private final List<Path> written;
+        private final ByteArrayOutputStream block = new ByteArrayOutputStream(BLOCK_SIZE + 4096);
+        private final DataOutputStream blockOut = new DataOutputStream(block);
+        private final List<String> correlationIds = new ArrayList<>();
+        private final List<BlockIndex> blocks = new ArrayList<>();
+        private final Deflater deflater = new Deflater();
+        private final byte[] compressed = new byte[BLOCK_SIZE];
+
+        private FileOutputStream file;
+        private DataOutputStream out;
+        private String minType;
+        private long minId;
+        private String maxType;
+        private long maxId;
+
+        SegmentWriter(String table, List<Path> written) {
+            this.table = table;
+            this.written = written;
+        }
+
+        void append(AuditLog entry) throws IOException {
+            blockOut.writeLong(entry.getId());
+            writeString(blockOut, entry.getEntityType());
+            blockOut.writeLong(entry.getEntityId());
+            writeString(blockOut, entry.getAction());
+            writeString(blockOut, entry.getPerformedBy());
+            writeString(blockOut, entry.getOldValues());
+            writeString(blockOut, entry.getNewValues());
+            writeString(blockOut, entry.getIpAddress());
+            writeString(blockOut, entry.getCorrelationId());
+            blockOut.writeLong(entry.getCreatedAt().toEpochSecond(ZoneOffset.UTC));
+            blockOut.writeInt(entry.getCreatedAt().getNano());
+
+            // Tracked rather than taken from the first and last row, so the range holds whatever the database's sort order
+            String type = entry.getEntityType();
+            long id = entry.getEntityId();
+            if (minType == null || BlockIndex.compare(type, id, minType, minId) < 0) {
+                minType = type;
+                minId = id;
+            }
+            if (maxType == null || BlockIndex.compare(type, id, maxType, maxId) > 0) {
+                maxType = type;
+                maxId = id;
+            }
+            if (entry.getCorrelationId() != null) {
+                correlationIds.add(entry.getCorrelationId());
+            }
+
+            if (block.size() >= BLOCK_SIZE) {
+                flushBlock();
+            }
+        }
+
+        private void flushBlock() throws IOException {
+            if (block.size() == 0) {
+                return;
+            }
+            if (out == null || out.size() >= MAX_SEGMENT_SIZE) {
+                finishSegment();
+                Path tmp = directory.resolve(String.format("%s-%03d%s.tmp", table, written.size(), SUFFIX));
+                file = new FileOutputStream(tmp.toFile());
+                out = new DataOutputStream(new BufferedOutputStream(file, BLOCK_SIZE));
+                written.add(tmp);
+            }
+
+            long offset = out.size();
+            deflater.reset();
+            deflater.setInput(block.toByteArray());
+            deflater.finish();
+            int compressedLength = 0;
+            while (!deflater.finished()) {
+                int n = deflater.deflate(compressed);
+                out.write(compressed, 0, n);
+                compressedLength += n;
+            }
+
+            BloomFilter filter = BloomFilter.create(correlationIds.size(), FALSE_POSITIVE_RATE);
+            correlationIds.forEach(filter::add);
+            blocks.add(new BlockIndex(offset, compressedLength, block.size(), minType, minId, maxType, maxId, filter));
+
+            block.reset();
+            correlationIds.clear();
+            minType = null;
+            maxType = null;
+        }
+
+        private void finishSegment() throws IOException {
+            if (out == null) {
+                return;
+            }
+            long indexOffset = out.size();
+            out.writeInt(blocks.size());
+            for (BlockIndex index : blocks) {
+                index.writeTo(out);
+            }
+            out.writeLong(indexOffset);
+            out.writeInt(MAGIC);
+            out.flush();
+            file.getFD().sync();
+            out.close();
+            blocks.clear();
+            out = null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                flushBlock();
+                finishSegment();
+            } finally {
+                deflater.end();
+                if (out != null) {
+                    out.close();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,304 @@
+package com.retail.management.service.impl;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps audit_logs range-partitioned by month on created_at, so queries
+ * bounded by date only touch the months they cover and old months can be
+ * detached instead of deleted row by row.
+ * <p>
+ * Hibernate creates audit_logs as a plain table; at startup it is converted
+ * in one transaction, under an advisory lock so that only one of several
+ * nodes starting together does it. The existing rows become the
+ * {@code audit_logs_legacy} partition, except rows from the current month,
+ * which move to that month's partition. Partitions are created ahead of time, with a default partition
+ * catching anything outside them. Partitions older than the retention period
+ * are detached, then either dropped or moved into the {@link AuditArchive}.
+ * That only happens in the scheduled maintenance, which every node runs but
+ * only the one holding a session advisory lock carries out, so startup never
+ * waits on an export and two nodes never archive the same month. The legacy
+ * partition is never touched automatically.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+@Slf4j
+public class AuditLogPartitions {
+
+    private static final String TABLE = "audit_logs";
+    private static final String LEGACY_PARTITION = "audit_logs_legacy";
+    private static final String LOCK_KEY = "hashtext('audit_logs')";
+    private static final Pattern MONTHLY_PARTITION = Pattern.compile("audit_logs_y(\\d{4})m(\\d{2})");
+
+    private static final String CREATE_PARTITIONED_TABLE =
+            "CREATE TABLE audit_logs (" +
+            "id bigint NOT NULL DEFAULT nextval('audit_logs_id_seq'), " +
+            "entity_type varchar(100) NOT NULL, " +
+            "entity_id bigint NOT NULL, " +
+            "action varchar(50) NOT NULL, " +
+            "performed_by varchar(100) NOT NULL, " +
+            "old_values text, " +
+            "new_values text, " +
+            "ip_address varchar(50), " +
+            "correlation_id varchar(100), " +
+            "created_at timestamp(6) NOT NULL, " +
+            "PRIMARY KEY (id, created_at)" +
+            ") PARTITION BY RANGE (created_at)";
+
+    private static final String COLUMNS =
+            "id, entity_type, entity_id, action, performed_by, old_values, new_values, ip_address, correlation_id, created_at";
+
+    private static final List<String> INDEXES = List.of(
+            "CREATE INDEX IF NOT EXISTS idx_audit_logs_performed_by_created_at ON audit_logs (performed_by, created_at)",
+            "CREATE INDEX IF NOT EXISTS idx_audit_logs_entity_created_at ON audit_logs (entity_type, entity_id, created_at)",
+            "CREATE INDEX IF NOT EXISTS idx_audit_logs_correlation_id ON audit_logs (correlation_id)");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final AuditArchive auditArchive;
+    private final boolean enabled;
+    private final int monthsAhead;
+    private final int retentionMonths;
+    private final boolean archive;
+
+    public AuditLogPartitions(JdbcTemplate jdbcTemplate,
+                              TransactionTemplate transactionTemplate,
+                              AuditArchive auditArchive,
+                              @Value("${app.audit.partitions.enabled:true}") boolean enabled,
+                              @Value("${app.audit.partitions.months-ahead:3}") int monthsAhead,
+                              @Value("${app.audit.partitions.retention-months:0}") int retentionMonths,
+                              @Value("${app.audit.partitions.archive:true}") boolean archive) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.auditArchive = auditArchive;
+        this.enabled = enabled;
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = retentionMonths;
+        this.archive = archive;
+    }
+
+    @PostConstruct
+    public void init() {
+        try {
+            if (!enabled) {
+                createIndexes();
+                return;
+            }
+
+            if (!"p".equals(tableKind())) {
+                transactionTemplate.executeWithoutResult(status -> {
+                    jdbcTemplate.query("SELECT pg_advisory_xact_lock(" + LOCK_KEY + ")", rs -> { });
+                    // Another node may have converted the table while this one waited
+                    String kind = tableKind();
+                    if (!"p".equals(kind)) {
+                        partition(!kind.isEmpty());
+                    }
+                });
+            }
+            createPartitions();
+        } catch (DataAccessException e) {
+            // The application works on the plain table; lookups are just slower
+            log.error("Could not set up audit log partitions", e);
+        }
+    }
+
+    /**
+     * Create the coming months' partitions and detach the expired ones,
+     * unless another node is already doing so.
+     */
+    @Scheduled(cron = "${app.audit.partitions.maintenance-cron:0 30 0 * * *}")
+    public void maintain() {
+        if (!enabled) {
+            return;
+        }
+
+        // The lock belongs to this connection's session; the work itself uses other connections
+        Boolean ran = jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            if (!lockQuery(connection, "SELECT pg_try_advisory_lock(" + LOCK_KEY + ")")) {
+                return false;
+            }
+            try {
+                createPartitions();
+                if (retentionMonths > 0) {
+                    detachBefore(YearMonth.now().minusMonths(retentionMonths));
+                }
+            } finally {
+                lockQuery(connection, "SELECT pg_advisory_unlock(" + LOCK_KEY + ")");
+            }
+            return true;
+        });
+        if (!Boolean.TRUE.equals(ran)) {
+            log.info("Skipped audit log maintenance; another node is running it");
+        }
+    }
+
+    private void createPartitions() {
+        YearMonth current = YearMonth.now();
+        for (int i = 0; i <= monthsAhead; i++) {
+            try {
+                createPartition(current.plusMonths(i));
+            } catch (DataAccessException e) {
+                log.warn("Could not create audit log partition for {}: {}", current.plusMonths(i), e.getMessage());
+            }
+        }
+    }
+
+    private void partition(boolean existing) {
+        YearMonth current = YearMonth.now();
+
+        if (existing) {
+            log.info("Converting {} to a partitioned table", TABLE);
+            jdbcTemplate.execute("LOCK TABLE audit_logs IN ACCESS EXCLUSIVE MODE");
+            jdbcTemplate.execute("ALTER TABLE audit_logs RENAME TO " + LEGACY_PARTITION);
+
+            // The partitioned table's key must include created_at, and ids come from a shared sequence
+            Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM " + LEGACY_PARTITION, Long.class);
+            List<String> primaryKeys = jdbcTemplate.queryForList(
+                    "SELECT conname FROM pg_constraint WHERE conrelid = to_regclass(?) AND contype = 'p'",
+                    String.class, LEGACY_PARTITION);
+            for (String primaryKey : primaryKeys) {
+                jdbcTemplate.execute("ALTER TABLE " + LEGACY_PARTITION + " DROP CONSTRAINT \"" + primaryKey + "\"");
+            }
+            jdbcTemplate.execute("ALTER TABLE " + LEGACY_PARTITION + " ALTER COLUMN id DROP IDENTITY IF EXISTS");
+            jdbcTemplate.execute("ALTER TABLE " + LEGACY_PARTITION + " ALTER COLUMN id DROP DEFAULT");
+            jdbcTemplate.execute("CREATE SEQUENCE IF NOT EXISTS audit_logs_id_seq");
+            if (maxId != null) {
+                jdbcTemplate.queryForObject("SELECT setval('audit_logs_id_seq', ?)", Long.class, maxId);
+            }
+        } else {
+            jdbcTemplate.execute("CREATE SEQUENCE IF NOT EXISTS audit_logs_id_seq");
+        }
+
+        jdbcTemplate.execute(CREATE_PARTITIONED_TABLE);
+        jdbcTemplate.execute("ALTER SEQUENCE audit_logs_id_seq OWNED BY audit_logs.id");
+        jdbcTemplate.execute("CREATE TABLE audit_logs_default PARTITION OF audit_logs DEFAULT");
+        for (int i = 0; i <= monthsAhead; i++) {
+            createPartition(current.plusMonths(i));
+        }
+
+        if (existing) {
+            LocalDate boundary = current.atDay(1);
+            int moved = jdbcTemplate.update("INSERT INTO audit_logs (" + COLUMNS + ") SELECT " + COLUMNS +
+                    " FROM " + LEGACY_PARTITION + " WHERE created_at >= ?", boundary.atStartOfDay());
+            jdbcTemplate.update("DELETE FROM " + LEGACY_PARTITION + " WHERE created_at >= ?", boundary.atStartOfDay());
+            jdbcTemplate.execute("ALTER TABLE audit_logs ATTACH PARTITION " + LEGACY_PARTITION +
+                    " FOR VALUES FROM (MINVALUE) TO ('" + boundary + "')");
+            log.info("Kept existing audit logs before {} in {}; moved {} newer rows", boundary, LEGACY_PARTITION, moved);
+        }
+
+        createIndexes();
+    }
+
+    /**
+     * Create a month's partition unless it exists. Checks first instead of
+     * catching the failure, as a failed statement would abort the enclosing
+     * transaction during the conversion.
+     */
+    private void createPartition(YearMonth month) {
+        String name = partitionName(month);
+        if (Boolean.TRUE.equals(jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, name))) {
+            return;
+        }
+
+        LocalDate from = month.atDay(1);
+        LocalDate to = month.plusMonths(1).atDay(1);
+        Boolean inDefault = jdbcTemplate.queryForObject(
+                "SELECT EXISTS (SELECT 1 FROM audit_logs_default WHERE created_at >= ? AND created_at < ?)",
+                Boolean.class, from.atStartOfDay(), to.atStartOfDay());
+        if (Boolean.TRUE.equals(inDefault)) {
+            // Attaching the range would conflict with these rows; they stay where they are
+            log.warn("Not creating audit log partition {}: the default partition has rows for {}", name, month);
+            return;
+        }
+
+        jdbcTemplate.execute("CREATE TABLE " + name + " PARTITION OF audit_logs FOR VALUES FROM ('" +
+                from + "') TO ('" + to + "')");
+    }
+
+    private void detachBefore(YearMonth cutoff) {
+        List<String> partitions = jdbcTemplate.queryForList(
+                "SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+                "WHERE i.inhparent = to_regclass(?)", String.class, TABLE);
+
+        for (String partition : partitions) {
+            Matcher matcher = MONTHLY_PARTITION.matcher(partition);
+            if (!matcher.matches()) {
+                continue;
+            }
+            YearMonth month = YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+            if (!month.isBefore(cutoff)) {
+                continue;
+            }
+
+            jdbcTemplate.execute("ALTER TABLE audit_logs DETACH PARTITION " + partition);
+            if (archive) {
+                log.info("Detached audit log partition {} for archiving", partition);
+            } else {
+                jdbcTemplate.execute("DROP TABLE " + partition);
+                log.info("Dropped audit log partition {}", partition);
+            }
+        }
+
+        if (archive) {
+            archiveDetached();
+        }
+    }
+
+    /**
+     * Move detached months into the archive, including any left over by an
+     * earlier run that failed part way.
+     */
+    private void archiveDetached() {
+        List<String> detached = jdbcTemplate.queryForList(
+                "SELECT relname FROM pg_class WHERE relkind = 'r' AND NOT relispartition " +
+                "AND relname ~ '^audit_logs_y[0-9]{4}m[0-9]{2}$' ORDER BY relname", String.class);
+
+        for (String table : detached) {
+            try {
+                auditArchive.archive(table);
+                jdbcTemplate.execute("DROP TABLE " + table);
+            } catch (IOException | DataAccessException e) {
+                log.error("Could not archive audit log partition {}; it is kept for the next run", table, e);
+            }
+        }
+    }
+
+    private static boolean lockQuery(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement(); ResultSet rs = statement.executeQuery(sql)) {
+            return rs.next() && rs.getBoolean(1);
+        }
+    }
+
+    private String tableKind() {
+        return jdbcTemplate.queryForObject(
+                "SELECT COALESCE((SELECT relkind::text FROM pg_class WHERE oid = to_regclass(?)), '')",
+                String.class, TABLE);
+    }
+
+    private void createIndexes() {
+        INDEXES.forEach(jdbcTemplate::execute);
+    }
+
+    private static String partitionName(YearMonth month) {
+        return String.format("audit_logs_y%04dm%02d", month.getYear(), month.getMonthValue());
+    }
+}
@@ -0,0 +1,218 @@
+package com.retail.management.service.impl;
+
+import com.retail.management.entity.AuditLog;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Writes audit log rows in JDBC batches from a background thread. Callers
+ * only append a complete entry, creation time included, to a bounded
+ * lock-free queue; the writer flushes whenever a batch fills up or the flush
+ * interval passes. When the queue is full a
+ * caller waits up to the offer timeout for room and then drops the entry, so
+ * a slow database never holds up business requests for long. Pending entries
+ * are written before shutdown completes.
+ * <p>
+ * Metrics: {@code audit.log.queue.size}, {@code audit.log.written},
+ * {@code audit.log.failed}, {@code audit.log.backpressure} (callers that had
+ * to wait) and {@code audit.log.dropped}.
+ */
+@Component
+@Slf4j
+public class AuditLogWriter implements SmartLifecycle {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO audit_logs (entity_type, entity_id, action, performed_by, old_values, new_values, " +
+            "ip_address, correlation_id, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final long OFFER_RETRY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int capacity;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final long offerTimeoutNanos;
+
+    private final Queue<AuditLog> queue = new ConcurrentLinkedQueue<>();
+    // Reserved slots, counted separately as ConcurrentLinkedQueue.size() walks the queue
+    private final AtomicInteger size = new AtomicInteger();
+
+    private final Counter written;
+    private final Counter failed;
+    private final Counter backpressure;
+    private final Counter dropped;
+
+    private volatile boolean running;
+    private volatile Thread writerThread;
+
+    public AuditLogWriter(JdbcTemplate jdbcTemplate,
+                          MeterRegistry meterRegistry,
+                          @Value("${app.audit.queue-capacity:10000}") int capacity,
+                          @Value("${app.audit.batch-size:200}") int batchSize,
+                          @Value("${app.audit.flush-interval-ms:500}") long flushIntervalMillis,
+                          @Value("${app.audit.offer-timeout-ms:50}") long offerTimeoutMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.offerTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(offerTimeoutMillis);
+
+        Gauge.builder("audit.log.queue.size", size, AtomicInteger::get)
+                .description("Audit log entries waiting to be written")
+                .register(meterRegistry);
+        this.written = Counter.builder("audit.log.written").register(meterRegistry);
+        this.failed = Counter.builder("audit.log.failed").register(meterRegistry);
+        this.backpressure = Counter.builder("audit.log.backpressure").register(meterRegistry);
+        this.dropped = Counter.builder("audit.log.dropped").register(meterRegistry);
+    }
+
+    /**
+     * Queue an entry for writing. Returns false if it was dropped because the
+     * queue stayed full for the whole offer timeout.
+     */
+    public boolean submit(AuditLog auditLog) {
+        if (!reserve()) {
+            backpressure.increment();
+            long deadline = System.nanoTime() + offerTimeoutNanos;
+            do {
+                wakeWriter();
+                LockSupport.parkNanos(OFFER_RETRY_NANOS);
+                if (System.nanoTime() - deadline > 0) {
+                    dropped.increment();
+                    log.warn("Audit log queue full, dropped {} {} {}",
+                            auditLog.getAction(), auditLog.getEntityType(), auditLog.getEntityId());
+                    return false;
+                }
+            } while (!reserve());
+        }
+
+        queue.offer(auditLog);
+        if (size.get() >= batchSize) {
+            wakeWriter();
+        }
+        return true;
+    }
+
+    private boolean reserve() {
+        int current;
+        do {
+            current = size.get();
+            if (current >= capacity) {
+                return false;
+            }
+        } while (!size.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    private void wakeWriter() {
+        Thread thread = writerThread;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        writerThread = Thread.ofPlatform()
+                .name("audit-log-writer")
+                .daemon(true)
+                .start(this::run);
+    }
+
+    @Override
+    public synchronized void stop() {
+        Thread thread = writerThread;
+        running = false;
+        if (thread == null) {
+            return;
+        }
+
+        LockSupport.unpark(thread);
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writerThread = null;
+        if (size.get() > 0) {
+            log.warn("Audit log writer stopped with {} entries unwritten", size.get());
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        // Stop after the web server and the components that record audit entries
+        return Integer.MIN_VALUE + 1000;
+    }
+
+    private void run() {
+        List<AuditLog> batch = new ArrayList<>(batchSize);
+        long lastFlush = System.nanoTime();
+
+        while (running || size.get() > 0) {
+            long sinceFlush = System.nanoTime() - lastFlush;
+            if (running && size.get() < batchSize && sinceFlush < flushIntervalNanos) {
+                LockSupport.parkNanos(this, flushIntervalNanos - sinceFlush);
+                continue;
+            }
+
+            drainTo(batch);
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch.clear();
+            }
+            lastFlush = System.nanoTime();
+        }
+    }
+
+    private void drainTo(List<AuditLog> batch) {
+        AuditLog entry;
+        while (batch.size() < batchSize && (entry = queue.poll()) != null) {
+            batch.add(entry);
+        }
+        size.addAndGet(-batch.size());
+    }
+
+    private void write(List<AuditLog> batch) {
+        try {
+            jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, entry) -> {
+                ps.setString(1, entry.getEntityType());
+                ps.setLong(2, entry.getEntityId());
+                ps.setString(3, entry.getAction());
+                ps.setString(4, entry.getPerformedBy());
+                ps.setString(5, entry.getOldValues());
+                ps.setString(6, entry.getNewValues());
+                ps.setString(7, entry.getIpAddress());
+                ps.setString(8, entry.getCorrelationId());
+                ps.setTimestamp(9, Timestamp.valueOf(entry.getCreatedAt()));
+            });
+            written.increment(batch.size());
+        } catch (RuntimeException e) {
+            failed.increment(batch.size());
+            log.error("Failed to write {} audit log entries", batch.size(), e);
+        }
+    }
+}
@@ -11,14 +11,17 @@ import com.retail.management.util.IpAddressUtil;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestContextHolder;
 
 import jakarta.servlet.http.HttpServletRequest;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
@@ -27,16 +30,23 @@ public class AuditServiceImpl implements AuditService {
     private final AuditLogRepository auditLogRepository;
     private final AuditLogMapper auditLogMapper;
     private final HttpServletRequest request;
+    private final AuditLogWriter auditLogWriter;
+    private final AuditArchive auditArchive;
 
+    /**
+     * Record an action. Who, where from and the correlation ID are captured on
+     * the calling thread; the row is written in the background by
+     * {@link AuditLogWriter}, and only once the caller's transaction commits.
+     */
     @Override
-    @Async("notificationExecutor")
-    @Transactional
     public void logAction(String entityType, Long entityId, String action,
                           String oldValues, String newValues) {
 
         String username = SecurityUtils.getCurrentUsername().orElse("SYSTEM");
-        String ipAddress = IpAddressUtil.getClientIpAddress(request);
-        String correlationId = CorrelationIdUtil.get();
+        String ipAddress = RequestContextHolder.getRequestAttributes() != null
+                ? IpAddressUtil.getClientIpAddress(request)
+                : null;
+        String correlationId = CorrelationIdUtil.current();
 
         AuditLog log = AuditLog.builder()
                 .entityType(entityType)
@@ -47,16 +57,36 @@ public class AuditServiceImpl implements AuditService {
                 .newValues(newValues)
                 .ipAddress(ipAddress)
                 .correlationId(correlationId)
+                .createdAt(LocalDateTime.now())
                 .build();
 
-        auditLogRepository.save(log);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    auditLogWriter.submit(log);
+                }
+            });
+        } else {
+            auditLogWriter.submit(log);
+        }
     }
 
     @Override
     @Transactional(readOnly = true)
     public List<AuditLogResponse> getAuditTrail(String entityType, Long entityId) {
-        return auditLogRepository.findAuditTrail(entityType, entityId)
-                .stream()
+        // Archived months are older than anything still in the table
+        return Stream.concat(auditLogRepository.findAuditTrail(entityType, entityId).stream(),
+                        auditArchive.findAuditTrail(entityType, entityId).stream())
+                .map(auditLogMapper::toResponse)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<AuditLogResponse> getCorrelatedActions(String correlationId) {
+        return Stream.concat(auditLogRepository.findByCorrelationId(correlationId).stream(),
+                        auditArchive.findByCorrelationId(correlationId).stream())
                 .map(auditLogMapper::toResponse)
                 .collect(Collectors.toList());
     }
@@ -65,7 +95,7 @@ public class AuditServiceImpl implements AuditService {
     @Transactional(readOnly = true)
     public Page<AuditLogResponse> getUserActions(String username, LocalDateTime startDate,
                                                  LocalDateTime endDate, Pageable pageable) {
-        return auditLogRepository.findByPerformedBy(username, pageable)
+        return auditLogRepository.findUserActions(username, startDate, endDate, pageable)
                 .map(auditLogMapper::toResponse);
     }
 }
@@ -7,6 +7,7 @@ import com.retail.management.dto.request.auth.RegisterRequest;
 import com.retail.management.dto.response.auth.LoginResponse;
 import com.retail.management.dto.response.auth.TokenResponse;
 import com.retail.management.dto.response.user.UserResponse;
+import com.retail.management.entity.Branch;
 import com.retail.management.entity.Role;
 import com.retail.management.entity.User;
 import com.retail.management.exception.DuplicateResourceException;
@@ -16,25 +17,32 @@ import com.retail.management.mapper.UserMapper;
 import com.retail.management.repository.BranchRepository;
 import com.retail.management.repository.RoleRepository;
 import com.retail.management.repository.UserRepository;
+import com.retail.management.security.AuthRateLimiter;
 import com.retail.management.security.JwtTokenProvider;
+import com.retail.management.security.PasswordHasher;
 import com.retail.management.security.SecurityUtils;
+import com.retail.management.security.TokenRevocationList;
 import com.retail.management.service.AuthService;
+import com.retail.management.event.UserChangedEvent;
+import io.jsonwebtoken.Claims;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.authentication.AuthenticationManager;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.Authentication;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 @Slf4j
 public class AuthServiceImpl implements AuthService {
 
-    private final AuthenticationManager authenticationManager;
     private final UserRepository userRepository;
     private final RoleRepository roleRepository;
     private final BranchRepository branchRepository;
@@ -42,10 +50,14 @@ public class AuthServiceImpl implements AuthService {
     private final PasswordEncoder passwordEncoder;
     private final UserMapper userMapper;
     private final JwtConfig jwtConfig;
+    private final TokenRevocationList tokenRevocationList;
+    private final PasswordHasher passwordHasher;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final AuthRateLimiter rateLimiter;
 
     @Autowired
-    public AuthServiceImpl(AuthenticationManager authenticationManager, UserRepository userRepository, RoleRepository roleRepository, BranchRepository branchRepository, JwtTokenProvider jwtTokenProvider, PasswordEncoder passwordEncoder, UserMapper userMapper, JwtConfig jwtConfig) {
-        this.authenticationManager = authenticationManager;
+    public AuthServiceImpl(UserRepository userRepository, RoleRepository roleRepository, BranchRepository branchRepository, JwtTokenProvider jwtTokenProvider, PasswordEncoder passwordEncoder, UserMapper userMapper, JwtConfig jwtConfig, TokenRevocationList tokenRevocationList, PasswordHasher passwordHasher, TransactionTemplate transactionTemplate, ApplicationEventPublisher eventPublisher, AuthRateLimiter rateLimiter) {
         this.userRepository = userRepository;
         this.roleRepository = roleRepository;
         this.branchRepository = branchRepository;
@@ -53,47 +65,55 @@ public class AuthServiceImpl implements AuthService {
         this.passwordEncoder = passwordEncoder;
         this.userMapper = userMapper;
         this.jwtConfig = jwtConfig;
+        this.tokenRevocationList = tokenRevocationList;
+        this.passwordHasher = passwordHasher;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.rateLimiter = rateLimiter;
     }
 
     @Override
-    @Transactional
-    public LoginResponse login(LoginRequest request) {
+    @Transactional(readOnly = true)
+    public CompletableFuture<LoginResponse> login(LoginRequest request) {
         log.info("Login attempt for user: {}", request.getUsername());
 
-        // Authenticate user
-        Authentication authentication = authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(
-                        request.getUsername(),
-                        request.getPassword()
-                )
-        );
-
-        SecurityContextHolder.getContext().setAuthentication(authentication);
-
-        // Generate tokens
-        String accessToken = jwtTokenProvider.generateToken(authentication);
-        String refreshToken = jwtTokenProvider.generateRefreshToken(authentication.getName());
-
-        // Get user details
         User user = userRepository.findByUsername(request.getUsername())
-                .orElseThrow(() -> new ResourceNotFoundException("User not found"));
+                .filter(User::getActive)
+                .orElse(null);
+
+        if (user == null) {
+            return passwordHasher.matchesNothing(request.getPassword())
+                    .thenApply(matches -> {
+                        rateLimiter.recordFailedLogin(request.getUsername());
+                        throw new BadCredentialsException("Bad credentials");
+                    });
+        }
 
+        // Everything needed from the entity is read here; the password check completes on another thread
+        Long userId = user.getId();
+        String username = user.getUsername();
+        String encodedPassword = user.getPassword();
+        String roles = "ROLE_" + user.getRole().getName();
         UserResponse userResponse = userMapper.toResponse(user);
 
-        log.info("User logged in successfully: {}", request.getUsername());
-
-        return LoginResponse.builder()
-                .accessToken(accessToken)
-                .refreshToken(refreshToken)
-                .tokenType("Bearer")
-                .expiresIn(jwtConfig.getExpiration())
-                .user(userResponse)
-                .build();
+        return passwordHasher.matches(request.getPassword(), encodedPassword)
+                .thenApply(matches -> {
+                    if (!matches) {
+                        rateLimiter.recordFailedLogin(request.getUsername());
+                        throw new BadCredentialsException("Bad credentials");
+                    }
+                    if (passwordHasher.upgradeEncoding(encodedPassword)) {
+                        rehash(userId, request.getPassword(), encodedPassword);
+                    }
+
+                    log.info("User logged in successfully: {}", username);
+                    return issueTokens(username, roles, userResponse);
+                });
     }
 
     @Override
-    @Transactional
-    public LoginResponse register(RegisterRequest request) {
+    @Transactional(readOnly = true)
+    public CompletableFuture<LoginResponse> register(RegisterRequest request) {
         log.info("Registration attempt for username: {}", request.getUsername());
 
         // Check if username exists
@@ -110,46 +130,67 @@ public class AuthServiceImpl implements AuthService {
         Role role = roleRepository.findById(request.getRoleId())
                 .orElseThrow(() -> new ResourceNotFoundException("Role not found"));
 
-        // Create user
-        User user = User.builder()
-                .username(request.getUsername())
-                .email(request.getEmail())
-                .password(passwordEncoder.encode(request.getPassword()))
-                .firstName(request.getFirstName())
-                .lastName(request.getLastName())
-                .phone(request.getPhone())
-                .role(role)
-                .active(true)
-                .build();
-
-        // Set branch if provided
-        if (request.getBranchId() != null) {
-            user.setBranch(branchRepository.findById(request.getBranchId())
-                    .orElseThrow(() -> new ResourceNotFoundException("Branch not found")));
-        }
-
-        user = userRepository.save(user);
-
-        log.info("User registered successfully: {}", user.getUsername());
+        // Get branch if provided
+        Branch branch = request.getBranchId() == null ? null : branchRepository.findById(request.getBranchId())
+                .orElseThrow(() -> new ResourceNotFoundException("Branch not found"));
+
+        return passwordHasher.encode(request.getPassword())
+                .thenApply(encodedPassword -> transactionTemplate.execute(status -> {
+                    User user = User.builder()
+                            .username(request.getUsername())
+                            .email(request.getEmail())
+                            .password(encodedPassword)
+                            .firstName(request.getFirstName())
+                            .lastName(request.getLastName())
+                            .phone(request.getPhone())
+                            .role(role)
+                            .branch(branch)
+                            .active(true)
+                            .build();
+
+                    user = userRepository.save(user);
+                    eventPublisher.publishEvent(new UserChangedEvent(user.getId()));
+
+                    log.info("User registered successfully: {}", user.getUsername());
+
+                    // Sign the new user in without verifying the password just hashed
+                    return issueTokens(user.getUsername(), "ROLE_" + role.getName(), userMapper.toResponse(user));
+                }));
+    }
 
-        // Auto-login after registration
-        LoginRequest loginRequest = LoginRequest.builder()
-                .username(request.getUsername())
-                .password(request.getPassword())
+    private LoginResponse issueTokens(String username, String roles, UserResponse userResponse) {
+        return LoginResponse.builder()
+                .accessToken(jwtTokenProvider.generateTokenFromUsername(username, roles))
+                .refreshToken(jwtTokenProvider.generateRefreshToken(username))
+                .tokenType("Bearer")
+                .expiresIn(jwtConfig.getExpiration())
+                .user(userResponse)
                 .build();
+    }
 
-        return login(loginRequest);
+    /**
+     * Re-hash a password stored with a lower work factor than the current one, in
+     * the background, so raising the cost needs no password resets.
+     */
+    private void rehash(Long userId, String rawPassword, String oldHash) {
+        passwordHasher.encode(rawPassword)
+                .thenAccept(newHash -> userRepository.updatePasswordHash(userId, oldHash, newHash))
+                .exceptionally(ex -> {
+                    log.warn("Could not upgrade password hash of user {}: {}", userId, ex.getMessage());
+                    return null;
+                });
     }
 
     @Override
     public TokenResponse refreshToken(String refreshToken) {
         log.info("Token refresh attempt");
 
-        if (!jwtTokenProvider.validateToken(refreshToken)) {
+        Claims claims = jwtTokenProvider.parseClaims(refreshToken);
+        if (claims == null || tokenRevocationList.isRevoked(claims)) {
             throw new UnauthorizedException("Invalid refresh token");
         }
 
-        String username = jwtTokenProvider.getUsernameFromToken(refreshToken);
+        String username = claims.getSubject();
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new ResourceNotFoundException("User not found"));
 
@@ -183,13 +224,46 @@ public class AuthServiceImpl implements AuthService {
         user.setPassword(passwordEncoder.encode(request.getNewPassword()));
         userRepository.save(user);
 
+        // Sessions opened with the old password must not outlive it
+        tokenRevocationList.revokeUser(username, Instant.now());
+
         log.info("Password changed for user: {}", username);
     }
 
     @Override
-    public void logout() {
+    @Transactional
+    public void logout(String refreshToken) {
         String username = SecurityUtils.getCurrentUsername().orElse("Unknown");
+
+        SecurityUtils.getCurrentToken()
+                .map(jwtTokenProvider::parseClaims)
+                .ifPresent(this::revoke);
+
+        if (refreshToken != null) {
+            Claims claims = jwtTokenProvider.parseClaims(refreshToken);
+            if (claims != null && claims.getSubject().equals(username)) {
+                revoke(claims);
+            }
+        }
+
         SecurityContextHolder.clearContext();
         log.info("User logged out: {}", username);
     }
+
+    @Override
+    @Transactional
+    public void logoutAll() {
+        String username = SecurityUtils.getCurrentUsername()
+                .orElseThrow(() -> new UnauthorizedException("User not authenticated"));
+
+        tokenRevocationList.revokeUser(username, Instant.now());
+        SecurityContextHolder.clearContext();
+        log.info("User logged out of all sessions: {}", username);
+    }
+
+    private void revoke(Claims claims) {
+        if (claims.getId() != null) {
+            tokenRevocationList.revokeToken(claims.getId(), claims.getExpiration().toInstant());
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,131 @@
+package com.retail.management.service.impl;
+
+import com.retail.management.service.BranchMetricProvider;
+import com.retail.management.util.CorrelationIdUtil;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs the registered {@link BranchMetricProvider}s for many branches at once on
+ * virtual threads. At most {@code app.report.branch-metrics.parallelism} branches
+ * are computed concurrently; further branches wait for a free slot on their own
+ * thread, so submitting never blocks the caller. The timeout runs from the call
+ * and covers that wait; providers still running when it expires are interrupted.
+ */
+@Component
+@Slf4j
+public class BranchMetricsCollector {
+
+    private final List<BranchMetricProvider> providers;
+    private final SimpleAsyncTaskExecutor executor;
+    private final Semaphore slots;
+    private final long timeoutMillis;
+
+    public BranchMetricsCollector(ObjectProvider<BranchMetricProvider> providers,
+                                  @Value("${app.report.branch-metrics.parallelism:16}") int parallelism,
+                                  @Value("${app.report.branch-metrics.timeout-ms:10000}") long timeoutMillis) {
+        this.providers = providers.orderedStream().toList();
+        this.timeoutMillis = timeoutMillis;
+        this.slots = new Semaphore(parallelism);
+        this.executor = new SimpleAsyncTaskExecutor("branch-metrics-");
+        this.executor.setVirtualThreads(true);
+        this.executor.setTaskDecorator(CorrelationIdUtil.TASK_DECORATOR);
+    }
+
+    public boolean hasProviders() {
+        return !providers.isEmpty();
+    }
+
+    /**
+     * Compute every provider's metric for each branch. A metric whose provider fails
+     * is left out for that branch; a branch not finished within the timeout gets
+     * no metrics.
+     *
+     * @return metrics by name, keyed by branch ID
+     */
+    public Map<Long, Map<String, BigDecimal>> collect(Collection<Long> branchIds, LocalDate startDate, LocalDate endDate) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+
+        Map<Long, CompletableFuture<Map<String, BigDecimal>>> results = new LinkedHashMap<>();
+        List<Future<?>> tasks = new ArrayList<>();
+        for (Long branchId : branchIds) {
+            CompletableFuture<Map<String, BigDecimal>> result = new CompletableFuture<>();
+            // A plain task rather than supplyAsync, so that cancelling it interrupts the thread
+            tasks.add(executor.submit(() -> {
+                try {
+                    result.complete(computeBranch(branchId, startDate, endDate));
+                } catch (InterruptedException e) {
+                    result.cancel(false);
+                }
+            }));
+            results.put(branchId, result);
+        }
+
+        try {
+            CompletableFuture.allOf(results.values().toArray(CompletableFuture[]::new))
+                    .completeOnTimeout(null, Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)
+                    .get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // Not expected, computeBranch handles provider failures; reported per branch below
+        }
+        // Settle unfinished branches first, so a provider returning on interrupt cannot still complete one
+        results.values().forEach(result -> result.cancel(false));
+        tasks.forEach(task -> task.cancel(true));
+
+        Map<Long, Map<String, BigDecimal>> metrics = new LinkedHashMap<>();
+        results.forEach((branchId, result) -> {
+            if (result.isDone() && !result.isCompletedExceptionally()) {
+                metrics.put(branchId, result.join());
+            } else {
+                log.warn("Custom metrics for branch {} not available within {} ms", branchId, timeoutMillis);
+                metrics.put(branchId, Map.of());
+            }
+        });
+        return metrics;
+    }
+
+    private Map<String, BigDecimal> computeBranch(Long branchId, LocalDate startDate, LocalDate endDate)
+            throws InterruptedException {
+        slots.acquire();
+        try {
+            Map<String, BigDecimal> values = new LinkedHashMap<>();
+            for (BranchMetricProvider provider : providers) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new InterruptedException();
+                }
+                try {
+                    values.put(provider.getName(), provider.compute(branchId, startDate, endDate));
+                } catch (RuntimeException e) {
+                    log.warn("Metric {} failed for branch {}: {}", provider.getName(), branchId, e.getMessage());
+                }
+            }
+            return values;
+        } finally {
+            slots.release();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.close();
+    }
+}
@@ -1,5 +1,7 @@
 package com.retail.management.service.impl;
 
+import com.retail.management.cache.CatalogCache;
+import com.retail.management.config.CacheConfig;
 import com.retail.management.dto.request.branch.CreateBranchRequest;
 import com.retail.management.dto.request.branch.UpdateBranchRequest;
 import com.retail.management.dto.response.branch.BranchResponse;
@@ -12,7 +14,6 @@ import com.retail.management.service.BranchService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -29,6 +30,7 @@ public class BranchServiceImpl implements BranchService {
 
     private final BranchRepository branchRepository;
     private final BranchMapper branchMapper;
+    private final CatalogCache catalogCache;
 
     @Override
     @Transactional
@@ -50,11 +52,8 @@ public class BranchServiceImpl implements BranchService {
 
     @Override
     @Transactional(readOnly = true)
-    @Cacheable(value = "branches", key = "#id")
     public BranchResponse getBranchById(Long id) {
-        Branch branch = branchRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Branch", "id", id));
-        return branchMapper.toResponse(branch);
+        return branchMapper.toResponse(catalogCache.getBranch(id));
     }
 
     @Override
@@ -75,7 +74,7 @@ public class BranchServiceImpl implements BranchService {
 
     @Override
     @Transactional
-    @CacheEvict(value = "branches", key = "#id")
+    @CacheEvict(value = CacheConfig.BRANCHES, key = "#id")
     public BranchResponse updateBranch(Long id, UpdateBranchRequest request) {
         log.info("Updating branch: {}", id);
 
@@ -92,7 +91,7 @@ public class BranchServiceImpl implements BranchService {
 
     @Override
     @Transactional
-    @CacheEvict(value = "branches", key = "#id")
+    @CacheEvict(value = CacheConfig.BRANCHES, key = "#id")
     public void deleteBranch(Long id) {
         log.info("Soft deleting branch: {}", id);
 
@@ -108,7 +107,7 @@ public class BranchServiceImpl implements BranchService {
 
     @Override
     @Transactional
-    @CacheEvict(value = "branches", key = "#id")
+    @CacheEvict(value = CacheConfig.BRANCHES, key = "#id")
     public void deactivateBranch(Long id) {
         log.info("Deactivating branch: {}", id);
 
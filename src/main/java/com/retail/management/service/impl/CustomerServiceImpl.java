@@ -5,15 +5,17 @@ import com.retail.management.dto.request.customer.UpdateCustomerRequest;
 import com.retail.management.dto.request.search.CustomerSearchCriteria;
 import com.retail.management.dto.response.customer.CustomerResponse;
 import com.retail.management.entity.Customer;
+import com.retail.management.event.CustomerChangedEvent;
 import com.retail.management.exception.DuplicateResourceException;
 import com.retail.management.exception.ResourceNotFoundException;
 import com.retail.management.mapper.CustomerMapper;
 import com.retail.management.repository.CustomerRepository;
 import com.retail.management.repository.specification.CustomerSpecification;
 import com.retail.management.service.CustomerService;
-import com.retail.management.util.InvoiceNumberGenerator;
+import com.retail.management.service.DocumentNumberService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
@@ -29,6 +31,8 @@ public class CustomerServiceImpl implements CustomerService {
 
     private final CustomerRepository customerRepository;
     private final CustomerMapper customerMapper;
+    private final DocumentNumberService documentNumberService;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     @Transactional
@@ -48,10 +52,10 @@ public class CustomerServiceImpl implements CustomerService {
         Customer customer = customerMapper.toEntity(request);
 
         // Generate customer code
-        Long sequence = customerRepository.count() + 1;
-        customer.setCustomerCode(InvoiceNumberGenerator.generateCustomerCode(sequence));
+        customer.setCustomerCode(documentNumberService.nextCustomerCode());
 
         customer = customerRepository.save(customer);
+        eventPublisher.publishEvent(new CustomerChangedEvent(customer.getId()));
         log.info("Customer created successfully: {}", customer.getCustomerCode());
 
         return customerMapper.toResponse(customer);
@@ -111,6 +115,7 @@ public class CustomerServiceImpl implements CustomerService {
 
         customerMapper.updateEntityFromRequest(request, customer);
         customer = customerRepository.save(customer);
+        eventPublisher.publishEvent(new CustomerChangedEvent(customer.getId()));
 
         log.info("Customer updated successfully: {}", customer.getCustomerCode());
         return customerMapper.toResponse(customer);
@@ -126,6 +131,7 @@ public class CustomerServiceImpl implements CustomerService {
 
         customer.setDeletedAt(LocalDateTime.now());
         customerRepository.save(customer);
+        eventPublisher.publishEvent(new CustomerChangedEvent(customer.getId()));
 
         log.info("Customer soft deleted: {}", customer.getCustomerCode());
     }
@@ -0,0 +1,638 @@
+package com.retail.management.service.impl;
+
+import com.retail.management.enums.InvoiceStatus;
+import com.retail.management.enums.ReturnStatus;
+import com.retail.management.cache.CacheInvalidationBus;
+import com.retail.management.cache.CatalogCache;
+import com.retail.management.event.CustomerChangedEvent;
+import com.retail.management.event.DashboardCountersChangedEvent;
+import com.retail.management.event.InvoiceSalesChangedEvent;
+import com.retail.management.event.InvoiceSalesSnapshot;
+import com.retail.management.event.LowStockThresholdChangedEvent;
+import com.retail.management.event.ReturnStatusChangedEvent;
+import com.retail.management.event.StockChangedEvent;
+import com.retail.management.event.UserChangedEvent;
+import com.retail.management.repository.BranchStockRepository;
+import com.retail.management.repository.CustomerRepository;
+import com.retail.management.repository.DailyBranchSalesRepository;
+import com.retail.management.repository.ReturnRepository;
+import com.retail.management.repository.UserRepository;
+import com.retail.management.repository.projection.BranchDaySales;
+import com.retail.management.repository.projection.BranchStockSummary;
+import com.retail.management.service.SalesRollupService;
+import com.retail.management.util.DateUtil;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * In-memory figures behind the dashboard. Daily sales and invoice counts are
+ * loaded from the sales rollup and then moved by committed invoice events;
+ * pending returns are counted the same way. Stock counts are loaded on first
+ * use and then moved by the rows of committed stock changes, which carry their
+ * quantity before and after; a changed low stock threshold reloads them.
+ * Customer and user counts are recounted on demand after a change invalidates
+ * them. Everything is rebuilt from the database on
+ * a fixed schedule, correcting any drift, e.g. from events committed while the
+ * counters were being loaded.
+ * <p>
+ * The changes each commit makes to the counters are sent to the other nodes
+ * over the {@link CacheInvalidationBus}, which apply them the same way and
+ * announce them with a {@link DashboardCountersChangedEvent}. A node that may
+ * have missed messages reloads on next use.
+ */
+@Component
+@Slf4j
+public class DashboardCounters implements CacheInvalidationBus.Listener {
+
+    static final String MESSAGE_NAME = "dashboard-counters";
+    private static final String ALL_BRANCHES = "*";
+
+    private final DailyBranchSalesRepository dailyBranchSalesRepository;
+    private final BranchStockRepository branchStockRepository;
+    private final CustomerRepository customerRepository;
+    private final ReturnRepository returnRepository;
+    private final SalesRollupService salesRollupService;
+    private final UserRepository userRepository;
+    private final CatalogCache catalogCache;
+    private final CacheInvalidationBus invalidationBus;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private volatile SalesCounters sales;
+    private final AtomicLong pendingReturns = new AtomicLong();
+
+    /** Low stock and out of stock rows of every branch */
+    private final Tally stock = new Tally(this::countStock);
+    /** Stock rows, total quantity and low stock rows per branch */
+    private final Map<Long, Tally> branchStock = new ConcurrentHashMap<>();
+    private final Recounted<Long> activeCustomers = new Recounted<>(this::countActiveCustomers);
+    private final Map<Long, Recounted<Long>> activeUsers = new ConcurrentHashMap<>();
+
+    public DashboardCounters(DailyBranchSalesRepository dailyBranchSalesRepository,
+                             BranchStockRepository branchStockRepository,
+                             CustomerRepository customerRepository,
+                             ReturnRepository returnRepository,
+                             SalesRollupService salesRollupService,
+                             UserRepository userRepository,
+                             CatalogCache catalogCache,
+                             CacheInvalidationBus invalidationBus,
+                             ApplicationEventPublisher eventPublisher) {
+        this.dailyBranchSalesRepository = dailyBranchSalesRepository;
+        this.branchStockRepository = branchStockRepository;
+        this.customerRepository = customerRepository;
+        this.returnRepository = returnRepository;
+        this.salesRollupService = salesRollupService;
+        this.userRepository = userRepository;
+        this.catalogCache = catalogCache;
+        this.invalidationBus = invalidationBus;
+        this.eventPublisher = eventPublisher;
+        invalidationBus.register(MESSAGE_NAME, this);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        reload();
+    }
+
+    @Scheduled(fixedDelayString = "${app.dashboard.reconcile-interval-ms:300000}",
+            initialDelayString = "${app.dashboard.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        SalesCounters previous = sales;
+        reload();
+
+        if (previous != null) {
+            LocalDate today = LocalDate.now();
+            long drift = sales.salesCents(null, today, today) - previous.salesCents(null, today, today);
+            if (drift != 0) {
+                log.warn("Dashboard sales counters drifted by {} for {}", BigDecimal.valueOf(drift, 2), today);
+            }
+        }
+    }
+
+    private void reload() {
+        LocalDate today = LocalDate.now();
+        LocalDate from = oldestDay(today);
+
+        // Fold queued invoice changes in first, so the rollup covers the events applied so far
+        salesRollupService.drain();
+        SalesCounters loaded = new SalesCounters();
+        for (BranchDaySales row : dailyBranchSalesRepository.sumByBranchAndDay(from, today, InvoiceStatus.PAID)) {
+            loaded.add(row.getBranchId(), row.getSalesDate(), row.getInvoiceCount(), toCents(row.getPaidSales()));
+        }
+        sales = loaded;
+        pendingReturns.set(returnRepository.countByStatus(ReturnStatus.PENDING));
+
+        invalidateStock(null);
+        activeCustomers.invalidate();
+        activeUsers.clear();
+        log.debug("Dashboard counters loaded from {} to {}", from, today);
+    }
+
+    /**
+     * Send the changes of the committing transaction to the other nodes. Runs
+     * before commit, so the messages are only delivered if the change commits.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void announceInvoiceSales(InvoiceSalesChangedEvent event) {
+        StringBuilder message = new StringBuilder("S");
+        if (event.getBefore() != null) {
+            appendSales(message, event.getBefore(), -1);
+        }
+        appendSales(message, event.getAfter(), 1);
+        invalidationBus.publishMessage(MESSAGE_NAME, message.toString());
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void announceReturnStatus(ReturnStatusChangedEvent event) {
+        long delta = pendingReturnsDelta(event);
+        if (delta != 0) {
+            invalidationBus.publishMessage(MESSAGE_NAME, "R:" + delta);
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void announceStock(StockChangedEvent event) {
+        long[] delta = stockDelta(event);
+        if (delta == null) {
+            invalidationBus.publishMessage(MESSAGE_NAME,
+                    "K:" + (event.getBranchId() != null ? event.getBranchId() : ALL_BRANCHES));
+        } else if (hasChanges(delta)) {
+            invalidationBus.publishMessage(MESSAGE_NAME, "K:" + event.getBranchId() + ":" + delta[0] + ":" +
+                    delta[1] + ":" + delta[2] + ":" + delta[3]);
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void announceLowStockThreshold(LowStockThresholdChangedEvent event) {
+        invalidationBus.publishMessage(MESSAGE_NAME, "K:" + ALL_BRANCHES);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void announceCustomer(CustomerChangedEvent event) {
+        invalidationBus.publishMessage(MESSAGE_NAME, "C");
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void announceUser(UserChangedEvent event) {
+        invalidationBus.publishMessage(MESSAGE_NAME, "U");
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onInvoiceSalesChanged(InvoiceSalesChangedEvent event) {
+        SalesCounters current = sales;
+        if (current == null) {
+            return;
+        }
+        if (event.getBefore() != null) {
+            apply(current, event.getBefore(), -1);
+        }
+        apply(current, event.getAfter(), 1);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onReturnStatusChanged(ReturnStatusChangedEvent event) {
+        pendingReturns.addAndGet(pendingReturnsDelta(event));
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onStockChanged(StockChangedEvent event) {
+        long[] delta = stockDelta(event);
+        if (delta == null) {
+            invalidateStock(event.getBranchId());
+        } else {
+            applyStock(event.getBranchId(), delta);
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onLowStockThresholdChanged(LowStockThresholdChangedEvent event) {
+        // Rows of the product may have crossed the threshold in any branch
+        invalidateStock(null);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onCustomerChanged(CustomerChangedEvent event) {
+        activeCustomers.invalidate();
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onUserChanged(UserChangedEvent event) {
+        activeUsers.clear();
+    }
+
+    @Override
+    public void onMessage(String message) {
+        String[] parts = message.split(":");
+        switch (parts[0].charAt(0)) {
+            case 'S' -> {
+                SalesCounters current = sales;
+                Set<Long> branchIds = new HashSet<>();
+                for (String entry : message.substring(2).split(";")) {
+                    String[] fields = entry.split(":");
+                    Long branchId = Long.valueOf(fields[0]);
+                    if (current != null) {
+                        current.add(branchId, LocalDate.parse(fields[1]), Long.parseLong(fields[2]),
+                                Long.parseLong(fields[3]));
+                    }
+                    branchIds.add(branchId);
+                }
+                branchIds.forEach(branchId ->
+                        eventPublisher.publishEvent(new DashboardCountersChangedEvent(branchId, false)));
+            }
+            case 'R' -> {
+                pendingReturns.addAndGet(Long.parseLong(parts[1]));
+                eventPublisher.publishEvent(new DashboardCountersChangedEvent(null, false));
+            }
+            case 'K' -> {
+                if (ALL_BRANCHES.equals(parts[1])) {
+                    invalidateStock(null);
+                    eventPublisher.publishEvent(new DashboardCountersChangedEvent(null, true));
+                    return;
+                }
+                Long branchId = Long.valueOf(parts[1]);
+                if (parts.length == 2) {
+                    invalidateStock(branchId);
+                } else {
+                    applyStock(branchId, new long[]{Long.parseLong(parts[2]), Long.parseLong(parts[3]),
+                            Long.parseLong(parts[4]), Long.parseLong(parts[5])});
+                }
+                eventPublisher.publishEvent(new DashboardCountersChangedEvent(branchId, false));
+            }
+            case 'C' -> {
+                activeCustomers.invalidate();
+                eventPublisher.publishEvent(new DashboardCountersChangedEvent(null, false));
+            }
+            case 'U' -> {
+                activeUsers.clear();
+                eventPublisher.publishEvent(new DashboardCountersChangedEvent(null, true));
+            }
+            default -> log.warn("Ignoring unknown dashboard counter change: {}", message);
+        }
+    }
+
+    /**
+     * Changes may have been missed; everything is loaded again on next use.
+     */
+    @Override
+    public void onResync() {
+        sales = null;
+        invalidateStock(null);
+        activeCustomers.invalidate();
+        activeUsers.clear();
+        eventPublisher.publishEvent(new DashboardCountersChangedEvent(null, true));
+    }
+
+    /**
+     * Paid sales between two dates, inclusive, for one branch or all branches.
+     */
+    public BigDecimal sales(Long branchId, LocalDate from, LocalDate to) {
+        return BigDecimal.valueOf(salesCounters().salesCents(branchId, from, to), 2);
+    }
+
+    /**
+     * Invoices of any status between two dates, inclusive, for one branch or all branches.
+     */
+    public long invoiceCount(Long branchId, LocalDate from, LocalDate to) {
+        return salesCounters().invoiceCount(branchId, from, to);
+    }
+
+    public long pendingReturns() {
+        salesCounters();
+        return pendingReturns.get();
+    }
+
+    public long lowStockCount() {
+        return stock.get()[0];
+    }
+
+    public long outOfStockCount() {
+        return stock.get()[1];
+    }
+
+    public long activeCustomers() {
+        return activeCustomers.get();
+    }
+
+    /**
+     * Stock figures of an existing branch
+     */
+    public BranchStockSummary branchStock(Long branchId) {
+        long[] totals = branchStock.computeIfAbsent(branchId, id -> new Tally(() -> summarizeBranch(id))).get();
+        return new StockSummary(totals[0], totals[1], totals[2]);
+    }
+
+    /**
+     * Active users of an existing branch
+     */
+    public long activeUsers(Long branchId) {
+        return activeUsers.computeIfAbsent(branchId,
+                id -> new Recounted<>(() -> userRepository.countActiveUsersByBranch(id))).get();
+    }
+
+    private SalesCounters salesCounters() {
+        SalesCounters current = sales;
+        if (current == null) {
+            synchronized (this) {
+                if (sales == null) {
+                    reload();
+                }
+                current = sales;
+            }
+        }
+        return current;
+    }
+
+    private void apply(SalesCounters counters, InvoiceSalesSnapshot snapshot, int sign) {
+        long cents = snapshot.getStatus() == InvoiceStatus.PAID ? toCents(snapshot.getTotalAmount()) : 0;
+        counters.add(snapshot.getBranchId(), snapshot.getSalesDate(), sign, sign * cents);
+    }
+
+    private void appendSales(StringBuilder message, InvoiceSalesSnapshot snapshot, int sign) {
+        long cents = snapshot.getStatus() == InvoiceStatus.PAID ? toCents(snapshot.getTotalAmount()) : 0;
+        message.append(message.length() == 1 ? ':' : ';')
+                .append(snapshot.getBranchId()).append(':')
+                .append(snapshot.getSalesDate()).append(':')
+                .append(sign).append(':')
+                .append(sign * cents);
+    }
+
+    private static long pendingReturnsDelta(ReturnStatusChangedEvent event) {
+        return flag(event.getAfter() == ReturnStatus.PENDING) - flag(event.getBefore() == ReturnStatus.PENDING);
+    }
+
+    /**
+     * Changes to the low stock and out of stock rows of every branch, and to the
+     * rows, total quantity and low stock rows of the event's branch; null when the
+     * event does not say which rows changed.
+     *
+     * @return products, quantity, low stock and out of stock deltas
+     */
+    private long[] stockDelta(StockChangedEvent event) {
+        if (event.getBranchId() == null || event.getLevels().isEmpty()) {
+            return null;
+        }
+
+        long products = 0;
+        long quantity = 0;
+        long low = 0;
+        long out = 0;
+        for (StockChangedEvent.Level level : event.getLevels()) {
+            Integer before = event.getQuantitiesBefore().get(level.productId());
+            int after = level.quantity();
+            if (before != null && before == after) {
+                continue;
+            }
+
+            int threshold = lowStockThreshold(level.productId());
+            products += before == null ? 1 : 0;
+            quantity += after - (before != null ? before : 0);
+            low += flag(after < threshold) - flag(before != null && before < threshold);
+            out += flag(after == 0) - flag(before != null && before == 0);
+        }
+        return new long[]{products, quantity, low, out};
+    }
+
+    private static boolean hasChanges(long[] delta) {
+        for (long value : delta) {
+            if (value != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void applyStock(Long branchId, long[] delta) {
+        long products = delta[0];
+        long quantity = delta[1];
+        long low = delta[2];
+        long out = delta[3];
+        if (low != 0 || out != 0) {
+            stock.adjust(low, out);
+        }
+        Tally branch = branchStock.get(branchId);
+        if (branch != null && (products != 0 || quantity != 0 || low != 0)) {
+            branch.adjust(products, quantity, low);
+        }
+    }
+
+    private void invalidateStock(Long branchId) {
+        if (branchId == null) {
+            branchStock.values().forEach(Tally::invalidate);
+        } else {
+            Tally branch = branchStock.get(branchId);
+            if (branch != null) {
+                branch.invalidate();
+            }
+        }
+        stock.invalidate();
+    }
+
+    private long[] countStock() {
+        return new long[]{branchStockRepository.countLowStock(), branchStockRepository.countOutOfStock()};
+    }
+
+    private long[] summarizeBranch(Long branchId) {
+        BranchStockSummary summary = branchStockRepository.summarizeBranch(branchId);
+        return new long[]{summary.getTotalProducts(), summary.getTotalStock(), summary.getLowStockItems()};
+    }
+
+    private int lowStockThreshold(long productId) {
+        Integer threshold = catalogCache.getProduct(productId).getLowStockThreshold();
+        return threshold != null ? threshold : 0;
+    }
+
+    private static long flag(boolean value) {
+        return value ? 1 : 0;
+    }
+
+    private long countActiveCustomers() {
+        return customerRepository.countRegisteredCustomers();
+    }
+
+    private static LocalDate oldestDay(LocalDate today) {
+        LocalDate weekStart = DateUtil.getStartOfWeek(today);
+        LocalDate monthStart = DateUtil.getStartOfMonth(today);
+        return weekStart.isBefore(monthStart) ? weekStart : monthStart;
+    }
+
+    private static long toCents(BigDecimal amount) {
+        if (amount == null) {
+            return 0;
+        }
+        return amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * Invoice counts and paid sales per day, overall and per branch.
+     */
+    private static final class SalesCounters {
+
+        private final Map<LocalDate, DayTotals> overall = new ConcurrentHashMap<>();
+        private final Map<Long, Map<LocalDate, DayTotals>> byBranch = new ConcurrentHashMap<>();
+
+        void add(Long branchId, LocalDate day, long invoices, long cents) {
+            overall.computeIfAbsent(day, d -> new DayTotals()).add(invoices, cents);
+            byBranch.computeIfAbsent(branchId, b -> new ConcurrentHashMap<>())
+                    .computeIfAbsent(day, d -> new DayTotals())
+                    .add(invoices, cents);
+        }
+
+        long salesCents(Long branchId, LocalDate from, LocalDate to) {
+            long total = 0;
+            Map<LocalDate, DayTotals> days = days(branchId);
+            for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+                DayTotals totals = days.get(day);
+                if (totals != null) {
+                    total += totals.paidSalesCents.sum();
+                }
+            }
+            return total;
+        }
+
+        long invoiceCount(Long branchId, LocalDate from, LocalDate to) {
+            long total = 0;
+            Map<LocalDate, DayTotals> days = days(branchId);
+            for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+                DayTotals totals = days.get(day);
+                if (totals != null) {
+                    total += totals.invoiceCount.sum();
+                }
+            }
+            return total;
+        }
+
+        private Map<LocalDate, DayTotals> days(Long branchId) {
+            return branchId == null ? overall : byBranch.getOrDefault(branchId, Map.of());
+        }
+    }
+
+    private static final class DayTotals {
+
+        private final LongAdder invoiceCount = new LongAdder();
+        private final LongAdder paidSalesCents = new LongAdder();
+
+        void add(long invoices, long cents) {
+            invoiceCount.add(invoices);
+            paidSalesCents.add(cents);
+        }
+    }
+
+    /**
+     * Counts loaded on first use and then adjusted by changes. A load that
+     * overlaps a change or invalidation is returned but not kept, as it may or
+     * may not include the change.
+     */
+    private static final class Tally {
+
+        private final Supplier<long[]> loader;
+        private long generation;
+        private long[] values;
+
+        Tally(Supplier<long[]> loader) {
+            this.loader = loader;
+        }
+
+        long[] get() {
+            long loadedAt;
+            synchronized (this) {
+                if (values != null) {
+                    return values.clone();
+                }
+                loadedAt = generation;
+            }
+
+            long[] loaded = loader.get();
+            synchronized (this) {
+                if (generation == loadedAt && values == null) {
+                    values = loaded.clone();
+                }
+            }
+            return loaded;
+        }
+
+        synchronized void adjust(long... deltas) {
+            generation++;
+            if (values != null) {
+                for (int i = 0; i < deltas.length; i++) {
+                    values[i] += deltas[i];
+                }
+            }
+        }
+
+        synchronized void invalidate() {
+            generation++;
+            values = null;
+        }
+    }
+
+    private record StockSummary(long totalProducts, long totalStock, long lowStockItems)
+            implements BranchStockSummary {
+
+        @Override
+        public Long getTotalProducts() {
+            return totalProducts;
+        }
+
+        @Override
+        public Long getTotalStock() {
+            return totalStock;
+        }
+
+        @Override
+        public Long getLowStockItems() {
+            return lowStockItems;
+        }
+    }
+
+    /**
+     * A count loaded on first use and kept until invalidated.
+     */
+    private static final class Recounted<T> {
+
+        private final Supplier<T> loader;
+        private final AtomicLong generation = new AtomicLong();
+        private final AtomicReference<T> value = new AtomicReference<>();
+
+        Recounted(Supplier<T> loader) {
+            this.loader = loader;
+        }
+
+        T get() {
+            T current = value.get();
+            if (current != null) {
+                return current;
+            }
+
+            long loadedAt = generation.get();
+            current = loader.get();
+            value.set(current);
+            // Drop the result if it was invalidated while loading
+            if (generation.get() != loadedAt) {
+                value.compareAndSet(current, null);
+            }
+            return current;
+        }
+
+        void invalidate() {
+            generation.incrementAndGet();
+            value.set(null);
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package com.retail.management.service.impl;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.retail.management.event.CustomerChangedEvent;
+import com.retail.management.event.DashboardCountersChangedEvent;
+import com.retail.management.event.InvoiceSalesChangedEvent;
+import com.retail.management.event.LowStockThresholdChangedEvent;
+import com.retail.management.event.ReturnStatusChangedEvent;
+import com.retail.management.event.StockChangedEvent;
+import com.retail.management.service.DashboardService;
+import com.retail.management.service.DashboardStreamService;
+import com.retail.management.util.CorrelationIdUtil;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Pushes dashboard and branch statistics to SSE subscribers. Committed changes
+ * only mark the affected streams dirty; once per interval each dirty stream is
+ * recomputed a single time from the dashboard counters and the changed fields
+ * are sent to all of its subscribers, so database load does not grow with the
+ * number of screens. A subscriber first receives a "snapshot" event with the
+ * full statistics, then "delta" events with only the fields that changed. A
+ * subscriber that missed a delta gets a fresh snapshot instead.
+ */
+@Service
+@Slf4j
+public class DashboardStreamServiceImpl implements DashboardStreamService {
+
+    private static final TypeReference<Map<String, Object>> FIELDS = new TypeReference<>() {
+    };
+
+    private final DashboardService dashboardService;
+    private final ObjectMapper objectMapper;
+    private final long timeoutMillis;
+    private final long heartbeatMillis;
+    private final SimpleAsyncTaskExecutor sender;
+    private final Map<Topic, TopicState> topics = new ConcurrentHashMap<>();
+
+    private volatile long lastHeartbeat = System.currentTimeMillis();
+
+    public DashboardStreamServiceImpl(DashboardService dashboardService,
+                                      ObjectMapper objectMapper,
+                                      @Value("${app.dashboard.stream.timeout-ms:1800000}") long timeoutMillis,
+                                      @Value("${app.dashboard.stream.heartbeat-ms:30000}") long heartbeatMillis) {
+        this.dashboardService = dashboardService;
+        this.objectMapper = objectMapper;
+        this.timeoutMillis = timeoutMillis;
+        this.heartbeatMillis = heartbeatMillis;
+        this.sender = new SimpleAsyncTaskExecutor("dashboard-stream-");
+        this.sender.setVirtualThreads(true);
+        this.sender.setTaskDecorator(CorrelationIdUtil.TASK_DECORATOR);
+    }
+
+    @Override
+    public SseEmitter subscribeDashboard() {
+        return subscribe(new Topic(null), dashboardService::getDashboardStats);
+    }
+
+    @Override
+    public SseEmitter subscribeBranch(Long branchId) {
+        return subscribe(new Topic(branchId), () -> dashboardService.getBranchStats(branchId));
+    }
+
+    private SseEmitter subscribe(Topic topic, Supplier<Object> loader) {
+        // Fails for an unknown branch before anything is registered
+        Object initial = loader.get();
+
+        SseEmitter emitter = new SseEmitter(timeoutMillis);
+        Subscriber subscriber = new Subscriber(emitter);
+        TopicState state = topics.compute(topic, (key, existing) -> {
+            TopicState current = existing != null ? existing : new TopicState(loader);
+            current.subscribers.add(subscriber);
+            return current;
+        });
+
+        emitter.onCompletion(() -> unsubscribe(topic, subscriber));
+        emitter.onTimeout(() -> {
+            unsubscribe(topic, subscriber);
+            emitter.complete();
+        });
+        emitter.onError(e -> unsubscribe(topic, subscriber));
+
+        if (state.latest == null) {
+            state.refresh(initial);
+        }
+        subscriber.deliver(state.latest, false);
+        log.debug("Dashboard stream subscriber added to {}", topic);
+        return emitter;
+    }
+
+    private void unsubscribe(Topic topic, Subscriber subscriber) {
+        topics.computeIfPresent(topic, (key, state) -> {
+            state.subscribers.remove(subscriber);
+            return state.subscribers.isEmpty() ? null : state;
+        });
+    }
+
+    /**
+     * Recompute dirty streams and send what changed. On every heartbeat all streams
+     * are recomputed, which also picks up changes that publish no event, such as
+     * the counters' reconciliation or a new day.
+     */
+    @Scheduled(fixedDelayString = "${app.dashboard.stream.interval-ms:1000}")
+    public void publishChanges() {
+        long now = System.currentTimeMillis();
+        boolean heartbeat = now - lastHeartbeat >= heartbeatMillis;
+        if (heartbeat) {
+            lastHeartbeat = now;
+        }
+
+        topics.forEach((topic, state) -> {
+            if (state.dirty.getAndSet(false) || heartbeat) {
+                state.refresh();
+            }
+            Frame frame = state.latest;
+            if (frame == null || (frame == state.published && !heartbeat)) {
+                return;
+            }
+            state.published = frame;
+            state.subscribers.forEach(subscriber -> sender.execute(() -> subscriber.deliver(frame, heartbeat)));
+        });
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onInvoiceSalesChanged(InvoiceSalesChangedEvent event) {
+        markDirty(new Topic(null));
+        markDirty(new Topic(event.getAfter().getBranchId()));
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onStockChanged(StockChangedEvent event) {
+        if (event.getBranchId() == null) {
+            topics.values().forEach(state -> state.dirty.set(true));
+        } else {
+            markDirty(new Topic(null));
+            markDirty(new Topic(event.getBranchId()));
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onLowStockThresholdChanged(LowStockThresholdChangedEvent event) {
+        topics.values().forEach(state -> state.dirty.set(true));
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onCustomerChanged(CustomerChangedEvent event) {
+        markDirty(new Topic(null));
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onReturnStatusChanged(ReturnStatusChangedEvent event) {
+        markDirty(new Topic(null));
+    }
+
+    /**
+     * Changes committed on other nodes, as applied to this node's counters.
+     */
+    @EventListener
+    public void onDashboardCountersChanged(DashboardCountersChangedEvent event) {
+        if (event.isAllBranches()) {
+            topics.values().forEach(state -> state.dirty.set(true));
+        } else {
+            markDirty(new Topic(null));
+            if (event.getBranchId() != null) {
+                markDirty(new Topic(event.getBranchId()));
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        topics.values().forEach(state -> state.subscribers.forEach(subscriber -> subscriber.emitter.complete()));
+        topics.clear();
+    }
+
+    private void markDirty(Topic topic) {
+        TopicState state = topics.get(topic);
+        if (state != null) {
+            state.dirty.set(true);
+        }
+    }
+
+    /**
+     * Overall statistics when {@code branchId} is null.
+     */
+    private record Topic(Long branchId) {
+    }
+
+    /**
+     * A version of a stream's statistics and the fields changed since the previous one.
+     */
+    record Frame(long sequence, Object snapshot, Map<String, Object> delta) {
+    }
+
+    final class TopicState {
+
+        private final Supplier<Object> loader;
+        private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+        private final AtomicBoolean dirty = new AtomicBoolean();
+        private Map<String, Object> fields = Map.of();
+        private volatile Frame latest;
+        private volatile Frame published;
+
+        TopicState(Supplier<Object> loader) {
+            this.loader = loader;
+        }
+
+        /**
+         * @return the new frame, or null if nothing changed or the statistics
+         * could not be computed
+         */
+        Frame refresh() {
+            try {
+                return refresh(loader.get());
+            } catch (RuntimeException e) {
+                log.warn("Failed to refresh dashboard stream: {}", e.getMessage());
+                return null;
+            }
+        }
+
+        synchronized Frame refresh(Object stats) {
+            Map<String, Object> current = objectMapper.convertValue(stats, FIELDS);
+
+            Map<String, Object> delta = new LinkedHashMap<>();
+            current.forEach((name, value) -> {
+                if (!fields.containsKey(name) || !Objects.equals(fields.get(name), value)) {
+                    delta.put(name, value);
+                }
+            });
+            fields.keySet().stream()
+                    .filter(name -> !current.containsKey(name))
+                    .forEach(name -> delta.put(name, null));
+
+            if (delta.isEmpty() && latest != null) {
+                return null;
+            }
+
+            fields = new HashMap<>(current);
+            latest = new Frame(latest != null ? latest.sequence() + 1 : 1, stats, delta);
+            return latest;
+        }
+    }
+
+    static final class Subscriber {
+
+        private final SseEmitter emitter;
+        private final ReentrantLock lock = new ReentrantLock();
+        private long lastSequence = -1;
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        /**
+         * Send the frame as a delta if it directly follows the last one this
+         * subscriber received, otherwise as a snapshot. A delivery that finds the
+         * subscriber still busy with a slow send is dropped; the next one fills
+         * the gap with a snapshot.
+         */
+        void deliver(Frame frame, boolean heartbeat) {
+            if (!lock.tryLock()) {
+                return;
+            }
+            try {
+                if (frame.sequence() > lastSequence) {
+                    if (frame.sequence() == lastSequence + 1) {
+                        emitter.send(SseEmitter.event().name("delta").id(Long.toString(frame.sequence()))
+                                .data(frame.delta()));
+                    } else {
+                        emitter.send(SseEmitter.event().name("snapshot").id(Long.toString(frame.sequence()))
+                                .data(frame.snapshot()));
+                    }
+                    lastSequence = frame.sequence();
+                } else if (heartbeat) {
+                    emitter.send(SseEmitter.event().comment("heartbeat"));
+                }
+            } catch (IOException e) {
+                // The client went away; completing the emitter unsubscribes it
+                log.debug("Dashboard stream send failed: {}", e.getMessage());
+                emitter.completeWithError(e);
+            } catch (IllegalStateException e) {
+                log.debug("Dashboard stream already completed: {}", e.getMessage());
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.retail.management.service.impl;
+
+import com.retail.management.repository.DocumentSequenceRepository;
+import com.retail.management.service.DocumentNumberService;
+import com.retail.management.util.InvoiceNumberGenerator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Hands out per-branch, per-day document numbers from blocks reserved in the
+ * document_sequences table. Each node reserves a block in its own short transaction,
+ * so checkouts never count rows or queue behind each other for a number.
+ * Numbers are unique across nodes; values left in a block when a node stops are skipped.
+ * When a block runs out, one thread reserves the next while other threads
+ * needing the same sequence wait for it; other sequences are not held up.
+ */
+@Service
+@Slf4j
+public class DocumentNumberServiceImpl implements DocumentNumberService {
+
+    private static final DateTimeFormatter KEY_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private final DocumentSequenceRepository documentSequenceRepository;
+    private final TransactionTemplate allocationTransaction;
+    private final int blockSize;
+    private final Map<String, Block> blocks = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<Void>> refills = new ConcurrentHashMap<>();
+
+    public DocumentNumberServiceImpl(DocumentSequenceRepository documentSequenceRepository,
+                                     PlatformTransactionManager transactionManager,
+                                     @Value("${app.sequence.block-size:20}") int blockSize) {
+        this.documentSequenceRepository = documentSequenceRepository;
+        this.allocationTransaction = new TransactionTemplate(transactionManager);
+        this.allocationTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.blockSize = blockSize;
+    }
+
+    @Override
+    public String nextInvoiceNumber(String branchCode) {
+        LocalDate today = LocalDate.now();
+        return InvoiceNumberGenerator.generate(branchCode, today, next("INV:" + branchCode, today));
+    }
+
+    @Override
+    public String nextReturnNumber(String branchCode) {
+        LocalDate today = LocalDate.now();
+        return InvoiceNumberGenerator.generateReturnNumber(branchCode, today, next("RET:" + branchCode, today));
+    }
+
+    @Override
+    public String nextCustomerCode() {
+        LocalDate today = LocalDate.now();
+        return InvoiceNumberGenerator.generateCustomerCode(today, next("CUST", today));
+    }
+
+    private long next(String prefix, LocalDate date) {
+        String key = prefix + ":" + date.format(KEY_DATE_FORMAT);
+
+        while (true) {
+            Block block = blocks.get(key);
+            if (block != null) {
+                long value = block.next.getAndIncrement();
+                if (value < block.limit) {
+                    return value;
+                }
+            }
+
+            CompletableFuture<Void> refill = new CompletableFuture<>();
+            CompletableFuture<Void> pending = refills.putIfAbsent(key, refill);
+            if (pending != null) {
+                // A failed refill is retried by the waiters in turn
+                pending.exceptionally(e -> null).join();
+                continue;
+            }
+            try {
+                // Another thread may have refilled the block since we read it
+                if (blocks.get(key) == block) {
+                    blocks.put(key, allocate(key));
+                    evictOtherDays(date);
+                }
+                refill.complete(null);
+            } catch (RuntimeException e) {
+                refill.completeExceptionally(e);
+                throw e;
+            } finally {
+                refills.remove(key, refill);
+            }
+        }
+    }
+
+    private Block allocate(String key) {
+        Long limit = allocationTransaction.execute(status ->
+                documentSequenceRepository.allocateBlock(key, blockSize));
+
+        log.debug("Reserved sequence block [{}, {}) for {}", limit - blockSize, limit, key);
+        return new Block(limit - blockSize, limit);
+    }
+
+    private void evictOtherDays(LocalDate date) {
+        String suffix = ":" + date.format(KEY_DATE_FORMAT);
+        blocks.keySet().removeIf(key -> !key.endsWith(suffix));
+    }
+
+    private static final class Block {
+        private final AtomicLong next;
+        private final long limit;
+
+        private Block(long start, long limit) {
+            this.next = new AtomicLong(start);
+            this.limit = limit;
+        }
+    }
+}
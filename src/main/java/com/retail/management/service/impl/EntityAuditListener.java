@@ -0,0 +1,234 @@
+package com.retail.management.service.impl;
+
+import com.retail.management.service.AuditService;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.proxy.HibernateProxy;
+import org.hibernate.type.EntityType;
+import org.hibernate.type.Type;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records inserts, updates and deletes of entities in the audit log, straight
+ * from Hibernate's flush events. Updates carry only the changed fields, taken
+ * from the old and new state Hibernate already holds for dirty checking, as
+ * compact JSON objects; associations are written as the associated id and
+ * collections are left out. Bookkeeping columns are skipped and secrets are
+ * masked. Entities written with plain JDBC statements are not seen here.
+ */
+@Component
+public class EntityAuditListener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    private static final Set<String> SKIPPED_PROPERTIES = Set.of("createdAt", "updatedAt", "createdBy", "updatedBy", "version");
+    private static final Set<String> MASKED_PROPERTIES = Set.of("password");
+    private static final String MASK = "\"***\"";
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final AuditService auditService;
+    private final boolean enabled;
+    private final Set<String> excludedEntities;
+    private final Map<String, AuditedProperties> properties = new ConcurrentHashMap<>();
+
+    public EntityAuditListener(EntityManagerFactory entityManagerFactory,
+                               AuditService auditService,
+                               @Value("${app.audit.entities.enabled:true}") boolean enabled,
+                               @Value("${app.audit.entities.excluded:AuditLog,DailyBranchSales,DocumentSequence,StockReservation,TokenRevocation}")
+                               Set<String> excludedEntities) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.auditService = auditService;
+        this.enabled = enabled;
+        this.excludedEntities = excludedEntities;
+    }
+
+    @PostConstruct
+    public void register() {
+        if (!enabled) {
+            return;
+        }
+        EventListenerRegistry registry = entityManagerFactory.unwrap(SessionFactoryImplementor.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        AuditedProperties audited = audited(event.getPersister(), event.getId());
+        if (audited != null) {
+            auditService.logAction(audited.entityType, (Long) event.getId(), "CREATE",
+                    null, audited.toJson(event.getState(), null, event.getSession()));
+        }
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        AuditedProperties audited = audited(event.getPersister(), event.getId());
+        if (audited == null) {
+            return;
+        }
+
+        Object[] oldState = event.getOldState();
+        Object[] state = event.getState();
+        boolean[] changed = new boolean[state.length];
+        int[] dirty = event.getDirtyProperties();
+        if (dirty != null) {
+            for (int index : dirty) {
+                changed[index] = true;
+            }
+        } else {
+            // Detached entity updated without a snapshot; compare what we have
+            for (int i = 0; i < state.length; i++) {
+                changed[i] = oldState == null || !Objects.equals(oldState[i], state[i]);
+            }
+        }
+
+        String newValues = audited.toJson(state, changed, event.getSession());
+        if (newValues == null) {
+            // Only bookkeeping columns changed
+            return;
+        }
+        String oldValues = oldState != null ? audited.toJson(oldState, changed, event.getSession()) : null;
+        auditService.logAction(audited.entityType, (Long) event.getId(), "UPDATE", oldValues, newValues);
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        AuditedProperties audited = audited(event.getPersister(), event.getId());
+        if (audited != null) {
+            auditService.logAction(audited.entityType, (Long) event.getId(), "DELETE",
+                    audited.toJson(event.getDeletedState(), null, event.getSession()), null);
+        }
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return false;
+    }
+
+    private AuditedProperties audited(EntityPersister persister, Object id) {
+        if (!(id instanceof Long)) {
+            return null;
+        }
+        AuditedProperties audited = properties.computeIfAbsent(persister.getEntityName(),
+                name -> new AuditedProperties(persister, excludedEntities));
+        return audited.enabled ? audited : null;
+    }
+
+    /**
+     * Which properties of an entity are written to the audit log, worked out
+     * once per entity type.
+     */
+    private static final class AuditedProperties {
+
+        private final String entityType;
+        private final boolean enabled;
+        private final String[] names;
+        private final Type[] types;
+        private final boolean[] included;
+        private final boolean[] masked;
+
+        private AuditedProperties(EntityPersister persister, Set<String> excludedEntities) {
+            this.entityType = persister.getMappedClass().getSimpleName();
+            this.enabled = !excludedEntities.contains(entityType);
+            this.names = persister.getPropertyNames();
+            this.types = persister.getPropertyTypes();
+            this.included = new boolean[names.length];
+            this.masked = new boolean[names.length];
+            for (int i = 0; i < names.length; i++) {
+                included[i] = !SKIPPED_PROPERTIES.contains(names[i]) && !types[i].isCollectionType();
+                masked[i] = MASKED_PROPERTIES.contains(names[i]);
+            }
+        }
+
+        /**
+         * The included properties, restricted to the selected ones if given, as
+         * a JSON object; null if there are none.
+         */
+        String toJson(Object[] state, boolean[] selected, SharedSessionContractImplementor session) {
+            StringBuilder json = null;
+            for (int i = 0; i < names.length; i++) {
+                if (!included[i] || (selected != null && !selected[i])) {
+                    continue;
+                }
+                if (selected == null && state[i] == null) {
+                    // Full snapshots leave out empty fields
+                    continue;
+                }
+
+                json = json == null ? new StringBuilder(64).append('{') : json.append(',');
+                json.append('"').append(names[i]).append("\":");
+                if (masked[i]) {
+                    json.append(MASK);
+                } else {
+                    appendValue(json, state[i], types[i], session);
+                }
+            }
+            return json == null ? null : json.append('}').toString();
+        }
+
+        private static void appendValue(StringBuilder json, Object value, Type type,
+                                        SharedSessionContractImplementor session) {
+            if (value == null) {
+                json.append("null");
+            } else if (type != null && type.isEntityType()) {
+                appendValue(json, identifier(value, (EntityType) type, session), null, session);
+            } else if (value instanceof BigDecimal decimal) {
+                json.append(decimal.toPlainString());
+            } else if (value instanceof Number || value instanceof Boolean) {
+                json.append(value);
+            } else {
+                appendString(json, value instanceof Enum<?> constant ? constant.name() : value.toString());
+            }
+        }
+
+        private static Object identifier(Object entity, EntityType type, SharedSessionContractImplementor session) {
+            if (entity instanceof HibernateProxy proxy) {
+                // Without initializing the proxy
+                return proxy.getHibernateLazyInitializer().getInternalIdentifier();
+            }
+            return session.getEntityPersister(type.getAssociatedEntityName(), entity).getIdentifier(entity, session);
+        }
+
+        private static void appendString(StringBuilder json, String value) {
+            json.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"' -> json.append("\\\"");
+                    case '\\' -> json.append("\\\\");
+                    case '\n' -> json.append("\\n");
+                    case '\r' -> json.append("\\r");
+                    case '\t' -> json.append("\\t");
+                    default -> {
+                        if (c < 0x20) {
+                            json.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            json.append(c);
+                        }
+                    }
+                }
+            }
+            json.append('"');
+        }
+    }
+}
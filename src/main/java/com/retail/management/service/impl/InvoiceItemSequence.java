@@ -0,0 +1,61 @@
+package com.retail.management.service.impl;
+
+import com.retail.management.entity.InvoiceItem;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Moves invoice_items_seq past the existing invoice item ids at startup.
+ * Items used to take IDENTITY keys; Hibernate creates the sequence that
+ * replaced them starting at 1, so on an existing database the first checkout
+ * would reuse taken ids. The sequence is only ever moved forward, under an
+ * advisory lock so that nodes starting together do it one after another.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+@Slf4j
+public class InvoiceItemSequence {
+
+    private static final String SEQUENCE = "invoice_items_seq";
+    private static final String LOCK_KEY = "hashtext('invoice_items_seq')";
+
+    /**
+     * With a pooled optimizer a sequence value hands out the ids up to it, so the
+     * next value must be at least a full block above the highest id
+     */
+    private static final String ALIGN_SQL =
+            "SELECT setval('invoice_items_seq', t.max_id + " + InvoiceItem.ID_ALLOCATION_SIZE + ") " +
+            "FROM (SELECT MAX(id) AS max_id FROM invoice_items) t, invoice_items_seq s " +
+            "WHERE t.max_id IS NOT NULL AND s.last_value < t.max_id + " + InvoiceItem.ID_ALLOCATION_SIZE;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public InvoiceItemSequence(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @PostConstruct
+    public void init() {
+        try {
+            if (jdbcTemplate.queryForObject("SELECT to_regclass(?) IS NOT NULL", Boolean.class, SEQUENCE) != Boolean.TRUE) {
+                log.warn("Sequence {} does not exist; invoice items cannot be saved until it is created", SEQUENCE);
+                return;
+            }
+
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.query("SELECT pg_advisory_xact_lock(" + LOCK_KEY + ")", rs -> { });
+                jdbcTemplate.queryForList(ALIGN_SQL, Long.class)
+                        .forEach(value -> log.info("Moved {} past the existing invoice items to {}", SEQUENCE, value));
+            });
+        } catch (DataAccessException e) {
+            log.error("Could not align {} with the existing invoice items", SEQUENCE, e);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.retail.management.service.impl;
 
+import com.retail.management.cache.CatalogCache;
 import com.retail.management.dto.request.invoice.ApplyDiscountRequest;
 import com.retail.management.dto.request.invoice.CreateInvoiceRequest;
 import com.retail.management.dto.request.invoice.InvoiceItemRequest;
@@ -10,6 +11,8 @@ import com.retail.management.dto.response.invoice.InvoiceResponse;
 import com.retail.management.dto.response.payment.PaymentResponse;
 import com.retail.management.entity.*;
 import com.retail.management.enums.DiscountType;
+import com.retail.management.event.InvoiceSalesChangedEvent;
+import com.retail.management.event.InvoiceSalesSnapshot;
 import com.retail.management.enums.InvoiceStatus;
 import com.retail.management.exception.BusinessException;
 import com.retail.management.exception.ResourceNotFoundException;
@@ -19,13 +22,14 @@ import com.retail.management.mapper.PaymentMapper;
 import com.retail.management.repository.*;
 import com.retail.management.repository.specification.InvoiceSpecification;
 import com.retail.management.security.SecurityUtils;
+import com.retail.management.service.DocumentNumberService;
 import com.retail.management.service.InvoiceService;
+import com.retail.management.service.StockReservationService;
 import com.retail.management.util.CalculationUtil;
-import com.retail.management.util.InvoiceNumberGenerator;
 import com.retail.management.validator.PromoCodeValidator;
-import com.retail.management.validator.StockValidator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
@@ -35,7 +39,9 @@ import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -45,22 +51,27 @@ import java.util.stream.Collectors;
 public class InvoiceServiceImpl implements InvoiceService {
 
     private final InvoiceRepository invoiceRepository;
-    private final BranchRepository branchRepository;
     private final CustomerRepository customerRepository;
     private final UserRepository userRepository;
-    private final ProductRepository productRepository;
-    private final BranchStockRepository branchStockRepository;
+    private final CatalogCache catalogCache;
     private final PaymentRepository paymentRepository;
     private final DiscountRepository discountRepository;
     private final InvoiceMapper invoiceMapper;
     private final PaymentMapper paymentMapper;
     private final DiscountMapper discountMapper;
-    private final StockValidator stockValidator;
     private final PromoCodeValidator promoCodeValidator;
+    private final DocumentNumberService documentNumberService;
+    private final StockReservationService stockReservationService;
+    private final StockMutationCoordinator stockMutations;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
-    @Transactional
     public InvoiceResponse createInvoice(CreateInvoiceRequest request) {
+        // Own transaction, retried if it loses a stock row lock
+        return stockMutations.execute(() -> create(request));
+    }
+
+    private InvoiceResponse create(CreateInvoiceRequest request) {
         log.info("Creating invoice for branch: {}", request.getBranchId());
 
         // Check idempotency
@@ -73,8 +84,7 @@ public class InvoiceServiceImpl implements InvoiceService {
         }
 
         // Get branch
-        Branch branch = branchRepository.findById(request.getBranchId())
-                .orElseThrow(() -> new ResourceNotFoundException("Branch not found"));
+        Branch branch = catalogCache.getBranch(request.getBranchId());
 
         // Get cashier
         String username = SecurityUtils.getCurrentUsername()
@@ -89,13 +99,18 @@ public class InvoiceServiceImpl implements InvoiceService {
                     .orElseThrow(() -> new ResourceNotFoundException("Customer not found"));
         }
 
-        // Validate stock availability for all items
-        for (InvoiceItemRequest itemRequest : request.getItems()) {
-            stockValidator.validateStockAvailability(
-                    request.getBranchId(),
-                    itemRequest.getProductId(),
-                    itemRequest.getQuantity()
-            );
+        // Aggregate the basket per product and resolve all products from the catalog cache
+        Map<Long, Integer> requestedQuantities = request.getItems().stream()
+                .collect(Collectors.toMap(
+                        InvoiceItemRequest::getProductId,
+                        InvoiceItemRequest::getQuantity,
+                        Integer::sum,
+                        LinkedHashMap::new));
+
+        Map<Long, Product> products = catalogCache.getProducts(requestedQuantities.keySet());
+
+        if (products.size() < requestedQuantities.size()) {
+            throw new ResourceNotFoundException("Product not found");
         }
 
         // Create invoice
@@ -115,19 +130,18 @@ public class InvoiceServiceImpl implements InvoiceService {
                 .paidAmount(BigDecimal.ZERO)
                 .outstandingBalance(BigDecimal.ZERO)
                 .items(new ArrayList<>())
+                .discounts(new ArrayList<>())
                 .build();
 
         // Generate invoice number
-        Long sequence = invoiceRepository.count() + 1;
-        invoice.setInvoiceNumber(InvoiceNumberGenerator.generate(branch.getCode(), sequence));
+        invoice.setInvoiceNumber(documentNumberService.nextInvoiceNumber(branch.getCode()));
 
-        // Create invoice items and calculate totals
+        // Price the basket in memory
         BigDecimal subtotal = BigDecimal.ZERO;
         BigDecimal totalTax = BigDecimal.ZERO;
 
         for (InvoiceItemRequest itemRequest : request.getItems()) {
-            Product product = productRepository.findById(itemRequest.getProductId())
-                    .orElseThrow(() -> new ResourceNotFoundException("Product not found"));
+            Product product = products.get(itemRequest.getProductId());
 
             // Calculate line total
             BigDecimal unitPrice = product.getPrice();
@@ -151,16 +165,12 @@ public class InvoiceServiceImpl implements InvoiceService {
 
             subtotal = subtotal.add(lineSubtotal);
             totalTax = totalTax.add(lineTax);
-
-            // Reduce stock
-            BranchStock stock = branchStockRepository
-                    .findByBranchIdAndProductId(request.getBranchId(), product.getId())
-                    .orElseThrow(() -> new ResourceNotFoundException("Stock not found"));
-
-            stock.setQuantity(stock.getQuantity() - itemRequest.getQuantity());
-            branchStockRepository.save(stock);
         }
 
+        // Hold stock for the whole basket with one conditional statement until the invoice is paid
+        stockReservationService.reserveForInvoice(invoice.getInvoiceNumber(), request.getBranchId(),
+                requestedQuantities, request.getReservationId());
+
         invoice.setSubtotal(subtotal);
         invoice.setTaxAmount(totalTax);
 
@@ -187,7 +197,8 @@ public class InvoiceServiceImpl implements InvoiceService {
                     promoCode.setTimesUsed(promoCode.getTimesUsed() + 1);
                 }
 
-                discountRepository.save(discount);
+                // Persisted together with the invoice through the cascade
+                invoice.getDiscounts().add(discount);
             }
         }
 
@@ -199,6 +210,7 @@ public class InvoiceServiceImpl implements InvoiceService {
         invoice.setOutstandingBalance(totalAmount);
 
         invoice = invoiceRepository.save(invoice);
+        eventPublisher.publishEvent(new InvoiceSalesChangedEvent(null, InvoiceSalesSnapshot.of(invoice)));
         log.info("Invoice created successfully: {}", invoice.getInvoiceNumber());
 
         return invoiceMapper.toResponse(invoice);
@@ -281,8 +293,11 @@ public class InvoiceServiceImpl implements InvoiceService {
     }
 
     @Override
-    @Transactional
     public InvoiceResponse cancelInvoice(Long id) {
+        return stockMutations.execute(() -> cancel(id));
+    }
+
+    private InvoiceResponse cancel(Long id) {
         log.info("Cancelling invoice: {}", id);
 
         Invoice invoice = invoiceRepository.findById(id)
@@ -296,18 +311,14 @@ public class InvoiceServiceImpl implements InvoiceService {
             throw new BusinessException("Cannot cancel invoice with payments. Please process a refund instead.");
         }
 
-        // Restore stock
-        for (InvoiceItem item : invoice.getItems()) {
-            BranchStock stock = branchStockRepository
-                    .findByBranchIdAndProductId(invoice.getBranch().getId(), item.getProduct().getId())
-                    .orElseThrow(() -> new ResourceNotFoundException("Stock not found"));
+        InvoiceSalesSnapshot before = InvoiceSalesSnapshot.of(invoice);
 
-            stock.setQuantity(stock.getQuantity() + item.getQuantity());
-            branchStockRepository.save(stock);
-        }
+        // Release or restore stock
+        stockReservationService.releaseForInvoice(invoice);
 
         invoice.setStatus(InvoiceStatus.CANCELLED);
         invoice = invoiceRepository.save(invoice);
+        eventPublisher.publishEvent(new InvoiceSalesChangedEvent(before, InvoiceSalesSnapshot.of(invoice)));
 
         log.info("Invoice cancelled successfully: {}", invoice.getInvoiceNumber());
         return invoiceMapper.toResponse(invoice);
@@ -6,15 +6,19 @@ import com.retail.management.entity.Invoice;
 import com.retail.management.entity.Payment;
 import com.retail.management.enums.InvoiceStatus;
 import com.retail.management.enums.PaymentStatus;
+import com.retail.management.event.InvoiceSalesChangedEvent;
+import com.retail.management.event.InvoiceSalesSnapshot;
 import com.retail.management.exception.ResourceNotFoundException;
 import com.retail.management.mapper.PaymentMapper;
 import com.retail.management.repository.InvoiceRepository;
 import com.retail.management.repository.PaymentRepository;
 import com.retail.management.security.SecurityUtils;
 import com.retail.management.service.PaymentService;
+import com.retail.management.service.StockReservationService;
 import com.retail.management.validator.PaymentValidator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -34,6 +38,8 @@ public class PaymentServiceImpl implements PaymentService {
     private final InvoiceRepository invoiceRepository;
     private final PaymentMapper paymentMapper;
     private final PaymentValidator paymentValidator;
+    private final StockReservationService stockReservationService;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     @Transactional
@@ -63,9 +69,15 @@ public class PaymentServiceImpl implements PaymentService {
         payment = paymentRepository.save(payment);
 
         // Update invoice
+        InvoiceSalesSnapshot before = InvoiceSalesSnapshot.of(invoice);
         BigDecimal newPaidAmount = invoice.getPaidAmount().add(request.getAmount());
         BigDecimal newOutstanding = invoice.getTotalAmount().subtract(newPaidAmount);
 
+        // The first payment takes the stock held for the invoice
+        if (invoice.getPaidAmount().compareTo(BigDecimal.ZERO) == 0) {
+            stockReservationService.confirmForInvoice(invoice);
+        }
+
         invoice.setPaidAmount(newPaidAmount);
         invoice.setOutstandingBalance(newOutstanding);
 
@@ -77,6 +89,7 @@ public class PaymentServiceImpl implements PaymentService {
         }
 
         invoiceRepository.save(invoice);
+        eventPublisher.publishEvent(new InvoiceSalesChangedEvent(before, InvoiceSalesSnapshot.of(invoice)));
 
         log.info("Payment processed successfully for invoice: {}", invoice.getInvoiceNumber());
         return paymentMapper.toResponse(payment);
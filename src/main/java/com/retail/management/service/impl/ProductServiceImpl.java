@@ -1,10 +1,13 @@
 package com.retail.management.service.impl;
 
+import com.retail.management.cache.CatalogCache;
+import com.retail.management.config.CacheConfig;
 import com.retail.management.dto.request.product.CreateProductRequest;
 import com.retail.management.dto.request.product.UpdateProductRequest;
 import com.retail.management.dto.request.search.ProductSearchCriteria;
 import com.retail.management.dto.response.product.ProductResponse;
 import com.retail.management.entity.Product;
+import com.retail.management.event.LowStockThresholdChangedEvent;
 import com.retail.management.exception.DuplicateResourceException;
 import com.retail.management.exception.ResourceNotFoundException;
 import com.retail.management.mapper.ProductMapper;
@@ -15,6 +18,8 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
@@ -23,6 +28,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Objects;
 
 @Service
 @RequiredArgsConstructor
@@ -31,9 +37,12 @@ public class ProductServiceImpl implements ProductService {
 
     private final ProductRepository productRepository;
     private final ProductMapper productMapper;
+    private final CatalogCache catalogCache;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     @Transactional
+    @CacheEvict(value = CacheConfig.CATEGORIES, allEntries = true)
     public ProductResponse createProduct(CreateProductRequest request) {
         log.info("Creating product: {}", request.getName());
 
@@ -52,11 +61,8 @@ public class ProductServiceImpl implements ProductService {
 
     @Override
     @Transactional(readOnly = true)
-    @Cacheable(value = "products", key = "#id")
     public ProductResponse getProductById(Long id) {
-        Product product = productRepository.findById(id)
-                .orElseThrow(() -> new ResourceNotFoundException("Product", "id", id));
-        return productMapper.toResponse(product);
+        return productMapper.toResponse(catalogCache.getProduct(id));
     }
 
     @Override
@@ -83,16 +89,23 @@ public class ProductServiceImpl implements ProductService {
 
     @Override
     @Transactional
-    @CacheEvict(value = "products", key = "#id")
+    @Caching(evict = {
+            @CacheEvict(value = CacheConfig.PRODUCTS, key = "#id"),
+            @CacheEvict(value = CacheConfig.CATEGORIES, allEntries = true)
+    })
     public ProductResponse updateProduct(Long id, UpdateProductRequest request) {
         log.info("Updating product: {}", id);
 
         Product product = productRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Product", "id", id));
 
+        Integer previousThreshold = product.getLowStockThreshold();
         productMapper.updateEntityFromRequest(request, product);
 
         product = productRepository.save(product);
+        if (!Objects.equals(previousThreshold, product.getLowStockThreshold())) {
+            eventPublisher.publishEvent(new LowStockThresholdChangedEvent(product.getId()));
+        }
         log.info("Product updated successfully: {}", product.getName());
 
         return productMapper.toResponse(product);
@@ -100,7 +113,7 @@ public class ProductServiceImpl implements ProductService {
 
     @Override
     @Transactional
-    @CacheEvict(value = "products", key = "#productId")
+    @CacheEvict(value = CacheConfig.PRODUCTS, key = "#productId")
     public ProductResponse updateProductImages(Long productId, String imageUrl, String thumbnailUrl) {
         Product product = productRepository.findById(productId)
                 .orElseThrow(() -> new ResourceNotFoundException("Product", "id", productId));
@@ -114,7 +127,10 @@ public class ProductServiceImpl implements ProductService {
 
     @Override
     @Transactional
-    @CacheEvict(value = "products", key = "#id")
+    @Caching(evict = {
+            @CacheEvict(value = CacheConfig.PRODUCTS, key = "#id"),
+            @CacheEvict(value = CacheConfig.CATEGORIES, allEntries = true)
+    })
     public void deleteProduct(Long id) {
         log.info("Soft deleting product: {}", id);
 
@@ -130,6 +146,7 @@ public class ProductServiceImpl implements ProductService {
 
     @Override
     @Transactional(readOnly = true)
+    @Cacheable(value = CacheConfig.CATEGORIES, key = "'all'")
     public List<String> getAllCategories() {
         return productRepository.findAllCategories();
     }
@@ -1,5 +1,6 @@
 package com.retail.management.service.impl;
 
+import com.retail.management.config.CacheConfig;
 import com.retail.management.dto.request.promo.CreatePromoCodeRequest;
 import com.retail.management.dto.request.promo.UpdatePromoCodeRequest;
 import com.retail.management.dto.response.promo.PromoCodeResponse;
@@ -53,7 +54,7 @@ public class PromoCodeServiceImpl implements PromoCodeService {
 
     @Override
     @Transactional(readOnly = true)
-    @Cacheable(value = "promo-codes", key = "#id")
+    @Cacheable(value = CacheConfig.PROMO_CODES, key = "#id")
     public PromoCodeResponse getPromoCodeById(Long id) {
         PromoCode promoCode = promoCodeRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("PromoCode", "id", id));
@@ -79,7 +80,7 @@ public class PromoCodeServiceImpl implements PromoCodeService {
 
     @Override
     @Transactional
-    @CacheEvict(value = "promo-codes", key = "#id")
+    @CacheEvict(value = CacheConfig.PROMO_CODES, key = "#id")
     public PromoCodeResponse updatePromoCode(Long id, UpdatePromoCodeRequest request) {
         log.info("Updating promo code: {}", id);
 
@@ -95,7 +96,7 @@ public class PromoCodeServiceImpl implements PromoCodeService {
 
     @Override
     @Transactional
-    @CacheEvict(value = "promo-codes", key = "#id")
+    @CacheEvict(value = CacheConfig.PROMO_CODES, key = "#id")
     public void deletePromoCode(Long id) {
         log.info("Soft deleting promo code: {}", id);
 
@@ -2,24 +2,30 @@ package com.retail.management.service.impl;
 
 import com.retail.management.dto.request.search.ReportFilterRequest;
 import com.retail.management.dto.response.report.*;
-import com.retail.management.entity.Invoice;
+import com.retail.management.entity.Branch;
 import com.retail.management.enums.DiscountType;
 import com.retail.management.enums.InvoiceStatus;
 import com.retail.management.exception.ResourceNotFoundException;
 import com.retail.management.repository.*;
+import com.retail.management.repository.projection.BranchPerformanceTotals;
+import com.retail.management.repository.projection.BranchSalesTotal;
+import com.retail.management.repository.projection.PaymentMethodTotal;
+import com.retail.management.repository.projection.ProductSales;
+import com.retail.management.repository.projection.SalesTotals;
 import com.retail.management.service.ReportService;
 import com.retail.management.util.CalculationUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -33,6 +39,8 @@ public class ReportServiceImpl implements ReportService {
     private final PaymentRepository paymentRepository;
     private final DiscountRepository discountRepository;
     private final BranchStockRepository branchStockRepository;
+    private final DailyBranchSalesRepository dailyBranchSalesRepository;
+    private final BranchMetricsCollector branchMetricsCollector;
 
     @Override
     @Transactional(readOnly = true)
@@ -42,43 +50,23 @@ public class ReportServiceImpl implements ReportService {
         var branch = branchRepository.findById(branchId)
                 .orElseThrow(() -> new ResourceNotFoundException("Branch not found"));
 
-        var invoices = invoiceRepository.findByBranchAndDate(branchId, date);
-
-        BigDecimal totalSales = invoices.stream()
-                .filter(inv -> inv.getStatus() == InvoiceStatus.PAID)
-                .map(Invoice::getTotalAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        BigDecimal totalTax = invoices.stream()
-                .map(Invoice::getTaxAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        BigDecimal totalDiscount = invoices.stream()
-                .map(Invoice::getDiscountAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        Long invoiceCount = (long) invoices.size();
+        SalesTotals totals = dailyBranchSalesRepository.sumByDateRange(date, date, branchId, InvoiceStatus.PAID);
 
         // Get top products for the day
         List<ProductPerformanceDTO> topProducts = invoiceItemRepository
-                .findTopSellingProducts(date, date)
+                .findTopSellingProducts(date, date, branchId, PageRequest.of(0, 5))
                 .stream()
-                .limit(5)
-                .map(row -> ProductPerformanceDTO.builder()
-                        .productId((Long) row[0])
-                        .productName((String) row[1])
-                        .totalQuantitySold(((Number) row[2]).intValue())
-                        .build())
+                .map(this::toProductPerformance)
                 .collect(Collectors.toList());
 
         return DailySalesReport.builder()
                 .branchId(branchId)
                 .branchName(branch.getName())
                 .date(date)
-                .totalSales(totalSales)
-                .totalTax(totalTax)
-                .totalDiscount(totalDiscount)
-                .invoiceCount(invoiceCount)
+                .totalSales(totals.getPaidSales())
+                .totalTax(totals.getTaxAmount())
+                .totalDiscount(totals.getDiscountAmount())
+                .invoiceCount(totals.getInvoiceCount())
                 .topProducts(topProducts)
                 .build();
     }
@@ -88,45 +76,33 @@ public class ReportServiceImpl implements ReportService {
     public SalesReportResponse generateSalesReport(ReportFilterRequest filter) {
         log.info("Generating sales report from {} to {}", filter.getStartDate(), filter.getEndDate());
 
-        var invoices = invoiceRepository.findByDateRange(filter.getStartDate(), filter.getEndDate());
-
-        if (filter.getBranchId() != null) {
-            invoices = invoices.stream()
-                    .filter(inv -> inv.getBranch().getId().equals(filter.getBranchId()))
-                    .collect(Collectors.toList());
-        }
-
-        BigDecimal totalSales = invoices.stream()
-                .filter(inv -> inv.getStatus() == InvoiceStatus.PAID)
-                .map(Invoice::getTotalAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        SalesTotals totals = dailyBranchSalesRepository.sumByDateRange(
+                filter.getStartDate(), filter.getEndDate(), filter.getBranchId(), InvoiceStatus.PAID);
 
-        BigDecimal totalTax = invoices.stream()
-                .map(Invoice::getTaxAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        BigDecimal totalDiscount = invoices.stream()
-                .map(Invoice::getDiscountAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        BigDecimal totalSales = totals.getPaidSales();
+        BigDecimal totalTax = totals.getTaxAmount();
+        BigDecimal totalDiscount = totals.getDiscountAmount();
 
         BigDecimal netRevenue = totalSales.subtract(totalDiscount);
 
-        Long totalInvoices = (long) invoices.size();
-        Long totalCustomers = invoices.stream()
-                .filter(inv -> inv.getCustomer() != null)
-                .map(inv -> inv.getCustomer().getId())
-                .distinct()
-                .count();
+        Long totalInvoices = totals.getInvoiceCount();
+        Long totalCustomers = invoiceRepository.countDistinctCustomers(
+                filter.getStartDate(), filter.getEndDate(), filter.getBranchId());
 
         // Sales by branch
-        Map<String, BigDecimal> salesByBranch = invoices.stream()
-                .collect(Collectors.groupingBy(
-                        inv -> inv.getBranch().getName(),
-                        Collectors.reducing(BigDecimal.ZERO, Invoice::getTotalAmount, BigDecimal::add)
-                ));
-
-        // Sales by payment method (simplified - would need to query payments)
-        Map<String, BigDecimal> salesByPaymentMethod = new HashMap<>();
+        Map<String, BigDecimal> salesByBranch = dailyBranchSalesRepository
+                .sumByBranch(filter.getStartDate(), filter.getEndDate(), filter.getBranchId())
+                .stream()
+                .collect(Collectors.toMap(BranchSalesTotal::getBranchName, BranchSalesTotal::getTotalAmount, BigDecimal::add));
+
+        // Sales by payment method
+        Map<String, BigDecimal> salesByPaymentMethod = paymentRepository
+                .getPaymentMethodBreakdown(
+                        filter.getStartDate().atStartOfDay(),
+                        filter.getEndDate().atTime(23, 59, 59),
+                        filter.getBranchId())
+                .stream()
+                .collect(Collectors.toMap(row -> row.getPaymentMethod().name(), PaymentMethodTotal::getTotalAmount));
 
         return SalesReportResponse.builder()
                 .startDate(filter.getStartDate())
@@ -146,33 +122,45 @@ public class ReportServiceImpl implements ReportService {
     @Transactional(readOnly = true)
     public List<ProductPerformanceDTO> getTopSellingProducts(ReportFilterRequest filter, int limit) {
         return invoiceItemRepository
-                .findTopSellingProducts(filter.getStartDate(), filter.getEndDate())
+                .findTopSellingProducts(filter.getStartDate(), filter.getEndDate(), filter.getBranchId(),
+                        PageRequest.of(0, limit))
                 .stream()
-                .limit(limit)
-                .map(row -> ProductPerformanceDTO.builder()
-                        .productId((Long) row[0])
-                        .productName((String) row[1])
-                        .totalQuantitySold(((Number) row[2]).intValue())
-                        .build())
+                .map(this::toProductPerformance)
                 .collect(Collectors.toList());
     }
 
+    private ProductPerformanceDTO toProductPerformance(ProductSales row) {
+        return ProductPerformanceDTO.builder()
+                .productId(row.getProductId())
+                .productName(row.getProductName())
+                .sku(row.getSku())
+                .totalQuantitySold(row.getTotalQuantity().intValue())
+                .totalRevenue(row.getTotalRevenue())
+                .build();
+    }
+
     @Override
     @Transactional(readOnly = true)
     public List<BranchPerformanceResponse> getBranchPerformance(ReportFilterRequest filter) {
         var branches = branchRepository.findAllActiveBranches();
 
-        return branches.stream()
-                .map(branch -> {
-                    var invoices = invoiceRepository.findByBranchAndDateRange(
-                            branch.getId(), filter.getStartDate(), filter.getEndDate());
+        // One grouped pass over the rollup for every branch
+        Map<Long, BranchPerformanceTotals> totalsByBranch = dailyBranchSalesRepository
+                .sumPerformanceByBranch(filter.getStartDate(), filter.getEndDate(), InvoiceStatus.PAID)
+                .stream()
+                .collect(Collectors.toMap(BranchPerformanceTotals::getBranchId, Function.identity()));
 
-                    BigDecimal totalSales = invoices.stream()
-                            .filter(inv -> inv.getStatus() == InvoiceStatus.PAID)
-                            .map(Invoice::getTotalAmount)
-                            .reduce(BigDecimal.ZERO, BigDecimal::add);
+        Map<Long, Map<String, BigDecimal>> customMetrics = branchMetricsCollector.hasProviders()
+                ? branchMetricsCollector.collect(
+                        branches.stream().map(Branch::getId).toList(), filter.getStartDate(), filter.getEndDate())
+                : Map.of();
 
-                    Long invoiceCount = (long) invoices.size();
+        List<BranchPerformanceResponse> performance = branches.stream()
+                .map(branch -> {
+                    BranchPerformanceTotals totals = totalsByBranch.get(branch.getId());
+
+                    BigDecimal totalSales = totals != null ? totals.getPaidSales() : BigDecimal.ZERO;
+                    Long invoiceCount = totals != null ? totals.getInvoiceCount() : 0L;
 
                     BigDecimal avgOrderValue = invoiceCount > 0
                             ? totalSales.divide(BigDecimal.valueOf(invoiceCount), 2, java.math.RoundingMode.HALF_UP)
@@ -185,28 +173,27 @@ public class ReportServiceImpl implements ReportService {
                             .invoiceCount(invoiceCount)
                             .totalSales(totalSales)
                             .averageOrderValue(avgOrderValue)
+                            .customMetrics(customMetrics.get(branch.getId()))
                             .build();
                 })
                 .sorted((a, b) -> b.getTotalSales().compareTo(a.getTotalSales()))
                 .collect(Collectors.toList());
+
+        for (int i = 0; i < performance.size(); i++) {
+            performance.get(i).setRank(i + 1);
+        }
+        return performance;
     }
 
     @Override
     @Transactional(readOnly = true)
     public TaxSummaryResponse getTaxSummary(ReportFilterRequest filter) {
-        var invoices = invoiceRepository.findByDateRange(filter.getStartDate(), filter.getEndDate());
-
-        BigDecimal totalTax = invoices.stream()
-                .map(Invoice::getTaxAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
-
-        BigDecimal totalSalesBeforeTax = invoices.stream()
-                .map(Invoice::getSubtotal)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        SalesTotals totals = dailyBranchSalesRepository.sumByDateRange(
+                filter.getStartDate(), filter.getEndDate(), null, InvoiceStatus.PAID);
 
-        BigDecimal totalSalesAfterTax = invoices.stream()
-                .map(Invoice::getTotalAmount)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+        BigDecimal totalTax = totals.getTaxAmount();
+        BigDecimal totalSalesBeforeTax = totals.getSubtotal();
+        BigDecimal totalSalesAfterTax = totals.getTotalAmount();
 
         BigDecimal avgTaxRate = totalSalesBeforeTax.compareTo(BigDecimal.ZERO) > 0
                 ? totalTax.multiply(new BigDecimal("100"))
@@ -232,9 +219,9 @@ public class ReportServiceImpl implements ReportService {
         return discountRepository.getDiscountSummaryByType(startDateTime, endDateTime)
                 .stream()
                 .map(row -> {
-                    var discountType = (DiscountType) row[0];
-                    var totalAmount = (BigDecimal) row[1];
-                    var usageCount = ((Number) row[2]).longValue();
+                    var discountType = row.getDiscountType();
+                    var totalAmount = row.getTotalAmount();
+                    var usageCount = row.getUsageCount();
                     var avgDiscount = usageCount > 0
                             ? totalAmount.divide(BigDecimal.valueOf(usageCount), 2, java.math.RoundingMode.HALF_UP)
                             : BigDecimal.ZERO;
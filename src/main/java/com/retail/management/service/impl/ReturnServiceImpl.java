@@ -5,16 +5,21 @@ import com.retail.management.dto.request.returnDto.ReturnItemRequest;
 import com.retail.management.dto.response.returnDto.ReturnResponse;
 import com.retail.management.entity.*;
 import com.retail.management.enums.ReturnStatus;
+import com.retail.management.enums.StockAdjustmentType;
+import com.retail.management.event.InvoiceSalesChangedEvent;
+import com.retail.management.event.InvoiceSalesSnapshot;
+import com.retail.management.event.ReturnStatusChangedEvent;
 import com.retail.management.exception.BusinessException;
 import com.retail.management.exception.ResourceNotFoundException;
 import com.retail.management.mapper.ReturnMapper;
 import com.retail.management.repository.*;
 import com.retail.management.security.SecurityUtils;
+import com.retail.management.service.DocumentNumberService;
 import com.retail.management.service.ReturnService;
 import com.retail.management.util.CalculationUtil;
-import com.retail.management.util.InvoiceNumberGenerator;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -23,6 +28,8 @@ import org.springframework.transaction.annotation.Transactional;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
@@ -35,6 +42,9 @@ public class ReturnServiceImpl implements ReturnService {
     private final ProductRepository productRepository;
     private final BranchStockRepository branchStockRepository;
     private final ReturnMapper returnMapper;
+    private final DocumentNumberService documentNumberService;
+    private final StockMutationCoordinator stockMutations;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     @Transactional
@@ -68,10 +78,7 @@ public class ReturnServiceImpl implements ReturnService {
                 .build();
 
         // Generate return number
-        Long sequence = returnRepository.count() + 1;
-        returnRecord.setReturnNumber(
-                InvoiceNumberGenerator.generateReturnNumber(invoice.getBranch().getCode(), sequence)
-        );
+        returnRecord.setReturnNumber(documentNumberService.nextReturnNumber(invoice.getBranch().getCode()));
 
         // Create return items and calculate total
         BigDecimal totalReturnAmount = BigDecimal.ZERO;
@@ -117,6 +124,7 @@ public class ReturnServiceImpl implements ReturnService {
 
         returnRecord.setTotalReturnAmount(totalReturnAmount);
         returnRecord = returnRepository.save(returnRecord);
+        eventPublisher.publishEvent(new ReturnStatusChangedEvent(returnRecord.getId(), null, returnRecord.getStatus()));
 
         log.info("Return created successfully: {}", returnRecord.getReturnNumber());
         return returnMapper.toResponse(returnRecord);
@@ -138,8 +146,11 @@ public class ReturnServiceImpl implements ReturnService {
     }
 
     @Override
-    @Transactional
     public ReturnResponse approveReturn(Long id) {
+        return stockMutations.execute(() -> approve(id));
+    }
+
+    private ReturnResponse approve(Long id) {
         log.info("Approving return: {}", id);
 
         Return returnRecord = returnRepository.findById(id)
@@ -149,21 +160,24 @@ public class ReturnServiceImpl implements ReturnService {
             throw new BusinessException("Only pending returns can be approved");
         }
 
-        // Restore stock for each item
-        for (ReturnItem item : returnRecord.getItems()) {
-            BranchStock stock = branchStockRepository
-                    .findByBranchIdAndProductId(
-                            returnRecord.getBranch().getId(),
-                            item.getProduct().getId()
-                    )
-                    .orElseThrow(() -> new ResourceNotFoundException("Stock not found"));
-
-            stock.setQuantity(stock.getQuantity() + item.getQuantity());
-            branchStockRepository.save(stock);
-        }
+        // Restore stock for all items in one statement
+        Map<Long, Integer> restoredQuantities = returnRecord.getItems().stream()
+                .collect(Collectors.toMap(
+                        item -> item.getProduct().getId(),
+                        ReturnItem::getQuantity,
+                        Integer::sum));
+        stockMutations.lock(returnRecord.getBranch().getId(), restoredQuantities.keySet());
+        branchStockRepository.incrementStock(returnRecord.getBranch().getId(), restoredQuantities,
+                StockMovement.of(StockAdjustmentType.RETURN, returnRecord.getReturnNumber()));
+
+        InvoiceSalesSnapshot before = InvoiceSalesSnapshot.of(returnRecord.getInvoice());
 
         returnRecord.setStatus(ReturnStatus.COMPLETED);
         returnRecord = returnRepository.save(returnRecord);
+        eventPublisher.publishEvent(new InvoiceSalesChangedEvent(before,
+                before.toBuilder().returnAmount(returnRecord.getTotalReturnAmount()).build()));
+        eventPublisher.publishEvent(new ReturnStatusChangedEvent(returnRecord.getId(),
+                ReturnStatus.PENDING, ReturnStatus.COMPLETED));
 
         log.info("Return approved and stock restored: {}", returnRecord.getReturnNumber());
         return returnMapper.toResponse(returnRecord);
@@ -184,6 +198,8 @@ public class ReturnServiceImpl implements ReturnService {
         returnRecord.setStatus(ReturnStatus.REJECTED);
         returnRecord.setNotes(returnRecord.getNotes() + "\nRejection reason: " + reason);
         returnRecord = returnRepository.save(returnRecord);
+        eventPublisher.publishEvent(new ReturnStatusChangedEvent(returnRecord.getId(),
+                ReturnStatus.PENDING, ReturnStatus.REJECTED));
 
         log.info("Return rejected: {}", returnRecord.getReturnNumber());
         return returnMapper.toResponse(returnRecord);
@@ -1,5 +1,6 @@
 package com.retail.management.service.impl;
 
+import com.retail.management.config.CacheConfig;
 import com.retail.management.dto.response.role.RoleResponse;
 import com.retail.management.entity.Role;
 import com.retail.management.exception.ResourceNotFoundException;
@@ -7,6 +8,7 @@ import com.retail.management.mapper.RoleMapper;
 import com.retail.management.repository.RoleRepository;
 import com.retail.management.service.RoleService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -22,6 +24,7 @@ public class RoleServiceImpl implements RoleService {
 
     @Override
     @Transactional(readOnly = true)
+    @Cacheable(value = CacheConfig.ROLES, key = "'all'")
     public List<RoleResponse> getAllRoles() {
         return roleRepository.findAll()
                 .stream()
@@ -31,6 +34,7 @@ public class RoleServiceImpl implements RoleService {
 
     @Override
     @Transactional(readOnly = true)
+    @Cacheable(value = CacheConfig.ROLES, key = "'id:' + #id")
     public RoleResponse getRoleById(Long id) {
         Role role = roleRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("Role", "id", id));
@@ -39,6 +43,7 @@ public class RoleServiceImpl implements RoleService {
 
     @Override
     @Transactional(readOnly = true)
+    @Cacheable(value = CacheConfig.ROLES, key = "'name:' + #name")
     public RoleResponse getRoleByName(String name) {
         Role role = roleRepository.findByName(name)
                 .orElseThrow(() -> new ResourceNotFoundException("Role", "name", name));
@@ -0,0 +1,84 @@
+package com.retail.management.service.impl;
+
+import com.retail.management.event.InvoiceSalesChangedEvent;
+import com.retail.management.event.InvoiceSalesSnapshot;
+import com.retail.management.exception.BadRequestException;
+import com.retail.management.repository.DailyBranchSalesRepository;
+import com.retail.management.service.SalesRollupService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+
+/**
+ * Maintains daily_branch_sales. Invoice changes only queue deltas in their own
+ * transaction; a scheduled drain folds them into the rollup rows, so checkouts
+ * of a branch never wait on its row for the day.
+ */
+@Service
+@Slf4j
+public class SalesRollupServiceImpl implements SalesRollupService {
+
+    private final DailyBranchSalesRepository dailyBranchSalesRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int drainBatchSize;
+
+    public SalesRollupServiceImpl(DailyBranchSalesRepository dailyBranchSalesRepository,
+                                  TransactionTemplate transactionTemplate,
+                                  @Value("${app.report.sales-rollup.drain-batch-size:1000}") int drainBatchSize) {
+        this.dailyBranchSalesRepository = dailyBranchSalesRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.drainBatchSize = drainBatchSize;
+    }
+
+    /**
+     * Queue the move of the invoice's figures from the row of its previous state
+     * to the row of its new state. Runs in the publishing transaction, so the
+     * deltas commit or roll back together with the invoice.
+     */
+    @Override
+    @EventListener
+    @Transactional
+    public void onInvoiceSalesChanged(InvoiceSalesChangedEvent event) {
+        InvoiceSalesSnapshot before = event.getBefore();
+        InvoiceSalesSnapshot after = event.getAfter();
+        if (after.equals(before)) {
+            return;
+        }
+
+        if (before != null) {
+            dailyBranchSalesRepository.applyDelta(before, -1);
+        }
+        dailyBranchSalesRepository.applyDelta(after, 1);
+    }
+
+    @Override
+    @Scheduled(fixedDelayString = "${app.report.sales-rollup.drain-interval-ms:1000}")
+    public int drain() {
+        int total = 0;
+        int drained;
+        do {
+            drained = transactionTemplate.execute(status -> dailyBranchSalesRepository.drain(drainBatchSize));
+            total += drained;
+        } while (drained == drainBatchSize);
+        return total;
+    }
+
+    @Override
+    @Transactional
+    public int rebuild(LocalDate startDate, LocalDate endDate) {
+        if (startDate.isAfter(endDate)) {
+            throw new BadRequestException("Start date must not be after end date");
+        }
+
+        log.info("Rebuilding daily sales rollup from {} to {}", startDate, endDate);
+        int rows = dailyBranchSalesRepository.rebuild(startDate, endDate);
+        log.info("Daily sales rollup rebuilt: {} rows", rows);
+        return rows;
+    }
+}
@@ -0,0 +1,219 @@
+package com.retail.management.service.impl;
+
+import com.retail.management.event.StockChangedEvent;
+import com.retail.management.exception.BusinessException;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Snapshots and replay over the stock ledger (stock_adjustments), which every
+ * stock movement appends to in the statement that applies it.
+ * <p>
+ * A snapshot records every product's quantity per branch as of a ledger id:
+ * the previous snapshot plus the ledger rows after it. The first snapshot is
+ * taken from branch_stocks itself, which also covers stock from before the
+ * ledger was complete. Snapshots stop short of the last few minutes (the lag)
+ * so that rows from transactions still in flight are not skipped; rows that
+ * commit later than that are read by replay instead, since replay goes by id.
+ * <p>
+ * Quantity at a point in time is the last snapshot before it plus the ledger
+ * rows after that snapshot, read through the (branch_id, product_id, id) index.
+ * Snapshots older than the retention are deleted, the latest one always kept,
+ * so history reaches back as far as the oldest remaining snapshot.
+ * The same replay rebuilds branch_stocks.quantity, which is a projection of
+ * the ledger.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+@Slf4j
+public class StockLedger {
+
+    private static final String BOOTSTRAP_SNAPSHOT_SQL =
+            "INSERT INTO stock_snapshots (branch_id, product_id, snapshot_at, last_adjustment_id, quantity) " +
+            "SELECT branch_id, product_id, LOCALTIMESTAMP, ?, quantity FROM branch_stocks";
+
+    private static final String SNAPSHOT_SQL =
+            "INSERT INTO stock_snapshots (branch_id, product_id, snapshot_at, last_adjustment_id, quantity) " +
+            "SELECT branch_id, product_id, ?, ?, COALESCE(s.quantity, 0) + COALESCE(d.delta, 0) " +
+            "FROM (SELECT branch_id, product_id, quantity FROM stock_snapshots WHERE snapshot_at = ?) s " +
+            "FULL JOIN (SELECT branch_id, product_id, SUM(quantity_change) AS delta FROM stock_adjustments " +
+            "WHERE id > ? AND id <= ? GROUP BY branch_id, product_id) d USING (branch_id, product_id)";
+
+    /** Highest id below the boundary such that no row at or after the boundary has a lower id */
+    private static final String CUTOFF_SQL =
+            "SELECT LEAST(MAX(id) FILTER (WHERE adjustment_date < ?), MIN(id) FILTER (WHERE adjustment_date >= ?) - 1) " +
+            "FROM stock_adjustments WHERE id > ?";
+
+    private static final String REBUILD_SQL =
+            "UPDATE branch_stocks bs SET quantity = t.quantity, version = COALESCE(bs.version, 0) + 1, " +
+            "updated_at = LOCALTIMESTAMP, updated_by = 'SYSTEM' " +
+            "FROM (SELECT product_id, COALESCE(s.quantity, 0) + COALESCE(d.delta, 0) AS quantity " +
+            "FROM (SELECT product_id, quantity FROM stock_snapshots WHERE branch_id = ? AND snapshot_at = ?) s " +
+            "FULL JOIN (SELECT product_id, SUM(quantity_change) AS delta FROM stock_adjustments " +
+            "WHERE branch_id = ? AND id > ? GROUP BY product_id) d USING (product_id)) t " +
+            "WHERE bs.branch_id = ? AND bs.product_id = t.product_id AND bs.quantity <> t.quantity " +
+            "RETURNING bs.product_id, bs.quantity";
+
+    private static final String PRUNE_SQL =
+            "DELETE FROM stock_snapshots WHERE snapshot_at < ? " +
+            "AND snapshot_at < (SELECT MAX(snapshot_at) FROM stock_snapshots)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final long lagMinutes;
+    private final int retentionDays;
+
+    public StockLedger(JdbcTemplate jdbcTemplate,
+                       TransactionTemplate transactionTemplate,
+                       ApplicationEventPublisher eventPublisher,
+                       @Value("${app.stock.ledger.snapshot-lag-minutes:5}") long lagMinutes,
+                       @Value("${app.stock.ledger.snapshot-retention-days:90}") int retentionDays) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.lagMinutes = lagMinutes;
+        this.retentionDays = retentionDays;
+    }
+
+    @PostConstruct
+    public void init() {
+        try {
+            // Ledger rows written by SQL carry no user id for system actions; older schemas require one
+            List<String> nullable = jdbcTemplate.queryForList("SELECT is_nullable FROM information_schema.columns " +
+                    "WHERE table_schema = current_schema() AND table_name = 'stock_adjustments' " +
+                    "AND column_name = 'adjusted_by'", String.class);
+            if (nullable.contains("NO")) {
+                jdbcTemplate.execute("ALTER TABLE stock_adjustments ALTER COLUMN adjusted_by DROP NOT NULL");
+            }
+            if (latestSnapshot(null) == null) {
+                transactionTemplate.executeWithoutResult(status -> bootstrap());
+            }
+        } catch (DataAccessException e) {
+            log.error("Could not set up the stock ledger snapshots", e);
+        }
+    }
+
+    /**
+     * Take a snapshot of the ledger up to the lag and delete expired ones
+     */
+    @Scheduled(cron = "${app.stock.ledger.snapshot-cron:0 15 2 * * *}")
+    public void snapshot() {
+        transactionTemplate.executeWithoutResult(status -> {
+            Snapshot previous = latestSnapshot(null);
+            if (previous == null) {
+                bootstrap();
+                return;
+            }
+
+            LocalDateTime boundary = LocalDateTime.now().minusMinutes(lagMinutes);
+            Long cutoff = jdbcTemplate.queryForObject(CUTOFF_SQL, Long.class,
+                    Timestamp.valueOf(boundary), Timestamp.valueOf(boundary), previous.lastAdjustmentId);
+            if (cutoff != null && cutoff > previous.lastAdjustmentId) {
+                int rows = jdbcTemplate.update(SNAPSHOT_SQL, Timestamp.valueOf(boundary), cutoff,
+                        Timestamp.valueOf(previous.at), previous.lastAdjustmentId, cutoff);
+                log.info("Stock snapshot at {} up to ledger id {}: {} rows", boundary, cutoff, rows);
+            }
+
+            if (retentionDays > 0) {
+                int deleted = jdbcTemplate.update(PRUNE_SQL,
+                        Timestamp.valueOf(LocalDateTime.now().minusDays(retentionDays)));
+                if (deleted > 0) {
+                    log.info("Deleted {} stock snapshot rows older than {} days", deleted, retentionDays);
+                }
+            }
+        });
+    }
+
+    /**
+     * A product's stock quantity in a branch at the given time
+     */
+    public int quantityAt(Long branchId, Long productId, LocalDateTime at) {
+        Snapshot snapshot = latestSnapshot(at);
+        if (snapshot == null) {
+            List<Timestamp> first = jdbcTemplate.queryForList("SELECT MIN(snapshot_at) FROM stock_snapshots", Timestamp.class);
+            if (!first.isEmpty() && first.get(0) != null) {
+                throw new BusinessException("Stock history starts at " + first.get(0).toLocalDateTime());
+            }
+            // No snapshot yet: the ledger is complete from the start
+            snapshot = new Snapshot(null, 0L);
+        }
+
+        int base = snapshot.at == null ? 0 : jdbcTemplate.query(
+                "SELECT quantity FROM stock_snapshots WHERE branch_id = ? AND product_id = ? AND snapshot_at = ?",
+                rs -> rs.next() ? rs.getInt(1) : 0,
+                branchId, productId, Timestamp.valueOf(snapshot.at));
+
+        Integer delta = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(SUM(quantity_change), 0) FROM stock_adjustments " +
+                "WHERE branch_id = ? AND product_id = ? AND id > ? AND adjustment_date <= ?",
+                Integer.class, branchId, productId, snapshot.lastAdjustmentId, Timestamp.valueOf(at));
+        return base + (delta != null ? delta : 0);
+    }
+
+    /**
+     * Reset a branch's stock quantities to what the ledger says, locking the
+     * branch's stock rows so no movement is applied meanwhile
+     *
+     * @return corrected quantities keyed by product ID
+     */
+    public Map<Long, Integer> rebuild(Long branchId) {
+        return transactionTemplate.execute(status -> {
+            jdbcTemplate.query("SELECT id FROM branch_stocks WHERE branch_id = ? ORDER BY product_id FOR UPDATE",
+                    rs -> { }, branchId);
+
+            Snapshot snapshot = latestSnapshot(null);
+            Timestamp at = snapshot != null ? Timestamp.valueOf(snapshot.at) : null;
+            long cutoff = snapshot != null ? snapshot.lastAdjustmentId : 0L;
+
+            Map<Long, Integer> corrected = new HashMap<>();
+            jdbcTemplate.query(REBUILD_SQL, rs -> {
+                corrected.put(rs.getLong(1), rs.getInt(2));
+            }, branchId, at, branchId, cutoff, branchId);
+
+            if (!corrected.isEmpty()) {
+                eventPublisher.publishEvent(new StockChangedEvent(branchId));
+                log.warn("Rebuilt stock of branch {} from the ledger, corrected products: {}", branchId, corrected);
+            }
+            return corrected;
+        });
+    }
+
+    private void bootstrap() {
+        // Waits for in-flight stock movements, so the quantities match the ledger position
+        jdbcTemplate.execute("LOCK TABLE branch_stocks IN SHARE MODE");
+        Long cutoff = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM stock_adjustments", Long.class);
+        int rows = jdbcTemplate.update(BOOTSTRAP_SNAPSHOT_SQL, cutoff);
+        log.info("Initial stock snapshot up to ledger id {}: {} rows", cutoff, rows);
+    }
+
+    /**
+     * The latest snapshot, or the latest one not after the given time
+     */
+    private Snapshot latestSnapshot(LocalDateTime notAfter) {
+        String sql = "SELECT snapshot_at, last_adjustment_id FROM stock_snapshots " +
+                (notAfter != null ? "WHERE snapshot_at <= ? " : "") +
+                "ORDER BY snapshot_at DESC LIMIT 1";
+        Object[] args = notAfter != null ? new Object[]{Timestamp.valueOf(notAfter)} : new Object[0];
+        return jdbcTemplate.query(sql,
+                rs -> rs.next() ? new Snapshot(rs.getTimestamp(1).toLocalDateTime(), rs.getLong(2)) : null,
+                args);
+    }
+
+    private record Snapshot(LocalDateTime at, Long lastAdjustmentId) {
+    }
+}
@@ -0,0 +1,142 @@
+package com.retail.management.service.impl;
+
+import com.retail.management.repository.BranchStockRepository;
+import com.retail.management.repository.StockKey;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Orders the row locks of stock mutations that touch several branch stock rows.
+ * <p>
+ * A mutation locks every row it is going to change up front, sorted by
+ * (branch_id, product_id), before its first update. Two transactions then never
+ * hold rows the other one waits for, whatever order their lines came in, so
+ * overlapping baskets and opposite transfers queue up instead of deadlocking.
+ * <p>
+ * Mutations started through {@link #execute} get their own transaction and are
+ * retried when the database still gives up on a lock (deadlock, lock timeout or
+ * serialization failure). Deadlocks and retries are counted in the
+ * {@code stock.mutation.deadlocks} and {@code stock.mutation.retries} metrics;
+ * with every caller going through the lock order both should stay at zero.
+ */
+@Component
+@Slf4j
+public class StockMutationCoordinator {
+
+    private static final String DEADLOCK_SQL_STATE = "40P01";
+
+    private final BranchStockRepository branchStockRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final int maxAttempts;
+    private final long retryBackoffMillis;
+    private final Counter deadlocks;
+    private final Counter retries;
+
+    public StockMutationCoordinator(BranchStockRepository branchStockRepository,
+                                    TransactionTemplate transactionTemplate,
+                                    MeterRegistry meterRegistry,
+                                    @Value("${app.stock.mutation.max-attempts:3}") int maxAttempts,
+                                    @Value("${app.stock.mutation.retry-backoff-millis:20}") long retryBackoffMillis) {
+        this.branchStockRepository = branchStockRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.maxAttempts = maxAttempts;
+        this.retryBackoffMillis = retryBackoffMillis;
+        this.deadlocks = Counter.builder("stock.mutation.deadlocks")
+                .description("Stock mutations chosen as deadlock victims")
+                .register(meterRegistry);
+        this.retries = Counter.builder("stock.mutation.retries")
+                .description("Stock mutations retried after a lock failure")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Run a stock mutation in a transaction, retrying it on lock failures. Inside
+     * an existing transaction it just runs, as that transaction cannot be retried
+     * from here.
+     */
+    public <T> T execute(Supplier<T> mutation) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            try {
+                return mutation.get();
+            } catch (PessimisticLockingFailureException e) {
+                recordFailure(e);
+                throw e;
+            }
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> mutation.get());
+            } catch (PessimisticLockingFailureException e) {
+                recordFailure(e);
+                if (attempt >= maxAttempts) {
+                    throw e;
+                }
+                retries.increment();
+                log.warn("Stock mutation failed to get its locks (attempt {} of {}), retrying: {}",
+                        attempt, maxAttempts, e.getMostSpecificCause().getMessage());
+                backOff(attempt, e);
+            }
+        }
+    }
+
+    public void executeWithoutResult(Runnable mutation) {
+        execute(() -> {
+            mutation.run();
+            return null;
+        });
+    }
+
+    /**
+     * Lock the stock rows a mutation is about to change, in (branch_id, product_id)
+     * order. Called once per transaction, before the first update.
+     */
+    public void lock(Collection<StockKey> keys) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            throw new IllegalStateException("Stock rows can only be locked inside a transaction");
+        }
+        branchStockRepository.lockStock(keys);
+    }
+
+    public void lock(Long branchId, Collection<Long> productIds) {
+        lock(productIds.stream().map(productId -> new StockKey(branchId, productId)).toList());
+    }
+
+    public double deadlocks() {
+        return deadlocks.count();
+    }
+
+    public double retries() {
+        return retries.count();
+    }
+
+    private void recordFailure(PessimisticLockingFailureException e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException sqlException && DEADLOCK_SQL_STATE.equals(sqlException.getSQLState())) {
+                deadlocks.increment();
+                log.error("Deadlock between stock mutations; some caller is not locking in stock key order", e);
+                return;
+            }
+        }
+    }
+
+    private void backOff(int attempt, PessimisticLockingFailureException failure) {
+        try {
+            Thread.sleep(1 + ThreadLocalRandom.current().nextLong(Math.max(1, retryBackoffMillis * attempt)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,405 @@
+package com.retail.management.service.impl;
+
+import com.retail.management.dto.request.invoice.InvoiceItemRequest;
+import com.retail.management.dto.request.stock.StockReservationRequest;
+import com.retail.management.dto.response.stock.StockReservationResponse;
+import com.retail.management.entity.Invoice;
+import com.retail.management.entity.InvoiceItem;
+import com.retail.management.entity.StockReservation;
+import com.retail.management.enums.ReservationStatus;
+import com.retail.management.enums.StockAdjustmentType;
+import com.retail.management.exception.BusinessException;
+import com.retail.management.exception.InsufficientStockException;
+import com.retail.management.exception.ResourceNotFoundException;
+import com.retail.management.repository.BranchRepository;
+import com.retail.management.repository.BranchStockRepository;
+import com.retail.management.repository.StockMovement;
+import com.retail.management.repository.StockReservationRepository;
+import com.retail.management.repository.projection.ReservationExpiry;
+import com.retail.management.service.StockReservationService;
+import com.retail.management.validator.StockValidator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Holds stock for open baskets and pending invoices in branch_stocks.reserved_quantity,
+ * so concurrent cashiers cannot sell the same last units, without keeping row
+ * locks for the length of a checkout. Every hold is a stock_reservations row;
+ * its status only moves through conditional updates, so a hold is confirmed,
+ * released or expired exactly once even when those race across nodes.
+ * <p>
+ * Expiry is driven by an in-memory delay queue: each hold is queued when its
+ * transaction commits and expires when its deadline passes, unless it was
+ * confirmed or released first. Active holds are queued again at startup, and
+ * an infrequent sweep on the (status, expires_at) index picks up holds whose
+ * node went away.
+ * <p>
+ * Invoices created before holds existed took their stock immediately, so an
+ * invoice without a hold is treated as already confirmed.
+ */
+@Service
+@Slf4j
+public class StockReservationServiceImpl implements StockReservationService, SmartLifecycle {
+
+    private static final long RETRY_DELAY_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    private final StockReservationRepository reservationRepository;
+    private final BranchStockRepository branchStockRepository;
+    private final BranchRepository branchRepository;
+    private final StockValidator stockValidator;
+    private final TransactionTemplate transactionTemplate;
+    private final StockMutationCoordinator stockMutations;
+    private final Duration basketTtl;
+    private final Duration invoiceTtl;
+    private final Duration sweepGrace;
+
+    private final DelayQueue<Hold> queue = new DelayQueue<>();
+    private final Map<Long, Hold> holds = new ConcurrentHashMap<>();
+    private volatile boolean running;
+    private volatile Thread expiryThread;
+
+    public StockReservationServiceImpl(StockReservationRepository reservationRepository,
+                                       BranchStockRepository branchStockRepository,
+                                       BranchRepository branchRepository,
+                                       StockValidator stockValidator,
+                                       TransactionTemplate transactionTemplate,
+                                       StockMutationCoordinator stockMutations,
+                                       @Value("${app.stock.reservation.basket-ttl-minutes:15}") long basketTtlMinutes,
+                                       @Value("${app.stock.reservation.invoice-ttl-minutes:30}") long invoiceTtlMinutes,
+                                       @Value("${app.stock.reservation.sweep-grace-minutes:5}") long sweepGraceMinutes) {
+        this.reservationRepository = reservationRepository;
+        this.branchStockRepository = branchStockRepository;
+        this.branchRepository = branchRepository;
+        this.stockValidator = stockValidator;
+        this.transactionTemplate = transactionTemplate;
+        this.stockMutations = stockMutations;
+        this.basketTtl = Duration.ofMinutes(basketTtlMinutes);
+        this.invoiceTtl = Duration.ofMinutes(invoiceTtlMinutes);
+        this.sweepGrace = Duration.ofMinutes(sweepGraceMinutes);
+    }
+
+    @Override
+    @Transactional
+    public StockReservationResponse reserveBasket(StockReservationRequest request) {
+        if (!branchRepository.existsById(request.getBranchId())) {
+            throw new ResourceNotFoundException("Branch not found");
+        }
+
+        Map<Long, Integer> quantities = request.getItems().stream()
+                .collect(Collectors.toMap(
+                        InvoiceItemRequest::getProductId,
+                        InvoiceItemRequest::getQuantity,
+                        Integer::sum,
+                        LinkedHashMap::new));
+
+        StockReservation reservation = hold(request.getBranchId(), null, quantities, basketTtl);
+        return StockReservationResponse.builder()
+                .id(reservation.getId())
+                .branchId(reservation.getBranchId())
+                .status(reservation.getStatus())
+                .expiresAt(reservation.getExpiresAt())
+                .quantities(reservation.getQuantities())
+                .build();
+    }
+
+    @Override
+    @Transactional
+    public void releaseBasket(Long reservationId) {
+        StockReservation reservation = reservationRepository.findById(reservationId)
+                .orElseThrow(() -> new ResourceNotFoundException("Stock reservation", "id", reservationId));
+
+        if (reservation.getInvoiceNumber() != null) {
+            throw new BusinessException("Reservation belongs to invoice " + reservation.getInvoiceNumber() +
+                    "; cancel the invoice instead");
+        }
+        release(reservation);
+    }
+
+    @Override
+    @Transactional
+    public void reserveForInvoice(String invoiceNumber, Long branchId, Map<Long, Integer> quantities,
+                                  Long basketReservationId) {
+        if (basketReservationId != null) {
+            StockReservation basket = reservationRepository.findById(basketReservationId)
+                    .orElseThrow(() -> new ResourceNotFoundException("Stock reservation", "id", basketReservationId));
+            if (!basket.getBranchId().equals(branchId) || basket.getInvoiceNumber() != null) {
+                throw new BusinessException("Reservation " + basketReservationId + " is not an open basket of this branch");
+            }
+            // Released and held again in this transaction, so no other checkout can take the units in between.
+            // The invoice lines are locked along with the basket's, keeping the stock lock order.
+            Set<Long> productIds = new HashSet<>(quantities.keySet());
+            productIds.addAll(basket.getQuantities().keySet());
+            release(basket, productIds);
+        }
+
+        hold(branchId, invoiceNumber, quantities, invoiceTtl);
+    }
+
+    @Override
+    @Transactional
+    public void confirmForInvoice(Invoice invoice) {
+        StockReservation reservation = reservationRepository.findByInvoiceNumber(invoice.getInvoiceNumber())
+                .orElse(null);
+        if (reservation == null) {
+            return;
+        }
+
+        Long id = reservation.getId();
+        if (reservationRepository.transition(id, ReservationStatus.ACTIVE, ReservationStatus.CONFIRMED) == 1) {
+            stockMutations.lock(reservation.getBranchId(), reservation.getQuantities().keySet());
+            branchStockRepository.confirmReservedStock(reservation.getBranchId(), reservation.getQuantities(),
+                    StockMovement.of(StockAdjustmentType.SALE, invoice.getInvoiceNumber()));
+            afterCommit(() -> unschedule(id));
+        } else if (reservationRepository.transition(id, ReservationStatus.EXPIRED, ReservationStatus.CONFIRMED) == 1) {
+            // The hold ran out before payment; take the stock if it is still there
+            Map<Long, Integer> quantities = reservation.getQuantities();
+            stockMutations.lock(reservation.getBranchId(), quantities.keySet());
+            Map<Long, Integer> applied = branchStockRepository.decrementStock(reservation.getBranchId(), quantities,
+                    StockMovement.of(StockAdjustmentType.SALE, invoice.getInvoiceNumber()));
+            if (applied.size() < quantities.size()) {
+                throw new InsufficientStockException(
+                        "Stock reservation for invoice " + invoice.getInvoiceNumber() +
+                        " expired and the stock is no longer available");
+            }
+        }
+    }
+
+    @Override
+    @Transactional
+    public void releaseForInvoice(Invoice invoice) {
+        StockReservation reservation = reservationRepository.findByInvoiceNumber(invoice.getInvoiceNumber())
+                .orElse(null);
+        if (reservation == null) {
+            // Stock was taken when the invoice was created
+            Map<Long, Integer> quantities = itemQuantities(invoice);
+            stockMutations.lock(invoice.getBranch().getId(), quantities.keySet());
+            branchStockRepository.incrementStock(invoice.getBranch().getId(), quantities,
+                    StockMovement.of(StockAdjustmentType.SALE_CANCELLED, invoice.getInvoiceNumber()));
+            return;
+        }
+
+        if (!release(reservation)
+                && reservationRepository.transition(reservation.getId(),
+                        ReservationStatus.CONFIRMED, ReservationStatus.RELEASED) == 1) {
+            stockMutations.lock(reservation.getBranchId(), reservation.getQuantities().keySet());
+            branchStockRepository.incrementStock(reservation.getBranchId(), reservation.getQuantities(),
+                    StockMovement.of(StockAdjustmentType.SALE_CANCELLED, invoice.getInvoiceNumber()));
+        }
+    }
+
+    /**
+     * Release holds whose expiry was missed, e.g. because the node that queued
+     * them stopped. Only looks past a grace period, so holds that are just
+     * expiring are left to their queue.
+     */
+    @Scheduled(cron = "${app.stock.reservation.sweep-cron:0 */15 * * * *}")
+    public void sweep() {
+        for (ReservationExpiry missed : reservationRepository.findExpiring(
+                ReservationStatus.ACTIVE, LocalDateTime.now().minus(sweepGrace))) {
+            holds.remove(missed.getId());
+            expireQuietly(missed.getId());
+        }
+    }
+
+    private StockReservation hold(Long branchId, String invoiceNumber, Map<Long, Integer> quantities, Duration ttl) {
+        stockMutations.lock(branchId, quantities.keySet());
+        Map<Long, Integer> applied = branchStockRepository.reserveStock(branchId, quantities);
+
+        if (applied.size() < quantities.size()) {
+            Map<Long, Integer> rejected = new LinkedHashMap<>(quantities);
+            rejected.keySet().removeAll(applied.keySet());
+
+            // Reports the product and available quantity of the first short line
+            stockValidator.validateStockAvailability(branchId, rejected);
+            throw new InsufficientStockException("Insufficient stock for one or more products");
+        }
+
+        StockReservation reservation = reservationRepository.save(StockReservation.builder()
+                .branchId(branchId)
+                .invoiceNumber(invoiceNumber)
+                .status(ReservationStatus.ACTIVE)
+                .expiresAt(LocalDateTime.now().plus(ttl))
+                .quantities(new LinkedHashMap<>(quantities))
+                .build());
+
+        Long id = reservation.getId();
+        afterCommit(() -> schedule(id, ttl.toNanos()));
+        return reservation;
+    }
+
+    private boolean release(StockReservation reservation) {
+        return release(reservation, reservation.getQuantities().keySet());
+    }
+
+    /**
+     * Release an active hold. Like every change here, the reservation row is
+     * updated before the stock rows are locked, so expiry and checkout of the
+     * same hold take their locks in the same order.
+     *
+     * @param productIds products whose stock rows to lock, at least the held ones
+     * @return whether it was active
+     */
+    private boolean release(StockReservation reservation, Collection<Long> productIds) {
+        Long id = reservation.getId();
+        if (reservationRepository.transition(id, ReservationStatus.ACTIVE, ReservationStatus.RELEASED) != 1) {
+            return false;
+        }
+        stockMutations.lock(reservation.getBranchId(), productIds);
+        branchStockRepository.releaseReservedStock(reservation.getBranchId(), reservation.getQuantities());
+        afterCommit(() -> unschedule(id));
+        return true;
+    }
+
+    private void expire(Long id) {
+        if (reservationRepository.transition(id, ReservationStatus.ACTIVE, ReservationStatus.EXPIRED) != 1) {
+            return;
+        }
+        reservationRepository.findById(id).ifPresent(reservation -> {
+            stockMutations.lock(reservation.getBranchId(), reservation.getQuantities().keySet());
+            branchStockRepository.releaseReservedStock(reservation.getBranchId(), reservation.getQuantities());
+            log.info("Stock reservation {} expired{}", id,
+                    reservation.getInvoiceNumber() != null ? " for invoice " + reservation.getInvoiceNumber() : "");
+        });
+    }
+
+    /**
+     * @return whether the hold is settled, i.e. need not be retried
+     */
+    private boolean expireQuietly(Long id) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> expire(id));
+            return true;
+        } catch (RuntimeException e) {
+            log.warn("Could not expire stock reservation {}: {}", id, e.toString());
+            return false;
+        }
+    }
+
+    private static Map<Long, Integer> itemQuantities(Invoice invoice) {
+        return invoice.getItems().stream()
+                .collect(Collectors.toMap(
+                        item -> item.getProduct().getId(),
+                        InvoiceItem::getQuantity,
+                        Integer::sum));
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private void schedule(Long id, long delayNanos) {
+        Hold hold = new Hold(id, System.nanoTime() + delayNanos);
+        holds.put(id, hold);
+        queue.put(hold);
+    }
+
+    private void unschedule(Long id) {
+        // Left in the queue; skipped when it comes due
+        holds.remove(id);
+    }
+
+    @Override
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            for (ReservationExpiry active : reservationRepository.findByStatus(ReservationStatus.ACTIVE)) {
+                schedule(active.getId(), Math.max(0, Duration.between(now, active.getExpiresAt()).toNanos()));
+            }
+        } catch (DataAccessException e) {
+            // The sweep releases them later
+            log.error("Could not load active stock reservations", e);
+        }
+
+        expiryThread = Thread.ofPlatform()
+                .name("stock-reservation-expiry")
+                .daemon(true)
+                .start(this::run);
+    }
+
+    @Override
+    public synchronized void stop() {
+        Thread thread = expiryThread;
+        running = false;
+        if (thread == null) {
+            return;
+        }
+
+        thread.interrupt();
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        expiryThread = null;
+        queue.clear();
+        holds.clear();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void run() {
+        while (running) {
+            Hold hold;
+            try {
+                hold = queue.take();
+            } catch (InterruptedException e) {
+                continue;
+            }
+
+            if (holds.remove(hold.id, hold) && !expireQuietly(hold.id)) {
+                schedule(hold.id, RETRY_DELAY_NANOS);
+            }
+        }
+    }
+
+    private record Hold(Long id, long deadlineNanos) implements Delayed {
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(deadlineNanos, ((Hold) other).deadlineNanos);
+        }
+    }
+}
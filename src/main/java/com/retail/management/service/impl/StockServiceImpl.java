@@ -1,25 +1,49 @@
 package com.retail.management.service.impl;
 
 import com.retail.management.dto.request.product.StockAdjustmentRequest;
+import com.retail.management.cache.CatalogCache;
+import com.retail.management.cache.StockCache;
+import com.retail.management.dto.request.invoice.InvoiceItemRequest;
+import com.retail.management.dto.request.stock.BulkStockAdjustmentRequest;
+import com.retail.management.dto.request.stock.BulkStockTransferRequest;
 import com.retail.management.dto.request.stock.StockTransferRequest;
+import com.retail.management.dto.response.stock.StockBatchResponse;
+import com.retail.management.dto.response.stock.StockLineResult;
 import com.retail.management.dto.response.stock.StockLevelResponse;
+import com.retail.management.dto.response.stock.StockMovementResponse;
+import com.retail.management.entity.Branch;
 import com.retail.management.entity.BranchStock;
-import com.retail.management.entity.StockAdjustment;
+import com.retail.management.entity.Product;
+import com.retail.management.enums.StockAdjustmentType;
+import com.retail.management.event.StockChangedEvent;
 import com.retail.management.exception.BusinessException;
 import com.retail.management.exception.InsufficientStockException;
 import com.retail.management.exception.ResourceNotFoundException;
+import com.retail.management.mapper.StockAdjustmentMapper;
 import com.retail.management.repository.BranchRepository;
 import com.retail.management.repository.BranchStockRepository;
 import com.retail.management.repository.ProductRepository;
 import com.retail.management.repository.StockAdjustmentRepository;
-import com.retail.management.security.SecurityUtils;
+import com.retail.management.repository.StockKey;
+import com.retail.management.repository.StockMovement;
 import com.retail.management.service.StockService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
@@ -31,6 +55,11 @@ public class StockServiceImpl implements StockService {
     private final BranchRepository branchRepository;
     private final ProductRepository productRepository;
     private final StockAdjustmentRepository stockAdjustmentRepository;
+    private final StockLedger stockLedger;
+    private final StockMutationCoordinator stockMutations;
+    private final StockCache stockCache;
+    private final CatalogCache catalogCache;
+    private final StockAdjustmentMapper stockAdjustmentMapper;
 
     @Override
     @Transactional
@@ -43,62 +72,22 @@ public class StockServiceImpl implements StockService {
         var product = productRepository.findById(request.getProductId())
                 .orElseThrow(() -> new ResourceNotFoundException("Product not found"));
 
-        BranchStock stock = branchStockRepository
-                .findByBranchIdAndProductId(request.getBranchId(), request.getProductId())
-                .orElseGet(() -> {
-                    BranchStock newStock = BranchStock.builder()
-                            .branch(branch)
-                            .product(product)
-                            .quantity(0)
-                            .reservedQuantity(0)
-                            .build();
-                    return branchStockRepository.save(newStock);
-                });
-
-        int quantityBefore = stock.getQuantity();
-        int quantityChange = request.getAdjustmentType().isIncreasesStock()
-                ? request.getQuantity()
-                : -request.getQuantity();
-        int quantityAfter = quantityBefore + quantityChange;
-
-        if (quantityAfter < 0) {
-            throw new InsufficientStockException(
-                    product.getName(),
-                    quantityBefore,
-                    Math.abs(quantityChange)
-            );
-        }
+        // The ledger row, with quantities before and after, is written by the same statement
+        StockMovement movement = new StockMovement(request.getAdjustmentType(), null,
+                request.getReason(), request.getNotes());
+        Map<Long, Integer> line = Map.of(product.getId(), request.getQuantity());
+        Integer quantityAfter = request.getAdjustmentType().isIncreasesStock()
+                ? branchStockRepository.incrementStock(branch.getId(), line, movement).get(product.getId())
+                : branchStockRepository.decrementStock(branch.getId(), line, movement).get(product.getId());
 
-        stock.setQuantity(quantityAfter);
-        if (request.getAdjustmentType().name().contains("RESTOCK")) {
-            stock.setLastRestockedAt(java.time.LocalDateTime.now());
+        if (quantityAfter == null) {
+            throw insufficientStock(branch.getId(), product.getId(), request.getQuantity());
         }
-        branchStockRepository.save(stock);
-
-        // Create adjustment record
-        Long userId = SecurityUtils.getCurrentUsername()
-                .flatMap(username -> com.retail.management.repository.UserRepository.class.cast(null).findByUsername(username))
-                .map(com.retail.management.entity.User::getId)
-                .orElse(null);
-
-        StockAdjustment adjustment = StockAdjustment.builder()
-                .branch(branch)
-                .product(product)
-                .adjustmentType(request.getAdjustmentType())
-                .quantityChange(request.getQuantity())
-                .quantityBefore(quantityBefore)
-                .quantityAfter(quantityAfter)
-                .reason(request.getReason())
-                .notes(request.getNotes())
-                .adjustedBy(userId)
-                .build();
 
-        stockAdjustmentRepository.save(adjustment);
         log.info("Stock adjusted successfully");
     }
 
     @Override
-    @Transactional
     public void transferStock(StockTransferRequest request) {
         log.info("Transferring stock from branch {} to branch {}",
                 request.getFromBranchId(), request.getToBranchId());
@@ -107,64 +96,204 @@ public class StockServiceImpl implements StockService {
             throw new BusinessException("Cannot transfer stock to the same branch");
         }
 
-        // Reduce from source branch
-        BranchStock fromStock = branchStockRepository
-                .findByBranchIdAndProductId(request.getFromBranchId(), request.getProductId())
-                .orElseThrow(() -> new ResourceNotFoundException("Stock not found in source branch"));
-
-        if (fromStock.getQuantity() < request.getQuantity()) {
-            throw new InsufficientStockException(
-                    fromStock.getProduct().getName(),
-                    fromStock.getQuantity(),
-                    request.getQuantity()
-            );
+        if (!branchRepository.existsById(request.getToBranchId())) {
+            throw new ResourceNotFoundException("Destination branch not found");
         }
 
-        fromStock.setQuantity(fromStock.getQuantity() - request.getQuantity());
-        branchStockRepository.save(fromStock);
-
-        // Add to destination branch
-        BranchStock toStock = branchStockRepository
-                .findByBranchIdAndProductId(request.getToBranchId(), request.getProductId())
-                .orElseGet(() -> {
-                    var toBranch = branchRepository.findById(request.getToBranchId())
-                            .orElseThrow(() -> new ResourceNotFoundException("Destination branch not found"));
-                    var product = productRepository.findById(request.getProductId())
-                            .orElseThrow(() -> new ResourceNotFoundException("Product not found"));
-
-                    return BranchStock.builder()
-                            .branch(toBranch)
-                            .product(product)
-                            .quantity(0)
-                            .reservedQuantity(0)
-                            .build();
-                });
-
-        toStock.setQuantity(toStock.getQuantity() + request.getQuantity());
-        branchStockRepository.save(toStock);
+        stockMutations.executeWithoutResult(() -> {
+            Map<Long, Integer> remaining = transfer(request.getFromBranchId(), request.getToBranchId(),
+                    Map.of(request.getProductId(), request.getQuantity()), request.getNotes());
+            if (remaining.isEmpty()) {
+                throw insufficientStock(request.getFromBranchId(), request.getProductId(), request.getQuantity());
+            }
+        });
 
         log.info("Stock transferred successfully");
     }
 
     @Override
-    @Transactional(readOnly = true)
-    public StockLevelResponse getStockLevel(Long branchId, Long productId) {
-        BranchStock stock = branchStockRepository
-                .findByBranchIdAndProductId(branchId, productId)
+    public StockBatchResponse adjustStockBatch(BulkStockAdjustmentRequest request) {
+        log.info("Applying {} stock adjustments", request.getLines().size());
+        return stockMutations.execute(() -> applyAdjustments(request));
+    }
+
+    private StockBatchResponse applyAdjustments(BulkStockAdjustmentRequest request) {
+        List<StockAdjustmentRequest> lines = request.getLines();
+
+        Set<Long> branchIds = new HashSet<>(branchRepository.findExistingIds(
+                lines.stream().map(StockAdjustmentRequest::getBranchId).collect(Collectors.toSet())));
+        Set<Long> productIds = new HashSet<>(productRepository.findExistingIds(
+                lines.stream().map(StockAdjustmentRequest::getProductId).collect(Collectors.toSet())));
+
+        // Lines grouped by branch, then by movement; repeated products are added up
+        StockLineResult[] results = new StockLineResult[lines.size()];
+        StockMovement[] movements = new StockMovement[lines.size()];
+        Map<Long, Map<StockMovement, Map<Long, Integer>>> batches = new HashMap<>();
+        for (int i = 0; i < lines.size(); i++) {
+            StockAdjustmentRequest line = lines.get(i);
+            if (!branchIds.contains(line.getBranchId())) {
+                results[i] = lineResult(i, line.getBranchId(), line.getProductId(), line.getQuantity(),
+                        null, "Branch not found");
+            } else if (!productIds.contains(line.getProductId())) {
+                results[i] = lineResult(i, line.getBranchId(), line.getProductId(), line.getQuantity(),
+                        null, "Product not found");
+            } else {
+                movements[i] = new StockMovement(line.getAdjustmentType(), request.getReference(),
+                        line.getReason() != null ? line.getReason() : request.getReason(),
+                        line.getNotes() != null ? line.getNotes() : request.getNotes());
+                batches.computeIfAbsent(line.getBranchId(), id -> new LinkedHashMap<>())
+                        .computeIfAbsent(movements[i], movement -> new HashMap<>())
+                        .merge(line.getProductId(), line.getQuantity(), Integer::sum);
+            }
+        }
+
+        List<StockKey> keys = new ArrayList<>();
+        batches.forEach((branchId, movementBatches) -> movementBatches.values().forEach(quantities ->
+                quantities.keySet().forEach(productId -> keys.add(new StockKey(branchId, productId)))));
+        stockMutations.lock(keys);
+
+        // One statement per branch and movement; stock coming in is applied before stock going out
+        Map<Long, Map<StockMovement, Map<Long, Integer>>> applied = new HashMap<>();
+        for (Map.Entry<Long, Map<StockMovement, Map<Long, Integer>>> branch : batches.entrySet()) {
+            Long branchId = branch.getKey();
+            List<Map.Entry<StockMovement, Map<Long, Integer>>> ordered = new ArrayList<>(branch.getValue().entrySet());
+            ordered.sort(Comparator.comparing(batch -> !batch.getKey().type().isIncreasesStock()));
+            Map<StockMovement, Map<Long, Integer>> branchApplied = new HashMap<>();
+            for (Map.Entry<StockMovement, Map<Long, Integer>> batch : ordered) {
+                StockMovement movement = batch.getKey();
+                branchApplied.put(movement, movement.type().isIncreasesStock()
+                        ? branchStockRepository.incrementStock(branchId, batch.getValue(), movement)
+                        : branchStockRepository.decrementStock(branchId, batch.getValue(), movement));
+            }
+            applied.put(branchId, branchApplied);
+        }
+
+        for (int i = 0; i < lines.size(); i++) {
+            if (results[i] == null) {
+                StockAdjustmentRequest line = lines.get(i);
+                Integer quantityAfter = applied.get(line.getBranchId()).get(movements[i]).get(line.getProductId());
+                results[i] = lineResult(i, line.getBranchId(), line.getProductId(), line.getQuantity(),
+                        quantityAfter, quantityAfter == null ? "Insufficient stock" : null);
+            }
+        }
+        return batchResponse(Arrays.asList(results));
+    }
+
+    @Override
+    public StockBatchResponse transferStockBatch(BulkStockTransferRequest request) {
+        log.info("Transferring {} products from branch {} to branch {}",
+                request.getItems().size(), request.getFromBranchId(), request.getToBranchId());
+
+        if (request.getFromBranchId().equals(request.getToBranchId())) {
+            throw new BusinessException("Cannot transfer stock to the same branch");
+        }
+
+        if (!branchRepository.existsById(request.getToBranchId())) {
+            throw new ResourceNotFoundException("Destination branch not found");
+        }
+
+        Map<Long, Integer> quantities = new HashMap<>();
+        for (InvoiceItemRequest item : request.getItems()) {
+            quantities.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+        }
+        Map<Long, Integer> remaining = stockMutations.execute(() -> transfer(request.getFromBranchId(),
+                request.getToBranchId(), quantities, request.getNotes()));
+
+        List<StockLineResult> results = new ArrayList<>(request.getItems().size());
+        for (int i = 0; i < request.getItems().size(); i++) {
+            InvoiceItemRequest item = request.getItems().get(i);
+            Integer quantityAfter = remaining.get(item.getProductId());
+            results.add(lineResult(i, request.getFromBranchId(), item.getProductId(), item.getQuantity(),
+                    quantityAfter, quantityAfter == null ? "Insufficient stock" : null));
+        }
+        return batchResponse(results);
+    }
+
+    /**
+     * Move stock between branches: each line is taken from the source when
+     * enough unreserved stock is left there and then added to the destination.
+     * Both branches' rows are locked first, so that transfers in opposite
+     * directions cannot deadlock.
+     *
+     * @return remaining source quantity keyed by product ID, for the lines that were moved
+     */
+    private Map<Long, Integer> transfer(Long fromBranchId, Long toBranchId, Map<Long, Integer> quantities,
+                                        String notes) {
+        List<StockKey> keys = new ArrayList<>(quantities.size() * 2);
+        for (Long productId : quantities.keySet()) {
+            keys.add(new StockKey(fromBranchId, productId));
+            keys.add(new StockKey(toBranchId, productId));
+        }
+        stockMutations.lock(keys);
+
+        String reference = "Transfer " + fromBranchId + "->" + toBranchId;
+        Map<Long, Integer> remaining = branchStockRepository.decrementStock(fromBranchId, quantities,
+                new StockMovement(StockAdjustmentType.TRANSFER_OUT, reference, null, notes));
+
+        Map<Long, Integer> moved = new HashMap<>(remaining.size() * 2);
+        remaining.keySet().forEach(productId -> moved.put(productId, quantities.get(productId)));
+        branchStockRepository.incrementStock(toBranchId, moved,
+                new StockMovement(StockAdjustmentType.TRANSFER_IN, reference, null, notes));
+        return remaining;
+    }
+
+    private static StockLineResult lineResult(int line, Long branchId, Long productId, Integer quantity,
+                                              Integer quantityAfter, String rejection) {
+        return StockLineResult.builder()
+                .line(line)
+                .branchId(branchId)
+                .productId(productId)
+                .quantity(quantity)
+                .applied(rejection == null)
+                .quantityAfter(quantityAfter)
+                .message(rejection)
+                .build();
+    }
+
+    private static StockBatchResponse batchResponse(List<StockLineResult> lines) {
+        int applied = (int) lines.stream().filter(StockLineResult::getApplied).count();
+        return StockBatchResponse.builder()
+                .applied(applied)
+                .rejected(lines.size() - applied)
+                .lines(lines)
+                .build();
+    }
+
+    /**
+     * Build the error for a rejected conditional decrement
+     */
+    private InsufficientStockException insufficientStock(Long branchId, Long productId, int requested) {
+        BranchStock stock = branchStockRepository.findByBranchIdAndProductId(branchId, productId)
                 .orElseThrow(() -> new ResourceNotFoundException("Stock not found"));
 
+        return new InsufficientStockException(
+                stock.getProduct().getName(),
+                stock.getQuantity() - stock.getReservedQuantity(),
+                requested
+        );
+    }
+
+    @Override
+    public StockLevelResponse getStockLevel(Long branchId, Long productId) {
+        StockChangedEvent.Level stock = stockCache.level(branchId, productId);
+        if (stock == null) {
+            throw new ResourceNotFoundException("Stock not found");
+        }
+        Branch branch = catalogCache.getBranch(branchId);
+        Product product = catalogCache.getProduct(productId);
+
         return StockLevelResponse.builder()
-                .branchId(stock.getBranch().getId())
-                .branchName(stock.getBranch().getName())
-                .productId(stock.getProduct().getId())
-                .productName(stock.getProduct().getName())
-                .sku(stock.getProduct().getSku())
-                .quantity(stock.getQuantity())
-                .reservedQuantity(stock.getReservedQuantity())
-                .availableQuantity(stock.getQuantity() - stock.getReservedQuantity())
-                .lowStockThreshold(stock.getProduct().getLowStockThreshold())
-                .isLowStock(stock.getQuantity() < stock.getProduct().getLowStockThreshold())
-                .lastRestockedAt(stock.getLastRestockedAt())
+                .branchId(branch.getId())
+                .branchName(branch.getName())
+                .productId(product.getId())
+                .productName(product.getName())
+                .sku(product.getSku())
+                .quantity(stock.quantity())
+                .reservedQuantity(stock.reservedQuantity())
+                .availableQuantity(stock.quantity() - stock.reservedQuantity())
+                .lowStockThreshold(product.getLowStockThreshold())
+                .isLowStock(stock.quantity() < product.getLowStockThreshold())
+                .lastRestockedAt(stock.lastRestockedAt())
                 .build();
     }
 
@@ -194,5 +323,27 @@ public class StockServiceImpl implements StockService {
     public Integer getTotalStockAcrossBranches(Long productId) {
         return branchStockRepository.getTotalQuantityAcrossAllBranches(productId);
     }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Integer getStockLevelAt(Long branchId, Long productId, LocalDateTime at) {
+        return stockLedger.quantityAt(branchId, productId, at);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Page<StockMovementResponse> getStockHistory(Long branchId, Long productId, LocalDateTime startDate,
+                                                       LocalDateTime endDate, Pageable pageable) {
+        return stockAdjustmentRepository.findHistory(branchId, productId, startDate, endDate, pageable)
+                .map(stockAdjustmentMapper::toMovementResponse);
+    }
+
+    @Override
+    public Map<Long, Integer> rebuildStockLevels(Long branchId) {
+        if (!branchRepository.existsById(branchId)) {
+            throw new ResourceNotFoundException("Branch not found");
+        }
+        return stockLedger.rebuild(branchId);
+    }
 }
 
@@ -1,26 +1,33 @@
 package com.retail.management.service.impl;
 
+import com.retail.management.config.CacheConfig;
 import com.retail.management.dto.request.user.CreateUserRequest;
 import com.retail.management.dto.request.user.UpdateUserRequest;
 import com.retail.management.dto.response.user.UserResponse;
 import com.retail.management.entity.User;
+import com.retail.management.event.UserChangedEvent;
 import com.retail.management.exception.DuplicateResourceException;
 import com.retail.management.exception.ResourceNotFoundException;
 import com.retail.management.mapper.UserMapper;
 import com.retail.management.repository.BranchRepository;
 import com.retail.management.repository.RoleRepository;
 import com.retail.management.repository.UserRepository;
+import com.retail.management.security.TokenRevocationList;
+import com.retail.management.security.UserStatusCache;
 import com.retail.management.service.UserService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
+
 @Service
 @RequiredArgsConstructor
 @Slf4j
@@ -31,6 +38,9 @@ public class UserServiceImpl implements UserService {
     private final BranchRepository branchRepository;
     private final UserMapper userMapper;
     private final PasswordEncoder passwordEncoder;
+    private final UserStatusCache userStatusCache;
+    private final TokenRevocationList tokenRevocationList;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     @Transactional
@@ -60,6 +70,7 @@ public class UserServiceImpl implements UserService {
         }
 
         user = userRepository.save(user);
+        eventPublisher.publishEvent(new UserChangedEvent(user.getId()));
         log.info("User created successfully: {}", user.getUsername());
 
         return userMapper.toResponse(user);
@@ -67,7 +78,7 @@ public class UserServiceImpl implements UserService {
 
     @Override
     @Transactional(readOnly = true)
-    @Cacheable(value = "users", key = "#id")
+    @Cacheable(value = CacheConfig.USERS, key = "#id")
     public UserResponse getUserById(Long id) {
         User user = userRepository.findById(id)
                 .orElseThrow(() -> new ResourceNotFoundException("User", "id", id));
@@ -90,7 +101,7 @@ public class UserServiceImpl implements UserService {
 
     @Override
     @Transactional
-    @CacheEvict(value = "users", key = "#id")
+    @CacheEvict(value = CacheConfig.USERS, key = "#id")
     public UserResponse updateUser(Long id, UpdateUserRequest request) {
         log.info("Updating user: {}", id);
 
@@ -104,6 +115,8 @@ public class UserServiceImpl implements UserService {
             }
         }
 
+        // Tokens are checked against the cached status, which may be about to change
+        userStatusCache.evict(user.getUsername());
         userMapper.updateEntityFromRequest(request, user);
 
         // Update password if provided
@@ -124,6 +137,7 @@ public class UserServiceImpl implements UserService {
         }
 
         user = userRepository.save(user);
+        eventPublisher.publishEvent(new UserChangedEvent(user.getId()));
         log.info("User updated successfully: {}", user.getUsername());
 
         return userMapper.toResponse(user);
@@ -131,7 +145,7 @@ public class UserServiceImpl implements UserService {
 
     @Override
     @Transactional
-    @CacheEvict(value = "users", key = "#id")
+    @CacheEvict(value = CacheConfig.USERS, key = "#id")
     public void deleteUser(Long id) {
         log.info("Deleting user: {}", id);
 
@@ -140,10 +154,21 @@ public class UserServiceImpl implements UserService {
 
         user.setActive(false);
         userRepository.save(user);
+        userStatusCache.evict(user.getUsername());
+        eventPublisher.publishEvent(new UserChangedEvent(user.getId()));
 
         log.info("User deactivated: {}", user.getUsername());
     }
 
+    @Override
+    @Transactional
+    public void revokeTokens(Long id) {
+        User user = userRepository.findById(id)
+                .orElseThrow(() -> new ResourceNotFoundException("User", "id", id));
+
+        tokenRevocationList.revokeUser(user.getUsername(), Instant.now());
+    }
+
     @Override
     @Transactional(readOnly = true)
     public Page<UserResponse> searchUsers(String searchTerm, Pageable pageable) {
@@ -0,0 +1,102 @@
+package com.retail.management.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-size Bloom filter over strings. {@link #mightContain} never returns
+ * false for an added value; it returns true for a value that was not added
+ * with roughly the false positive rate the filter was sized for. Values
+ * cannot be removed, so the filter is rebuilt to drop them. Safe for
+ * concurrent use.
+ */
+public final class BloomFilter {
+
+    private final AtomicLongArray bits;
+    private final int bitCount;
+    private final int hashCount;
+
+    private BloomFilter(int bitCount, int hashCount) {
+        this.bits = new AtomicLongArray((bitCount + 63) / 64);
+        this.bitCount = bitCount;
+        this.hashCount = hashCount;
+    }
+
+    /**
+     * Size a filter for the expected number of values and false positive rate.
+     */
+    public static BloomFilter create(int expectedValues, double falsePositiveRate) {
+        int n = Math.max(1, expectedValues);
+        long m = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int bitCount = (int) Math.max(64, Math.min(m, Integer.MAX_VALUE - 64));
+        int hashCount = Math.max(1, (int) Math.round((double) bitCount / n * Math.log(2)));
+        return new BloomFilter(bitCount, hashCount);
+    }
+
+    public void add(String value) {
+        long hash = hash(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            int bit = Math.floorMod(h1 + i * h2, bitCount);
+            long mask = 1L << bit;
+            int index = bit >>> 6;
+            long current;
+            do {
+                current = bits.get(index);
+            } while ((current & mask) == 0 && !bits.compareAndSet(index, current, current | mask));
+        }
+    }
+
+    public boolean mightContain(String value) {
+        long hash = hash(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < hashCount; i++) {
+            int bit = Math.floorMod(h1 + i * h2, bitCount);
+            if ((bits.get(bit >>> 6) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Write the filter so that {@link #readFrom} restores an equal one.
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(bitCount);
+        out.writeInt(hashCount);
+        for (int i = 0; i < bits.length(); i++) {
+            out.writeLong(bits.get(i));
+        }
+    }
+
+    public static BloomFilter readFrom(DataInput in) throws IOException {
+        BloomFilter filter = new BloomFilter(in.readInt(), in.readInt());
+        for (int i = 0; i < filter.bits.length(); i++) {
+            filter.bits.set(i, in.readLong());
+        }
+        return filter;
+    }
+
+    /**
+     * 64-bit FNV-1a over the characters, finished with the murmur3 mixer so both
+     * halves are usable as independent hashes.
+     */
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb93fe53e2d95L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
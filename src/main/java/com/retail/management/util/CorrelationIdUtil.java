@@ -1,11 +1,22 @@
 package com.retail.management.util;
 
 import org.slf4j.MDC;
+import org.springframework.core.task.TaskDecorator;
 
+import java.util.Map;
 import java.util.UUID;
+import java.util.function.Supplier;
 
 public class CorrelationIdUtil {
 
+    public static final String HEADER = "X-Correlation-Id";
+
+    /**
+     * Decorator for task executors, so tasks log with the submitting thread's
+     * correlation ID
+     */
+    public static final TaskDecorator TASK_DECORATOR = CorrelationIdUtil::wrap;
+
     private static final String CORRELATION_ID_KEY = "correlationId";
 
     /**
@@ -28,6 +39,13 @@ public class CorrelationIdUtil {
         return correlationId;
     }
 
+    /**
+     * Get current correlation ID without generating one, or null
+     */
+    public static String current() {
+        return MDC.get(CORRELATION_ID_KEY);
+    }
+
     /**
      * Set correlation ID
      */
@@ -41,4 +59,45 @@ public class CorrelationIdUtil {
     public static void clear() {
         MDC.remove(CORRELATION_ID_KEY);
     }
-}
\ No newline at end of file
+
+    /**
+     * Wrap a task to run with the current thread's MDC, restoring the running
+     * thread's own MDC afterwards
+     */
+    public static Runnable wrap(Runnable task) {
+        Map<String, String> context = MDC.getCopyOfContextMap();
+        return () -> {
+            Map<String, String> previous = MDC.getCopyOfContextMap();
+            setContext(context);
+            try {
+                task.run();
+            } finally {
+                setContext(previous);
+            }
+        };
+    }
+
+    /**
+     * Wrap a supplier to run with the current thread's MDC
+     */
+    public static <T> Supplier<T> wrap(Supplier<T> work) {
+        Map<String, String> context = MDC.getCopyOfContextMap();
+        return () -> {
+            Map<String, String> previous = MDC.getCopyOfContextMap();
+            setContext(context);
+            try {
+                return work.get();
+            } finally {
+                setContext(previous);
+            }
+        };
+    }
+
+    private static void setContext(Map<String, String> context) {
+        if (context == null) {
+            MDC.clear();
+        } else {
+            MDC.setContextMap(context);
+        }
+    }
+}
@@ -13,7 +13,14 @@ public class InvoiceNumberGenerator {
      * Example: INV-20251008-BR01-00001
      */
     public static String generate(String branchCode, Long sequence) {
-        String date = LocalDate.now().format(DATE_FORMAT);
+        return generate(branchCode, LocalDate.now(), sequence);
+    }
+
+    /**
+     * Generate invoice number for a given business date
+     */
+    public static String generate(String branchCode, LocalDate businessDate, Long sequence) {
+        String date = businessDate.format(DATE_FORMAT);
         String sequenceStr = String.format("%05d", sequence);
         return String.format("INV-%s-%s-%s", date, branchCode, sequenceStr);
     }
@@ -24,7 +31,14 @@ public class InvoiceNumberGenerator {
      * Example: RET-20251008-BR01-00001
      */
     public static String generateReturnNumber(String branchCode, Long sequence) {
-        String date = LocalDate.now().format(DATE_FORMAT);
+        return generateReturnNumber(branchCode, LocalDate.now(), sequence);
+    }
+
+    /**
+     * Generate return number for a given business date
+     */
+    public static String generateReturnNumber(String branchCode, LocalDate businessDate, Long sequence) {
+        String date = businessDate.format(DATE_FORMAT);
         String sequenceStr = String.format("%05d", sequence);
         return String.format("RET-%s-%s-%s", date, branchCode, sequenceStr);
     }
@@ -35,7 +49,14 @@ public class InvoiceNumberGenerator {
      * Example: CUST-20251008-00001
      */
     public static String generateCustomerCode(Long sequence) {
-        String date = LocalDate.now().format(DATE_FORMAT);
+        return generateCustomerCode(LocalDate.now(), sequence);
+    }
+
+    /**
+     * Generate customer code for a given business date
+     */
+    public static String generateCustomerCode(LocalDate businessDate, Long sequence) {
+        String date = businessDate.format(DATE_FORMAT);
         String sequenceStr = String.format("%05d", sequence);
         return String.format("CUST-%s-%s", date, sequenceStr);
     }
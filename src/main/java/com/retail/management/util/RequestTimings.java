@@ -0,0 +1,125 @@
+package com.retail.management.util;
+
+import java.util.Locale;
+
+/**
+ * Splits one request's wall-clock time into phases. Exactly one phase is
+ * running at a time: entering a phase charges the time since the last switch
+ * to the phase it interrupts, so nested work (a query inside a service call
+ * inside a controller) is only counted once, in the innermost phase.
+ * <p>
+ * The timings of the request being handled are bound to its thread; a request
+ * is handled by one thread at a time, so no synchronization is needed.
+ */
+public final class RequestTimings {
+
+    public enum Phase {
+        /** Filters before the handler: authentication, rate limiting */
+        AUTH,
+        CONTROLLER,
+        SERVICE,
+        DB,
+        SERIALIZATION;
+
+        private final String metricName = name().toLowerCase(Locale.ROOT);
+
+        public String metricName() {
+            return metricName;
+        }
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+    private static final ThreadLocal<RequestTimings> CURRENT = new ThreadLocal<>();
+
+    private final long startNanos;
+    private final long[] nanos = new long[PHASES.length];
+    private Phase phase = Phase.AUTH;
+    private long phaseStart;
+
+    public RequestTimings() {
+        this.startNanos = System.nanoTime();
+        this.phaseStart = startNanos;
+    }
+
+    /**
+     * The timings of the request on this thread, or null
+     */
+    public static RequestTimings current() {
+        return CURRENT.get();
+    }
+
+    public static void bind(RequestTimings timings) {
+        CURRENT.set(timings);
+    }
+
+    public static void unbind() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Enter a phase on this thread's request, if any
+     *
+     * @return the phase to pass back to {@link #exit}
+     */
+    public static Phase enter(Phase phase) {
+        RequestTimings timings = CURRENT.get();
+        return timings != null ? timings.switchTo(phase) : null;
+    }
+
+    /**
+     * Go back to the phase that {@link #enter} interrupted
+     */
+    public static void exit(Phase previous) {
+        RequestTimings timings = CURRENT.get();
+        if (timings != null) {
+            timings.switchTo(previous);
+        }
+    }
+
+    /**
+     * Charge the time since the last switch to the running phase and start
+     * the given one; null stops charging any phase
+     *
+     * @return the phase that was running
+     */
+    public Phase switchTo(Phase next) {
+        long now = System.nanoTime();
+        Phase previous = phase;
+        if (previous != null) {
+            nanos[previous.ordinal()] += now - phaseStart;
+        }
+        phase = next;
+        phaseStart = now;
+        return previous;
+    }
+
+    public long nanos(Phase phase) {
+        return nanos[phase.ordinal()];
+    }
+
+    public long totalNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    /**
+     * The phases so far, including the running one, as a Server-Timing header value
+     */
+    public String serverTiming() {
+        switchTo(phase);
+        StringBuilder header = new StringBuilder(128);
+        for (Phase p : PHASES) {
+            if (nanos[p.ordinal()] > 0) {
+                appendMetric(header, p.metricName(), nanos[p.ordinal()]);
+            }
+        }
+        appendMetric(header, "total", totalNanos());
+        return header.toString();
+    }
+
+    private static void appendMetric(StringBuilder header, String name, long nanos) {
+        if (!header.isEmpty()) {
+            header.append(", ");
+        }
+        header.append(name).append(";dur=").append(String.format(Locale.ROOT, "%.1f", nanos / 1_000_000.0));
+    }
+}
@@ -0,0 +1,58 @@
+package com.retail.management.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket. The whole state is one timestamp, the time at which
+ * the bucket would be full again (the generic cell rate algorithm), so taking
+ * a token is a single compare-and-set and an idle bucket costs nothing to
+ * refill. Times are in nanoseconds from {@link System#nanoTime()}.
+ */
+public final class TokenBucket {
+
+    private final long nanosPerToken;
+    private final long burstNanos;
+    private final AtomicLong fullAt;
+
+    /**
+     * @param capacity       tokens available to a burst
+     * @param nanosPerToken  time to regain one token
+     */
+    public TokenBucket(int capacity, long nanosPerToken, long now) {
+        this.nanosPerToken = nanosPerToken;
+        this.burstNanos = capacity * nanosPerToken;
+        this.fullAt = new AtomicLong(now);
+    }
+
+    /**
+     * Take a token if one is available.
+     */
+    public boolean tryConsume(long now) {
+        while (true) {
+            long current = fullAt.get();
+            long next = Math.max(current, now) + nanosPerToken;
+            if (next - now > burstNanos) {
+                return false;
+            }
+            if (fullAt.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Take tokens spent elsewhere, going into debt if the bucket runs dry.
+     * Debt is capped at one extra burst so the bucket always recovers.
+     */
+    public void consume(long tokens, long now) {
+        fullAt.accumulateAndGet(tokens * nanosPerToken, (current, cost) ->
+                Math.min(Math.max(current, now) + cost, now + 2 * burstNanos));
+    }
+
+    /**
+     * Nanoseconds until the next token is available, zero if one is available now.
+     */
+    public long nanosUntilAvailable(long now) {
+        return Math.max(0, fullAt.get() + nanosPerToken - now - burstNanos);
+    }
+}
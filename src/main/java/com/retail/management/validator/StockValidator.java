@@ -1,37 +1,47 @@
 package com.retail.management.validator;
 
+import com.retail.management.cache.CatalogCache;
+import com.retail.management.cache.StockCache;
 import com.retail.management.entity.BranchStock;
 import com.retail.management.exception.InsufficientStockException;
-import com.retail.management.repository.BranchStockRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Component;
 
+import java.util.Map;
+
 @Component
 @RequiredArgsConstructor
 public class StockValidator {
 
-    private final BranchStockRepository branchStockRepository;
+    private final StockCache stockCache;
+    private final CatalogCache catalogCache;
 
     /**
-     * Validate stock availability for a product in a branch
+     * Validate stock availability for a product in a branch, from the stock cache
      */
     public void validateStockAvailability(Long branchId, Long productId, Integer requestedQuantity) {
-        BranchStock stock = branchStockRepository
-                .findByBranchIdAndProductId(branchId, productId)
-                .orElseThrow(() -> new InsufficientStockException(
-                        "Product not available in this branch"));
-
-        int availableQuantity = stock.getQuantity() - stock.getReservedQuantity();
+        int availableQuantity = stockCache.available(branchId, productId);
+        if (availableQuantity == StockCache.NO_STOCK) {
+            throw new InsufficientStockException("Product not available in this branch");
+        }
 
         if (availableQuantity < requestedQuantity) {
             throw new InsufficientStockException(
-                    stock.getProduct().getName(),
+                    catalogCache.getProduct(productId).getName(),
                     availableQuantity,
                     requestedQuantity
             );
         }
     }
 
+    /**
+     * Validate stock availability for a whole basket, from the stock cache
+     */
+    public void validateStockAvailability(Long branchId, Map<Long, Integer> requestedQuantities) {
+        requestedQuantities.forEach((productId, requestedQuantity) ->
+                validateStockAvailability(branchId, productId, requestedQuantity));
+    }
+
     /**
      * Check if product stock is low
      */
@@ -0,0 +1,69 @@
+package com.retail.management.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs against a local Postgres, e.g.
+ * {@code TEST_POSTGRES_URL=jdbc:postgresql://localhost:5432/retail TEST_POSTGRES_USER=... TEST_POSTGRES_PASSWORD=... mvn test}.
+ */
+@EnabledIfEnvironmentVariable(named = "TEST_POSTGRES_URL", matches = ".+")
+class CacheInvalidationBusTest {
+
+    private CacheInvalidationBus nodeA;
+    private CacheInvalidationBus nodeB;
+    private Cache<Object, Object> productsOnA;
+    private Cache<Object, Object> productsOnB;
+
+    @BeforeEach
+    void setUp() throws InterruptedException {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                System.getenv("TEST_POSTGRES_URL"),
+                System.getenv("TEST_POSTGRES_USER"),
+                System.getenv("TEST_POSTGRES_PASSWORD"));
+
+        nodeA = new CacheInvalidationBus(dataSource, "cache_invalidation_test", 50);
+        nodeB = new CacheInvalidationBus(dataSource, "cache_invalidation_test", 50);
+        productsOnA = Caffeine.newBuilder().build();
+        productsOnB = Caffeine.newBuilder().build();
+        nodeA.register("products", productsOnA);
+        nodeB.register("products", productsOnB);
+        nodeA.start();
+        nodeB.start();
+
+        // Give both listeners time to issue LISTEN before anything is cached
+        Thread.sleep(500);
+    }
+
+    @AfterEach
+    void tearDown() {
+        nodeA.stop();
+        nodeB.stop();
+    }
+
+    @Test
+    void evictionOnOneNodeReachesTheOtherWithinMilliseconds() throws InterruptedException {
+        productsOnA.put(42L, "price 10.00");
+        productsOnB.put(42L, "price 10.00");
+        productsOnB.put(43L, "price 20.00");
+
+        nodeA.publishEvict("products", 42L);
+
+        long deadline = System.currentTimeMillis() + 2000;
+        while (productsOnB.getIfPresent(42L) != null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        assertThat(productsOnB.getIfPresent(42L)).isNull();
+        assertThat(productsOnB.getIfPresent(43L)).isNotNull();
+        // The publishing node evicts locally through the cache itself, not the bus
+        assertThat(productsOnA.getIfPresent(42L)).isNotNull();
+    }
+}
@@ -0,0 +1,210 @@
+package com.retail.management.cache;
+
+import com.retail.management.event.StockChangedEvent;
+import com.retail.management.event.StockChangedEvent.Level;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StockCacheTest {
+
+    private static final long BRANCH_ID = 7L;
+
+    private CacheInvalidationBus invalidationBus;
+    private StockDatabase database;
+    private StockCache cache;
+
+    @BeforeEach
+    void setUp() {
+        invalidationBus = mock(CacheInvalidationBus.class);
+        database = new StockDatabase();
+        cache = new StockCache(database, invalidationBus, new SimpleMeterRegistry());
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+    }
+
+    @Test
+    void appliesCommittedLevelsAndIgnoresOlderVersions() {
+        assertThat(cache.available(BRANCH_ID, 1L)).isEqualTo(StockCache.NO_STOCK);
+
+        cache.onStockChanged(changed(List.of(new Level(1L, 10, 3, 2L, null))));
+        cache.onStockChanged(changed(List.of(new Level(1L, 50, 0, 1L, null))));
+
+        assertThat(cache.available(BRANCH_ID, 1L)).isEqualTo(7);
+        assertThat(cache.level(BRANCH_ID, 1L).version()).isEqualTo(2L);
+        assertThat(cache.available(BRANCH_ID, 2L)).isEqualTo(StockCache.NO_STOCK);
+    }
+
+    @Test
+    void keepsEveryProductAcrossResizes() {
+        cache.available(BRANCH_ID, 1L);
+        List<Level> levels = new ArrayList<>();
+        for (long productId = 1; productId <= 5_000; productId++) {
+            levels.add(new Level(productId, (int) productId, 0, 1L, null));
+        }
+        cache.onStockChanged(changed(levels));
+
+        for (long productId = 1; productId <= 5_000; productId++) {
+            assertThat(cache.available(BRANCH_ID, productId)).isEqualTo((int) productId);
+        }
+    }
+
+    @Test
+    void announcedLevelsReachOtherNodes() {
+        LocalDateTime restocked = LocalDateTime.of(2026, 3, 1, 9, 30, 15, 123_456_000);
+        List<Level> levels = new ArrayList<>();
+        for (long productId = 1; productId <= 1_000; productId++) {
+            levels.add(new Level(productId, 20, 5, 4L, productId == 1 ? restocked : null));
+        }
+        cache.announce(changed(levels));
+
+        ArgumentCaptor<String> messages = ArgumentCaptor.forClass(String.class);
+        verify(invalidationBus, atLeastOnce()).publishMessage(eq(StockCache.MESSAGE_NAME), messages.capture());
+        assertThat(messages.getAllValues()).allSatisfy(message -> assertThat(message.length()).isLessThan(7_000));
+
+        StockCache otherNode = new StockCache(database, mock(CacheInvalidationBus.class), new SimpleMeterRegistry());
+        otherNode.available(BRANCH_ID, 1L);
+        messages.getAllValues().forEach(otherNode::onMessage);
+
+        assertThat(otherNode.level(BRANCH_ID, 1L)).isEqualTo(levels.get(0));
+        assertThat(otherNode.available(BRANCH_ID, 1_000L)).isEqualTo(15);
+    }
+
+    @Test
+    void branchWideChangeDropsTheShard() {
+        cache.available(BRANCH_ID, 1L);
+        cache.onStockChanged(changed(List.of(new Level(1L, 10, 0, 1L, null))));
+
+        cache.onMessage(String.valueOf(BRANCH_ID));
+
+        // Reloaded from the (empty) database
+        assertThat(cache.available(BRANCH_ID, 1L)).isEqualTo(StockCache.NO_STOCK);
+        assertThat(database.loads).isEqualTo(2);
+    }
+
+    @Test
+    void doesNotLoadUncommittedRowsOfARolledBackTransaction() {
+        database.rows.put(1L, new Level(1L, 10, 0, 1L, null));
+
+        // A reservation changed the row and is about to roll back
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        database.rows.put(1L, new Level(1L, 10, 4, 2L, null));
+        assertThat(cache.available(BRANCH_ID, 1L)).isEqualTo(6);
+        database.rows.put(1L, new Level(1L, 10, 0, 1L, null));
+        TransactionSynchronizationManager.setActualTransactionActive(false);
+
+        assertThat(database.loads).isZero();
+        assertThat(cache.available(BRANCH_ID, 1L)).isEqualTo(10);
+
+        // The next commit reuses version 2 and must still be applied
+        cache.onStockChanged(changed(List.of(new Level(1L, 10, 3, 2L, null))));
+        assertThat(cache.available(BRANCH_ID, 1L)).isEqualTo(7);
+    }
+
+    @Test
+    void unknownBranchesAreNotCached() {
+        database.branchExists = false;
+
+        assertThat(cache.available(99L, 1L)).isEqualTo(StockCache.NO_STOCK);
+        assertThat(cache.level(99L, 1L)).isNull();
+        assertThat(cache.checkConsistency()).isZero();
+        assertThat(database.loads).isEqualTo(2);
+    }
+
+    @Test
+    void rowsCommittedAfterTheCheckReadAreNotMismatches() {
+        database.rows.put(1L, new Level(1L, 10, 0, 1L, null));
+        cache.available(BRANCH_ID, 1L);
+        database.rows.put(1L, new Level(1L, 8, 0, 2L, null));
+        // Inserted and applied while the check compares
+        database.afterLoad = () -> {
+            database.rows.put(2L, new Level(2L, 5, 0, 0L, null));
+            cache.onStockChanged(changed(List.of(new Level(2L, 5, 0, 0L, null))));
+        };
+
+        assertThat(cache.checkConsistency()).isEqualTo(1);
+        assertThat(cache.available(BRANCH_ID, 1L)).isEqualTo(8);
+        assertThat(cache.available(BRANCH_ID, 2L)).isEqualTo(5);
+        assertThat(database.loads).isEqualTo(2);
+    }
+
+    private static StockChangedEvent changed(List<Level> levels) {
+        return new StockChangedEvent(BRANCH_ID, levels, Map.of());
+    }
+
+    /**
+     * branch_stocks of a single branch, as seen by the cache's queries
+     */
+    private static class StockDatabase extends JdbcTemplate {
+
+        final Map<Long, Level> rows = new LinkedHashMap<>();
+        boolean branchExists = true;
+        Runnable afterLoad = () -> { };
+        int loads;
+
+        @Override
+        public void query(String sql, RowCallbackHandler handler, Object... args) throws DataAccessException {
+            try {
+                if (args.length == 1) {
+                    loads++;
+                    if (branchExists) {
+                        if (rows.isEmpty()) {
+                            handler.processRow(resultSet(null));
+                        }
+                        for (Level row : List.copyOf(rows.values())) {
+                            handler.processRow(resultSet(row));
+                        }
+                    }
+                    afterLoad.run();
+                    afterLoad = () -> { };
+                } else {
+                    Level row = rows.get((Long) args[1]);
+                    if (row != null) {
+                        handler.processRow(resultSet(row));
+                    }
+                }
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private static ResultSet resultSet(Level row) throws SQLException {
+            ResultSet rs = mock(ResultSet.class);
+            if (row != null) {
+                when(rs.getObject(1)).thenReturn(row.productId());
+                when(rs.getLong(1)).thenReturn(row.productId());
+                when(rs.getInt(2)).thenReturn(row.quantity());
+                when(rs.getInt(3)).thenReturn(row.reservedQuantity());
+                when(rs.getLong(4)).thenReturn(row.version());
+                when(rs.getTimestamp(5)).thenReturn(
+                        row.lastRestockedAt() != null ? Timestamp.valueOf(row.lastRestockedAt()) : null);
+            }
+            return rs;
+        }
+    }
+}
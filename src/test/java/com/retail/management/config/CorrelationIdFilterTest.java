@@ -0,0 +1,69 @@
+package com.retail.management.config;
+
+import com.retail.management.util.CorrelationIdUtil;
+import com.retail.management.util.RequestTimings;
+import com.retail.management.util.RequestTimings.Phase;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CorrelationIdFilterTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final CorrelationIdFilter filter = new CorrelationIdFilter(registry, true);
+
+    @Test
+    void keepsValidIncomingIdAndReportsNestedPhasesOnce() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/v1/invoices");
+        request.addHeader(CorrelationIdUtil.HEADER, "checkout-42");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        AtomicReference<String> seen = new AtomicReference<>();
+
+        filter.doFilter(request, response, (req, res) -> {
+            seen.set(CorrelationIdUtil.current());
+            RequestTimings.current().switchTo(Phase.CONTROLLER);
+            Phase outer = RequestTimings.enter(Phase.SERVICE);
+            Phase inner = RequestTimings.enter(Phase.DB);
+            sleep();
+            RequestTimings.exit(inner);
+            RequestTimings.exit(outer);
+        });
+
+        assertThat(seen.get()).isEqualTo("checkout-42");
+        assertThat(response.getHeader(CorrelationIdUtil.HEADER)).isEqualTo("checkout-42");
+        assertThat(CorrelationIdUtil.current()).isNull();
+        assertThat(RequestTimings.current()).isNull();
+        assertThat(response.getHeader(CorrelationIdFilter.SERVER_TIMING_HEADER))
+                .contains("db;dur=").contains("total;dur=");
+
+        double db = registry.get("http.server.phase").tag("phase", "db").timer().totalTime(TimeUnit.MILLISECONDS);
+        double service = registry.get("http.server.phase").tag("phase", "service").timer().totalTime(TimeUnit.MILLISECONDS);
+        assertThat(db).isGreaterThanOrEqualTo(20);
+        assertThat(service).isLessThan(db);
+    }
+
+    @Test
+    void replacesMalformedIncomingId() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/products");
+        request.addHeader(CorrelationIdUtil.HEADER, "bad id\r\nSet-Cookie: x");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request, response, (req, res) -> { });
+
+        assertThat(response.getHeader(CorrelationIdUtil.HEADER)).hasSize(36);
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(20);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
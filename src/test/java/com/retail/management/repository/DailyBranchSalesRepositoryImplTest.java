@@ -0,0 +1,186 @@
+package com.retail.management.repository;
+
+import com.retail.management.enums.InvoiceStatus;
+import com.retail.management.event.InvoiceSalesSnapshot;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs against a local Postgres in a scratch schema, e.g.
+ * {@code TEST_POSTGRES_URL=jdbc:postgresql://localhost:5432/retail TEST_POSTGRES_USER=... TEST_POSTGRES_PASSWORD=... mvn test}.
+ */
+@EnabledIfEnvironmentVariable(named = "TEST_POSTGRES_URL", matches = ".+")
+class DailyBranchSalesRepositoryImplTest {
+
+    private static final String SCHEMA = "sales_rollup_test";
+    private static final LocalDate DAY = LocalDate.of(2026, 5, 4);
+
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private DailyBranchSalesRepositoryImpl repository;
+    private long nextInvoiceId = 1;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(System.getenv("TEST_POSTGRES_URL"));
+        dataSource.setUsername(System.getenv("TEST_POSTGRES_USER"));
+        dataSource.setPassword(System.getenv("TEST_POSTGRES_PASSWORD"));
+        dataSource.setMaximumPoolSize(4);
+        dataSource.setConnectionInitSql("CREATE SCHEMA IF NOT EXISTS " + SCHEMA + "; SET search_path TO " + SCHEMA);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+        jdbcTemplate.execute("DROP TABLE IF EXISTS invoices, returns, daily_branch_sales, sales_rollup_deltas");
+        jdbcTemplate.execute("CREATE TABLE invoices (id bigint PRIMARY KEY, branch_id bigint, invoice_date date, " +
+                "status varchar(20), customer_id bigint, subtotal numeric(14,2), tax_amount numeric(14,2), " +
+                "discount_amount numeric(14,2), total_amount numeric(14,2))");
+        jdbcTemplate.execute("CREATE TABLE returns (id bigserial PRIMARY KEY, invoice_id bigint, " +
+                "status varchar(20), total_return_amount numeric(14,2))");
+        jdbcTemplate.execute("CREATE TABLE daily_branch_sales (id bigserial PRIMARY KEY, branch_id bigint NOT NULL, " +
+                "sales_date date NOT NULL, status varchar(20) NOT NULL, invoice_count bigint NOT NULL, " +
+                "customer_count bigint NOT NULL, subtotal numeric(14,2) NOT NULL, tax_amount numeric(14,2) NOT NULL, " +
+                "discount_amount numeric(14,2) NOT NULL, total_amount numeric(14,2) NOT NULL, " +
+                "return_count bigint NOT NULL, return_amount numeric(14,2) NOT NULL, updated_at timestamp, " +
+                "UNIQUE (branch_id, sales_date, status))");
+        jdbcTemplate.execute("CREATE TABLE sales_rollup_deltas (id bigserial PRIMARY KEY, branch_id bigint NOT NULL, " +
+                "sales_date date NOT NULL, status varchar(20) NOT NULL, invoice_count int NOT NULL, " +
+                "subtotal numeric(14,2) NOT NULL, tax_amount numeric(14,2) NOT NULL, " +
+                "discount_amount numeric(14,2) NOT NULL, total_amount numeric(14,2) NOT NULL, " +
+                "return_count int NOT NULL, return_amount numeric(14,2) NOT NULL, created_at timestamp NOT NULL)");
+
+        repository = new DailyBranchSalesRepositoryImpl(jdbcTemplate);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+        dataSource.close();
+    }
+
+    @Test
+    void concurrentCheckoutsOfABranchDoNotWaitOnEachOther() throws Exception {
+        CountDownLatch firstWritten = new CountDownLatch(1);
+        CountDownLatch secondDone = new CountDownLatch(1);
+
+        CompletableFuture<Void> first = CompletableFuture.runAsync(() -> transactionTemplate.executeWithoutResult(s -> {
+            checkout(7L, "100.00");
+            firstWritten.countDown();
+            await(secondDone);
+        }));
+        assertThat(firstWritten.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // Same branch, day and status while the first checkout is still open
+        transactionTemplate.executeWithoutResult(s -> checkout(8L, "50.00"));
+        secondDone.countDown();
+        first.get(5, TimeUnit.SECONDS);
+
+        drain(100);
+        Map<String, Object> row = row(InvoiceStatus.PAID);
+        assertThat(row.get("invoice_count")).isEqualTo(2L);
+        assertThat(row.get("customer_count")).isEqualTo(2L);
+        assertThat((BigDecimal) row.get("total_amount")).isEqualByComparingTo("150.00");
+    }
+
+    @Test
+    void drainCountsEachCustomerOncePerRow() {
+        transactionTemplate.executeWithoutResult(s -> {
+            checkout(7L, "10.00");
+            checkout(7L, "20.00");
+            checkout(null, "30.00");
+        });
+
+        assertThat(drain(2)).isEqualTo(2);
+        assertThat(drain(2)).isEqualTo(1);
+
+        Map<String, Object> row = row(InvoiceStatus.PAID);
+        assertThat(row.get("invoice_count")).isEqualTo(3L);
+        assertThat(row.get("customer_count")).isEqualTo(1L);
+        assertThat((BigDecimal) row.get("total_amount")).isEqualByComparingTo("60.00");
+    }
+
+    @Test
+    void statusChangeMovesFiguresBetweenRows() {
+        InvoiceSalesSnapshot pending = transactionTemplate.execute(s -> checkout(InvoiceStatus.PENDING, 7L, "40.00"));
+        transactionTemplate.executeWithoutResult(s -> {
+            InvoiceSalesSnapshot cancelled = pending.toBuilder().status(InvoiceStatus.CANCELLED).build();
+            jdbcTemplate.update("UPDATE invoices SET status = ? WHERE id = ?", "CANCELLED", pending.getInvoiceId());
+            repository.applyDelta(pending, -1);
+            repository.applyDelta(cancelled, 1);
+        });
+        drain(100);
+
+        assertThat(row(InvoiceStatus.PENDING).get("invoice_count")).isEqualTo(0L);
+        assertThat(row(InvoiceStatus.PENDING).get("customer_count")).isEqualTo(0L);
+        assertThat(row(InvoiceStatus.CANCELLED).get("invoice_count")).isEqualTo(1L);
+        assertThat(row(InvoiceStatus.CANCELLED).get("customer_count")).isEqualTo(1L);
+    }
+
+    @Test
+    void rebuildDiscardsTheDeltasOfTheInvoicesItCounts() {
+        transactionTemplate.executeWithoutResult(s -> checkout(7L, "25.00"));
+
+        transactionTemplate.execute(s -> repository.rebuild(DAY, DAY));
+        assertThat(drain(100)).isZero();
+
+        Map<String, Object> row = row(InvoiceStatus.PAID);
+        assertThat(row.get("invoice_count")).isEqualTo(1L);
+        assertThat((BigDecimal) row.get("total_amount")).isEqualByComparingTo("25.00");
+    }
+
+    private int drain(int batchSize) {
+        return transactionTemplate.execute(s -> repository.drain(batchSize));
+    }
+
+    private InvoiceSalesSnapshot checkout(Long customerId, String total) {
+        return checkout(InvoiceStatus.PAID, customerId, total);
+    }
+
+    private InvoiceSalesSnapshot checkout(InvoiceStatus status, Long customerId, String total) {
+        InvoiceSalesSnapshot snapshot = InvoiceSalesSnapshot.builder()
+                .invoiceId(nextInvoiceId++)
+                .branchId(1L)
+                .salesDate(DAY)
+                .status(status)
+                .customerId(customerId)
+                .subtotal(new BigDecimal(total))
+                .taxAmount(BigDecimal.ZERO)
+                .discountAmount(BigDecimal.ZERO)
+                .totalAmount(new BigDecimal(total))
+                .build();
+        jdbcTemplate.update("INSERT INTO invoices VALUES (?, ?, ?, ?, ?, ?, 0, 0, ?)", snapshot.getInvoiceId(),
+                snapshot.getBranchId(), DAY, status.name(), customerId, snapshot.getSubtotal(), snapshot.getTotalAmount());
+        repository.applyDelta(snapshot, 1);
+        return snapshot;
+    }
+
+    private Map<String, Object> row(InvoiceStatus status) {
+        return jdbcTemplate.queryForMap("SELECT * FROM daily_branch_sales WHERE branch_id = 1 AND sales_date = ? " +
+                "AND status = ?", DAY, status.name());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
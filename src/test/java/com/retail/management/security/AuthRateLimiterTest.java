@@ -0,0 +1,65 @@
+package com.retail.management.security;
+
+import com.retail.management.cache.CacheInvalidationBus;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+class AuthRateLimiterTest {
+
+    @Test
+    void limitsEachUsernameAcrossAddressesAndEachAddressAcrossUsernames() {
+        AuthRateLimiter limiter = new AuthRateLimiter(mock(CacheInvalidationBus.class), 5, 1, 3, 1, 1000, false);
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(limiter.tryAcquire("10.0.0." + i, "Cashier")).isZero();
+            limiter.recordFailedLogin("Cashier");
+        }
+        assertThat(limiter.tryAcquire("10.0.0.9", "cashier")).isPositive();
+        assertThat(limiter.tryAcquire("10.0.0.9", "manager")).isZero();
+
+        for (int i = 0; i < 4; i++) {
+            limiter.tryAcquire("10.0.0.1", "user" + i);
+        }
+        assertThat(limiter.tryAcquire("10.0.0.1", "someone")).isGreaterThanOrEqualTo(1);
+    }
+
+    @Test
+    void sharedLimitersSpendTokensAnnouncedByOtherNodes() {
+        CacheInvalidationBus bus = mock(CacheInvalidationBus.class);
+        AuthRateLimiter first = new AuthRateLimiter(bus, 100, 1, 3, 1, 1000, true);
+        AuthRateLimiter second = new AuthRateLimiter(mock(CacheInvalidationBus.class), 100, 1, 3, 1, 1000, true);
+
+        first.recordFailedLogin("cashier");
+        first.recordFailedLogin("cashier");
+        first.announce();
+
+        ArgumentCaptor<String> message = ArgumentCaptor.forClass(String.class);
+        verify(bus).publishMessage(eq(AuthRateLimiter.MESSAGE_NAME), message.capture());
+        second.onMessage(message.getValue());
+
+        assertThat(second.tryAcquire("10.0.0.2", "cashier")).isZero();
+        second.recordFailedLogin("cashier");
+        assertThat(second.tryAcquire("10.0.0.2", "cashier")).isPositive();
+    }
+
+    @Test
+    void successfulLoginsDoNotSpendTheUsernameBucket() {
+        AuthRateLimiter limiter = new AuthRateLimiter(mock(CacheInvalidationBus.class), 100, 1, 3, 1, 1000, false);
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(limiter.tryAcquire("10.0.0.1", "cashier")).isZero();
+        }
+
+        // Someone else guessing at the account from other addresses
+        for (int i = 0; i < 3; i++) {
+            assertThat(limiter.tryAcquire("10.0.1." + i, "cashier")).isZero();
+            limiter.recordFailedLogin("cashier");
+        }
+        assertThat(limiter.tryAcquire("10.0.0.1", "cashier")).isPositive();
+    }
+}
@@ -0,0 +1,142 @@
+package com.retail.management.security;
+
+import com.retail.management.cache.CacheInvalidationBus;
+import com.retail.management.config.CacheConfig;
+import com.retail.management.config.JwtConfig;
+import com.retail.management.repository.TokenRevocationRepository;
+import com.retail.management.repository.UserRepository;
+import com.retail.management.repository.projection.UserAuthStatus;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.io.Encoders;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class JwtAuthenticationFilterTest {
+
+    private UserRepository userRepository;
+    private JwtTokenProvider jwtTokenProvider;
+    private TokenRevocationList tokenRevocationList;
+    private JwtAuthenticationFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        JwtConfig jwtConfig = new JwtConfig();
+        jwtConfig.setSecret(Encoders.BASE64.encode(new byte[32]));
+        jwtConfig.setExpiration(60_000);
+        jwtConfig.setRefreshExpiration(60_000);
+        jwtTokenProvider = new JwtTokenProvider(jwtConfig, 1000);
+        jwtTokenProvider.init();
+
+        userRepository = mock(UserRepository.class);
+        UserStatusCache userStatusCache = new UserStatusCache(
+                new CacheConfig().cacheManager(mock(CacheInvalidationBus.class)), userRepository);
+        tokenRevocationList = new TokenRevocationList(mock(TokenRevocationRepository.class),
+                mock(CacheInvalidationBus.class), jwtConfig, 1000);
+        filter = new JwtAuthenticationFilter(jwtTokenProvider, userStatusCache, tokenRevocationList);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void authenticatesFromClaimsAndLooksUpUserStatusOnce() throws Exception {
+        givenUser("cashier", true, "CASHIER");
+        String token = jwtTokenProvider.generateTokenFromUsername("cashier", "ROLE_CASHIER");
+
+        for (int i = 0; i < 3; i++) {
+            SecurityContextHolder.clearContext();
+            filter.doFilter(request(token), new MockHttpServletResponse(), new MockFilterChain());
+
+            Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+            assertThat(authentication.getName()).isEqualTo("cashier");
+            assertThat(authentication.getAuthorities()).extracting(GrantedAuthority::getAuthority)
+                    .containsExactly("ROLE_CASHIER");
+        }
+        verify(userRepository, times(1)).findAuthStatusByUsername("cashier");
+    }
+
+    @Test
+    void rejectsDisabledUsersRefreshTokensAndStaleRoles() throws Exception {
+        givenUser("former", false, "CASHIER");
+        givenUser("promoted", true, "MANAGER");
+
+        for (String token : new String[]{
+                jwtTokenProvider.generateTokenFromUsername("former", "ROLE_CASHIER"),
+                jwtTokenProvider.generateRefreshToken("promoted"),
+                jwtTokenProvider.generateTokenFromUsername("promoted", "ROLE_CASHIER"),
+                "not-a-token"}) {
+            filter.doFilter(request(token), new MockHttpServletResponse(), new MockFilterChain());
+            assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+        }
+    }
+
+    @Test
+    void rejectsRevokedTokensWithoutTouchingOtherTokens() throws Exception {
+        givenUser("cashier", true, "CASHIER");
+        String revoked = jwtTokenProvider.generateTokenFromUsername("cashier", "ROLE_CASHIER");
+        String other = jwtTokenProvider.generateTokenFromUsername("cashier", "ROLE_CASHIER");
+
+        Claims claims = jwtTokenProvider.parseClaims(revoked);
+        tokenRevocationList.revokeToken(claims.getId(), claims.getExpiration().toInstant());
+
+        filter.doFilter(request(revoked), new MockHttpServletResponse(), new MockFilterChain());
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+
+        filter.doFilter(request(other), new MockHttpServletResponse(), new MockFilterChain());
+        assertThat(SecurityContextHolder.getContext().getAuthentication().getName()).isEqualTo("cashier");
+
+        tokenRevocationList.revokeUser("cashier", Instant.now());
+        SecurityContextHolder.clearContext();
+        filter.doFilter(request(other), new MockHttpServletResponse(), new MockFilterChain());
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+    }
+
+    @Test
+    void userCutoffCoversTokensIssuedInTheSameSecond() throws Exception {
+        givenUser("cashier", true, "CASHIER");
+        String token = jwtTokenProvider.generateTokenFromUsername("cashier", "ROLE_CASHIER");
+        Instant issuedAt = jwtTokenProvider.parseClaims(token).getIssuedAt().toInstant();
+
+        // A cutoff in the previous second leaves the token alone
+        tokenRevocationList.onMessage("U:" + issuedAt.minusMillis(1).toEpochMilli() + ":cashier");
+        filter.doFilter(request(token), new MockHttpServletResponse(), new MockFilterChain());
+        assertThat(SecurityContextHolder.getContext().getAuthentication().getName()).isEqualTo("cashier");
+
+        // Logging out everywhere later in the second the token was issued
+        tokenRevocationList.revokeUser("cashier", issuedAt.plusMillis(999));
+        SecurityContextHolder.clearContext();
+        filter.doFilter(request(token), new MockHttpServletResponse(), new MockFilterChain());
+        assertThat(SecurityContextHolder.getContext().getAuthentication()).isNull();
+    }
+
+    private void givenUser(String username, boolean active, String roleName) {
+        UserAuthStatus status = mock(UserAuthStatus.class);
+        when(status.getActive()).thenReturn(active);
+        when(status.getRoleName()).thenReturn(roleName);
+        when(userRepository.findAuthStatusByUsername(username)).thenReturn(Optional.of(status));
+    }
+
+    private static MockHttpServletRequest request(String token) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/products");
+        request.addHeader("Authorization", "Bearer " + token);
+        return request;
+    }
+}
@@ -0,0 +1,108 @@
+package com.retail.management.security;
+
+import com.retail.management.config.JwtConfig;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.io.Decoders;
+import io.jsonwebtoken.io.Encoders;
+import io.jsonwebtoken.security.Keys;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import javax.crypto.SecretKey;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verify throughput of access tokens: a parser built per call (as before),
+ * the shared parser without the verified-token cache, and with the cache over
+ * a working set of distinct tokens. Run the main method against the test
+ * classpath; it is not part of the test suite.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtVerifyBenchmark {
+
+    private static final int TOKENS = 1_000;
+
+    @State(Scope.Benchmark)
+    public static class Tokens {
+
+        SecretKey key;
+        JwtTokenProvider uncached;
+        JwtTokenProvider cached;
+        String[] tokens;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            byte[] secret = new byte[64];
+            new SecureRandom().nextBytes(secret);
+
+            JwtConfig jwtConfig = new JwtConfig();
+            jwtConfig.setSecret(Encoders.BASE64.encode(secret));
+            jwtConfig.setExpiration(TimeUnit.HOURS.toMillis(1));
+            jwtConfig.setRefreshExpiration(TimeUnit.HOURS.toMillis(1));
+
+            key = Keys.hmacShaKeyFor(Decoders.BASE64.decode(jwtConfig.getSecret()));
+            uncached = new JwtTokenProvider(jwtConfig, 0);
+            uncached.init();
+            cached = new JwtTokenProvider(jwtConfig, 10_000);
+            cached.init();
+
+            tokens = new String[TOKENS];
+            for (int i = 0; i < TOKENS; i++) {
+                tokens[i] = cached.generateTokenFromUsername("user" + i, "ROLE_CASHIER");
+            }
+        }
+    }
+
+    /**
+     * Walks the token set, so each thread cycles through the whole working set.
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int next;
+
+        String token(Tokens tokens) {
+            String token = tokens.tokens[next];
+            next = (next + 1) % tokens.tokens.length;
+            return token;
+        }
+    }
+
+    @Benchmark
+    public void parserPerCall(Tokens tokens, Cursor cursor, Blackhole blackhole) {
+        blackhole.consume(Jwts.parser().verifyWith(tokens.key).build()
+                .parseSignedClaims(cursor.token(tokens)).getPayload());
+    }
+
+    @Benchmark
+    public void sharedParser(Tokens tokens, Cursor cursor, Blackhole blackhole) {
+        blackhole.consume(tokens.uncached.parseClaims(cursor.token(tokens)));
+    }
+
+    @Benchmark
+    public void sharedParserWithCache(Tokens tokens, Cursor cursor, Blackhole blackhole) {
+        blackhole.consume(tokens.cached.parseClaims(cursor.token(tokens)));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(JwtVerifyBenchmark.class.getSimpleName()).build()).run();
+    }
+}
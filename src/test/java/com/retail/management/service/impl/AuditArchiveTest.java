@@ -0,0 +1,99 @@
+package com.retail.management.service.impl;
+
+import com.retail.management.cache.CacheInvalidationBus;
+import com.retail.management.entity.AuditLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AuditArchiveTest {
+
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void findsArchivedEntriesByEntityAndCorrelationIdAcrossBlocksRestartsAndNodes() throws Exception {
+        // 20 products with 200 changes each, in entity order as the export query returns them
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(1);
+            long[] row = new long[1];
+            ResultSet rs = mock(ResultSet.class);
+            when(rs.getLong(anyInt())).thenAnswer(a -> a.<Integer>getArgument(0) == 1 ? row[0] : row[0] / 1000);
+            when(rs.getString(anyInt())).thenAnswer(a -> switch (a.<Integer>getArgument(0)) {
+                case 2 -> "Product";
+                case 4 -> "UPDATE";
+                case 5 -> "admin";
+                case 7 -> "{\"price\":" + row[0] % 1000 + ",\"name\":\"Product number " + row[0] / 1000 + "\"}";
+                case 9 -> "request-" + (row[0] % 50);
+                default -> null;
+            });
+            when(rs.getTimestamp(10)).thenAnswer(a -> Timestamp.valueOf(START.plusMinutes(row[0] % 1000)));
+
+            for (int product = 0; product < 20; product++) {
+                for (int change = 0; change < 200; change++) {
+                    row[0] = product * 1000L + change;
+                    handler.processRow(rs);
+                }
+            }
+            return null;
+        }).when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+
+        CacheInvalidationBus invalidationBus = mock(CacheInvalidationBus.class);
+        AuditArchive archive = new AuditArchive(jdbcTemplate, transactionTemplate, invalidationBus, directory.toString());
+        // Another node sharing the directory, started before the month was archived
+        AuditArchive otherNode = new AuditArchive(jdbcTemplate, transactionTemplate,
+                mock(CacheInvalidationBus.class), directory.toString());
+        otherNode.load();
+
+        assertThat(archive.archive("audit_logs_y2024m01")).isEqualTo(4000);
+        verify(invalidationBus).publishMessage(AuditArchive.MESSAGE_NAME, "audit_logs_y2024m01");
+        otherNode.onMessage("audit_logs_y2024m01");
+
+        AuditArchive reloaded = new AuditArchive(jdbcTemplate, transactionTemplate,
+                mock(CacheInvalidationBus.class), directory.toString());
+        reloaded.load();
+
+        for (AuditArchive a : List.of(archive, otherNode, reloaded)) {
+            List<AuditLog> trail = a.findAuditTrail("Product", 7L);
+            assertThat(trail).hasSize(200);
+            assertThat(trail.get(0).getId()).isEqualTo(7199L);
+            assertThat(trail.get(0).getCreatedAt()).isEqualTo(START.plusMinutes(199));
+            assertThat(trail.get(0).getNewValues()).isEqualTo("{\"price\":199,\"name\":\"Product number 7\"}");
+            assertThat(trail.get(0).getOldValues()).isNull();
+
+            assertThat(a.findAuditTrail("Product", 99L)).isEmpty();
+            assertThat(a.findAuditTrail("Customer", 7L)).isEmpty();
+            assertThat(a.findByCorrelationId("request-3"))
+                    .hasSize(80)
+                    .allMatch(entry -> entry.getId() % 50 == 3);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.retail.management.service.impl;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Runs against a local Postgres in a scratch schema, e.g.
+ * {@code TEST_POSTGRES_URL=jdbc:postgresql://localhost:5432/retail TEST_POSTGRES_USER=... TEST_POSTGRES_PASSWORD=... mvn test}.
+ */
+@EnabledIfEnvironmentVariable(named = "TEST_POSTGRES_URL", matches = ".+")
+class AuditLogPartitionsTest {
+
+    private static final String SCHEMA = "audit_partitions_test";
+    private static final YearMonth CURRENT = YearMonth.now();
+
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(System.getenv("TEST_POSTGRES_URL"));
+        dataSource.setUsername(System.getenv("TEST_POSTGRES_USER"));
+        dataSource.setPassword(System.getenv("TEST_POSTGRES_PASSWORD"));
+        dataSource.setMaximumPoolSize(6);
+        dataSource.setConnectionInitSql("CREATE SCHEMA IF NOT EXISTS " + SCHEMA + "; SET search_path TO " + SCHEMA);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+        // As Hibernate creates it
+        jdbcTemplate.execute("CREATE TABLE audit_logs (id bigserial PRIMARY KEY, entity_type varchar(100) NOT NULL, " +
+                "entity_id bigint NOT NULL, action varchar(50) NOT NULL, performed_by varchar(100) NOT NULL, " +
+                "old_values text, new_values text, ip_address varchar(50), correlation_id varchar(100), " +
+                "created_at timestamp(6) NOT NULL)");
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+        dataSource.close();
+    }
+
+    @Test
+    void convertsThePlainTableKeepingItsRows() {
+        insert(CURRENT.minusMonths(5).atDay(10).atStartOfDay());
+        insert(CURRENT.atDay(1).atTime(8, 0));
+
+        partitions(2).init();
+
+        assertThat(relkind("audit_logs")).isEqualTo("p");
+        assertThat(partitionsOf()).contains("audit_logs_default", "audit_logs_legacy",
+                name(CURRENT), name(CURRENT.plusMonths(1)), name(CURRENT.plusMonths(2)));
+        assertThat(count("audit_logs_legacy")).isEqualTo(1);
+        assertThat(count(name(CURRENT))).isEqualTo(1);
+
+        // New rows take ids after the existing ones
+        insert(CURRENT.atDay(2).atStartOfDay());
+        assertThat(jdbcTemplate.queryForObject("SELECT MAX(id) FROM audit_logs", Long.class)).isEqualTo(3L);
+    }
+
+    @Test
+    void nodesStartingTogetherConvertOnce() {
+        insert(CURRENT.minusMonths(1).atDay(1).atStartOfDay());
+
+        List<CompletableFuture<Void>> starts = List.of(
+                CompletableFuture.runAsync(() -> partitions(1).init()),
+                CompletableFuture.runAsync(() -> partitions(1).init()),
+                CompletableFuture.runAsync(() -> partitions(1).init()));
+        starts.forEach(CompletableFuture::join);
+
+        assertThat(relkind("audit_logs")).isEqualTo("p");
+        assertThat(count("audit_logs")).isEqualTo(1);
+        assertThat(partitionsOf()).contains("audit_logs_legacy", name(CURRENT), name(CURRENT.plusMonths(1)));
+    }
+
+    @Test
+    void skipsAMonthWhoseRowsAreAlreadyInTheDefaultPartition() {
+        partitions(1).init();
+        // Beyond the partitions created so far
+        insert(CURRENT.plusMonths(2).atDay(3).atStartOfDay());
+
+        partitions(3).maintain();
+
+        assertThat(partitionsOf()).contains(name(CURRENT.plusMonths(3))).doesNotContain(name(CURRENT.plusMonths(2)));
+        assertThat(count("audit_logs_default")).isEqualTo(1);
+    }
+
+    private AuditLogPartitions partitions(int monthsAhead) {
+        return new AuditLogPartitions(jdbcTemplate, transactionTemplate, mock(AuditArchive.class),
+                true, monthsAhead, 0, false);
+    }
+
+    private void insert(LocalDateTime createdAt) {
+        jdbcTemplate.update("INSERT INTO audit_logs (entity_type, entity_id, action, performed_by, created_at) " +
+                "VALUES ('Product', 1, 'UPDATE', 'admin', ?)", createdAt);
+    }
+
+    private String relkind(String table) {
+        return jdbcTemplate.queryForObject("SELECT relkind::text FROM pg_class WHERE oid = to_regclass(?)",
+                String.class, table);
+    }
+
+    private List<String> partitionsOf() {
+        return jdbcTemplate.queryForList("SELECT c.relname FROM pg_inherits i JOIN pg_class c ON c.oid = i.inhrelid " +
+                "WHERE i.inhparent = to_regclass('audit_logs')", String.class);
+    }
+
+    private long count(String table) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Long.class);
+    }
+
+    private static String name(YearMonth month) {
+        return String.format("audit_logs_y%04dm%02d", month.getYear(), month.getMonthValue());
+    }
+}
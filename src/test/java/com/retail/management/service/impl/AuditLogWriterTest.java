@@ -0,0 +1,59 @@
+package com.retail.management.service.impl;
+
+import com.retail.management.entity.AuditLog;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class AuditLogWriterTest {
+
+    @Test
+    void dropsWhenFullAndFlushesTheRestInBatchesOnStop() {
+        JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+        List<Integer> batchSizes = new ArrayList<>();
+        doAnswer(invocation -> {
+            batchSizes.add(invocation.<Collection<?>>getArgument(1).size());
+            return new int[0][];
+        }).when(jdbcTemplate).batchUpdate(anyString(), any(Collection.class), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class));
+
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        AuditLogWriter writer = new AuditLogWriter(jdbcTemplate, registry, 5, 2, 60_000, 10);
+
+        // Not started, so nothing drains the queue
+        for (long i = 0; i < 6; i++) {
+            writer.submit(entry(i));
+        }
+        assertThat(registry.counter("audit.log.backpressure").count()).isEqualTo(1);
+        assertThat(registry.counter("audit.log.dropped").count()).isEqualTo(1);
+
+        writer.start();
+        writer.stop();
+
+        assertThat(batchSizes).containsExactly(2, 2, 1);
+        assertThat(registry.counter("audit.log.written").count()).isEqualTo(5);
+    }
+
+    private static AuditLog entry(long id) {
+        return AuditLog.builder()
+                .entityType("Product")
+                .entityId(id)
+                .action("UPDATE")
+                .performedBy("admin")
+                .createdAt(LocalDateTime.now())
+                .build();
+    }
+}
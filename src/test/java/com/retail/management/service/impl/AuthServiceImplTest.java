@@ -0,0 +1,212 @@
+package com.retail.management.service.impl;
+
+import com.retail.management.config.JwtConfig;
+import com.retail.management.dto.request.auth.LoginRequest;
+import com.retail.management.dto.request.auth.RegisterRequest;
+import com.retail.management.dto.response.ErrorResponse;
+import com.retail.management.dto.response.auth.LoginResponse;
+import com.retail.management.entity.Role;
+import com.retail.management.entity.User;
+import com.retail.management.exception.GlobalExceptionHandler;
+import com.retail.management.exception.ServiceUnavailableException;
+import com.retail.management.mapper.UserMapper;
+import com.retail.management.repository.BranchRepository;
+import com.retail.management.repository.RoleRepository;
+import com.retail.management.repository.UserRepository;
+import com.retail.management.security.AuthRateLimiter;
+import com.retail.management.security.JwtTokenProvider;
+import com.retail.management.security.PasswordHasher;
+import com.retail.management.security.TokenRevocationList;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AuthServiceImplTest {
+
+    // Stored hashes are made with a lower cost than the hasher uses, so they need upgrading
+    private static final PasswordEncoder OLD_ENCODER = new BCryptPasswordEncoder(4);
+
+    private UserRepository userRepository;
+    private RoleRepository roleRepository;
+    private AuthRateLimiter rateLimiter;
+    private PasswordHasher passwordHasher;
+
+    @BeforeEach
+    void setUp() {
+        userRepository = mock(UserRepository.class);
+        roleRepository = mock(RoleRepository.class);
+        rateLimiter = mock(AuthRateLimiter.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        passwordHasher.shutdown();
+    }
+
+    @Test
+    void loginUpgradesAWeakHashInTheBackground() throws Exception {
+        passwordHasher = new PasswordHasher(new BCryptPasswordEncoder(5), new SimpleMeterRegistry(), 2, 10);
+        String oldHash = OLD_ENCODER.encode("secret");
+        when(userRepository.findByUsername("cashier")).thenReturn(Optional.of(user(oldHash)));
+
+        LoginResponse response = service().login(new LoginRequest("cashier", "secret")).get(10, TimeUnit.SECONDS);
+
+        assertThat(response.getAccessToken()).isEqualTo("access");
+        verify(userRepository, timeout(5_000)).updatePasswordHash(eq(7L), eq(oldHash),
+                argThat(newHash -> newHash.startsWith("$2a$05$")));
+        verify(rateLimiter, never()).recordFailedLogin(anyString());
+    }
+
+    @Test
+    void hashAlreadyAtTheCurrentCostIsLeftAlone() throws Exception {
+        PasswordEncoder encoder = new BCryptPasswordEncoder(4);
+        passwordHasher = new PasswordHasher(encoder, new SimpleMeterRegistry(), 2, 10);
+        when(userRepository.findByUsername("cashier")).thenReturn(Optional.of(user(encoder.encode("secret"))));
+
+        service().login(new LoginRequest("cashier", "secret")).get(10, TimeUnit.SECONDS);
+
+        verify(userRepository, never()).updatePasswordHash(anyLong(), anyString(), anyString());
+    }
+
+    @Test
+    void rehashLosingToAPasswordChangeKeepsTheNewPassword() throws Exception {
+        passwordHasher = new PasswordHasher(new BCryptPasswordEncoder(5), new SimpleMeterRegistry(), 2, 10);
+        String oldHash = OLD_ENCODER.encode("secret");
+        String changedHash = OLD_ENCODER.encode("changed");
+        AtomicReference<String> stored = new AtomicReference<>(oldHash);
+        CountDownLatch attempted = new CountDownLatch(1);
+        when(userRepository.findByUsername("cashier")).thenReturn(Optional.of(user(oldHash)));
+        // Same compare-and-set as the UPDATE ... WHERE password = :oldHash
+        when(userRepository.updatePasswordHash(eq(7L), anyString(), anyString())).thenAnswer(invocation -> {
+            int updated = stored.compareAndSet(invocation.getArgument(1), invocation.getArgument(2)) ? 1 : 0;
+            attempted.countDown();
+            return updated;
+        });
+
+        // The password is changed after the login read the user but before the re-hash lands
+        stored.set(changedHash);
+        LoginResponse response = service().login(new LoginRequest("cashier", "secret")).get(10, TimeUnit.SECONDS);
+
+        assertThat(attempted.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(response.getAccessToken()).isEqualTo("access");
+        assertThat(stored.get()).isEqualTo(changedHash);
+    }
+
+    @Test
+    void wrongPasswordIsChargedToTheUsername() {
+        passwordHasher = new PasswordHasher(new BCryptPasswordEncoder(5), new SimpleMeterRegistry(), 2, 10);
+        when(userRepository.findByUsername("cashier")).thenReturn(Optional.of(user(OLD_ENCODER.encode("secret"))));
+
+        assertThatThrownBy(() -> service().login(new LoginRequest("cashier", "wrong")).get(10, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(BadCredentialsException.class);
+
+        verify(rateLimiter).recordFailedLogin("cashier");
+        verify(userRepository, never()).updatePasswordHash(anyLong(), anyString(), anyString());
+    }
+
+    @Test
+    void fullHashingQueueAnswers503() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        passwordHasher = new PasswordHasher(blockingEncoder(release), new SimpleMeterRegistry(), 1, 1);
+        when(userRepository.findByUsername("cashier")).thenReturn(Optional.of(user("hash")));
+        when(roleRepository.findById(2L)).thenReturn(Optional.of(Role.builder().name("CASHIER").build()));
+        AuthServiceImpl service = service();
+
+        try {
+            // One on the worker, one in the queue
+            CompletableFuture<LoginResponse> running = service.login(new LoginRequest("cashier", "secret"));
+            CompletableFuture<LoginResponse> queued = service.login(new LoginRequest("cashier", "secret"));
+
+            ServiceUnavailableException loginRejected = failure(service.login(new LoginRequest("cashier", "secret")));
+            ServiceUnavailableException registerRejected = failure(service.register(RegisterRequest.builder()
+                    .username("new").email("new@example.com").password("secret")
+                    .firstName("New").lastName("User").roleId(2L).build()));
+
+            verify(rateLimiter, never()).recordFailedLogin(anyString());
+            verify(userRepository, never()).save(any());
+            assertThat(registerRejected.getRetryAfterSeconds()).isEqualTo(1);
+
+            ResponseEntity<ErrorResponse> response = new GlobalExceptionHandler()
+                    .handleServiceUnavailableException(loginRejected, new ServletWebRequest(new MockHttpServletRequest()));
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+            assertThat(response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+
+            release.countDown();
+            running.get(10, TimeUnit.SECONDS);
+            queued.get(10, TimeUnit.SECONDS);
+        } finally {
+            release.countDown();
+        }
+    }
+
+    private AuthServiceImpl service() {
+        JwtTokenProvider jwtTokenProvider = mock(JwtTokenProvider.class);
+        when(jwtTokenProvider.generateTokenFromUsername(anyString(), anyString())).thenReturn("access");
+        when(jwtTokenProvider.generateRefreshToken(anyString())).thenReturn("refresh");
+        return new AuthServiceImpl(userRepository, roleRepository, mock(BranchRepository.class), jwtTokenProvider,
+                mock(PasswordEncoder.class), mock(UserMapper.class), new JwtConfig(), mock(TokenRevocationList.class),
+                passwordHasher, new TransactionTemplate(mock(PlatformTransactionManager.class)),
+                mock(ApplicationEventPublisher.class), rateLimiter);
+    }
+
+    private static User user(String passwordHash) {
+        User user = User.builder()
+                .username("cashier")
+                .password(passwordHash)
+                .active(true)
+                .role(Role.builder().name("CASHIER").build())
+                .build();
+        user.setId(7L);
+        return user;
+    }
+
+    private static PasswordEncoder blockingEncoder(CountDownLatch release) {
+        PasswordEncoder encoder = mock(PasswordEncoder.class);
+        when(encoder.matches(any(), any())).thenAnswer(invocation -> release.await(10, TimeUnit.SECONDS));
+        return encoder;
+    }
+
+    private static ServiceUnavailableException failure(CompletableFuture<?> future) {
+        try {
+            future.get(1, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            assertThat(e.getCause()).isInstanceOf(ServiceUnavailableException.class);
+            return (ServiceUnavailableException) e.getCause();
+        } catch (Exception e) {
+            throw new AssertionError("Expected the hashing pool to reject the work", e);
+        }
+        throw new AssertionError("Expected the hashing pool to reject the work");
+    }
+}
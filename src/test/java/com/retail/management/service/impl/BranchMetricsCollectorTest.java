@@ -0,0 +1,108 @@
+package com.retail.management.service.impl;
+
+import com.retail.management.service.BranchMetricProvider;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongFunction;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class BranchMetricsCollectorTest {
+
+    private static final LocalDate DAY = LocalDate.of(2026, 5, 4);
+
+    private BranchMetricsCollector collector;
+
+    @AfterEach
+    void tearDown() {
+        collector.shutdown();
+    }
+
+    @Test
+    void leavesOutFailedMetricsOnly() {
+        collector = collector(4, 5_000, provider("sales", branchId -> BigDecimal.valueOf(branchId)),
+                provider("broken", branchId -> {
+                    throw new IllegalStateException("no data");
+                }));
+
+        Map<Long, Map<String, BigDecimal>> metrics = collector.collect(List.of(1L, 2L), DAY, DAY);
+
+        assertThat(metrics).containsOnlyKeys(1L, 2L);
+        assertThat(metrics.get(2L)).containsExactly(Map.entry("sales", BigDecimal.valueOf(2)));
+    }
+
+    @Test
+    void interruptsProvidersStillRunningAtTheTimeout() throws Exception {
+        CountDownLatch interrupted = new CountDownLatch(1);
+        collector = collector(4, 200, provider("slow", branchId -> {
+            try {
+                Thread.sleep(60_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+                Thread.currentThread().interrupt();
+            }
+            return BigDecimal.ONE;
+        }));
+
+        long start = System.nanoTime();
+        Map<Long, Map<String, BigDecimal>> metrics = collector.collect(List.of(1L), DAY, DAY);
+
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(2_000);
+        assertThat(metrics.get(1L)).isEmpty();
+        assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+    }
+
+    @Test
+    void timeoutCoversBranchesWaitingForASlot() {
+        // One slot and five branches of 300 ms each: most cannot finish within the timeout
+        collector = collector(1, 500, provider("slow", branchId -> {
+            try {
+                Thread.sleep(300);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return BigDecimal.ONE;
+        }));
+
+        long start = System.nanoTime();
+        Map<Long, Map<String, BigDecimal>> metrics = collector.collect(List.of(1L, 2L, 3L, 4L, 5L), DAY, DAY);
+
+        assertThat(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)).isLessThan(1_200);
+        assertThat(metrics).containsOnlyKeys(1L, 2L, 3L, 4L, 5L);
+        assertThat(metrics.get(1L)).containsKey("slow");
+        assertThat(metrics.get(5L)).isEmpty();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static BranchMetricsCollector collector(int parallelism, long timeoutMillis,
+                                                    BranchMetricProvider... providers) {
+        ObjectProvider<BranchMetricProvider> objectProvider = mock(ObjectProvider.class);
+        when(objectProvider.orderedStream()).thenReturn(Stream.of(providers));
+        return new BranchMetricsCollector(objectProvider, parallelism, timeoutMillis);
+    }
+
+    private static BranchMetricProvider provider(String name, LongFunction<BigDecimal> compute) {
+        return new BranchMetricProvider() {
+            @Override
+            public String getName() {
+                return name;
+            }
+
+            @Override
+            public BigDecimal compute(Long branchId, LocalDate startDate, LocalDate endDate) {
+                return compute.apply(branchId);
+            }
+        };
+    }
+}
@@ -0,0 +1,209 @@
+package com.retail.management.service.impl;
+
+import com.retail.management.cache.CacheInvalidationBus;
+import com.retail.management.cache.CatalogCache;
+import com.retail.management.entity.Product;
+import com.retail.management.enums.InvoiceStatus;
+import com.retail.management.enums.ReturnStatus;
+import com.retail.management.event.DashboardCountersChangedEvent;
+import com.retail.management.event.InvoiceSalesChangedEvent;
+import com.retail.management.event.InvoiceSalesSnapshot;
+import com.retail.management.event.LowStockThresholdChangedEvent;
+import com.retail.management.event.ReturnStatusChangedEvent;
+import com.retail.management.event.StockChangedEvent;
+import com.retail.management.event.UserChangedEvent;
+import com.retail.management.repository.BranchStockRepository;
+import com.retail.management.repository.CustomerRepository;
+import com.retail.management.repository.DailyBranchSalesRepository;
+import com.retail.management.repository.ReturnRepository;
+import com.retail.management.repository.UserRepository;
+import com.retail.management.repository.projection.BranchDaySales;
+import com.retail.management.repository.projection.BranchStockSummary;
+import com.retail.management.service.SalesRollupService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class DashboardCountersTest {
+
+    private static final Long BRANCH_ID = 1L;
+
+    private final LocalDate today = LocalDate.now();
+
+    private DailyBranchSalesRepository dailyBranchSalesRepository;
+    private BranchStockRepository branchStockRepository;
+    private ReturnRepository returnRepository;
+    private UserRepository userRepository;
+    private CatalogCache catalogCache;
+    private CacheInvalidationBus invalidationBus;
+    private DashboardCounters counters;
+
+    @BeforeEach
+    void setUp() {
+        dailyBranchSalesRepository = mock(DailyBranchSalesRepository.class);
+        branchStockRepository = mock(BranchStockRepository.class);
+        returnRepository = mock(ReturnRepository.class);
+        userRepository = mock(UserRepository.class);
+        catalogCache = mock(CatalogCache.class);
+        Product product = Product.builder().lowStockThreshold(10).build();
+        when(catalogCache.getProduct(any())).thenReturn(product);
+        invalidationBus = mock(CacheInvalidationBus.class);
+        counters = node(invalidationBus, mock(ApplicationEventPublisher.class));
+
+        BranchDaySales row = mock(BranchDaySales.class);
+        when(row.getBranchId()).thenReturn(BRANCH_ID);
+        when(row.getSalesDate()).thenReturn(today);
+        when(row.getPaidSales()).thenReturn(new BigDecimal("100.00"));
+        when(row.getInvoiceCount()).thenReturn(3L);
+        when(dailyBranchSalesRepository.sumByBranchAndDay(any(), any(), any())).thenReturn(List.of(row));
+        when(returnRepository.countByStatus(ReturnStatus.PENDING)).thenReturn(2L);
+    }
+
+    @Test
+    void committedEventsMoveCountersWithoutQuerying() {
+        InvoiceSalesSnapshot pending = InvoiceSalesSnapshot.builder()
+                .invoiceId(10L)
+                .branchId(BRANCH_ID)
+                .salesDate(today)
+                .status(InvoiceStatus.PENDING)
+                .totalAmount(new BigDecimal("25.50"))
+                .build();
+
+        counters.warmUp();
+        counters.onInvoiceSalesChanged(new InvoiceSalesChangedEvent(null, pending));
+        counters.onInvoiceSalesChanged(new InvoiceSalesChangedEvent(pending,
+                pending.toBuilder().status(InvoiceStatus.PAID).build()));
+        counters.onReturnStatusChanged(new ReturnStatusChangedEvent(5L, ReturnStatus.PENDING, ReturnStatus.COMPLETED));
+
+        assertThat(counters.sales(null, today, today)).isEqualByComparingTo("125.50");
+        assertThat(counters.sales(BRANCH_ID, today, today)).isEqualByComparingTo("125.50");
+        assertThat(counters.invoiceCount(null, today, today)).isEqualTo(4);
+        assertThat(counters.sales(2L, today, today)).isEqualByComparingTo("0");
+        assertThat(counters.pendingReturns()).isEqualTo(1);
+        verify(dailyBranchSalesRepository, times(1)).sumByBranchAndDay(any(), any(), any());
+    }
+
+    @Test
+    void stockCountsMoveWhenCommittedRowsCrossTheirThresholds() {
+        when(branchStockRepository.countLowStock()).thenReturn(4L);
+        when(branchStockRepository.countOutOfStock()).thenReturn(1L);
+        BranchStockSummary summary = mock(BranchStockSummary.class);
+        when(summary.getTotalProducts()).thenReturn(20L);
+        when(summary.getTotalStock()).thenReturn(500L);
+        when(summary.getLowStockItems()).thenReturn(3L);
+        when(branchStockRepository.summarizeBranch(BRANCH_ID)).thenReturn(summary);
+
+        assertThat(counters.lowStockCount()).isEqualTo(4);
+        assertThat(counters.branchStock(BRANCH_ID).getLowStockItems()).isEqualTo(3);
+
+        // 12 -> 9 turns low, 1 -> 0 runs out, 30 -> 25 stays, a new row of 5 starts low
+        counters.onStockChanged(new StockChangedEvent(BRANCH_ID,
+                List.of(level(1L, 9), level(2L, 0), level(3L, 25), level(4L, 5)),
+                Map.of(1L, 12, 2L, 1, 3L, 30)));
+
+        assertThat(counters.lowStockCount()).isEqualTo(6);
+        assertThat(counters.outOfStockCount()).isEqualTo(2);
+        BranchStockSummary branch = counters.branchStock(BRANCH_ID);
+        assertThat(branch.getTotalProducts()).isEqualTo(21);
+        assertThat(branch.getTotalStock()).isEqualTo(500 - 3 - 1 - 5 + 5);
+        assertThat(branch.getLowStockItems()).isEqualTo(5);
+
+        // Restocking the row that ran out clears both flags
+        counters.onStockChanged(new StockChangedEvent(BRANCH_ID, List.of(level(2L, 40)), Map.of(2L, 0)));
+        assertThat(counters.lowStockCount()).isEqualTo(5);
+        assertThat(counters.outOfStockCount()).isEqualTo(1);
+
+        verify(branchStockRepository, times(1)).countLowStock();
+        verify(branchStockRepository, times(1)).summarizeBranch(BRANCH_ID);
+    }
+
+    @Test
+    void stockCountsAreRecountedAfterChangesWithoutRowsOrThresholdChanges() {
+        when(branchStockRepository.countLowStock()).thenReturn(4L, 5L, 7L);
+
+        assertThat(counters.lowStockCount()).isEqualTo(4);
+        assertThat(counters.lowStockCount()).isEqualTo(4);
+
+        counters.onStockChanged(new StockChangedEvent(BRANCH_ID));
+
+        assertThat(counters.lowStockCount()).isEqualTo(5);
+
+        counters.onLowStockThresholdChanged(new LowStockThresholdChangedEvent(3L));
+
+        assertThat(counters.lowStockCount()).isEqualTo(7);
+        verify(branchStockRepository, times(3)).countLowStock();
+    }
+
+    @Test
+    void activeUsersAreRecountedOnlyAfterAUserChange() {
+        when(userRepository.countActiveUsersByBranch(BRANCH_ID)).thenReturn(3L, 4L);
+
+        assertThat(counters.activeUsers(BRANCH_ID)).isEqualTo(3);
+        assertThat(counters.activeUsers(BRANCH_ID)).isEqualTo(3);
+
+        counters.onUserChanged(new UserChangedEvent(9L));
+
+        assertThat(counters.activeUsers(BRANCH_ID)).isEqualTo(4);
+        verify(userRepository, times(2)).countActiveUsersByBranch(BRANCH_ID);
+    }
+
+    @Test
+    void changesCommittedOnOneNodeMoveTheCountersOfAnother() {
+        when(branchStockRepository.countLowStock()).thenReturn(4L);
+        when(branchStockRepository.countOutOfStock()).thenReturn(1L);
+        ApplicationEventPublisher remotePublisher = mock(ApplicationEventPublisher.class);
+        DashboardCounters remote = node(mock(CacheInvalidationBus.class), remotePublisher);
+        remote.warmUp();
+        assertThat(remote.lowStockCount()).isEqualTo(4);
+
+        InvoiceSalesSnapshot pending = InvoiceSalesSnapshot.builder()
+                .invoiceId(10L)
+                .branchId(BRANCH_ID)
+                .salesDate(today)
+                .status(InvoiceStatus.PENDING)
+                .totalAmount(new BigDecimal("25.50"))
+                .build();
+        counters.announceInvoiceSales(new InvoiceSalesChangedEvent(pending,
+                pending.toBuilder().status(InvoiceStatus.PAID).build()));
+        counters.announceReturnStatus(new ReturnStatusChangedEvent(5L, null, ReturnStatus.PENDING));
+        counters.announceStock(new StockChangedEvent(BRANCH_ID, List.of(level(1L, 9), level(2L, 0)),
+                Map.of(1L, 12, 2L, 1)));
+
+        ArgumentCaptor<String> messages = ArgumentCaptor.forClass(String.class);
+        verify(invalidationBus, times(3)).publishMessage(eq(DashboardCounters.MESSAGE_NAME), messages.capture());
+        messages.getAllValues().forEach(remote::onMessage);
+
+        assertThat(remote.sales(BRANCH_ID, today, today)).isEqualByComparingTo("125.50");
+        assertThat(remote.invoiceCount(null, today, today)).isEqualTo(3);
+        assertThat(remote.pendingReturns()).isEqualTo(3);
+        assertThat(remote.lowStockCount()).isEqualTo(5);
+        assertThat(remote.outOfStockCount()).isEqualTo(2);
+        verify(branchStockRepository, times(1)).countLowStock();
+        verify(remotePublisher, times(2)).publishEvent(new DashboardCountersChangedEvent(BRANCH_ID, false));
+        verify(remotePublisher).publishEvent(new DashboardCountersChangedEvent(null, false));
+    }
+
+    private DashboardCounters node(CacheInvalidationBus bus, ApplicationEventPublisher eventPublisher) {
+        return new DashboardCounters(dailyBranchSalesRepository, branchStockRepository,
+                mock(CustomerRepository.class), returnRepository, mock(SalesRollupService.class),
+                userRepository, catalogCache, bus, eventPublisher);
+    }
+
+    private static StockChangedEvent.Level level(long productId, int quantity) {
+        return new StockChangedEvent.Level(productId, quantity, 0, 1L, null);
+    }
+}
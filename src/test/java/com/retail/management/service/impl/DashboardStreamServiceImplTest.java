@@ -0,0 +1,130 @@
+package com.retail.management.service.impl;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.retail.management.dto.response.stats.BranchStatsResponse;
+import com.retail.management.dto.response.stats.DashboardStatsResponse;
+import com.retail.management.service.DashboardService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DashboardStreamServiceImplTest {
+
+    private DashboardStatsResponse stats;
+    private DashboardStreamServiceImpl.TopicState topic;
+
+    @BeforeEach
+    void setUp() {
+        stats = DashboardStatsResponse.builder()
+                .todaySales(new BigDecimal("100.00"))
+                .todayInvoices(3L)
+                .pendingReturns(2L)
+                .build();
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        DashboardService dashboardService = new StubDashboardService();
+        DashboardStreamServiceImpl service = new DashboardStreamServiceImpl(dashboardService,
+                objectMapper, 60_000, 30_000);
+        topic = service.new TopicState(dashboardService::getDashboardStats);
+    }
+
+    @Test
+    void refreshNumbersFramesAndCarriesOnlyTheChangedFields() {
+        DashboardStreamServiceImpl.Frame first = topic.refresh();
+        assertThat(first.sequence()).isEqualTo(1);
+        assertThat(first.delta()).containsEntry("todayInvoices", 3L).containsEntry("pendingReturns", 2L);
+
+        assertThat(topic.refresh()).isNull();
+
+        stats.setPendingReturns(1L);
+        DashboardStreamServiceImpl.Frame second = topic.refresh();
+        assertThat(second.sequence()).isEqualTo(2);
+        assertThat(second.delta()).containsExactly(Map.entry("pendingReturns", 1L));
+        assertThat(second.snapshot()).isSameAs(stats);
+    }
+
+    @Test
+    void subscriberGetsASnapshotThenDeltasAndASnapshotAgainAfterMissingAFrame() {
+        RecordingEmitter emitter = new RecordingEmitter();
+        DashboardStreamServiceImpl.Subscriber subscriber = new DashboardStreamServiceImpl.Subscriber(emitter);
+
+        subscriber.deliver(topic.refresh(), false);
+        stats.setTodayInvoices(4L);
+        subscriber.deliver(topic.refresh(), false);
+
+        stats.setTodayInvoices(5L);
+        topic.refresh();
+        stats.setTodayInvoices(6L);
+        DashboardStreamServiceImpl.Frame fourth = topic.refresh();
+        subscriber.deliver(fourth, false);
+
+        assertThat(emitter.events).containsExactly("snapshot 1", "delta 2", "snapshot 4");
+        assertThat(emitter.data.get(1)).isEqualTo(Map.of("todayInvoices", 4L));
+        assertThat(emitter.data.get(2)).isSameAs(stats);
+    }
+
+    @Test
+    void unchangedStreamOnlySendsHeartbeats() {
+        RecordingEmitter emitter = new RecordingEmitter();
+        DashboardStreamServiceImpl.Subscriber subscriber = new DashboardStreamServiceImpl.Subscriber(emitter);
+        DashboardStreamServiceImpl.Frame frame = topic.refresh();
+
+        subscriber.deliver(frame, false);
+        subscriber.deliver(frame, false);
+        subscriber.deliver(frame, true);
+
+        assertThat(emitter.events).containsExactly("snapshot 1", "heartbeat");
+    }
+
+    private class StubDashboardService implements DashboardService {
+
+        @Override
+        public DashboardStatsResponse getDashboardStats() {
+            return stats;
+        }
+
+        @Override
+        public BranchStatsResponse getBranchStats(Long branchId) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    /**
+     * Keeps the name and ID, or comment, of each event sent, and its data.
+     */
+    private static class RecordingEmitter extends SseEmitter {
+
+        private final List<String> events = new ArrayList<>();
+        private final List<Object> data = new ArrayList<>();
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            String text = builder.build().stream()
+                    .map(part -> part.getData() instanceof String value ? value : "")
+                    .collect(Collectors.joining());
+            if (text.startsWith(":")) {
+                events.add(text.substring(1).trim());
+                return;
+            }
+
+            Map<String, String> fields = text.lines()
+                    .filter(line -> line.contains(":"))
+                    .collect(Collectors.toMap(line -> line.substring(0, line.indexOf(':')),
+                            line -> line.substring(line.indexOf(':') + 1), (a, b) -> a));
+            events.add(fields.get("event") + " " + fields.get("id"));
+            builder.build().stream()
+                    .map(DataWithMediaType::getData)
+                    .filter(value -> !(value instanceof String))
+                    .forEach(data::add);
+        }
+    }
+}
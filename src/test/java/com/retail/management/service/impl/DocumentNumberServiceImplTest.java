@@ -0,0 +1,101 @@
+package com.retail.management.service.impl;
+
+import com.retail.management.repository.DocumentSequenceRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DocumentNumberServiceImplTest {
+
+    private static final int BLOCK_SIZE = 20;
+
+    private DocumentSequenceRepository documentSequenceRepository;
+    private DocumentNumberServiceImpl service;
+    private final Map<String, AtomicLong> sequences = new ConcurrentHashMap<>();
+    private final AtomicInteger allocations = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        documentSequenceRepository = mock(DocumentSequenceRepository.class);
+        when(documentSequenceRepository.allocateBlock(anyString(), anyInt())).thenAnswer(invocation -> {
+            allocations.incrementAndGet();
+            return sequences.computeIfAbsent(invocation.getArgument(0), k -> new AtomicLong(1))
+                    .addAndGet(invocation.<Integer>getArgument(1));
+        });
+        service = new DocumentNumberServiceImpl(documentSequenceRepository, mock(PlatformTransactionManager.class),
+                BLOCK_SIZE);
+    }
+
+    @Test
+    void concurrentRefillsHandOutEveryNumberOnce() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<List<String>>> results = executor.invokeAll(Collections.nCopies(8, () -> {
+                List<String> numbers = new ArrayList<>();
+                for (int i = 0; i < 250; i++) {
+                    numbers.add(service.nextInvoiceNumber("B1"));
+                }
+                return numbers;
+            }));
+
+            Set<String> numbers = ConcurrentHashMap.newKeySet();
+            for (Future<List<String>> result : results) {
+                numbers.addAll(result.get(10, TimeUnit.SECONDS));
+            }
+            assertThat(numbers).hasSize(2000);
+            // One block per 20 numbers: no thread reserved a block another had just reserved
+            assertThat(allocations).hasValue(2000 / BLOCK_SIZE);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void slowRefillOfOneSequenceDoesNotHoldUpOthers() throws Exception {
+        CountDownLatch slowStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(documentSequenceRepository.allocateBlock(startsWith("INV:SLOW"), anyInt()))
+                .thenAnswer(invocation -> {
+                    slowStarted.countDown();
+                    assertThat(release.await(10, TimeUnit.SECONDS)).isTrue();
+                    return (long) BLOCK_SIZE + 1;
+                });
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> slow = executor.submit(() -> service.nextInvoiceNumber("SLOW"));
+            assertThat(slowStarted.await(5, TimeUnit.SECONDS)).isTrue();
+
+            // Would wait for the slow reservation if refills shared one lock
+            Future<String> other = executor.submit(() -> service.nextInvoiceNumber("B1"));
+            assertThat(other.get(2, TimeUnit.SECONDS)).endsWith("-B1-00001");
+
+            release.countDown();
+            assertThat(slow.get(5, TimeUnit.SECONDS)).endsWith("-SLOW-00001");
+        } finally {
+            release.countDown();
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.retail.management.service.impl;
+
+import com.retail.management.entity.AuditLog;
+import com.retail.management.entity.Branch;
+import com.retail.management.entity.User;
+import com.retail.management.enums.StockAdjustmentType;
+import com.retail.management.service.AuditService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.type.EntityType;
+import org.hibernate.type.Type;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.Set;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class EntityAuditListenerTest {
+
+    private static final String[] NAMES = {"username", "password", "phone", "credit", "type", "branch", "roles", "updatedAt"};
+
+    private AuditService auditService;
+    private EntityAuditListener listener;
+    private EntityPersister persister;
+    private EventSource session;
+    private final Branch branch = new Branch();
+
+    @BeforeEach
+    void setUp() {
+        auditService = mock(AuditService.class);
+        listener = new EntityAuditListener(mock(EntityManagerFactory.class), auditService, true,
+                Set.of("AuditLog"));
+
+        Type basic = mock(Type.class);
+        Type collection = mock(Type.class);
+        when(collection.isCollectionType()).thenReturn(true);
+        EntityType association = mock(EntityType.class);
+        when(association.isEntityType()).thenReturn(true);
+        when(association.getAssociatedEntityName()).thenReturn(Branch.class.getName());
+
+        persister = persister(User.class, NAMES,
+                new Type[]{basic, basic, basic, basic, basic, association, collection, basic});
+
+        session = mock(EventSource.class);
+        EntityPersister branchPersister = mock(EntityPersister.class);
+        when(branchPersister.getIdentifier(branch, session)).thenReturn(3L);
+        when(session.getEntityPersister(Branch.class.getName(), branch)).thenReturn(branchPersister);
+    }
+
+    @Test
+    void updateRecordsOnlyTheChangedFields() {
+        Object[] oldState = {"cashier", "hash1", "555-0100", new BigDecimal("1E+2"), StockAdjustmentType.SALE, null, null, "t1"};
+        Object[] state = {"cashier", "hash1", "555 \"main\"\n", new BigDecimal("1E+2"), StockAdjustmentType.RESTOCK, branch, null, "t2"};
+
+        listener.onPostUpdate(new PostUpdateEvent(new User(), 7L, state, oldState, new int[]{2, 4, 5, 7},
+                persister, session));
+
+        verify(auditService).logAction("User", 7L, "UPDATE",
+                "{\"phone\":\"555-0100\",\"type\":\"SALE\",\"branch\":null}",
+                "{\"phone\":\"555 \\\"main\\\"\\n\",\"type\":\"RESTOCK\",\"branch\":3}");
+    }
+
+    @Test
+    void updateOfBookkeepingFieldsOnlyIsNotRecorded() {
+        Object[] oldState = {"cashier", "hash1", null, null, null, null, null, "t1"};
+        Object[] state = {"cashier", "hash1", null, null, null, null, null, "t2"};
+
+        listener.onPostUpdate(new PostUpdateEvent(new User(), 7L, state, oldState, new int[]{7}, persister, session));
+
+        verify(auditService, never()).logAction(anyString(), anyLong(), anyString(), any(), any());
+    }
+
+    @Test
+    void fieldsClearedOrSetFromNullAreWrittenAsNull() {
+        Object[] oldState = {"cashier", "hash1", "555-0100", null, null, null, null, "t1"};
+        Object[] state = {"cashier", "hash1", null, new BigDecimal("12.50"), null, null, null, "t1"};
+
+        listener.onPostUpdate(new PostUpdateEvent(new User(), 7L, state, oldState, new int[]{2, 3}, persister, session));
+
+        verify(auditService).logAction("User", 7L, "UPDATE",
+                "{\"phone\":\"555-0100\",\"credit\":null}", "{\"phone\":null,\"credit\":12.50}");
+    }
+
+    @Test
+    void detachedUpdateWithoutDirtyPropertiesComparesTheStates() {
+        Object[] oldState = {"cashier", "hash1", "555-0100", null, null, null, null, "t1"};
+        Object[] state = {"manager", "hash1", "555-0100", null, null, null, null, "t2"};
+
+        listener.onPostUpdate(new PostUpdateEvent(new User(), 7L, state, oldState, null, persister, session));
+        verify(auditService).logAction("User", 7L, "UPDATE", "{\"username\":\"cashier\"}", "{\"username\":\"manager\"}");
+
+        // No old state at all: every field is written, with no old values
+        listener.onPostUpdate(new PostUpdateEvent(new User(), 8L, state, null, null, persister, session));
+        verify(auditService).logAction("User", 8L, "UPDATE", null,
+                "{\"username\":\"manager\",\"password\":\"***\",\"phone\":\"555-0100\",\"credit\":null," +
+                "\"type\":null,\"branch\":null}");
+    }
+
+    @Test
+    void secretsAreMaskedInEveryAction() {
+        Object[] oldState = {"cashier", "hash1", null, null, null, null, null, "t1"};
+        Object[] state = {"cashier", "hash2", null, null, null, null, null, "t2"};
+
+        listener.onPostUpdate(new PostUpdateEvent(new User(), 7L, state, oldState, new int[]{1, 7}, persister, session));
+        listener.onPostInsert(new PostInsertEvent(new User(), 8L, state, persister, session));
+        listener.onPostDelete(new PostDeleteEvent(new User(), 9L, state, persister, session));
+
+        verify(auditService).logAction("User", 7L, "UPDATE", "{\"password\":\"***\"}", "{\"password\":\"***\"}");
+        // Full snapshots leave out empty fields
+        verify(auditService).logAction("User", 8L, "CREATE", null, "{\"username\":\"cashier\",\"password\":\"***\"}");
+        verify(auditService).logAction("User", 9L, "DELETE", "{\"username\":\"cashier\",\"password\":\"***\"}", null);
+    }
+
+    @Test
+    void excludedEntitiesAndNonNumericIdsAreNotRecorded() {
+        EntityPersister excluded = persister(AuditLog.class, new String[]{"action"},
+                new Type[]{mock(Type.class)});
+
+        listener.onPostInsert(new PostInsertEvent(new Object(), 1L, new Object[]{"CREATE"}, excluded, session));
+        listener.onPostInsert(new PostInsertEvent(new User(), "key", new Object[NAMES.length], persister, session));
+
+        verify(auditService, never()).logAction(anyString(), any(), anyString(), any(), any());
+    }
+
+    private static EntityPersister persister(Class<?> entityClass, String[] names, Type[] types) {
+        EntityPersister persister = mock(EntityPersister.class);
+        when(persister.getEntityName()).thenReturn(entityClass.getName());
+        doReturn(entityClass).when(persister).getMappedClass();
+        when(persister.getPropertyNames()).thenReturn(names);
+        when(persister.getPropertyTypes()).thenReturn(types);
+        return persister;
+    }
+}
@@ -0,0 +1,250 @@
+package com.retail.management.service.impl;
+
+import com.retail.management.cache.CacheInvalidationBus;
+import com.retail.management.cache.CatalogCache;
+import com.retail.management.cache.StockCache;
+import com.retail.management.config.AuditConfig;
+import com.retail.management.config.CacheConfig;
+import com.retail.management.dto.request.invoice.CreateInvoiceRequest;
+import com.retail.management.dto.request.invoice.InvoiceItemRequest;
+import com.retail.management.entity.Branch;
+import com.retail.management.entity.BranchStock;
+import com.retail.management.entity.Product;
+import com.retail.management.entity.Role;
+import com.retail.management.entity.User;
+import com.retail.management.mapper.DiscountMapper;
+import com.retail.management.mapper.InvoiceMapper;
+import com.retail.management.mapper.PaymentMapper;
+import com.retail.management.repository.BranchRepository;
+import com.retail.management.repository.BranchStockRepository;
+import com.retail.management.repository.ProductRepository;
+import com.retail.management.repository.RoleRepository;
+import com.retail.management.repository.UserRepository;
+import com.retail.management.validator.PromoCodeValidator;
+import com.retail.management.validator.StockValidator;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Checks that checkout sends the same number of statements to the database
+ * whatever the size of the basket. Runs against a local Postgres in a scratch
+ * schema, e.g.
+ * {@code TEST_POSTGRES_URL=jdbc:postgresql://localhost:5432/retail TEST_POSTGRES_USER=... TEST_POSTGRES_PASSWORD=... mvn test}.
+ */
+@EnabledIfEnvironmentVariable(named = "TEST_POSTGRES_URL", matches = ".+")
+@DataJpaTest(properties = {
+        "spring.datasource.url=${TEST_POSTGRES_URL}",
+        "spring.datasource.username=${TEST_POSTGRES_USER:}",
+        "spring.datasource.password=${TEST_POSTGRES_PASSWORD:}",
+        "spring.datasource.hikari.connection-init-sql=CREATE SCHEMA IF NOT EXISTS invoice_statements_test; " +
+                "SET search_path TO invoice_statements_test",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        // As in application-example.properties
+        "spring.jpa.properties.hibernate.jdbc.batch_size=50",
+        "spring.jpa.properties.hibernate.order_inserts=true",
+        "spring.jpa.properties.hibernate.order_updates=true"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+// Checkout runs its own transactions, which must see the rows set up here
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({InvoiceServiceImpl.class, StockReservationServiceImpl.class, StockMutationCoordinator.class,
+        DocumentNumberServiceImpl.class, CatalogCache.class, StockCache.class, StockValidator.class,
+        CacheConfig.class, AuditConfig.class, InvoiceCheckoutStatementsTest.StatementCounting.class})
+class InvoiceCheckoutStatementsTest {
+
+    private static final int PRODUCTS = 40;
+
+    @MockitoBean
+    private CacheInvalidationBus invalidationBus;
+    @MockitoBean
+    private InvoiceMapper invoiceMapper;
+    @MockitoBean
+    private PaymentMapper paymentMapper;
+    @MockitoBean
+    private DiscountMapper discountMapper;
+    @MockitoBean
+    private PromoCodeValidator promoCodeValidator;
+
+    @Autowired
+    private InvoiceServiceImpl invoiceService;
+    @Autowired
+    private CacheManager cacheManager;
+    @Autowired
+    private BranchRepository branchRepository;
+    @Autowired
+    private ProductRepository productRepository;
+    @Autowired
+    private BranchStockRepository branchStockRepository;
+    @Autowired
+    private RoleRepository roleRepository;
+    @Autowired
+    private UserRepository userRepository;
+
+    private Branch branch;
+    private final List<Long> productIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        branch = branchRepository.save(Branch.builder().code("BR01").name("Main").active(true).build());
+        Role role = roleRepository.save(Role.builder().name("CASHIER").build());
+        userRepository.save(User.builder()
+                .username("cashier")
+                .email("cashier@example.com")
+                .password("hash")
+                .firstName("Cash")
+                .lastName("Ier")
+                .active(true)
+                .role(role)
+                .build());
+
+        for (int i = 1; i <= PRODUCTS; i++) {
+            Product product = productRepository.save(Product.builder()
+                    .sku("SKU-" + i)
+                    .name("Product " + i)
+                    .price(new BigDecimal("10.00"))
+                    .taxRate(new BigDecimal("14.00"))
+                    .active(true)
+                    .build());
+            branchStockRepository.save(BranchStock.builder()
+                    .branch(branch)
+                    .product(product)
+                    .quantity(100)
+                    .reservedQuantity(0)
+                    .build());
+            productIds.add(product.getId());
+        }
+
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("cashier", null));
+        // Reserves an invoice number block and starts the item id pool, which later baskets share
+        invoiceService.createInvoice(basketOf(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void statementsDoNotGrowWithBasketSize() {
+        int singleLine = statementsForBasketOf(1);
+        int groceryBasket = statementsForBasketOf(PRODUCTS);
+
+        assertThat(singleLine).isPositive();
+        assertThat(groceryBasket).isEqualTo(singleLine);
+    }
+
+    private int statementsForBasketOf(int lines) {
+        // A cold catalog, so each basket pays for loading its own products and branch
+        cacheManager.getCacheNames().stream()
+                .map(cacheManager::getCache)
+                .filter(Objects::nonNull)
+                .forEach(cache -> cache.clear());
+
+        StatementCounting.STATEMENTS.set(0);
+        invoiceService.createInvoice(basketOf(lines));
+        return StatementCounting.STATEMENTS.get();
+    }
+
+    private CreateInvoiceRequest basketOf(int lines) {
+        List<InvoiceItemRequest> items = IntStream.range(0, lines)
+                .mapToObj(i -> InvoiceItemRequest.builder().productId(productIds.get(i)).quantity(1).build())
+                .collect(Collectors.toCollection(ArrayList::new));
+
+        return CreateInvoiceRequest.builder()
+                .branchId(branch.getId())
+                .items(items)
+                .build();
+    }
+
+    /**
+     * Counts every statement execution, including a whole JDBC batch as one,
+     * on connections from the data source.
+     */
+    @TestConfiguration
+    static class StatementCounting {
+
+        static final AtomicInteger STATEMENTS = new AtomicInteger();
+
+        @Bean
+        MeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
+        @Bean
+        static BeanPostProcessor countingDataSource() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (!(bean instanceof DataSource dataSource)) {
+                        return bean;
+                    }
+                    return new DelegatingDataSource(dataSource) {
+                        @Override
+                        public Connection getConnection() throws SQLException {
+                            return (Connection) proxy(Connection.class, super.getConnection());
+                        }
+
+                        @Override
+                        public Connection getConnection(String username, String password) throws SQLException {
+                            return (Connection) proxy(Connection.class, super.getConnection(username, password));
+                        }
+                    };
+                }
+            };
+        }
+
+        private static Object proxy(Class<?> type, Object target) {
+            return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                    (proxy, method, args) -> {
+                        if (type != Connection.class && method.getName().startsWith("execute")) {
+                            STATEMENTS.incrementAndGet();
+                        }
+                        Object result;
+                        try {
+                            result = method.invoke(target, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                        if (type == Connection.class && result instanceof Statement statement
+                                && method.getReturnType().isInterface()) {
+                            return proxy(method.getReturnType(), statement);
+                        }
+                        return result;
+                    });
+        }
+    }
+}
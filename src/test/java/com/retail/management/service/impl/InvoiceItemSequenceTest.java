@@ -0,0 +1,81 @@
+package com.retail.management.service.impl;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Runs against a local Postgres in a scratch schema, e.g.
+ * {@code TEST_POSTGRES_URL=jdbc:postgresql://localhost:5432/retail TEST_POSTGRES_USER=... TEST_POSTGRES_PASSWORD=... mvn test}.
+ */
+@EnabledIfEnvironmentVariable(named = "TEST_POSTGRES_URL", matches = ".+")
+class InvoiceItemSequenceTest {
+
+    private static final String SCHEMA = "invoice_item_sequence_test";
+
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private InvoiceItemSequence sequence;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(System.getenv("TEST_POSTGRES_URL"));
+        dataSource.setUsername(System.getenv("TEST_POSTGRES_USER"));
+        dataSource.setPassword(System.getenv("TEST_POSTGRES_PASSWORD"));
+        dataSource.setMaximumPoolSize(2);
+        dataSource.setConnectionInitSql("CREATE SCHEMA IF NOT EXISTS " + SCHEMA + "; SET search_path TO " + SCHEMA);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        sequence = new InvoiceItemSequence(jdbcTemplate,
+                new TransactionTemplate(new DataSourceTransactionManager(dataSource)));
+
+        // An IDENTITY table with rows, and the sequence as Hibernate creates it next to it
+        jdbcTemplate.execute("CREATE TABLE invoice_items (id bigint GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY)");
+        jdbcTemplate.execute("CREATE SEQUENCE invoice_items_seq START WITH 1 INCREMENT BY 50");
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+        dataSource.close();
+    }
+
+    @Test
+    void movesTheSequencePastExistingIds() {
+        jdbcTemplate.update("INSERT INTO invoice_items (id) SELECT generate_series(1, 120)");
+
+        sequence.init();
+
+        // The pooled optimizer hands out the block ending at the value it is given
+        assertThat(nextval() - 49).isGreaterThan(120);
+    }
+
+    @Test
+    void neverMovesTheSequenceBack() {
+        jdbcTemplate.update("INSERT INTO invoice_items (id) VALUES (10)");
+        jdbcTemplate.queryForObject("SELECT setval('invoice_items_seq', 1000)", Long.class);
+
+        sequence.init();
+
+        assertThat(nextval()).isEqualTo(1050);
+    }
+
+    @Test
+    void leavesAFreshSequenceAlone() {
+        sequence.init();
+        sequence.init();
+
+        assertThat(nextval()).isEqualTo(1);
+    }
+
+    private long nextval() {
+        return jdbcTemplate.queryForObject("SELECT nextval('invoice_items_seq')", Long.class);
+    }
+}
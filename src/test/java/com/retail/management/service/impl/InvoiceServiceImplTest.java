@@ -0,0 +1,174 @@
+package com.retail.management.service.impl;
+
+import com.retail.management.cache.CacheInvalidationBus;
+import com.retail.management.cache.CatalogCache;
+import com.retail.management.config.CacheConfig;
+import com.retail.management.dto.request.invoice.CreateInvoiceRequest;
+import com.retail.management.dto.request.invoice.InvoiceItemRequest;
+import com.retail.management.entity.Branch;
+import com.retail.management.entity.Product;
+import com.retail.management.entity.User;
+import com.retail.management.exception.InsufficientStockException;
+import com.retail.management.mapper.DiscountMapper;
+import com.retail.management.mapper.InvoiceMapper;
+import com.retail.management.mapper.PaymentMapper;
+import com.retail.management.repository.*;
+import com.retail.management.service.DocumentNumberService;
+import com.retail.management.service.StockReservationService;
+import com.retail.management.validator.PromoCodeValidator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class InvoiceServiceImplTest {
+
+    private static final Long BRANCH_ID = 1L;
+
+    private InvoiceRepository invoiceRepository;
+    private BranchRepository branchRepository;
+    private CustomerRepository customerRepository;
+    private UserRepository userRepository;
+    private ProductRepository productRepository;
+    private PaymentRepository paymentRepository;
+    private DiscountRepository discountRepository;
+    private StockReservationService stockReservationService;
+    private InvoiceServiceImpl invoiceService;
+
+    @BeforeEach
+    void setUp() {
+        invoiceRepository = mock(InvoiceRepository.class);
+        branchRepository = mock(BranchRepository.class);
+        customerRepository = mock(CustomerRepository.class);
+        userRepository = mock(UserRepository.class);
+        productRepository = mock(ProductRepository.class);
+        paymentRepository = mock(PaymentRepository.class);
+        discountRepository = mock(DiscountRepository.class);
+        stockReservationService = mock(StockReservationService.class);
+
+        invoiceService = newInvoiceService();
+
+        Branch branch = Branch.builder().code("BR01").name("Main").build();
+        branch.setId(BRANCH_ID);
+
+        when(branchRepository.findById(BRANCH_ID)).thenReturn(Optional.of(branch));
+        when(userRepository.findByUsername("cashier")).thenReturn(Optional.of(User.builder().username("cashier").build()));
+        when(invoiceRepository.save(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(productRepository.findAllById(anyIterable()))
+                .thenAnswer(invocation -> productsFor(invocation.getArgument(0)));
+
+        SecurityContextHolder.getContext().setAuthentication(new TestingAuthenticationToken("cashier", null));
+    }
+
+    private InvoiceServiceImpl newInvoiceService() {
+        return new InvoiceServiceImpl(
+                invoiceRepository,
+                customerRepository,
+                userRepository,
+                new CatalogCache(new CacheConfig().cacheManager(mock(CacheInvalidationBus.class)), productRepository, branchRepository),
+                paymentRepository,
+                discountRepository,
+                mock(InvoiceMapper.class),
+                mock(PaymentMapper.class),
+                mock(DiscountMapper.class),
+                mock(PromoCodeValidator.class),
+                mock(DocumentNumberService.class),
+                stockReservationService,
+                stockMutations(),
+                mock(ApplicationEventPublisher.class)
+        );
+    }
+
+    private static StockMutationCoordinator stockMutations() {
+        StockMutationCoordinator stockMutations = mock(StockMutationCoordinator.class);
+        when(stockMutations.execute(any())).thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(0).get());
+        return stockMutations;
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void createInvoice_servesProductsAndBranchFromCacheOnRepeatCheckout() {
+        invoiceService.createInvoice(basketOf(5));
+        invoiceService.createInvoice(basketOf(5));
+
+        verify(productRepository, times(1)).findAllById(anyIterable());
+        verify(branchRepository, times(1)).findById(BRANCH_ID);
+    }
+
+    @Test
+    void createInvoice_reservesWholeBasketInOneCall() {
+        CreateInvoiceRequest request = basketOf(2);
+        request.getItems().add(InvoiceItemRequest.builder().productId(1L).quantity(2).build());
+        request.setReservationId(7L);
+
+        invoiceService.createInvoice(request);
+
+        verify(stockReservationService).reserveForInvoice(any(), eq(BRANCH_ID), eq(Map.of(1L, 3, 2L, 1)), eq(7L));
+    }
+
+    @Test
+    void createInvoice_rejectsBasketWhenAnyLineIsShort() {
+        doThrow(new InsufficientStockException("Product 2", 0, 1))
+                .when(stockReservationService).reserveForInvoice(any(), eq(BRANCH_ID), anyMap(), any());
+
+        assertThatThrownBy(() -> invoiceService.createInvoice(basketOf(2)))
+                .isInstanceOf(InsufficientStockException.class)
+                .hasMessageContaining("Product 2");
+        verify(invoiceRepository, never()).save(any());
+    }
+
+    private CreateInvoiceRequest basketOf(int lines) {
+        List<InvoiceItemRequest> items = IntStream.rangeClosed(1, lines)
+                .mapToObj(i -> InvoiceItemRequest.builder().productId((long) i).quantity(1).build())
+                .collect(Collectors.toCollection(ArrayList::new));
+
+        return CreateInvoiceRequest.builder()
+                .branchId(BRANCH_ID)
+                .items(items)
+                .build();
+    }
+
+    private List<Product> productsFor(Iterable<Long> productIds) {
+        List<Product> products = new ArrayList<>();
+        productIds.forEach(productId -> products.add(productOf(productId)));
+        return products;
+    }
+
+    private Product productOf(Long productId) {
+        Product product = Product.builder()
+                .name("Product " + productId)
+                .price(new BigDecimal("10.00"))
+                .taxRate(new BigDecimal("14.00"))
+                .build();
+        product.setId(productId);
+        return product;
+    }
+}
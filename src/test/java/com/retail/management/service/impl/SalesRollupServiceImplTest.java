@@ -0,0 +1,82 @@
+package com.retail.management.service.impl;
+
+import com.retail.management.enums.InvoiceStatus;
+import com.retail.management.event.InvoiceSalesChangedEvent;
+import com.retail.management.event.InvoiceSalesSnapshot;
+import com.retail.management.repository.DailyBranchSalesRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class SalesRollupServiceImplTest {
+
+    private DailyBranchSalesRepository dailyBranchSalesRepository;
+    private SalesRollupServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        dailyBranchSalesRepository = mock(DailyBranchSalesRepository.class);
+        TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(mock(TransactionStatus.class)));
+        service = new SalesRollupServiceImpl(dailyBranchSalesRepository, transactionTemplate, 100);
+    }
+
+    @Test
+    void queuesRemovalFromTheOldRowAndAdditionToTheNewOne() {
+        InvoiceSalesSnapshot pending = snapshot(InvoiceStatus.PENDING);
+        InvoiceSalesSnapshot paid = snapshot(InvoiceStatus.PAID);
+
+        service.onInvoiceSalesChanged(new InvoiceSalesChangedEvent(null, pending));
+        service.onInvoiceSalesChanged(new InvoiceSalesChangedEvent(pending, paid));
+
+        verify(dailyBranchSalesRepository).applyDelta(pending, 1);
+        verify(dailyBranchSalesRepository).applyDelta(pending, -1);
+        verify(dailyBranchSalesRepository).applyDelta(paid, 1);
+    }
+
+    @Test
+    void skipsChangesThatLeaveTheFiguresAlone() {
+        InvoiceSalesSnapshot paid = snapshot(InvoiceStatus.PAID);
+
+        service.onInvoiceSalesChanged(new InvoiceSalesChangedEvent(paid, paid.toBuilder().build()));
+
+        verify(dailyBranchSalesRepository, never()).applyDelta(any(), anyInt());
+    }
+
+    @Test
+    void drainsUntilABatchComesBackShort() {
+        when(dailyBranchSalesRepository.drain(100)).thenReturn(100, 100, 30);
+
+        assertThat(service.drain()).isEqualTo(230);
+        verify(dailyBranchSalesRepository, times(3)).drain(100);
+    }
+
+    private static InvoiceSalesSnapshot snapshot(InvoiceStatus status) {
+        return InvoiceSalesSnapshot.builder()
+                .invoiceId(10L)
+                .branchId(1L)
+                .salesDate(LocalDate.of(2026, 5, 4))
+                .status(status)
+                .customerId(7L)
+                .subtotal(new BigDecimal("100.00"))
+                .taxAmount(new BigDecimal("15.00"))
+                .discountAmount(BigDecimal.ZERO)
+                .totalAmount(new BigDecimal("115.00"))
+                .build();
+    }
+}
@@ -0,0 +1,206 @@
+package com.retail.management.service.impl;
+
+import com.retail.management.enums.StockAdjustmentType;
+import com.retail.management.event.StockChangedEvent;
+import com.retail.management.exception.BusinessException;
+import com.retail.management.repository.BranchStockRepositoryImpl;
+import com.retail.management.repository.StockMovement;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Runs against a local Postgres in a scratch schema, e.g.
+ * {@code TEST_POSTGRES_URL=jdbc:postgresql://localhost:5432/retail TEST_POSTGRES_USER=... TEST_POSTGRES_PASSWORD=... mvn test}.
+ */
+@EnabledIfEnvironmentVariable(named = "TEST_POSTGRES_URL", matches = ".+")
+class StockLedgerTest {
+
+    private static final String SCHEMA = "stock_ledger_test";
+    private static final long BRANCH_ID = 1L;
+    private static final long PRODUCT_ID = 1L;
+
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private ApplicationEventPublisher eventPublisher;
+    private BranchStockRepositoryImpl repository;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(System.getenv("TEST_POSTGRES_URL"));
+        dataSource.setUsername(System.getenv("TEST_POSTGRES_USER"));
+        dataSource.setPassword(System.getenv("TEST_POSTGRES_PASSWORD"));
+        dataSource.setMaximumPoolSize(4);
+        // LOCALTIMESTAMP in the ledger is compared with LocalDateTime.now()
+        dataSource.setConnectionInitSql("CREATE SCHEMA IF NOT EXISTS " + SCHEMA + "; SET search_path TO " + SCHEMA +
+                "; SET TIME ZONE '" + ZoneId.systemDefault().getId() + "'");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        eventPublisher = mock(ApplicationEventPublisher.class);
+
+        jdbcTemplate.execute("CREATE TABLE users (id bigserial PRIMARY KEY, username varchar(50))");
+        jdbcTemplate.execute("CREATE TABLE branch_stocks (id bigserial PRIMARY KEY, branch_id bigint NOT NULL, " +
+                "product_id bigint NOT NULL, quantity int NOT NULL, reserved_quantity int NOT NULL DEFAULT 0, " +
+                "last_restocked_at timestamp, created_at timestamp, created_by varchar(100), " +
+                "updated_at timestamp, updated_by varchar(100), version bigint, UNIQUE (product_id, branch_id))");
+        // adjusted_by as older schemas declared it
+        jdbcTemplate.execute("CREATE TABLE stock_adjustments (id bigserial PRIMARY KEY, branch_id bigint, " +
+                "product_id bigint, adjustment_type varchar(50), quantity_change int, quantity_before int, " +
+                "quantity_after int, reference varchar(100), reason varchar(500), notes varchar(1000), " +
+                "adjusted_by bigint NOT NULL, adjustment_date timestamp, created_at timestamp)");
+        jdbcTemplate.execute("CREATE TABLE stock_snapshots (id bigserial PRIMARY KEY, branch_id bigint NOT NULL, " +
+                "product_id bigint NOT NULL, snapshot_at timestamp NOT NULL, last_adjustment_id bigint NOT NULL, " +
+                "quantity int NOT NULL)");
+
+        repository = new BranchStockRepositoryImpl(jdbcTemplate, mock(ApplicationEventPublisher.class));
+        ReflectionTestUtils.setField(repository, "entityManager", mock(EntityManager.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+        dataSource.close();
+    }
+
+    @Test
+    void initIsRepeatableAndAllowsSystemLedgerRows() {
+        jdbcTemplate.update("INSERT INTO branch_stocks (branch_id, product_id, quantity, version) VALUES (?, ?, 7, 0)",
+                BRANCH_ID, PRODUCT_ID);
+        ledger(0).init();
+        ledger(0).init();
+
+        assertThat(jdbcTemplate.queryForObject("SELECT is_nullable FROM information_schema.columns " +
+                "WHERE table_schema = current_schema() AND table_name = 'stock_adjustments' " +
+                "AND column_name = 'adjusted_by'", String.class)).isEqualTo("YES");
+        // One bootstrap snapshot, not one per start
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(DISTINCT snapshot_at) FROM stock_snapshots",
+                Integer.class)).isEqualTo(1);
+    }
+
+    @Test
+    void everyMovementAppendsALedgerRowInTheSameStatement() {
+        ledger(0).init();
+
+        transactionTemplate.executeWithoutResult(s -> {
+            repository.incrementStock(BRANCH_ID, Map.of(PRODUCT_ID, 10),
+                    StockMovement.of(StockAdjustmentType.RESTOCK, "PO-1"));
+            repository.decrementStock(BRANCH_ID, Map.of(PRODUCT_ID, 3),
+                    new StockMovement(StockAdjustmentType.SALE, "INV-1", "sold", "till 2"));
+            // Refused for lack of stock: no ledger row
+            repository.decrementStock(BRANCH_ID, Map.of(PRODUCT_ID, 50),
+                    StockMovement.of(StockAdjustmentType.SALE, "INV-2"));
+        });
+
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList("SELECT adjustment_type, quantity_change, " +
+                "quantity_before, quantity_after, reference, reason, notes, adjusted_by FROM stock_adjustments ORDER BY id");
+        assertThat(rows).hasSize(2);
+        assertThat(rows.get(0)).containsEntry("adjustment_type", "RESTOCK").containsEntry("quantity_change", 10)
+                .containsEntry("quantity_before", 0).containsEntry("quantity_after", 10)
+                .containsEntry("reference", "PO-1").containsEntry("adjusted_by", null);
+        assertThat(rows.get(1)).containsEntry("adjustment_type", "SALE").containsEntry("quantity_change", -3)
+                .containsEntry("quantity_before", 10).containsEntry("quantity_after", 7)
+                .containsEntry("reason", "sold").containsEntry("notes", "till 2");
+    }
+
+    @Test
+    void quantityAtReplaysTheLedgerFromTheLastSnapshotBeforeIt() {
+        LocalDateTime now = LocalDateTime.now();
+        jdbcTemplate.update("INSERT INTO branch_stocks (branch_id, product_id, quantity, version) VALUES (?, ?, 7, 2)",
+                BRANCH_ID, PRODUCT_ID);
+        snapshotRow(now.minusDays(10), 0L, 0);
+        adjustmentRow(now.minusDays(3), 10);
+        adjustmentRow(now.minusDays(2), -3);
+
+        StockLedger ledger = ledger(0);
+        ledger.init();
+        assertThat(ledger.quantityAt(BRANCH_ID, PRODUCT_ID, now.minusDays(5))).isZero();
+        assertThat(ledger.quantityAt(BRANCH_ID, PRODUCT_ID, now.minusDays(3).plusHours(1))).isEqualTo(10);
+        assertThat(ledger.quantityAt(BRANCH_ID, PRODUCT_ID, now)).isEqualTo(7);
+
+        ledger.snapshot();
+        assertThat(jdbcTemplate.queryForObject("SELECT quantity FROM stock_snapshots ORDER BY snapshot_at DESC LIMIT 1",
+                Integer.class)).isEqualTo(7);
+
+        transactionTemplate.executeWithoutResult(s -> repository.decrementStock(BRANCH_ID, Map.of(PRODUCT_ID, 2),
+                StockMovement.of(StockAdjustmentType.SALE, "INV-3")));
+        assertThat(ledger.quantityAt(BRANCH_ID, PRODUCT_ID, LocalDateTime.now().plusMinutes(1))).isEqualTo(5);
+        // Still answered from the older snapshot
+        assertThat(ledger.quantityAt(BRANCH_ID, PRODUCT_ID, now.minusDays(3).plusHours(1))).isEqualTo(10);
+    }
+
+    @Test
+    void snapshotsPastTheRetentionAreDeletedButTheLatestIsKept() {
+        LocalDateTime now = LocalDateTime.now();
+        snapshotRow(now.minusDays(40), 0L, 4);
+        snapshotRow(now.minusDays(35), 0L, 4);
+
+        // Nothing new in the ledger: no new snapshot, the last one stays
+        ledger(30).snapshot();
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(DISTINCT snapshot_at) FROM stock_snapshots",
+                Integer.class)).isEqualTo(1);
+
+        adjustmentRow(now.minusDays(1), 6);
+        ledger(30).snapshot();
+
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM stock_snapshots", Integer.class)).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("SELECT quantity FROM stock_snapshots", Integer.class)).isEqualTo(10);
+        assertThatThrownBy(() -> ledger(30).quantityAt(BRANCH_ID, PRODUCT_ID, now.minusDays(20)))
+                .isInstanceOf(BusinessException.class)
+                .hasMessageStartingWith("Stock history starts at");
+    }
+
+    @Test
+    void rebuildResetsQuantitiesThatDriftedFromTheLedger() {
+        ledger(0).init();
+        transactionTemplate.executeWithoutResult(s -> {
+            repository.incrementStock(BRANCH_ID, Map.of(PRODUCT_ID, 10, 2L, 4),
+                    StockMovement.of(StockAdjustmentType.RESTOCK, "PO-1"));
+            repository.decrementStock(BRANCH_ID, Map.of(PRODUCT_ID, 3), StockMovement.of(StockAdjustmentType.SALE, "INV-1"));
+        });
+        // Changed behind the ledger's back
+        jdbcTemplate.update("UPDATE branch_stocks SET quantity = 100 WHERE product_id = ?", PRODUCT_ID);
+
+        Map<Long, Integer> corrected = ledger(0).rebuild(BRANCH_ID);
+
+        assertThat(corrected).containsExactly(Map.entry(PRODUCT_ID, 7));
+        assertThat(jdbcTemplate.queryForObject("SELECT quantity FROM branch_stocks WHERE product_id = ?",
+                Integer.class, PRODUCT_ID)).isEqualTo(7);
+        verify(eventPublisher).publishEvent(any(StockChangedEvent.class));
+    }
+
+    private StockLedger ledger(int retentionDays) {
+        return new StockLedger(jdbcTemplate, transactionTemplate, eventPublisher, 0, retentionDays);
+    }
+
+    private void snapshotRow(LocalDateTime at, long lastAdjustmentId, int quantity) {
+        jdbcTemplate.update("INSERT INTO stock_snapshots (branch_id, product_id, snapshot_at, last_adjustment_id, " +
+                "quantity) VALUES (?, ?, ?, ?, ?)", BRANCH_ID, PRODUCT_ID, at, lastAdjustmentId, quantity);
+    }
+
+    private void adjustmentRow(LocalDateTime at, int change) {
+        jdbcTemplate.update("INSERT INTO stock_adjustments (branch_id, product_id, adjustment_type, quantity_change, " +
+                "quantity_before, quantity_after, adjusted_by, adjustment_date, created_at) " +
+                "VALUES (?, ?, 'ADJUSTMENT', ?, 0, 0, 1, ?, ?)", BRANCH_ID, PRODUCT_ID, change, at, at);
+    }
+}
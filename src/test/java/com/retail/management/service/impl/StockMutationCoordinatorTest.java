@@ -0,0 +1,70 @@
+package com.retail.management.service.impl;
+
+import com.retail.management.repository.BranchStockRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+
+class StockMutationCoordinatorTest {
+
+    private StockMutationCoordinator coordinator;
+
+    @BeforeEach
+    void setUp() {
+        coordinator = new StockMutationCoordinator(mock(BranchStockRepository.class),
+                new TransactionTemplate(mock(PlatformTransactionManager.class)), new SimpleMeterRegistry(), 3, 1);
+    }
+
+    @Test
+    void retriesMutationThatLostALockAndCountsTheDeadlock() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        String result = coordinator.execute(() -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw deadlock();
+            }
+            return "done";
+        });
+
+        assertThat(result).isEqualTo("done");
+        assertThat(attempts).hasValue(2);
+        assertThat(coordinator.deadlocks()).isEqualTo(1);
+        assertThat(coordinator.retries()).isEqualTo(1);
+    }
+
+    @Test
+    void givesUpAfterTheLastAttempt() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        assertThatThrownBy(() -> coordinator.execute(() -> {
+            attempts.incrementAndGet();
+            throw deadlock();
+        })).isInstanceOf(CannotAcquireLockException.class);
+
+        assertThat(attempts).hasValue(3);
+        assertThat(coordinator.deadlocks()).isEqualTo(3);
+        assertThat(coordinator.retries()).isEqualTo(2);
+    }
+
+    @Test
+    void refusesToLockOutsideATransaction() {
+        assertThatThrownBy(() -> coordinator.lock(1L, List.of(1L)))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    private static CannotAcquireLockException deadlock() {
+        return new CannotAcquireLockException("deadlock detected",
+                new SQLException("deadlock detected", "40P01"));
+    }
+}
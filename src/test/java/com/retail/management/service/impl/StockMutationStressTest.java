@@ -0,0 +1,187 @@
+package com.retail.management.service.impl;
+
+import com.retail.management.enums.StockAdjustmentType;
+import com.retail.management.repository.BranchStockRepository;
+import com.retail.management.repository.BranchStockRepositoryImpl;
+import com.retail.management.repository.StockKey;
+import com.retail.management.repository.StockMovement;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfEnvironmentVariable;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.AdditionalAnswers.delegatesTo;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Hammers overlapping stock rows from many threads: transfers in both
+ * directions and sales whose lines come in random order. Runs against a local
+ * Postgres in a scratch schema, e.g.
+ * {@code TEST_POSTGRES_URL=jdbc:postgresql://localhost:5432/retail TEST_POSTGRES_USER=... TEST_POSTGRES_PASSWORD=... mvn test}.
+ */
+@EnabledIfEnvironmentVariable(named = "TEST_POSTGRES_URL", matches = ".+")
+class StockMutationStressTest {
+
+    private static final String SCHEMA = "stock_mutation_stress";
+    private static final int BRANCHES = 3;
+    private static final int PRODUCTS = 40;
+    private static final int THREADS = 16;
+    private static final int MUTATIONS_PER_THREAD = 250;
+    private static final int INITIAL_QUANTITY = 1_000_000;
+
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private BranchStockRepository branchStockRepository;
+    private StockMutationCoordinator coordinator;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(System.getenv("TEST_POSTGRES_URL"));
+        dataSource.setUsername(System.getenv("TEST_POSTGRES_USER"));
+        dataSource.setPassword(System.getenv("TEST_POSTGRES_PASSWORD"));
+        dataSource.setMaximumPoolSize(THREADS);
+        dataSource.setConnectionInitSql("CREATE SCHEMA IF NOT EXISTS " + SCHEMA + "; SET search_path TO " + SCHEMA);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+
+        jdbcTemplate.execute("DROP TABLE IF EXISTS branch_stocks, stock_adjustments, users");
+        jdbcTemplate.execute("CREATE TABLE users (id bigserial PRIMARY KEY, username varchar(50))");
+        jdbcTemplate.execute("CREATE TABLE branch_stocks (id bigserial PRIMARY KEY, branch_id bigint NOT NULL, " +
+                "product_id bigint NOT NULL, quantity int NOT NULL, reserved_quantity int NOT NULL DEFAULT 0, " +
+                "last_restocked_at timestamp, created_at timestamp, created_by varchar(100), " +
+                "updated_at timestamp, updated_by varchar(100), version bigint, UNIQUE (product_id, branch_id))");
+        jdbcTemplate.execute("CREATE TABLE stock_adjustments (id bigserial PRIMARY KEY, branch_id bigint, " +
+                "product_id bigint, adjustment_type varchar(50), quantity_change int, quantity_before int, " +
+                "quantity_after int, reference varchar(100), reason varchar(500), notes varchar(1000), " +
+                "adjusted_by bigint, adjustment_date timestamp, created_at timestamp)");
+        jdbcTemplate.update("INSERT INTO branch_stocks (branch_id, product_id, quantity, version) " +
+                "SELECT b, p, ?, 0 FROM generate_series(1, ?) b, generate_series(1, ?) p",
+                INITIAL_QUANTITY, BRANCHES, PRODUCTS);
+
+        BranchStockRepositoryImpl repository = new BranchStockRepositoryImpl(jdbcTemplate,
+                mock(ApplicationEventPublisher.class));
+        ReflectionTestUtils.setField(repository, "entityManager", mock(EntityManager.class));
+        branchStockRepository = mock(BranchStockRepository.class, delegatesTo(repository));
+
+        coordinator = new StockMutationCoordinator(branchStockRepository,
+                new TransactionTemplate(new DataSourceTransactionManager(dataSource)), new SimpleMeterRegistry(), 3, 20);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP SCHEMA IF EXISTS " + SCHEMA + " CASCADE");
+        dataSource.close();
+    }
+
+    @Test
+    void overlappingMutationsInRandomOrderNeverDeadlock() throws Exception {
+        AtomicLong sold = new AtomicLong();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> workers = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                workers.add(executor.submit(() -> {
+                    for (int i = 0; i < MUTATIONS_PER_THREAD; i++) {
+                        if (i % 2 == 0) {
+                            transfer();
+                        } else {
+                            sold.addAndGet(sell());
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> worker : workers) {
+                worker.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(coordinator.deadlocks()).isZero();
+        assertThat(coordinator.retries()).isZero();
+
+        long total = jdbcTemplate.queryForObject("SELECT SUM(quantity) FROM branch_stocks", Long.class);
+        assertThat(total).isEqualTo((long) INITIAL_QUANTITY * BRANCHES * PRODUCTS - sold.get());
+
+        // Every row is its starting quantity plus its ledger rows
+        Integer drifted = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM branch_stocks bs " +
+                "LEFT JOIN (SELECT branch_id, product_id, SUM(quantity_change) AS delta FROM stock_adjustments " +
+                "GROUP BY branch_id, product_id) d USING (branch_id, product_id) " +
+                "WHERE bs.quantity <> ? + COALESCE(d.delta, 0)", Integer.class, INITIAL_QUANTITY);
+        assertThat(drifted).isZero();
+    }
+
+    private void transfer() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long from = random.nextLong(1, BRANCHES + 1);
+        long to = from % BRANCHES + 1;
+        Map<Long, Integer> lines = basket();
+
+        coordinator.executeWithoutResult(() -> {
+            List<StockKey> keys = new ArrayList<>();
+            lines.keySet().forEach(productId -> {
+                keys.add(new StockKey(from, productId));
+                keys.add(new StockKey(to, productId));
+            });
+            coordinator.lock(keys);
+
+            Map<Long, Integer> taken = branchStockRepository.decrementStock(from, lines,
+                    StockMovement.of(StockAdjustmentType.TRANSFER_OUT, "stress"));
+            Map<Long, Integer> moved = new HashMap<>();
+            taken.keySet().forEach(productId -> moved.put(productId, lines.get(productId)));
+            branchStockRepository.incrementStock(to, moved, StockMovement.of(StockAdjustmentType.TRANSFER_IN, "stress"));
+        });
+    }
+
+    private int sell() {
+        long branchId = ThreadLocalRandom.current().nextLong(1, BRANCHES + 1);
+        Map<Long, Integer> lines = basket();
+
+        return coordinator.execute(() -> {
+            coordinator.lock(branchId, lines.keySet());
+            Map<Long, Integer> taken = branchStockRepository.decrementStock(branchId, lines,
+                    StockMovement.of(StockAdjustmentType.SALE, "stress"));
+            return taken.keySet().stream().mapToInt(lines::get).sum();
+        });
+    }
+
+    /**
+     * 5 to 20 distinct products in random order
+     */
+    private static Map<Long, Integer> basket() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<Long> products = new ArrayList<>();
+        for (long p = 1; p <= PRODUCTS; p++) {
+            products.add(p);
+        }
+        Collections.shuffle(products, random);
+
+        Map<Long, Integer> lines = new LinkedHashMap<>();
+        for (Long productId : products.subList(0, random.nextInt(5, 21))) {
+            lines.put(productId, random.nextInt(1, 4));
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,116 @@
+package com.retail.management.service.impl;
+
+import com.retail.management.cache.CatalogCache;
+import com.retail.management.cache.StockCache;
+import com.retail.management.dto.request.invoice.InvoiceItemRequest;
+import com.retail.management.dto.request.stock.StockReservationRequest;
+import com.retail.management.entity.Product;
+import com.retail.management.entity.StockReservation;
+import com.retail.management.enums.ReservationStatus;
+import com.retail.management.exception.InsufficientStockException;
+import com.retail.management.repository.BranchRepository;
+import com.retail.management.repository.BranchStockRepository;
+import com.retail.management.repository.StockReservationRepository;
+import com.retail.management.validator.StockValidator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StockReservationServiceImplTest {
+
+    private static final Long BRANCH_ID = 1L;
+
+    private StockReservationRepository reservationRepository;
+    private BranchStockRepository branchStockRepository;
+    private TransactionTemplate transactionTemplate;
+    private StockCache stockCache;
+    private CatalogCache catalogCache;
+
+    @BeforeEach
+    void setUp() {
+        reservationRepository = mock(StockReservationRepository.class);
+        branchStockRepository = mock(BranchStockRepository.class);
+        transactionTemplate = mock(TransactionTemplate.class);
+        stockCache = mock(StockCache.class);
+        catalogCache = mock(CatalogCache.class);
+
+        when(reservationRepository.save(any())).thenAnswer(invocation -> {
+            StockReservation reservation = invocation.getArgument(0);
+            reservation.setId(42L);
+            when(reservationRepository.findById(42L)).thenReturn(Optional.of(reservation));
+            return reservation;
+        });
+        doAnswer(invocation -> {
+            invocation.<Consumer<TransactionStatus>>getArgument(0).accept(null);
+            return null;
+        }).when(transactionTemplate).executeWithoutResult(any());
+    }
+
+    @Test
+    void rejectsBasketWhenAnyLineIsShort() {
+        when(branchStockRepository.reserveStock(eq(BRANCH_ID), anyMap())).thenReturn(Map.of(1L, 99));
+        when(stockCache.available(BRANCH_ID, 2L)).thenReturn(0);
+        when(catalogCache.getProduct(2L)).thenReturn(product(2L));
+
+        assertThatThrownBy(() -> service(15).reserveBasket(basketOf(Map.of(1L, 1, 2L, 1))))
+                .isInstanceOf(InsufficientStockException.class)
+                .hasMessageContaining("Product 2");
+        verify(reservationRepository, never()).save(any());
+    }
+
+    @Test
+    void releasesHeldStockWhenTheHoldTimesOut() {
+        when(branchStockRepository.reserveStock(eq(BRANCH_ID), anyMap()))
+                .thenAnswer(invocation -> invocation.getArgument(1));
+        when(reservationRepository.transition(42L, ReservationStatus.ACTIVE, ReservationStatus.EXPIRED)).thenReturn(1);
+
+        StockReservationServiceImpl service = service(0);
+        service.start();
+        try {
+            service.reserveBasket(basketOf(Map.of(1L, 2)));
+
+            verify(branchStockRepository, timeout(5000)).releaseReservedStock(BRANCH_ID, Map.of(1L, 2));
+        } finally {
+            service.stop();
+        }
+    }
+
+    private StockReservationServiceImpl service(long ttlMinutes) {
+        BranchRepository branchRepository = mock(BranchRepository.class);
+        when(branchRepository.existsById(BRANCH_ID)).thenReturn(true);
+        return new StockReservationServiceImpl(reservationRepository, branchStockRepository, branchRepository,
+                new StockValidator(stockCache, catalogCache), transactionTemplate, mock(StockMutationCoordinator.class), ttlMinutes, ttlMinutes, 5);
+    }
+
+    private static StockReservationRequest basketOf(Map<Long, Integer> quantities) {
+        return StockReservationRequest.builder()
+                .branchId(BRANCH_ID)
+                .items(quantities.entrySet().stream()
+                        .map(line -> InvoiceItemRequest.builder().productId(line.getKey()).quantity(line.getValue()).build())
+                        .toList())
+                .build();
+    }
+
+    private static Product product(Long productId) {
+        Product product = Product.builder().name("Product " + productId).build();
+        product.setId(productId);
+        return product;
+    }
+}
@@ -0,0 +1,125 @@
+package com.retail.management.service.impl;
+
+import com.retail.management.cache.CatalogCache;
+import com.retail.management.cache.StockCache;
+import com.retail.management.dto.request.invoice.InvoiceItemRequest;
+import com.retail.management.dto.request.product.StockAdjustmentRequest;
+import com.retail.management.dto.request.stock.BulkStockAdjustmentRequest;
+import com.retail.management.dto.request.stock.BulkStockTransferRequest;
+import com.retail.management.dto.response.stock.StockBatchResponse;
+import com.retail.management.dto.response.stock.StockLineResult;
+import com.retail.management.enums.StockAdjustmentType;
+import com.retail.management.mapper.StockAdjustmentMapper;
+import com.retail.management.repository.BranchRepository;
+import com.retail.management.repository.BranchStockRepository;
+import com.retail.management.repository.ProductRepository;
+import com.retail.management.repository.StockAdjustmentRepository;
+import com.retail.management.repository.StockKey;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class StockServiceImplTest {
+
+    private BranchStockRepository branchStockRepository;
+    private BranchRepository branchRepository;
+    private ProductRepository productRepository;
+    private StockMutationCoordinator stockMutations;
+    private StockServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        branchStockRepository = mock(BranchStockRepository.class);
+        branchRepository = mock(BranchRepository.class);
+        productRepository = mock(ProductRepository.class);
+        stockMutations = mock(StockMutationCoordinator.class);
+        when(stockMutations.execute(any())).thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(0).get());
+        service = new StockServiceImpl(branchStockRepository, branchRepository, productRepository,
+                mock(StockAdjustmentRepository.class), mock(StockLedger.class), stockMutations,
+                mock(StockCache.class), mock(CatalogCache.class), mock(StockAdjustmentMapper.class));
+    }
+
+    @Test
+    void locksAllRowsBeforeApplyingAdjustmentsAndReportsEachLine() {
+        when(branchRepository.findExistingIds(anyCollection())).thenReturn(List.of(1L, 2L));
+        when(productRepository.findExistingIds(anyCollection())).thenReturn(List.of(10L, 11L));
+        when(branchStockRepository.incrementStock(eq(1L), anyMap(), any())).thenReturn(Map.of(10L, 15));
+        when(branchStockRepository.decrementStock(eq(2L), anyMap(), any())).thenReturn(Map.of(10L, 3));
+
+        BulkStockAdjustmentRequest request = BulkStockAdjustmentRequest.builder()
+                .reference("DN-1")
+                .lines(List.of(
+                        line(2L, 10L, StockAdjustmentType.DAMAGE, 2),
+                        line(2L, 11L, StockAdjustmentType.DAMAGE, 50),
+                        line(1L, 10L, StockAdjustmentType.RESTOCK, 5),
+                        line(1L, 99L, StockAdjustmentType.RESTOCK, 5),
+                        line(1L, 10L, StockAdjustmentType.RESTOCK, 5)))
+                .build();
+
+        StockBatchResponse response = service.adjustStockBatch(request);
+
+        InOrder order = inOrder(stockMutations, branchStockRepository);
+        order.verify(stockMutations).lock(argThat((Collection<StockKey> keys) -> Set.copyOf(keys).equals(
+                Set.of(new StockKey(1L, 10L), new StockKey(2L, 10L), new StockKey(2L, 11L)))));
+        order.verify(branchStockRepository).incrementStock(eq(1L), eq(Map.of(10L, 10)), any());
+        verify(branchStockRepository).decrementStock(eq(2L), eq(Map.of(10L, 2, 11L, 50)), any());
+
+        assertThat(response.getApplied()).isEqualTo(3);
+        assertThat(response.getRejected()).isEqualTo(2);
+        assertThat(response.getLines()).extracting(StockLineResult::getMessage)
+                .containsExactly(null, "Insufficient stock", null, "Product not found", null);
+        assertThat(response.getLines().get(0).getQuantityAfter()).isEqualTo(3);
+    }
+
+    @Test
+    void locksBothBranchesAndMovesOnlyWhatLeftTheSource() {
+        when(branchRepository.existsById(1L)).thenReturn(true);
+        when(branchStockRepository.decrementStock(eq(2L), anyMap(), any())).thenReturn(Map.of(10L, 4));
+
+        BulkStockTransferRequest request = BulkStockTransferRequest.builder()
+                .fromBranchId(2L)
+                .toBranchId(1L)
+                .items(List.of(item(10L, 6), item(11L, 8)))
+                .build();
+
+        StockBatchResponse response = service.transferStockBatch(request);
+
+        InOrder order = inOrder(stockMutations, branchStockRepository);
+        order.verify(stockMutations).lock(argThat((Collection<StockKey> keys) -> Set.copyOf(keys).equals(Set.of(
+                new StockKey(1L, 10L), new StockKey(1L, 11L), new StockKey(2L, 10L), new StockKey(2L, 11L)))));
+        order.verify(branchStockRepository).decrementStock(eq(2L), anyMap(), any());
+        verify(branchStockRepository).incrementStock(eq(1L), eq(Map.of(10L, 6)), any());
+        assertThat(response.getLines()).extracting(StockLineResult::getApplied).containsExactly(true, false);
+    }
+
+    private static StockAdjustmentRequest line(Long branchId, Long productId, StockAdjustmentType type,
+                                               int quantity) {
+        return StockAdjustmentRequest.builder()
+                .branchId(branchId)
+                .productId(productId)
+                .adjustmentType(type)
+                .quantity(quantity)
+                .build();
+    }
+
+    private static InvoiceItemRequest item(Long productId, int quantity) {
+        return InvoiceItemRequest.builder().productId(productId).quantity(quantity).build();
+    }
+}